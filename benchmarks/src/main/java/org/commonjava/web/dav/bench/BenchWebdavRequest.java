@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.web.dav.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import net.sf.webdav.spi.WebdavRequest;
+
+/**
+ * In-memory {@link WebdavRequest}, reusable across benchmark invocations.
+ */
+public class BenchWebdavRequest
+    implements WebdavRequest
+{
+
+    private final Map<String, String> _headers = new HashMap<String, String>();
+
+    private final Map<String, String> _attributes = new HashMap<String, String>();
+
+    private final Map<String, String> _parameters = new HashMap<String, String>();
+
+    private final String _method;
+
+    private final String _path;
+
+    private byte[] _body = new byte[0];
+
+    public BenchWebdavRequest( final String method, final String path )
+    {
+        _method = method;
+        _path = path;
+    }
+
+    public BenchWebdavRequest withHeader( final String name, final String value )
+    {
+        _headers.put( name, value );
+        return this;
+    }
+
+    public BenchWebdavRequest withBody( final byte[] body )
+    {
+        _body = body;
+        return this;
+    }
+
+    @Override
+    public String getMethod()
+    {
+        return _method;
+    }
+
+    @Override
+    public Principal getUserPrincipal()
+    {
+        return null;
+    }
+
+    @Override
+    public String getRequestURI()
+    {
+        return _path;
+    }
+
+    @Override
+    public Set<String> getHeaderNames()
+    {
+        return _headers.keySet();
+    }
+
+    @Override
+    public String getHeader( final String name )
+    {
+        return _headers.get( name );
+    }
+
+    @Override
+    public Set<String> getAttributeNames()
+    {
+        return _attributes.keySet();
+    }
+
+    @Override
+    public String getAttribute( final String name )
+    {
+        return _attributes.get( name );
+    }
+
+    @Override
+    public Set<String> getParameterNames()
+    {
+        return _parameters.keySet();
+    }
+
+    @Override
+    public String getParameter( final String name )
+    {
+        return _parameters.get( name );
+    }
+
+    @Override
+    public String getPathInfo()
+    {
+        return _path;
+    }
+
+    @Override
+    public Locale getLocale()
+    {
+        return Locale.ENGLISH;
+    }
+
+    @Override
+    public String getServerName()
+    {
+        return "localhost";
+    }
+
+    @Override
+    public InputStream getInputStream()
+    {
+        return new ByteArrayInputStream( _body );
+    }
+
+    @Override
+    public int getContentLength()
+    {
+        return _body.length;
+    }
+
+    @Override
+    public String getContextPath()
+    {
+        return "";
+    }
+
+    @Override
+    public String getServicePath()
+    {
+        return "";
+    }
+
+}
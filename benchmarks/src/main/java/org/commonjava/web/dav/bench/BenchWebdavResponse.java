@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.web.dav.bench;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import net.sf.webdav.WebdavStatus;
+import net.sf.webdav.spi.WebdavResponse;
+
+/**
+ * {@link WebdavResponse} that counts and discards the body, so benchmarks
+ * measure the handler rather than a buffer.
+ */
+public class BenchWebdavResponse
+    implements WebdavResponse
+{
+
+    private final CountingOutputStream _out = new CountingOutputStream();
+
+    private Writer _writer;
+
+    private WebdavStatus _status;
+
+    /**
+     * @return number of body bytes written so far
+     */
+    public long getBytesWritten()
+    {
+        return _out._count;
+    }
+
+    public WebdavStatus getStatus()
+    {
+        return _status;
+    }
+
+    @Override
+    public void setStatus( final WebdavStatus status )
+    {
+        _status = status;
+    }
+
+    @Override
+    public Writer getWriter()
+    {
+        if ( _writer == null )
+        {
+            _writer = new OutputStreamWriter( _out );
+        }
+        return _writer;
+    }
+
+    @Override
+    public String encodeRedirectURL( final String url )
+    {
+        return url;
+    }
+
+    @Override
+    public void sendRedirect( final String redirectUrl )
+    {
+    }
+
+    @Override
+    public void addHeader( final String name, final String value )
+    {
+    }
+
+    @Override
+    public void sendError( final WebdavStatus status )
+    {
+        _status = status;
+    }
+
+    @Override
+    public void sendError( final WebdavStatus status, final String message )
+    {
+        _status = status;
+    }
+
+    @Override
+    public void setDateHeader( final String name, final long date )
+    {
+    }
+
+    @Override
+    public void setHeader( final String name, final String value )
+    {
+    }
+
+    @Override
+    public void setContentType( final String type )
+    {
+    }
+
+    @Override
+    public void setContentLength( final int length )
+    {
+    }
+
+    @Override
+    public OutputStream getOutputStream()
+    {
+        return _out;
+    }
+
+    @Override
+    public void setCharacterEncoding( final String encoding )
+    {
+    }
+
+    private static final class CountingOutputStream
+        extends OutputStream
+    {
+        private long _count;
+
+        @Override
+        public void write( final int b )
+        {
+            _count++;
+        }
+
+        @Override
+        public void write( final byte[] b, final int off, final int len )
+        {
+            _count += len;
+        }
+    }
+
+}
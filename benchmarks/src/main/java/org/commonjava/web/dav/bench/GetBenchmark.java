@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.web.dav.bench;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.webdav.impl.ActivationMimeTyper;
+import net.sf.webdav.impl.LocalFileSystemStore;
+import net.sf.webdav.locking.ResourceLocks;
+import net.sf.webdav.methods.DoGet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * GET throughput for a single file served from a {@link LocalFileSystemStore}.
+ * The response stub is not file-backed, so the content is streamed.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class GetBenchmark
+{
+
+    @Param( { "1024", "65536", "1048576" } )
+    public int size;
+
+    private File root;
+
+    private DoGet get;
+
+    private BenchWebdavRequest request;
+
+    @Setup
+    public void setup()
+        throws Exception
+    {
+        root = StoreFixture.createRoot();
+        StoreFixture.createFile( new File( root, "content.bin" ), size );
+
+        get = new DoGet( new LocalFileSystemStore( root ), null, null, new ResourceLocks(), new ActivationMimeTyper(), true );
+        request = new BenchWebdavRequest( "GET", "/content.bin" );
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        StoreFixture.delete( root );
+    }
+
+    @Benchmark
+    public long get()
+        throws Exception
+    {
+        final BenchWebdavResponse response = new BenchWebdavResponse();
+        get.execute( null, request, response );
+        return response.getBytesWritten();
+    }
+
+}
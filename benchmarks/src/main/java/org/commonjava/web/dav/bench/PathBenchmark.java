@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.web.dav.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import net.sf.webdav.util.RequestUtil;
+import net.sf.webdav.util.URLEncoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Path handling done for every request and every PROPFIND entry.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class PathBenchmark
+{
+
+    public String path = "/repositories/group/public/org/commonjava/web/webdav-handler/3.3.1-SNAPSHOT/";
+
+    public String child = "webdav-handler-3.3.1-20170101.000000-1 (copy).jar";
+
+    private URLEncoder encoder;
+
+    @Setup
+    public void setup()
+    {
+        // same safe characters as AbstractMethod
+        encoder = new URLEncoder();
+        encoder.addSafeCharacter( '-' );
+        encoder.addSafeCharacter( '_' );
+        encoder.addSafeCharacter( '.' );
+        encoder.addSafeCharacter( '*' );
+        encoder.addSafeCharacter( '/' );
+    }
+
+    @Benchmark
+    public String normalize()
+    {
+        return RequestUtil.normalize( false, path, child );
+    }
+
+    @Benchmark
+    public String encode()
+    {
+        return encoder.encode( path + child );
+    }
+
+}
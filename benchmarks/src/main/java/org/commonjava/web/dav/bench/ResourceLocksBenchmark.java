@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.web.dav.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.webdav.locking.ConcurrentResourceLocks;
+import net.sf.webdav.locking.IResourceLocks;
+import net.sf.webdav.locking.ResourceLocks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Temporary lock/unlock pairs, as every method takes them, from 8 threads
+ * working on sibling paths below a shared folder.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Threads( 8 )
+@Fork( 1 )
+public class ResourceLocksBenchmark
+{
+
+    private static final int TEMP_TIMEOUT = 10;
+
+    @State( Scope.Benchmark )
+    public static class Locks
+    {
+        @Param( { "synchronized", "concurrent" } )
+        public String implementation;
+
+        IResourceLocks locks;
+
+        final AtomicInteger threads = new AtomicInteger();
+
+        @Setup
+        public void setup()
+        {
+            locks = "concurrent".equals( implementation ) ? new ConcurrentResourceLocks() : new ResourceLocks();
+        }
+    }
+
+    @State( Scope.Thread )
+    public static class Caller
+    {
+        String path;
+
+        String owner;
+
+        @Setup
+        public void setup( final Locks locks )
+        {
+            final int thread = locks.threads.getAndIncrement();
+            path = "/shared/folder/thread-" + thread + "/file";
+            owner = "bench-" + thread;
+        }
+    }
+
+    @Benchmark
+    public boolean readLock( final Locks locks, final Caller caller )
+        throws Exception
+    {
+        final boolean locked = locks.locks.lock( null, caller.path, caller.owner, false, 0, TEMP_TIMEOUT, true );
+        locks.locks.unlockTemporaryLockedObjects( null, caller.path, caller.owner );
+        return locked;
+    }
+
+    @Benchmark
+    public boolean writeLock( final Locks locks, final Caller caller )
+        throws Exception
+    {
+        final boolean locked = locks.locks.lock( null, caller.path, caller.owner, true, 0, TEMP_TIMEOUT, true );
+        locks.locks.unlockTemporaryLockedObjects( null, caller.path, caller.owner );
+        return locked;
+    }
+
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.web.dav.bench;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Creates and removes the on-disk trees the store benchmarks run against.
+ */
+public final class StoreFixture
+{
+
+    private StoreFixture()
+    {
+    }
+
+    public static File createRoot()
+        throws IOException
+    {
+        final File root = File.createTempFile( "webdav-bench", "" );
+        if ( !root.delete() || !root.mkdirs() )
+        {
+            throw new IOException( "Cannot create benchmark directory: " + root );
+        }
+        return root;
+    }
+
+    /**
+     * Creates <code>width</code> folders per level, <code>levels</code> deep,
+     * with <code>width</code> small files in each folder.
+     */
+    public static void createTree( final File dir, final int levels, final int width )
+        throws IOException
+    {
+        for ( int i = 0; i < width; i++ )
+        {
+            createFile( new File( dir, "file-" + i + ".txt" ), 128 );
+        }
+
+        if ( levels > 0 )
+        {
+            for ( int i = 0; i < width; i++ )
+            {
+                final File sub = new File( dir, "dir-" + i );
+                if ( !sub.mkdir() )
+                {
+                    throw new IOException( "Cannot create directory: " + sub );
+                }
+                createTree( sub, levels - 1, width );
+            }
+        }
+    }
+
+    public static void createFile( final File file, final int size )
+        throws IOException
+    {
+        final byte[] content = new byte[size];
+        new Random( size ).nextBytes( content );
+
+        final FileOutputStream out = new FileOutputStream( file );
+        try
+        {
+            out.write( content );
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    public static void delete( final File file )
+    {
+        final File[] children = file.listFiles();
+        if ( children != null )
+        {
+            for ( final File child : children )
+            {
+                delete( child );
+            }
+        }
+        file.delete();
+    }
+
+}
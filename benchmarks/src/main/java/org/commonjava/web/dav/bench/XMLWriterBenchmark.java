@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.web.dav.bench;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.webdav.util.UTF8XMLWriter;
+import net.sf.webdav.util.XMLWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Emits one multistatus response element per invocation, shaped like a
+ * PROPFIND allprop entry for a file, through the character based
+ * {@link XMLWriter} and the byte based {@link UTF8XMLWriter}.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class XMLWriterBenchmark
+{
+
+    private final Map<String, String> namespaces = new HashMap<String, String>();
+
+    private BenchWebdavResponse response;
+
+    private Writer writer;
+
+    @Setup
+    public void setup()
+    {
+        namespaces.put( "DAV:", "D" );
+        response = new BenchWebdavResponse();
+        writer = new OutputStreamWriter( response.getOutputStream() );
+    }
+
+    @Benchmark
+    public long responseElement()
+        throws IOException
+    {
+        final XMLWriter xml = new XMLWriter( writer, namespaces );
+        xml.writeElement( "DAV::response", XMLWriter.OPENING );
+        xml.writeProperty( "DAV::href", "/some/folder/file-1.txt" );
+        xml.writeElement( "DAV::propstat", XMLWriter.OPENING );
+        xml.writeElement( "DAV::prop", XMLWriter.OPENING );
+        xml.writeProperty( "DAV::creationdate", "2017-01-01T00:00:00Z" );
+        xml.writeElement( "DAV::displayname", XMLWriter.OPENING );
+        xml.writeData( "file-1.txt" );
+        xml.writeElement( "DAV::displayname", XMLWriter.CLOSING );
+        xml.writeProperty( "DAV::getlastmodified", "Sun, 01 Jan 2017 00:00:00 GMT" );
+        xml.writeProperty( "DAV::getcontentlength", "128" );
+        xml.writeProperty( "DAV::getcontenttype", "text/plain" );
+        xml.writeProperty( "DAV::getetag", "W/\"128-1483228800000\"" );
+        xml.writeElement( "DAV::resourcetype", XMLWriter.NO_CONTENT );
+        xml.writeElement( "DAV::prop", XMLWriter.CLOSING );
+        xml.writeProperty( "DAV::status", "HTTP/1.1 200 OK" );
+        xml.writeElement( "DAV::propstat", XMLWriter.CLOSING );
+        xml.writeElement( "DAV::response", XMLWriter.CLOSING );
+        xml.sendData();
+        return response.getBytesWritten();
+    }
+
+    @Benchmark
+    public long responseElementUtf8()
+        throws IOException
+    {
+        final XMLWriter xml = new UTF8XMLWriter( response.getOutputStream(), namespaces );
+        xml.writeElement( "DAV::response", XMLWriter.OPENING );
+        xml.writeProperty( "DAV::href", "/some/folder/file-1.txt" );
+        xml.writeElement( "DAV::propstat", XMLWriter.OPENING );
+        xml.writeElement( "DAV::prop", XMLWriter.OPENING );
+        xml.writeProperty( "DAV::creationdate", "2017-01-01T00:00:00Z" );
+        xml.writeElement( "DAV::displayname", XMLWriter.OPENING );
+        xml.writeData( "file-1.txt" );
+        xml.writeElement( "DAV::displayname", XMLWriter.CLOSING );
+        xml.writeProperty( "DAV::getlastmodified", "Sun, 01 Jan 2017 00:00:00 GMT" );
+        xml.writeProperty( "DAV::getcontentlength", "128" );
+        xml.writeProperty( "DAV::getcontenttype", "text/plain" );
+        xml.writeProperty( "DAV::getetag", "W/\"128-1483228800000\"" );
+        xml.writeElement( "DAV::resourcetype", XMLWriter.NO_CONTENT );
+        xml.writeElement( "DAV::prop", XMLWriter.CLOSING );
+        xml.writeProperty( "DAV::status", "HTTP/1.1 200 OK" );
+        xml.writeElement( "DAV::propstat", XMLWriter.CLOSING );
+        xml.writeElement( "DAV::response", XMLWriter.CLOSING );
+        xml.sendData();
+        return response.getBytesWritten();
+    }
+
+}
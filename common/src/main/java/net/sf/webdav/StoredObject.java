@@ -23,6 +23,7 @@ public class StoredObject {
     private Date lastModified;
     private Date creationDate;
     private long contentLength;
+    private String contentDigest;
 
     private boolean isNullRessource;
 
@@ -111,6 +112,26 @@ public class StoredObject {
         this.contentLength = l;
     }
 
+    /**
+     * Gets the digest of the resource content, as an RFC 3230 instance
+     * digest such as <code>SHA-256=...</code>
+     * 
+     * @return the digest, or null if the store doesn't know it
+     */
+    public String getContentDigest() {
+        return (contentDigest);
+    }
+
+    /**
+     * Sets the digest of the resource content
+     * 
+     * @param digest
+     *      RFC 3230 instance digest of the resource content
+     */
+    public void setContentDigest(String digest) {
+        this.contentDigest = digest;
+    }
+
     /**
      * Gets the state of the resource
      * 
@@ -133,6 +154,7 @@ public class StoredObject {
         this.lastModified = null;
         // this.content = null;
         this.contentLength = 0;
+        this.contentDigest = null;
     }
 
 }
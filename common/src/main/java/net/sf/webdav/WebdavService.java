@@ -22,7 +22,11 @@ import java.util.Set;
 
 import net.sf.webdav.exceptions.UnauthenticatedException;
 import net.sf.webdav.exceptions.WebdavException;
+import net.sf.webdav.impl.RequestCachingWebdavStore;
+import net.sf.webdav.locking.ConcurrentResourceLocks;
+import net.sf.webdav.locking.IResourceLocks;
 import net.sf.webdav.locking.ResourceLocks;
+import net.sf.webdav.locking.TempLockFreeResourceLocks;
 import net.sf.webdav.methods.DoCopy;
 import net.sf.webdav.methods.DoDelete;
 import net.sf.webdav.methods.DoGet;
@@ -53,16 +57,18 @@ public class WebdavService
 
     private final Logger LOG = LoggerFactory.getLogger( getClass() );
 
-    private final ResourceLocks _resLocks;
+    private final IResourceLocks _resLocks;
 
     private final IWebdavStore store;
 
     private final HashMap<String, WebdavMethod> _methodMap = new HashMap<String, WebdavMethod>();
 
-    public WebdavService( final WebdavConfig config, final IWebdavStore store, final IMimeTyper mimeTyper )
+    public WebdavService( final WebdavConfig config, final IWebdavStore backingStore, final IMimeTyper mimeTyper )
     {
+        // per-request memo of stored objects, so each path is stat'ed at most once per request
+        final IWebdavStore store = new RequestCachingWebdavStore( backingStore );
         this.store = store;
-        _resLocks = new ResourceLocks();
+        _resLocks = config.isConcurrentLocking() ? new ConcurrentResourceLocks() : new ResourceLocks();
 
         final boolean lazyFolderCreationOnPut = config.isLazyFolderCreationOnPut();
 
@@ -71,17 +77,22 @@ public class WebdavService
 
         final boolean noContentLengthHeader = config.isOmitContentLengthHeaders();
 
-        register( "GET", new DoGet( store, dftIndexFile, insteadOf404, _resLocks, mimeTyper, !noContentLengthHeader ) );
-        register( "HEAD", new DoHead( store, dftIndexFile, insteadOf404, _resLocks, mimeTyper, !noContentLengthHeader ) );
+        final IResourceLocks readLocks = config.isLockFreeReads() ? new TempLockFreeResourceLocks( _resLocks ) : _resLocks;
+
+        final int compressionThreshold = config.getCompressionThreshold();
+
+        register( "GET", new DoGet( store, dftIndexFile, insteadOf404, readLocks, mimeTyper, !noContentLengthHeader,
+                                       compressionThreshold ) );
+        register( "HEAD", new DoHead( store, dftIndexFile, insteadOf404, readLocks, mimeTyper, !noContentLengthHeader ) );
         final DoDelete doDelete = (DoDelete) register( "DELETE", new DoDelete( store, _resLocks, READ_ONLY ) );
         final DoCopy doCopy = (DoCopy) register( "COPY", new DoCopy( store, _resLocks, doDelete, READ_ONLY ) );
         register( "LOCK", new DoLock( store, _resLocks, READ_ONLY ) );
         register( "UNLOCK", new DoUnlock( store, _resLocks, READ_ONLY ) );
-        register( "MOVE", new DoMove( _resLocks, doDelete, doCopy, READ_ONLY ) );
+        register( "MOVE", new DoMove( _resLocks, doCopy, READ_ONLY ) );
         register( "MKCOL", new DoMkcol( store, _resLocks, READ_ONLY ) );
-        register( "OPTIONS", new DoOptions( store, _resLocks ) );
-        register( "PUT", new DoPut( store, _resLocks, READ_ONLY, lazyFolderCreationOnPut ) );
-        register( "PROPFIND", new DoPropfind( store, _resLocks, mimeTyper ) );
+        register( "OPTIONS", new DoOptions( store, readLocks ) );
+        register( "PUT", new DoPut( store, _resLocks, READ_ONLY, lazyFolderCreationOnPut, config.getContentDigestAlgorithm() ) );
+        register( "PROPFIND", new DoPropfind( store, readLocks, mimeTyper, compressionThreshold ) );
         register( "PROPPATCH", new DoProppatch( store, _resLocks, READ_ONLY ) );
         register( "*NO*IMPL*", new DoNotImplemented( READ_ONLY ) );
     }
@@ -49,6 +49,12 @@ public enum WebdavStatus
      */
     SC_NO_CONTENT( 204, "No Content" ),
 
+    /**
+     * Status code (206) indicating that the server has fulfilled the partial
+     * GET request for the resource.
+     */
+    SC_PARTIAL_CONTENT( 206, "Partial Content" ),
+
     /**
      * Status code (301) indicating that the resource has permanently moved to a
      * new location, and that future references should use a new URI with their
@@ -158,6 +164,13 @@ public enum WebdavStatus
      */
     SC_UNSUPPORTED_MEDIA_TYPE( 415, "Unsupported Media Type" ),
 
+    /**
+     * Status code (416) indicating that none of the ranges in the Range
+     * request-header field overlap the current extent of the selected
+     * resource.
+     */
+    SC_REQUESTED_RANGE_NOT_SATISFIABLE( 416, "Requested Range Not Satisfiable" ),
+
     // -------------------------------------------- Extended WebDav status code
 
     /**
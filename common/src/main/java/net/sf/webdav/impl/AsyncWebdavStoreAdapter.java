@@ -0,0 +1,273 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.impl;
+
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.webdav.StoredObject;
+import net.sf.webdav.exceptions.WebdavException;
+import net.sf.webdav.spi.IAsyncWebdavStore;
+import net.sf.webdav.spi.IChildListingWebdavStore;
+import net.sf.webdav.spi.ITransaction;
+import net.sf.webdav.spi.IWebdavCallback;
+import net.sf.webdav.spi.IWebdavStore;
+
+/**
+ * Runs the calls of a blocking {@link IWebdavStore} on a bounded pool of
+ * threads, so that only those threads wait on the store. Operations beyond
+ * the pool and its queue fail right away instead of piling up.
+ */
+public class AsyncWebdavStoreAdapter
+    implements IAsyncWebdavStore
+{
+
+    private static org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger( AsyncWebdavStoreAdapter.class );
+
+    public static final int DEFAULT_THREADS = 32;
+
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+
+    private final IWebdavStore _store;
+
+    private final ThreadPoolExecutor _executor;
+
+    public AsyncWebdavStoreAdapter( final IWebdavStore store )
+    {
+        this( store, DEFAULT_THREADS, DEFAULT_QUEUE_SIZE );
+    }
+
+    /**
+     * @param store
+     *      the store to call
+     * @param threads
+     *      number of store calls to run at once
+     * @param queueSize
+     *      number of store calls that may wait for a thread
+     */
+    public AsyncWebdavStoreAdapter( final IWebdavStore store, final int threads, final int queueSize )
+    {
+        if ( threads < 1 || queueSize < 1 )
+        {
+            throw new IllegalArgumentException( "threads and queueSize must be positive: " + threads + ", "
+                + queueSize );
+        }
+        _store = store;
+        _executor =
+            new ThreadPoolExecutor( threads, threads, 60, TimeUnit.SECONDS,
+                                    new ArrayBlockingQueue<Runnable>( queueSize ), new StoreThreadFactory() );
+        _executor.allowCoreThreadTimeOut( true );
+    }
+
+    /**
+     * @return the wrapped store, which also handles the transactions
+     */
+    public IWebdavStore getStore()
+    {
+        return _store;
+    }
+
+    /**
+     * Stops taking new operations; the ones already submitted still run.
+     */
+    public void shutdown()
+    {
+        _executor.shutdown();
+    }
+
+    @Override
+    public void getStoredObject( final ITransaction transaction, final String uri,
+                                 final IWebdavCallback<StoredObject> callback )
+    {
+        submit( callback, new StoreCall<StoredObject>()
+        {
+            @Override
+            public StoredObject call()
+                throws WebdavException
+            {
+                return _store.getStoredObject( transaction, uri );
+            }
+        } );
+    }
+
+    @Override
+    public void getChildrenNames( final ITransaction transaction, final String folderUri,
+                                  final IWebdavCallback<String[]> callback )
+    {
+        submit( callback, new StoreCall<String[]>()
+        {
+            @Override
+            public String[] call()
+                throws WebdavException
+            {
+                return _store.getChildrenNames( transaction, folderUri );
+            }
+        } );
+    }
+
+    /**
+     * The whole listing, including the lookups of the children when the store
+     * can't list them with their metadata, runs as one operation on one
+     * thread of the pool.
+     */
+    @Override
+    public void getChildren( final ITransaction transaction, final String folderUri,
+                             final IWebdavCallback<Map<String, StoredObject>> callback )
+    {
+        submit( callback, new StoreCall<Map<String, StoredObject>>()
+        {
+            @Override
+            public Map<String, StoredObject> call()
+                throws WebdavException
+            {
+                if ( _store instanceof IChildListingWebdavStore )
+                {
+                    return ( (IChildListingWebdavStore) _store ).getChildren( transaction, folderUri );
+                }
+
+                final String[] names = _store.getChildrenNames( transaction, folderUri );
+                if ( names == null )
+                {
+                    return null;
+                }
+
+                final String prefix = folderUri.endsWith( "/" ) ? folderUri : folderUri + "/";
+                final Map<String, StoredObject> children = new LinkedHashMap<String, StoredObject>();
+                for ( final String name : names )
+                {
+                    final StoredObject so = _store.getStoredObject( transaction, prefix + name );
+                    if ( so != null )
+                    {
+                        children.put( name, so );
+                    }
+                }
+                return children;
+            }
+        } );
+    }
+
+    @Override
+    public void getResourceContent( final ITransaction transaction, final String resourceUri,
+                                    final IWebdavCallback<InputStream> callback )
+    {
+        submit( callback, new StoreCall<InputStream>()
+        {
+            @Override
+            public InputStream call()
+                throws WebdavException
+            {
+                return _store.getResourceContent( transaction, resourceUri );
+            }
+        } );
+    }
+
+    @Override
+    public void setResourceContent( final ITransaction transaction, final String resourceUri,
+                                    final InputStream content, final long contentLength,
+                                    final IWebdavCallback<Long> callback )
+    {
+        submit( callback, new StoreCall<Long>()
+        {
+            @Override
+            public Long call()
+                throws WebdavException
+            {
+                return _store.setResourceContent( transaction, resourceUri, content, contentLength );
+            }
+        } );
+    }
+
+    @Override
+    public void removeObject( final ITransaction transaction, final String uri, final IWebdavCallback<Void> callback )
+    {
+        submit( callback, new StoreCall<Void>()
+        {
+            @Override
+            public Void call()
+                throws WebdavException
+            {
+                _store.removeObject( transaction, uri );
+                return null;
+            }
+        } );
+    }
+
+    private <T> void submit( final IWebdavCallback<T> callback, final StoreCall<T> call )
+    {
+        try
+        {
+            _executor.execute( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    final T result;
+                    try
+                    {
+                        result = call.call();
+                    }
+                    catch ( final WebdavException e )
+                    {
+                        callback.failed( e );
+                        return;
+                    }
+                    catch ( final RuntimeException e )
+                    {
+                        callback.failed( new WebdavException( "Store operation failed", e ) );
+                        return;
+                    }
+                    callback.completed( result );
+                }
+            } );
+        }
+        catch ( final RejectedExecutionException e )
+        {
+            LOG.warn( "Rejected store operation; {} running, {} queued", _executor.getActiveCount(),
+                      _executor.getQueue()
+                               .size() );
+            callback.failed( new WebdavException( "Too many pending store operations", e ) );
+        }
+    }
+
+    private interface StoreCall<T>
+    {
+        T call()
+            throws WebdavException;
+    }
+
+    private static final class StoreThreadFactory
+        implements ThreadFactory
+    {
+
+        private final AtomicInteger _count = new AtomicInteger();
+
+        @Override
+        public Thread newThread( final Runnable r )
+        {
+            final Thread t = new Thread( r, "webdav-store-" + _count.incrementAndGet() );
+            t.setDaemon( true );
+            return t;
+        }
+    }
+
+}
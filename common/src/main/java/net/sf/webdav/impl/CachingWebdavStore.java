@@ -0,0 +1,673 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.impl;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sf.webdav.StoredObject;
+import net.sf.webdav.exceptions.WebdavException;
+import net.sf.webdav.spi.IChildListingWebdavStore;
+import net.sf.webdav.spi.ITransaction;
+import net.sf.webdav.spi.IWebdavStore;
+
+/**
+ * Metadata cache shared by all requests, for stores where looking up a
+ * {@link StoredObject} or listing a folder is expensive (S3, network file
+ * systems).
+ * <p/>
+ * Caches the results of {@link #getStoredObject(ITransaction, String)},
+ * {@link #getChildrenNames(ITransaction, String)} and
+ * {@link #getResourceLength(ITransaction, String)}, including misses. Entries
+ * expire after a fixed time (a shorter one for misses), and the least
+ * recently used entries are evicted once the cache is full. Mutations made
+ * through this store evict the path, everything below it and its parent
+ * folder; changes made to the backing storage by anyone else only show up
+ * once the entries expire.
+ * <p/>
+ * Cached objects are copied on the way in and out, so callers may modify the
+ * instances they get back.
+ * <p/>
+ * Lookups only lock the stripe of the cache their path falls into. A value
+ * loaded from the wrapped store is only cached if nothing has been
+ * invalidated while it was loading, so a slow lookup racing a write can't put
+ * back what the write just replaced.
+ */
+public class CachingWebdavStore
+    extends DelegatingWebdavStore
+{
+
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    public static final long DEFAULT_TTL_MILLIS = 30000;
+
+    public static final long DEFAULT_NEGATIVE_TTL_MILLIS = 5000;
+
+    private final long _ttl;
+
+    private final long _negativeTtl;
+
+    private final LruCache<StoredObject> _objects;
+
+    private final LruCache<String[]> _children;
+
+    private final AtomicLong _hits = new AtomicLong();
+
+    private final AtomicLong _misses = new AtomicLong();
+
+    private final AtomicLong _evictions = new AtomicLong();
+
+    public CachingWebdavStore( final IWebdavStore store )
+    {
+        this( store, DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS, DEFAULT_NEGATIVE_TTL_MILLIS );
+    }
+
+    /**
+     * @param store
+     *      the store to cache
+     * @param maxEntries
+     *      maximum number of stored objects, and separately of folder
+     *      listings, to keep
+     * @param ttlMillis
+     *      how long to keep an object or listing
+     * @param negativeTtlMillis
+     *      how long to remember that a path doesn't exist
+     */
+    public CachingWebdavStore( final IWebdavStore store, final int maxEntries, final long ttlMillis,
+                               final long negativeTtlMillis )
+    {
+        super( store );
+        if ( maxEntries < 1 )
+        {
+            throw new IllegalArgumentException( "maxEntries must be positive: " + maxEntries );
+        }
+        _ttl = ttlMillis;
+        _negativeTtl = negativeTtlMillis;
+        _objects = new LruCache<StoredObject>( maxEntries, _evictions );
+        _children = new LruCache<String[]>( maxEntries, _evictions );
+    }
+
+    /**
+     * @return number of lookups answered from the cache
+     */
+    public long getHitCount()
+    {
+        return _hits.get();
+    }
+
+    /**
+     * @return number of lookups passed on to the wrapped store
+     */
+    public long getMissCount()
+    {
+        return _misses.get();
+    }
+
+    /**
+     * @return number of entries dropped to make room for new ones
+     */
+    public long getEvictionCount()
+    {
+        return _evictions.get();
+    }
+
+    /**
+     * @return number of cached stored objects and folder listings
+     */
+    public int size()
+    {
+        return _objects.size() + _children.size();
+    }
+
+    /**
+     * Drops all cached entries. The counters are kept.
+     */
+    public void clear()
+    {
+        _objects.clear();
+        _children.clear();
+    }
+
+    @Override
+    public StoredObject getStoredObject( final ITransaction transaction, final String uri )
+        throws WebdavException
+    {
+        final String key = normalize( uri );
+        final Entry<StoredObject> entry = _objects.get( key, System.currentTimeMillis() );
+        if ( entry != null )
+        {
+            _hits.incrementAndGet();
+            return copy( entry._value );
+        }
+
+        _misses.incrementAndGet();
+        final long generation = _objects.generation();
+        final StoredObject so = super.getStoredObject( transaction, uri );
+        putObject( key, so, System.currentTimeMillis(), generation );
+        return copy( so );
+    }
+
+    @Override
+    public String[] getChildrenNames( final ITransaction transaction, final String folderUri )
+        throws WebdavException
+    {
+        final String key = normalize( folderUri );
+        final Entry<String[]> entry = _children.get( key, System.currentTimeMillis() );
+        if ( entry != null )
+        {
+            _hits.incrementAndGet();
+            return entry._value == null ? null : entry._value.clone();
+        }
+
+        _misses.incrementAndGet();
+        final long generation = _children.generation();
+        final String[] names = super.getChildrenNames( transaction, folderUri );
+        _children.put( key, names == null ? null : names.clone(), expiry( names != null, System.currentTimeMillis() ), generation );
+        return names;
+    }
+
+    /**
+     * Answered from the cache if the listing and all of its children are
+     * cached. Otherwise the folder is listed through the wrapped store, and
+     * the listing and children are cached.
+     */
+    @Override
+    public Map<String, StoredObject> getChildren( final ITransaction transaction, final String folderUri )
+        throws WebdavException
+    {
+        if ( !( _store instanceof IChildListingWebdavStore ) )
+        {
+            // falls back to getChildrenNames() and getStoredObject() of this store
+            return super.getChildren( transaction, folderUri );
+        }
+
+        final String key = normalize( folderUri );
+        final String prefix = below( key );
+
+        final long now = System.currentTimeMillis();
+        final Map<String, StoredObject> cached = cachedChildren( key, prefix, now );
+        if ( cached != null )
+        {
+            _hits.incrementAndGet();
+            return cached;
+        }
+
+        _misses.incrementAndGet();
+        final long objectsGeneration = _objects.generation();
+        final long childrenGeneration = _children.generation();
+        final Map<String, StoredObject> children = super.getChildren( transaction, folderUri );
+        final long loaded = System.currentTimeMillis();
+        if ( children == null )
+        {
+            _children.put( key, null, expiry( false, loaded ), childrenGeneration );
+            return null;
+        }
+
+        for ( final Map.Entry<String, StoredObject> child : children.entrySet() )
+        {
+            putObject( prefix + child.getKey(), child.getValue(), loaded, objectsGeneration );
+        }
+        _children.put( key, children.keySet()
+                                    .toArray( new String[children.size()] ), expiry( true, loaded ), childrenGeneration );
+
+        final Map<String, StoredObject> result = new LinkedHashMap<String, StoredObject>();
+        for ( final Map.Entry<String, StoredObject> child : children.entrySet() )
+        {
+            result.put( child.getKey(), copy( child.getValue() ) );
+        }
+        return result;
+    }
+
+    @Override
+    public long getResourceLength( final ITransaction transaction, final String resourceUri )
+        throws WebdavException
+    {
+        final Entry<StoredObject> entry = _objects.get( normalize( resourceUri ), System.currentTimeMillis() );
+        if ( entry != null && entry._value != null && entry._value.isResource() && !entry._value.isNullResource() )
+        {
+            _hits.incrementAndGet();
+            return entry._value.getResourceLength();
+        }
+
+        _misses.incrementAndGet();
+        return super.getResourceLength( transaction, resourceUri );
+    }
+
+    @Override
+    public void createFolder( final ITransaction transaction, final String folderUri )
+        throws WebdavException
+    {
+        try
+        {
+            super.createFolder( transaction, folderUri );
+        }
+        finally
+        {
+            invalidate( folderUri );
+        }
+    }
+
+    @Override
+    public void createResource( final ITransaction transaction, final String resourceUri )
+        throws WebdavException
+    {
+        try
+        {
+            super.createResource( transaction, resourceUri );
+        }
+        finally
+        {
+            invalidate( resourceUri );
+        }
+    }
+
+    @Override
+    public long setResourceContent( final ITransaction transaction, final String resourceUri, final InputStream content,
+                                    final long contentLength )
+        throws WebdavException
+    {
+        try
+        {
+            return super.setResourceContent( transaction, resourceUri, content, contentLength );
+        }
+        finally
+        {
+            invalidate( resourceUri );
+        }
+    }
+
+    @Override
+    public void setResourceDigest( final ITransaction transaction, final String resourceUri, final String digest )
+        throws WebdavException
+    {
+        try
+        {
+            super.setResourceDigest( transaction, resourceUri, digest );
+        }
+        finally
+        {
+            invalidate( resourceUri );
+        }
+    }
+
+    @Override
+    public void removeObject( final ITransaction transaction, final String uri )
+        throws WebdavException
+    {
+        try
+        {
+            super.removeObject( transaction, uri );
+        }
+        finally
+        {
+            invalidate( uri );
+        }
+    }
+
+    @Override
+    public boolean copyObject( final ITransaction transaction, final String sourceUri, final String destinationUri )
+        throws WebdavException
+    {
+        try
+        {
+            return super.copyObject( transaction, sourceUri, destinationUri );
+        }
+        finally
+        {
+            invalidate( destinationUri );
+        }
+    }
+
+    @Override
+    public boolean moveObject( final ITransaction transaction, final String sourceUri, final String destinationUri )
+        throws WebdavException
+    {
+        try
+        {
+            return super.moveObject( transaction, sourceUri, destinationUri );
+        }
+        finally
+        {
+            invalidate( sourceUri );
+            invalidate( destinationUri );
+        }
+    }
+
+    @Override
+    public Map<String, WebdavException> removeFolder( final ITransaction transaction, final String folderUri )
+        throws WebdavException
+    {
+        try
+        {
+            return super.removeFolder( transaction, folderUri );
+        }
+        finally
+        {
+            invalidate( folderUri );
+        }
+    }
+
+    private Map<String, StoredObject> cachedChildren( final String key, final String prefix, final long now )
+    {
+        final Entry<String[]> names = _children.get( key, now );
+        if ( names == null || names._value == null )
+        {
+            return null;
+        }
+
+        final Map<String, StoredObject> result = new LinkedHashMap<String, StoredObject>();
+        for ( final String name : names._value )
+        {
+            final Entry<StoredObject> child = _objects.get( prefix + name, now );
+            if ( child == null )
+            {
+                return null;
+            }
+            if ( child._value != null )
+            {
+                result.put( name, copy( child._value ) );
+            }
+        }
+        return result;
+    }
+
+    private void putObject( final String key, final StoredObject so, final long now, final long generation )
+    {
+        _objects.put( key, copy( so ), expiry( so != null, now ), generation );
+    }
+
+    private long expiry( final boolean found, final long now )
+    {
+        return now + ( found ? _ttl : _negativeTtl );
+    }
+
+    private void invalidate( final String uri )
+    {
+        final String key = normalize( uri );
+        _objects.invalidate( key );
+        _children.invalidate( key );
+
+        final String parent = PathIndex.parent( key );
+        if ( parent != null )
+        {
+            _objects.remove( parent );
+            _children.remove( parent );
+        }
+    }
+
+    private static StoredObject copy( final StoredObject so )
+    {
+        if ( so == null )
+        {
+            return null;
+        }
+
+        final StoredObject copy = new StoredObject();
+        copy.setFolder( so.isFolder() );
+        copy.setNullResource( so.isNullResource() );
+        copy.setResourceLength( so.getResourceLength() );
+        copy.setCreationDate( so.getCreationDate() == null ? null : new Date( so.getCreationDate()
+                                                                                 .getTime() ) );
+        copy.setLastModified( so.getLastModified() == null ? null : new Date( so.getLastModified()
+                                                                                 .getTime() ) );
+        copy.setContentDigest( so.getContentDigest() );
+        return copy;
+    }
+
+    private static String normalize( final String uri )
+    {
+        if ( uri.isEmpty() )
+        {
+            return "/";
+        }
+        if ( uri.length() > 1 && uri.endsWith( "/" ) )
+        {
+            return uri.substring( 0, uri.length() - 1 );
+        }
+        return uri;
+    }
+
+    private static String below( final String folder )
+    {
+        return folder.endsWith( "/" ) ? folder : folder + "/";
+    }
+
+    private static final class Entry<V>
+    {
+        private final V _value;
+
+        private final long _expiresAt;
+
+        Entry( final V value, final long expiresAt )
+        {
+            _value = value;
+            _expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * LRU cache split into stripes by key hash, each an access-ordered map
+     * bounded by dropping its least recently used entry, so lookups of
+     * different paths rarely contend. Small caches have a single stripe and
+     * are exactly LRU.
+     * <p/>
+     * A {@link PathIndex} of all keys, guarded by its own lock, answers which
+     * keys are below a path. Writers lock a stripe before the index, never the
+     * other way around. The generation counts invalidations; a value loaded
+     * before one of them is not cached.
+     */
+    private static final class LruCache<V>
+    {
+        private static final int MAX_STRIPES = 16;
+
+        private static final int MIN_ENTRIES_PER_STRIPE = 64;
+
+        private final List<Stripe<V>> _stripes;
+
+        private final PathIndex _index = new PathIndex();
+
+        private volatile long _generation;
+
+        LruCache( final int maxEntries, final AtomicLong evictions )
+        {
+            int stripes = 1;
+            while ( stripes < MAX_STRIPES && stripes * 2 * MIN_ENTRIES_PER_STRIPE <= maxEntries )
+            {
+                stripes *= 2;
+            }
+
+            _stripes = new ArrayList<Stripe<V>>( stripes );
+            for ( int i = 0; i < stripes; i++ )
+            {
+                _stripes.add( new Stripe<V>( ( maxEntries + stripes - 1 ) / stripes, evictions, _index ) );
+            }
+        }
+
+        /**
+         * @return the current generation, to pass to
+         *      {@link #put(String, Object, long, long)} once the value is loaded
+         */
+        long generation()
+        {
+            return _generation;
+        }
+
+        Entry<V> get( final String key, final long now )
+        {
+            final Stripe<V> stripe = stripe( key );
+            synchronized ( stripe )
+            {
+                final Entry<V> entry = stripe.get( key );
+                if ( entry != null && entry._expiresAt <= now )
+                {
+                    stripe.remove( key );
+                    synchronized ( _index )
+                    {
+                        _index.remove( key );
+                    }
+                    return null;
+                }
+                return entry;
+            }
+        }
+
+        /**
+         * Caches the value, unless something has been invalidated since
+         * <code>generation</code>.
+         */
+        void put( final String key, final V value, final long expiresAt, final long generation )
+        {
+            final Stripe<V> stripe = stripe( key );
+            synchronized ( stripe )
+            {
+                synchronized ( _index )
+                {
+                    if ( generation != _generation )
+                    {
+                        return;
+                    }
+                    _index.add( key );
+                    stripe.put( key, new Entry<V>( value, expiresAt ) );
+                }
+            }
+        }
+
+        void remove( final String key )
+        {
+            final Stripe<V> stripe = stripe( key );
+            synchronized ( stripe )
+            {
+                synchronized ( _index )
+                {
+                    _generation++;
+                    _index.remove( key );
+                }
+                stripe.remove( key );
+            }
+        }
+
+        /**
+         * Removes the key and all keys below it.
+         */
+        void invalidate( final String key )
+        {
+            final List<String> keys;
+            synchronized ( _index )
+            {
+                _generation++;
+                keys = _index.removeTree( key );
+            }
+
+            for ( final String path : keys )
+            {
+                final Stripe<V> stripe = stripe( path );
+                synchronized ( stripe )
+                {
+                    synchronized ( _index )
+                    {
+                        // put back in the meantime, with a value loaded after the invalidation
+                        if ( _index.contains( path ) )
+                        {
+                            continue;
+                        }
+                    }
+                    stripe.remove( path );
+                }
+            }
+        }
+
+        int size()
+        {
+            int size = 0;
+            for ( final Stripe<V> stripe : _stripes )
+            {
+                synchronized ( stripe )
+                {
+                    size += stripe.size();
+                }
+            }
+            return size;
+        }
+
+        void clear()
+        {
+            for ( final Stripe<V> stripe : _stripes )
+            {
+                synchronized ( stripe )
+                {
+                    synchronized ( _index )
+                    {
+                        _generation++;
+                        for ( final String key : stripe.keySet() )
+                        {
+                            _index.remove( key );
+                        }
+                    }
+                    stripe.clear();
+                }
+            }
+        }
+
+        private Stripe<V> stripe( final String key )
+        {
+            int h = key.hashCode();
+            h ^= ( h >>> 16 );
+            return _stripes.get( h & ( _stripes.size() - 1 ) );
+        }
+    }
+
+    /**
+     * One stripe of an {@link LruCache}. Evicted keys are taken out of the
+     * index, which the evicting put already holds the lock of.
+     */
+    private static final class Stripe<V>
+        extends LinkedHashMap<String, Entry<V>>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int _maxEntries;
+
+        private final AtomicLong _evictions;
+
+        private final PathIndex _index;
+
+        Stripe( final int maxEntries, final AtomicLong evictions, final PathIndex index )
+        {
+            super( 16, 0.75f, true );
+            _maxEntries = maxEntries;
+            _evictions = evictions;
+            _index = index;
+        }
+
+        @Override
+        protected boolean removeEldestEntry( final Map.Entry<String, Entry<V>> eldest )
+        {
+            if ( size() > _maxEntries )
+            {
+                _evictions.incrementAndGet();
+                _index.remove( eldest.getKey() );
+                return true;
+            }
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,472 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import net.sf.webdav.WebdavStatus;
+import net.sf.webdav.spi.WebdavRequest;
+import net.sf.webdav.spi.WebdavResponse;
+
+/**
+ * Response wrapper that sends the body with a negotiated
+ * <code>Content-Encoding</code> of gzip or deflate. Output is held back until
+ * it reaches the threshold; smaller bodies go out uncompressed. Once
+ * compression has started, {@link OutputStream#flush()} on the body stream
+ * pushes everything written so far to the client, so documents that are
+ * streamed out incrementally stay incremental.
+ * <p/>
+ * {@link #finish()} has to be called once the body is complete. Only wrap
+ * responses whose body is written through {@link #getOutputStream()} or
+ * {@link #getWriter()}; file and stream transfers would bypass the
+ * compressor.
+ */
+public class CompressingWebdavResponse
+    implements WebdavResponse
+{
+
+    public static final String GZIP = "gzip";
+
+    public static final String DEFLATE = "deflate";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final WebdavResponse _response;
+
+    private final String _encoding;
+
+    private final int _threshold;
+
+    private String _characterEncoding;
+
+    private CompressingOutputStream _out;
+
+    private Writer _writer;
+
+    public CompressingWebdavResponse( final WebdavResponse response, final String encoding, final int threshold )
+    {
+        _response = response;
+        _encoding = encoding;
+        _threshold = threshold;
+    }
+
+    /**
+     * Wraps the response if compression is enabled and the request accepts
+     * one of the supported encodings.
+     * 
+     * @param threshold
+     *      minimum body size in bytes to compress, or a negative number to
+     *      disable compression
+     * @return the wrapped response, or <code>null</code> if the body is to be
+     *      sent as is
+     */
+    public static CompressingWebdavResponse negotiate( final WebdavRequest req, final WebdavResponse resp, final int threshold )
+    {
+        if ( threshold < 0 )
+        {
+            return null;
+        }
+
+        // caches must not hand a compressed body to clients that didn't ask for it
+        resp.addHeader( "Vary", "Accept-Encoding" );
+
+        final String encoding = selectEncoding( req.getHeader( "Accept-Encoding" ) );
+        return encoding == null ? null : new CompressingWebdavResponse( resp, encoding, threshold );
+    }
+
+    /**
+     * Picks gzip or deflate from an <code>Accept-Encoding</code> header,
+     * preferring gzip unless deflate has the higher quality value.
+     * 
+     * @return the encoding, or <code>null</code> if neither is acceptable
+     */
+    public static String selectEncoding( final String acceptEncoding )
+    {
+        if ( acceptEncoding == null )
+        {
+            return null;
+        }
+
+        float gzip = -1;
+        float deflate = -1;
+        float any = -1;
+        for ( final String part : acceptEncoding.split( "," ) )
+        {
+            final String[] params = part.split( ";" );
+            final String coding = params[0].trim()
+                                           .toLowerCase( Locale.ENGLISH );
+            float q = 1;
+            for ( int i = 1; i < params.length; i++ )
+            {
+                final String param = params[i].trim();
+                if ( param.startsWith( "q=" ) )
+                {
+                    try
+                    {
+                        q = Float.parseFloat( param.substring( 2 ) );
+                    }
+                    catch ( final NumberFormatException e )
+                    {
+                        q = 0;
+                    }
+                }
+            }
+
+            if ( GZIP.equals( coding ) || "x-gzip".equals( coding ) )
+            {
+                gzip = q;
+            }
+            else if ( DEFLATE.equals( coding ) )
+            {
+                deflate = q;
+            }
+            else if ( "*".equals( coding ) )
+            {
+                any = q;
+            }
+        }
+
+        if ( gzip < 0 )
+        {
+            gzip = any;
+        }
+        if ( deflate < 0 )
+        {
+            deflate = any;
+        }
+
+        if ( gzip > 0 && gzip >= deflate )
+        {
+            return GZIP;
+        }
+        return deflate > 0 ? DEFLATE : null;
+    }
+
+    /**
+     * Completes the body: flushes the writer, if one was handed out, and
+     * either finishes the compressed stream or, for a body below the
+     * threshold, sends it uncompressed.
+     */
+    public void finish()
+        throws IOException
+    {
+        if ( _writer != null )
+        {
+            _writer.flush();
+        }
+        if ( _out != null )
+        {
+            _out.finish();
+        }
+    }
+
+    /**
+     * @return the content coding this response compresses with, once output
+     *      has passed the threshold
+     */
+    public String getEncoding()
+    {
+        return _encoding;
+    }
+
+    @Override
+    public OutputStream getOutputStream()
+        throws IOException
+    {
+        if ( _out == null )
+        {
+            _out = new CompressingOutputStream();
+        }
+        return _out;
+    }
+
+    @Override
+    public Writer getWriter()
+        throws IOException
+    {
+        if ( _writer == null )
+        {
+            _writer = new OutputStreamWriter( getOutputStream(), _characterEncoding == null ? "ISO-8859-1" : _characterEncoding );
+        }
+        return _writer;
+    }
+
+    @Override
+    public void setContentLength( final int length )
+    {
+        // a body below the threshold is sent as is, so its length stays valid
+        if ( length < _threshold )
+        {
+            _response.setContentLength( length );
+        }
+    }
+
+    @Override
+    public void setCharacterEncoding( final String encoding )
+    {
+        _characterEncoding = encoding;
+        _response.setCharacterEncoding( encoding );
+    }
+
+    @Override
+    public void setContentType( final String type )
+    {
+        final int idx = type == null ? -1 : type.toLowerCase( Locale.ENGLISH )
+                                                .indexOf( "charset=" );
+        if ( idx >= 0 )
+        {
+            _characterEncoding = type.substring( idx + "charset=".length() )
+                                     .trim();
+        }
+        _response.setContentType( type );
+    }
+
+    @Override
+    public void setStatus( final WebdavStatus status )
+    {
+        _response.setStatus( status );
+    }
+
+    @Override
+    public String encodeRedirectURL( final String url )
+    {
+        return _response.encodeRedirectURL( url );
+    }
+
+    @Override
+    public void sendRedirect( final String redirectUrl )
+        throws IOException
+    {
+        _response.sendRedirect( redirectUrl );
+    }
+
+    @Override
+    public void addHeader( final String name, final String value )
+    {
+        _response.addHeader( name, value );
+    }
+
+    @Override
+    public void sendError( final WebdavStatus status )
+        throws IOException
+    {
+        _response.sendError( status );
+    }
+
+    @Override
+    public void sendError( final WebdavStatus status, final String message )
+        throws IOException
+    {
+        _response.sendError( status, message );
+    }
+
+    @Override
+    public void setDateHeader( final String name, final long date )
+    {
+        _response.setDateHeader( name, date );
+    }
+
+    @Override
+    public void setHeader( final String name, final String value )
+    {
+        _response.setHeader( name, value );
+    }
+
+    /**
+     * Buffers output up to the threshold, then switches to compressing
+     * straight through to the wrapped response.
+     */
+    private final class CompressingOutputStream
+        extends OutputStream
+    {
+
+        private byte[] _pending = new byte[Math.min( Math.max( _threshold, 1 ), BUFFER_SIZE )];
+
+        private int _count;
+
+        private DeflaterOutputStream _compressor;
+
+        private boolean _finished;
+
+        @Override
+        public void write( final int b )
+            throws IOException
+        {
+            write( new byte[] { (byte) b }, 0, 1 );
+        }
+
+        @Override
+        public void write( final byte[] b, final int off, final int len )
+            throws IOException
+        {
+            if ( _finished )
+            {
+                throw new IOException( "Response body already finished" );
+            }
+
+            if ( _compressor != null )
+            {
+                _compressor.write( b, off, len );
+                return;
+            }
+
+            if ( _count + len < _threshold )
+            {
+                if ( _count + len > _pending.length )
+                {
+                    final byte[] grown = new byte[Math.min( Math.max( _pending.length * 2, _count + len ), _threshold )];
+                    System.arraycopy( _pending, 0, grown, 0, _count );
+                    _pending = grown;
+                }
+                System.arraycopy( b, off, _pending, _count, len );
+                _count += len;
+                return;
+            }
+
+            startCompression();
+            _compressor.write( b, off, len );
+        }
+
+        @Override
+        public void flush()
+            throws IOException
+        {
+            // below the threshold it is still open whether the body gets compressed
+            if ( _compressor != null )
+            {
+                _compressor.flush();
+            }
+        }
+
+        @Override
+        public void close()
+            throws IOException
+        {
+            finish();
+        }
+
+        void finish()
+            throws IOException
+        {
+            if ( _finished )
+            {
+                return;
+            }
+            _finished = true;
+
+            if ( _compressor != null )
+            {
+                // closes the compressor and its deflater, but not the response stream
+                _compressor.close();
+            }
+            else
+            {
+                final OutputStream out = _response.getOutputStream();
+                out.write( _pending, 0, _count );
+                out.flush();
+            }
+            _pending = null;
+        }
+
+        private void startCompression()
+            throws IOException
+        {
+            _response.setHeader( "Content-Encoding", _encoding );
+
+            final OutputStream target = new NonClosingOutputStream( _response.getOutputStream() );
+            if ( GZIP.equals( _encoding ) )
+            {
+                _compressor = new GZIPOutputStream( target, BUFFER_SIZE, true );
+            }
+            else
+            {
+                _compressor = new DeflaterOutputStream( target, new Deflater(), BUFFER_SIZE, true )
+                {
+                    @Override
+                    public void close()
+                        throws IOException
+                    {
+                        try
+                        {
+                            super.close();
+                        }
+                        finally
+                        {
+                            def.end();
+                        }
+                    }
+                };
+            }
+
+            _compressor.write( _pending, 0, _count );
+            _count = 0;
+        }
+
+    }
+
+    /**
+     * Keeps the compressor from closing the response stream when it is
+     * finished; the container or the method owns that stream.
+     */
+    private static final class NonClosingOutputStream
+        extends OutputStream
+    {
+
+        private final OutputStream _stream;
+
+        NonClosingOutputStream( final OutputStream stream )
+        {
+            _stream = stream;
+        }
+
+        @Override
+        public void write( final int b )
+            throws IOException
+        {
+            _stream.write( b );
+        }
+
+        @Override
+        public void write( final byte[] b, final int off, final int len )
+            throws IOException
+        {
+            _stream.write( b, off, len );
+        }
+
+        @Override
+        public void flush()
+            throws IOException
+        {
+            _stream.flush();
+        }
+
+        @Override
+        public void close()
+            throws IOException
+        {
+            _stream.flush();
+        }
+
+    }
+
+}
@@ -0,0 +1,358 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.impl;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.Principal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.sf.webdav.StoredObject;
+import net.sf.webdav.exceptions.WebdavException;
+import net.sf.webdav.spi.IBulkRemovingWebdavStore;
+import net.sf.webdav.spi.IChildListingWebdavStore;
+import net.sf.webdav.spi.ICopyingWebdavStore;
+import net.sf.webdav.spi.IDigestingWebdavStore;
+import net.sf.webdav.spi.IFileBackedWebdavStore;
+import net.sf.webdav.spi.IRangedWebdavStore;
+import net.sf.webdav.spi.ITransaction;
+import net.sf.webdav.spi.IWebdavStore;
+
+/**
+ * Base class for stores that wrap another store. Every call is passed on to
+ * the wrapped store, after running its transaction through
+ * {@link #unwrap(ITransaction)}.
+ * <p/>
+ * The optional store extensions are implemented here as well, so wrapping a
+ * store doesn't hide them. If the wrapped store lacks one, the call falls
+ * back to the basic {@link IWebdavStore} methods, or, for
+ * {@link #getResourceFile(ITransaction, String)}, returns <code>null</code>,
+ * or, for copying, moving and bulk removal, declines the request, or, for
+ * digests, drops them.
+ */
+public abstract class DelegatingWebdavStore
+    implements IRangedWebdavStore, IFileBackedWebdavStore, IChildListingWebdavStore, ICopyingWebdavStore,
+    IBulkRemovingWebdavStore, IDigestingWebdavStore
+{
+
+    protected final IWebdavStore _store;
+
+    protected DelegatingWebdavStore( final IWebdavStore store )
+    {
+        _store = store;
+    }
+
+    /**
+     * @return the wrapped store
+     */
+    public IWebdavStore getDelegate()
+    {
+        return _store;
+    }
+
+    /**
+     * Maps a transaction handed out by this store to the one of the wrapped
+     * store. Subclasses that wrap transactions in {@link #begin(Principal)}
+     * override this.
+     */
+    protected ITransaction unwrap( final ITransaction transaction )
+    {
+        return transaction;
+    }
+
+    @Override
+    public ITransaction begin( final Principal principal )
+        throws WebdavException
+    {
+        return _store.begin( principal );
+    }
+
+    @Override
+    public void checkAuthentication( final ITransaction transaction )
+        throws WebdavException
+    {
+        _store.checkAuthentication( unwrap( transaction ) );
+    }
+
+    @Override
+    public void commit( final ITransaction transaction )
+        throws WebdavException
+    {
+        _store.commit( unwrap( transaction ) );
+    }
+
+    @Override
+    public void rollback( final ITransaction transaction )
+        throws WebdavException
+    {
+        _store.rollback( unwrap( transaction ) );
+    }
+
+    @Override
+    public void createFolder( final ITransaction transaction, final String folderUri )
+        throws WebdavException
+    {
+        _store.createFolder( unwrap( transaction ), folderUri );
+    }
+
+    @Override
+    public void createResource( final ITransaction transaction, final String resourceUri )
+        throws WebdavException
+    {
+        _store.createResource( unwrap( transaction ), resourceUri );
+    }
+
+    @Override
+    public InputStream getResourceContent( final ITransaction transaction, final String resourceUri )
+        throws WebdavException
+    {
+        return _store.getResourceContent( unwrap( transaction ), resourceUri );
+    }
+
+    @Override
+    public InputStream getResourceContent( final ITransaction transaction, final String resourceUri, final long offset, final long length )
+        throws WebdavException
+    {
+        if ( _store instanceof IRangedWebdavStore )
+        {
+            return ( (IRangedWebdavStore) _store ).getResourceContent( unwrap( transaction ), resourceUri, offset, length );
+        }
+
+        final InputStream in = _store.getResourceContent( unwrap( transaction ), resourceUri );
+        try
+        {
+            long toSkip = offset;
+            while ( toSkip > 0 )
+            {
+                final long skipped = in.skip( toSkip );
+                if ( skipped > 0 )
+                {
+                    toSkip -= skipped;
+                }
+                else if ( in.read() == -1 )
+                {
+                    break;
+                }
+                else
+                {
+                    toSkip--;
+                }
+            }
+        }
+        catch ( final IOException e )
+        {
+            try
+            {
+                in.close();
+            }
+            catch ( final IOException ignored )
+            {
+            }
+            throw new WebdavException( "Failed to skip to offset %d of %s", e, offset, resourceUri );
+        }
+        return new RangeInputStream( in, length );
+    }
+
+    @Override
+    public long setResourceContent( final ITransaction transaction, final String resourceUri, final InputStream content,
+                                    final long contentLength )
+        throws WebdavException
+    {
+        return _store.setResourceContent( unwrap( transaction ), resourceUri, content, contentLength );
+    }
+
+    @Override
+    public String[] getChildrenNames( final ITransaction transaction, final String folderUri )
+        throws WebdavException
+    {
+        return _store.getChildrenNames( unwrap( transaction ), folderUri );
+    }
+
+    /**
+     * Falls back to {@link #getChildrenNames(ITransaction, String)} and
+     * {@link #getStoredObject(ITransaction, String)} of this store, so
+     * subclasses see those calls.
+     */
+    @Override
+    public Map<String, StoredObject> getChildren( final ITransaction transaction, final String folderUri )
+        throws WebdavException
+    {
+        if ( _store instanceof IChildListingWebdavStore )
+        {
+            return ( (IChildListingWebdavStore) _store ).getChildren( unwrap( transaction ), folderUri );
+        }
+
+        final String[] names = getChildrenNames( transaction, folderUri );
+        if ( names == null )
+        {
+            return null;
+        }
+
+        final String prefix = folderUri.endsWith( "/" ) ? folderUri : folderUri + "/";
+        final Map<String, StoredObject> children = new LinkedHashMap<String, StoredObject>();
+        for ( final String name : names )
+        {
+            final StoredObject so = getStoredObject( transaction, prefix + name );
+            if ( so != null )
+            {
+                children.put( name, so );
+            }
+        }
+        return children;
+    }
+
+    @Override
+    public long getResourceLength( final ITransaction transaction, final String resourceUri )
+        throws WebdavException
+    {
+        return _store.getResourceLength( unwrap( transaction ), resourceUri );
+    }
+
+    @Override
+    public void removeObject( final ITransaction transaction, final String uri )
+        throws WebdavException
+    {
+        _store.removeObject( unwrap( transaction ), uri );
+    }
+
+    @Override
+    public StoredObject getStoredObject( final ITransaction transaction, final String uri )
+        throws WebdavException
+    {
+        return _store.getStoredObject( unwrap( transaction ), uri );
+    }
+
+    @Override
+    public File getResourceFile( final ITransaction transaction, final String resourceUri )
+        throws WebdavException
+    {
+        if ( _store instanceof IFileBackedWebdavStore )
+        {
+            return ( (IFileBackedWebdavStore) _store ).getResourceFile( unwrap( transaction ), resourceUri );
+        }
+        return null;
+    }
+
+    @Override
+    public boolean copyObject( final ITransaction transaction, final String sourceUri, final String destinationUri )
+        throws WebdavException
+    {
+        return _store instanceof ICopyingWebdavStore
+            && ( (ICopyingWebdavStore) _store ).copyObject( unwrap( transaction ), sourceUri, destinationUri );
+    }
+
+    @Override
+    public boolean moveObject( final ITransaction transaction, final String sourceUri, final String destinationUri )
+        throws WebdavException
+    {
+        return _store instanceof ICopyingWebdavStore
+            && ( (ICopyingWebdavStore) _store ).moveObject( unwrap( transaction ), sourceUri, destinationUri );
+    }
+
+    @Override
+    public Map<String, WebdavException> removeFolder( final ITransaction transaction, final String folderUri )
+        throws WebdavException
+    {
+        if ( _store instanceof IBulkRemovingWebdavStore )
+        {
+            return ( (IBulkRemovingWebdavStore) _store ).removeFolder( unwrap( transaction ), folderUri );
+        }
+        return null;
+    }
+
+    @Override
+    public void setResourceDigest( final ITransaction transaction, final String resourceUri, final String digest )
+        throws WebdavException
+    {
+        if ( _store instanceof IDigestingWebdavStore )
+        {
+            ( (IDigestingWebdavStore) _store ).setResourceDigest( unwrap( transaction ), resourceUri, digest );
+        }
+    }
+
+    /**
+     * Stops reading after a given number of bytes.
+     */
+    private static final class RangeInputStream
+        extends FilterInputStream
+    {
+        private long _remaining;
+
+        RangeInputStream( final InputStream in, final long length )
+        {
+            super( in );
+            _remaining = length;
+        }
+
+        @Override
+        public int read()
+            throws IOException
+        {
+            if ( _remaining <= 0 )
+            {
+                return -1;
+            }
+            final int b = super.read();
+            if ( b != -1 )
+            {
+                _remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read( final byte[] b, final int off, final int len )
+            throws IOException
+        {
+            if ( _remaining <= 0 )
+            {
+                return -1;
+            }
+            final int read = super.read( b, off, (int) Math.min( len, _remaining ) );
+            if ( read > 0 )
+            {
+                _remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip( final long n )
+            throws IOException
+        {
+            final long skipped = super.skip( Math.min( n, _remaining ) );
+            _remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available()
+            throws IOException
+        {
+            return (int) Math.min( super.available(), _remaining );
+        }
+
+        @Override
+        public boolean markSupported()
+        {
+            return false;
+        }
+    }
+
+}
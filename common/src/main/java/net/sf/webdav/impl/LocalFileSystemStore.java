@@ -38,18 +38,37 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.enterprise.inject.Alternative;
 import javax.inject.Named;
 
 import net.sf.webdav.StoredObject;
 import net.sf.webdav.exceptions.WebdavException;
+import net.sf.webdav.spi.IChildListingWebdavStore;
+import net.sf.webdav.spi.ICopyingWebdavStore;
+import net.sf.webdav.spi.IDigestingWebdavStore;
+import net.sf.webdav.spi.IFileBackedWebdavStore;
+import net.sf.webdav.spi.IRangedWebdavStore;
 import net.sf.webdav.spi.ITransaction;
-import net.sf.webdav.spi.IWebdavStore;
 
 /**
  * Reference Implementation of WebdavStore
@@ -60,18 +79,52 @@ import net.sf.webdav.spi.IWebdavStore;
 @Alternative
 @Named
 public class LocalFileSystemStore
-    implements IWebdavStore
+    implements IRangedWebdavStore, IFileBackedWebdavStore, IChildListingWebdavStore, ICopyingWebdavStore, IDigestingWebdavStore
 {
 
     private static org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger( LocalFileSystemStore.class );
 
     private static int BUF_SIZE = 65536;
 
+    /**
+     * Extended attribute holding the content digest, together with the
+     * modification time (in nanoseconds, so rewrites within the same
+     * millisecond are still noticed) and length of the file it was computed
+     * for.
+     */
+    private static final String DIGEST_ATTRIBUTE = "webdav.digest";
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    /**
+     * Name prefix and suffix of the files new content is written to before it
+     * replaces a resource's file.
+     */
+    private static final String PART_PREFIX = ".webdav-";
+
+    private static final String PART_SUFFIX = ".part";
+
     private File _root = null;
 
+    private volatile boolean _digests;
+
     public LocalFileSystemStore( final File root )
+    {
+        this( root, false );
+    }
+
+    /**
+     * @param root
+     *      folder holding the stored files
+     * @param digests
+     *      whether to keep content digests in extended attributes. When
+     *      false, files are never checked for a stored digest, which saves
+     *      an extended attribute lookup per file in every listing.
+     */
+    public LocalFileSystemStore( final File root, final boolean digests )
     {
         _root = root;
+        _digests = digests;
     }
 
     @Override
@@ -147,6 +200,12 @@ public class LocalFileSystemStore
         }
     }
 
+    /**
+     * Writes the content to a new file next to the resource's and then
+     * renames it over the old one, so a file that's being sent (see
+     * {@link IFileBackedWebdavStore}) is never changed underneath the reader,
+     * and a failed upload leaves the old content in place.
+     */
     @Override
     public long setResourceContent(final ITransaction transaction, final String uri, final InputStream is, long contentLength)
         throws WebdavException
@@ -154,9 +213,11 @@ public class LocalFileSystemStore
 
         LOG.trace( "LocalFileSystemStore.setResourceContent(" + uri + ")" );
         final File file = new File( _root, uri );
+        File part = null;
         try
         {
-            final OutputStream os = new BufferedOutputStream( new FileOutputStream( file ), BUF_SIZE );
+            part = File.createTempFile( PART_PREFIX, PART_SUFFIX, file.getParentFile() );
+            final OutputStream os = new BufferedOutputStream( new FileOutputStream( part ), BUF_SIZE );
             try
             {
                 int read;
@@ -178,12 +239,29 @@ public class LocalFileSystemStore
                     os.close();
                 }
             }
+
+            try
+            {
+                Files.move( part.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING );
+            }
+            catch ( final AtomicMoveNotSupportedException e )
+            {
+                Files.move( part.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+            }
+            part = null;
         }
         catch ( final IOException e )
         {
             LOG.error( "LocalFileSystemStore.setResourceContent(" + uri + ") failed" );
             throw new WebdavException( "Failed to write file: %s. Reason: %s", e, file, e.getMessage() );
         }
+        finally
+        {
+            if ( part != null && !part.delete() )
+            {
+                LOG.warn( "Cannot delete partial upload " + part );
+            }
+        }
         long length = -1;
 
         try
@@ -213,6 +291,10 @@ public class LocalFileSystemStore
             for ( int i = 0; i < children.length; i++ )
             {
                 name = children[i].getName();
+                if ( isPart( name ) )
+                {
+                    continue;
+                }
                 childList.add( name );
                 LOG.trace( "Child " + i + ": " + name );
             }
@@ -256,6 +338,33 @@ public class LocalFileSystemStore
         return in;
     }
 
+    @Override
+    public InputStream getResourceContent( final ITransaction transaction, final String uri, final long offset, final long length )
+        throws WebdavException
+    {
+        LOG.trace( "LocalFileSystemStore.getResourceContent(" + uri + ", " + offset + ", " + length + ")" );
+        final File file = new File( _root, uri );
+
+        try
+        {
+            return new FileRangeInputStream( new RandomAccessFile( file, "r" ).getChannel(), offset, length );
+        }
+        catch ( final IOException e )
+        {
+            LOG.error( "LocalFileSystemStore.getResourceContent(" + uri + ", " + offset + ", " + length + ") failed" );
+            throw new WebdavException( "Failed to read file: %s. Reason: %s", e, file, e.getMessage() );
+        }
+    }
+
+    @Override
+    public File getResourceFile( final ITransaction transaction, final String uri )
+        throws WebdavException
+    {
+        LOG.trace( "LocalFileSystemStore.getResourceFile(" + uri + ")" );
+        final File file = new File( _root, uri );
+        return file.isFile() ? file : null;
+    }
+
     @Override
     public long getResourceLength( final ITransaction transaction, final String uri )
         throws WebdavException
@@ -275,14 +384,274 @@ public class LocalFileSystemStore
         final File file = new File( _root, uri );
         if ( file.exists() )
         {
-            so = new StoredObject();
-            so.setFolder( file.isDirectory() );
-            so.setLastModified( new Date( file.lastModified() ) );
-            so.setCreationDate( new Date( file.lastModified() ) );
-            so.setResourceLength( getResourceLength( transaction, uri ) );
+            so = toStoredObject( file );
         }
 
         return so;
     }
 
+    @Override
+    public Map<String, StoredObject> getChildren( final ITransaction transaction, final String uri )
+        throws WebdavException
+    {
+        LOG.trace( "LocalFileSystemStore.getChildren(" + uri + ")" );
+        final File file = new File( _root, uri );
+        Map<String, StoredObject> children = null;
+        if ( file.isDirectory() )
+        {
+            children = new LinkedHashMap<String, StoredObject>();
+            final File[] files = file.listFiles();
+            if ( files != null )
+            {
+                for ( final File child : files )
+                {
+                    if ( !isPart( child.getName() ) )
+                    {
+                        children.put( child.getName(), toStoredObject( child ) );
+                    }
+                }
+            }
+        }
+        return children;
+    }
+
+    @Override
+    public boolean copyObject( final ITransaction transaction, final String sourceUri, final String destinationUri )
+        throws WebdavException
+    {
+        LOG.trace( "LocalFileSystemStore.copyObject(" + sourceUri + ", " + destinationUri + ")" );
+        final Path source = new File( _root, sourceUri ).toPath();
+        final Path destination = new File( _root, destinationUri ).toPath();
+        try
+        {
+            Files.walkFileTree( source, new SimpleFileVisitor<Path>()
+            {
+                @Override
+                public FileVisitResult preVisitDirectory( final Path dir, final BasicFileAttributes attrs )
+                    throws IOException
+                {
+                    Files.createDirectory( destination.resolve( source.relativize( dir ) ) );
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile( final Path file, final BasicFileAttributes attrs )
+                    throws IOException
+                {
+                    Files.copy( file, destination.resolve( source.relativize( file ) ) );
+                    return FileVisitResult.CONTINUE;
+                }
+            } );
+        }
+        catch ( final IOException e )
+        {
+            LOG.error( "LocalFileSystemStore.copyObject(" + sourceUri + ", " + destinationUri + ") failed" );
+            throw new WebdavException( "Failed to copy: %s to: %s. Reason: %s", e, source, destination, e.getMessage() );
+        }
+        return true;
+    }
+
+    /**
+     * Renames the file or directory. Where that can't be done atomically
+     * (across file systems), files are copied and deleted by the file system,
+     * and directories are left to COPY and DELETE.
+     */
+    @Override
+    public boolean moveObject( final ITransaction transaction, final String sourceUri, final String destinationUri )
+        throws WebdavException
+    {
+        LOG.trace( "LocalFileSystemStore.moveObject(" + sourceUri + ", " + destinationUri + ")" );
+        final Path source = new File( _root, sourceUri ).toPath();
+        final Path destination = new File( _root, destinationUri ).toPath();
+        try
+        {
+            try
+            {
+                Files.move( source, destination, StandardCopyOption.ATOMIC_MOVE );
+            }
+            catch ( final AtomicMoveNotSupportedException e )
+            {
+                if ( Files.isDirectory( source ) )
+                {
+                    return false;
+                }
+                Files.move( source, destination );
+            }
+        }
+        catch ( final IOException e )
+        {
+            LOG.error( "LocalFileSystemStore.moveObject(" + sourceUri + ", " + destinationUri + ") failed" );
+            throw new WebdavException( "Failed to move: %s to: %s. Reason: %s", e, source, destination, e.getMessage() );
+        }
+        return true;
+    }
+
+    @Override
+    public void setResourceDigest( final ITransaction transaction, final String uri, final String digest )
+        throws WebdavException
+    {
+        if ( !_digests )
+        {
+            return;
+        }
+
+        final File file = new File( _root, uri );
+        final UserDefinedFileAttributeView view = digestView( file );
+        if ( view == null )
+        {
+            LOG.info( "User defined attributes are not supported under " + _root + ", not keeping content digests" );
+            _digests = false;
+            return;
+        }
+
+        try
+        {
+            final String value = digestKey( file ) + digest;
+            view.write( DIGEST_ATTRIBUTE, ByteBuffer.wrap( value.getBytes( UTF_8 ) ) );
+        }
+        catch ( final IOException e )
+        {
+            // digests are optional, and not every file system keeps user attributes
+            LOG.debug( "Cannot store digest of " + file + ": " + e.getMessage() );
+        }
+    }
+
+    private StoredObject toStoredObject( final File file )
+    {
+        final StoredObject so = new StoredObject();
+        so.setFolder( file.isDirectory() );
+        so.setLastModified( new Date( file.lastModified() ) );
+        so.setCreationDate( new Date( file.lastModified() ) );
+        so.setResourceLength( file.length() );
+        if ( _digests && !so.isFolder() )
+        {
+            so.setContentDigest( readDigest( file ) );
+        }
+        return so;
+    }
+
+    /**
+     * Reads the stored digest, ignoring it if the file has been modified
+     * since it was computed.
+     */
+    private String readDigest( final File file )
+    {
+        final UserDefinedFileAttributeView view = digestView( file );
+        try
+        {
+            if ( view == null || !view.list()
+                                      .contains( DIGEST_ATTRIBUTE ) )
+            {
+                return null;
+            }
+
+            final ByteBuffer buf = ByteBuffer.allocate( view.size( DIGEST_ATTRIBUTE ) );
+            view.read( DIGEST_ATTRIBUTE, buf );
+            buf.flip();
+            final String value = UTF_8.decode( buf )
+                                      .toString();
+
+            final String prefix = digestKey( file );
+            return value.startsWith( prefix ) ? value.substring( prefix.length() ) : null;
+        }
+        catch ( final IOException e )
+        {
+            LOG.debug( "Cannot read digest of " + file + ": " + e.getMessage() );
+            return null;
+        }
+    }
+
+    /**
+     * Whether the name is that of content still being written by
+     * {@link #setResourceContent(ITransaction, String, InputStream, long)}.
+     */
+    private static boolean isPart( final String name )
+    {
+        return name.startsWith( PART_PREFIX ) && name.endsWith( PART_SUFFIX );
+    }
+
+    /**
+     * Identifies the file contents a digest belongs to, as the
+     * <code>&lt;modified nanos&gt;:&lt;length&gt;:</code> prefix of the stored value.
+     */
+    private static String digestKey( final File file )
+        throws IOException
+    {
+        final BasicFileAttributes attrs = Files.readAttributes( file.toPath(), BasicFileAttributes.class );
+        return attrs.lastModifiedTime()
+                    .to( TimeUnit.NANOSECONDS ) + ":" + attrs.size() + ":";
+    }
+
+    private static UserDefinedFileAttributeView digestView( final File file )
+    {
+        return Files.getFileAttributeView( file.toPath(), UserDefinedFileAttributeView.class );
+    }
+
+
+    /**
+     * Reads a slice of a file using positional reads, so the channel position
+     * is never moved and nothing before the slice is touched.
+     */
+    private static final class FileRangeInputStream
+        extends InputStream
+    {
+
+        private final FileChannel channel;
+
+        private long position;
+
+        private long remaining;
+
+        FileRangeInputStream( final FileChannel channel, final long offset, final long length )
+        {
+            this.channel = channel;
+            this.position = offset;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read()
+            throws IOException
+        {
+            final byte[] b = new byte[1];
+            return read( b, 0, 1 ) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read( final byte[] b, final int off, final int len )
+            throws IOException
+        {
+            if ( remaining <= 0 )
+            {
+                return -1;
+            }
+
+            final int toRead = (int) Math.min( len, remaining );
+            final int read = channel.read( ByteBuffer.wrap( b, off, toRead ), position );
+            if ( read > 0 )
+            {
+                position += read;
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip( final long n )
+            throws IOException
+        {
+            final long skipped = Math.max( 0, Math.min( n, remaining ) );
+            position += skipped;
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public void close()
+            throws IOException
+        {
+            channel.close();
+        }
+    }
+
 }
@@ -0,0 +1,163 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of cached paths by parent folder, so that a cache can drop a path
+ * and everything below it without looking at the rest of its keys. Each
+ * folder maps to the paths directly below it that are indexed or have
+ * indexed paths below them. Folders are in the index as long as something
+ * below them is, whether or not they are indexed themselves.
+ * <p/>
+ * Keys are normalized paths: no trailing slash, and "/" for the root. Not
+ * thread safe.
+ */
+final class PathIndex
+{
+
+    private final Set<String> _keys = new HashSet<String>();
+
+    private final Map<String, Set<String>> _below = new HashMap<String, Set<String>>();
+
+    boolean contains( final String key )
+    {
+        return _keys.contains( key );
+    }
+
+    void add( final String key )
+    {
+        if ( _keys.add( key ) )
+        {
+            link( key );
+        }
+    }
+
+    void remove( final String key )
+    {
+        if ( _keys.remove( key ) )
+        {
+            unlink( key );
+        }
+    }
+
+    /**
+     * Removes the key and all keys below it.
+     * 
+     * @return the removed keys
+     */
+    List<String> removeTree( final String key )
+    {
+        final List<String> removed = new ArrayList<String>();
+        drop( key, removed );
+        unlink( key );
+        return removed;
+    }
+
+    void clear()
+    {
+        _keys.clear();
+        _below.clear();
+    }
+
+    /**
+     * @return the parent folder of a normalized path, or null for the root
+     */
+    static String parent( final String key )
+    {
+        final int idx = key.lastIndexOf( '/' );
+        if ( idx < 0 || key.length() == 1 )
+        {
+            return null;
+        }
+        return idx == 0 ? "/" : key.substring( 0, idx );
+    }
+
+    private void drop( final String key, final List<String> removed )
+    {
+        if ( _keys.remove( key ) )
+        {
+            removed.add( key );
+        }
+        final Set<String> children = _below.remove( key );
+        if ( children != null )
+        {
+            for ( final String child : children )
+            {
+                drop( child, removed );
+            }
+        }
+    }
+
+    /**
+     * Adds the key below its parent, and the parent below its own parent up
+     * to the first folder that is already in the index.
+     */
+    private void link( final String key )
+    {
+        String child = key;
+        String parent = parent( child );
+        while ( parent != null )
+        {
+            Set<String> children = _below.get( parent );
+            final boolean linked = children != null;
+            if ( !linked )
+            {
+                children = new HashSet<String>();
+                _below.put( parent, children );
+            }
+            children.add( child );
+            if ( linked )
+            {
+                return;
+            }
+            child = parent;
+            parent = parent( child );
+        }
+    }
+
+    /**
+     * Takes a path that is neither indexed nor has anything indexed below it
+     * out of its parent, along with the parents left empty by that.
+     */
+    private void unlink( final String key )
+    {
+        String child = key;
+        while ( !_keys.contains( child ) && !_below.containsKey( child ) )
+        {
+            final String parent = parent( child );
+            final Set<String> children = parent == null ? null : _below.get( parent );
+            if ( children == null )
+            {
+                return;
+            }
+            children.remove( child );
+            if ( !children.isEmpty() )
+            {
+                return;
+            }
+            _below.remove( parent );
+            child = parent;
+        }
+    }
+
+}
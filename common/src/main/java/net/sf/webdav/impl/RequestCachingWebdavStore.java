@@ -0,0 +1,357 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.impl;
+
+import java.io.InputStream;
+import java.security.Principal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.sf.webdav.StoredObject;
+import net.sf.webdav.exceptions.WebdavException;
+import net.sf.webdav.spi.ITransaction;
+import net.sf.webdav.spi.IWebdavStore;
+
+/**
+ * Remembers the {@link StoredObject}s looked up during one transaction, so
+ * that a path is stat'ed on the wrapped store at most once per request, no
+ * matter how many methods or helpers ask for it. Misses are remembered too.
+ * <p/>
+ * The memo lives in the transaction returned by {@link #begin(Principal)}
+ * and dies with it. It holds a bounded number of entries, dropping the least
+ * recently used ones beyond that, so a PROPFIND walking a large tree doesn't
+ * keep every object it has seen. Listings from an
+ * {@link net.sf.webdav.spi.IChildListingWebdavStore} are passed through
+ * without being memoized, since their callers already have the children.
+ * <p/>
+ * Creating, writing, removing, copying or moving a resource drops the entries
+ * for the paths it changes, everything below them and their parent folders.
+ * Entries are indexed by parent folder, so that only touches the memoized
+ * part of the subtree.
+ */
+public class RequestCachingWebdavStore
+    extends DelegatingWebdavStore
+{
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private final int _maxEntries;
+
+    public RequestCachingWebdavStore( final IWebdavStore store )
+    {
+        this( store, DEFAULT_MAX_ENTRIES );
+    }
+
+    /**
+     * @param store
+     *      the store to memoize lookups of
+     * @param maxEntries
+     *      maximum number of stored objects to remember per transaction
+     */
+    public RequestCachingWebdavStore( final IWebdavStore store, final int maxEntries )
+    {
+        super( store );
+        if ( maxEntries < 1 )
+        {
+            throw new IllegalArgumentException( "maxEntries must be positive: " + maxEntries );
+        }
+        _maxEntries = maxEntries;
+    }
+
+    @Override
+    public ITransaction begin( final Principal principal )
+        throws WebdavException
+    {
+        return new CachingTransaction( _store.begin( principal ), principal, _maxEntries );
+    }
+
+    @Override
+    protected ITransaction unwrap( final ITransaction transaction )
+    {
+        if ( transaction instanceof CachingTransaction )
+        {
+            return ( (CachingTransaction) transaction )._delegate;
+        }
+        return transaction;
+    }
+
+    @Override
+    public void commit( final ITransaction transaction )
+        throws WebdavException
+    {
+        clear( transaction );
+        super.commit( transaction );
+    }
+
+    @Override
+    public void rollback( final ITransaction transaction )
+        throws WebdavException
+    {
+        clear( transaction );
+        super.rollback( transaction );
+    }
+
+    @Override
+    public StoredObject getStoredObject( final ITransaction transaction, final String uri )
+        throws WebdavException
+    {
+        final Memo memo = memo( transaction );
+        if ( memo == null )
+        {
+            return super.getStoredObject( transaction, uri );
+        }
+
+        final String key = normalize( uri );
+        if ( memo.containsKey( key ) )
+        {
+            return memo.get( key );
+        }
+
+        final StoredObject so = super.getStoredObject( transaction, uri );
+        memo.put( key, so );
+        return so;
+    }
+
+    @Override
+    public long getResourceLength( final ITransaction transaction, final String resourceUri )
+        throws WebdavException
+    {
+        final Memo memo = memo( transaction );
+        if ( memo != null )
+        {
+            final StoredObject so = memo.get( normalize( resourceUri ) );
+            if ( so != null && so.isResource() && !so.isNullResource() )
+            {
+                return so.getResourceLength();
+            }
+        }
+        return super.getResourceLength( transaction, resourceUri );
+    }
+
+    @Override
+    public void createFolder( final ITransaction transaction, final String folderUri )
+        throws WebdavException
+    {
+        invalidate( transaction, folderUri );
+        super.createFolder( transaction, folderUri );
+    }
+
+    @Override
+    public void createResource( final ITransaction transaction, final String resourceUri )
+        throws WebdavException
+    {
+        invalidate( transaction, resourceUri );
+        super.createResource( transaction, resourceUri );
+    }
+
+    @Override
+    public long setResourceContent( final ITransaction transaction, final String resourceUri, final InputStream content,
+                                    final long contentLength )
+        throws WebdavException
+    {
+        invalidate( transaction, resourceUri );
+        return super.setResourceContent( transaction, resourceUri, content, contentLength );
+    }
+
+    @Override
+    public void setResourceDigest( final ITransaction transaction, final String resourceUri, final String digest )
+        throws WebdavException
+    {
+        invalidate( transaction, resourceUri );
+        super.setResourceDigest( transaction, resourceUri, digest );
+    }
+
+    @Override
+    public void removeObject( final ITransaction transaction, final String uri )
+        throws WebdavException
+    {
+        invalidate( transaction, uri );
+        super.removeObject( transaction, uri );
+    }
+
+    @Override
+    public boolean copyObject( final ITransaction transaction, final String sourceUri, final String destinationUri )
+        throws WebdavException
+    {
+        invalidate( transaction, destinationUri );
+        return super.copyObject( transaction, sourceUri, destinationUri );
+    }
+
+    @Override
+    public boolean moveObject( final ITransaction transaction, final String sourceUri, final String destinationUri )
+        throws WebdavException
+    {
+        invalidate( transaction, sourceUri );
+        invalidate( transaction, destinationUri );
+        return super.moveObject( transaction, sourceUri, destinationUri );
+    }
+
+    @Override
+    public Map<String, WebdavException> removeFolder( final ITransaction transaction, final String folderUri )
+        throws WebdavException
+    {
+        invalidate( transaction, folderUri );
+        return super.removeFolder( transaction, folderUri );
+    }
+
+    private Memo memo( final ITransaction transaction )
+    {
+        if ( transaction instanceof CachingTransaction )
+        {
+            return ( (CachingTransaction) transaction )._memo;
+        }
+        return null;
+    }
+
+    private void clear( final ITransaction transaction )
+    {
+        final Memo memo = memo( transaction );
+        if ( memo != null )
+        {
+            memo.clear();
+        }
+    }
+
+    private void invalidate( final ITransaction transaction, final String uri )
+    {
+        final Memo memo = memo( transaction );
+        if ( memo == null || memo.isEmpty() )
+        {
+            return;
+        }
+
+        final String key = normalize( uri );
+        memo.removeTree( key );
+
+        final String parent = PathIndex.parent( key );
+        if ( parent != null )
+        {
+            memo.remove( parent );
+        }
+    }
+
+    private static String normalize( final String uri )
+    {
+        if ( uri.isEmpty() )
+        {
+            return "/";
+        }
+        if ( uri.length() > 1 && uri.endsWith( "/" ) )
+        {
+            return uri.substring( 0, uri.length() - 1 );
+        }
+        return uri;
+    }
+
+    /**
+     * Access-ordered map of stored objects, bounded by dropping the least
+     * recently used entry, with a {@link PathIndex} of its keys so a subtree
+     * can be dropped without looking at the rest of the memo.
+     */
+    private static final class Memo
+    {
+        private final Map<String, StoredObject> _objects;
+
+        private final PathIndex _index = new PathIndex();
+
+        Memo( final int maxEntries )
+        {
+            _objects = new LinkedHashMap<String, StoredObject>( 16, 0.75f, true )
+            {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry( final Map.Entry<String, StoredObject> eldest )
+                {
+                    if ( size() > maxEntries )
+                    {
+                        _index.remove( eldest.getKey() );
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        boolean isEmpty()
+        {
+            return _objects.isEmpty();
+        }
+
+        boolean containsKey( final String key )
+        {
+            return _objects.containsKey( key );
+        }
+
+        StoredObject get( final String key )
+        {
+            return _objects.get( key );
+        }
+
+        void put( final String key, final StoredObject so )
+        {
+            _index.add( key );
+            _objects.put( key, so );
+        }
+
+        void remove( final String key )
+        {
+            _objects.remove( key );
+            _index.remove( key );
+        }
+
+        /**
+         * Removes the key and everything memoized below it.
+         */
+        void removeTree( final String key )
+        {
+            for ( final String path : _index.removeTree( key ) )
+            {
+                _objects.remove( path );
+            }
+        }
+
+        void clear()
+        {
+            _objects.clear();
+            _index.clear();
+        }
+    }
+
+    private static final class CachingTransaction
+        implements ITransaction
+    {
+        private final ITransaction _delegate;
+
+        private final Principal _principal;
+
+        private final Memo _memo;
+
+        CachingTransaction( final ITransaction delegate, final Principal principal, final int maxEntries )
+        {
+            _delegate = delegate;
+            _principal = principal;
+            _memo = new Memo( maxEntries );
+        }
+
+        @Override
+        public Principal getPrincipal()
+        {
+            return _delegate == null ? _principal : _delegate.getPrincipal();
+        }
+    }
+
+}
@@ -34,6 +34,14 @@ public class SimpleWebdavConfig
 
     private String defaultIndex;
 
+    private boolean concurrentLocking;
+
+    private boolean lockFreeReads;
+
+    private int compressionThreshold = -1;
+
+    private String contentDigestAlgorithm;
+
     public SimpleWebdavConfig withLazyFolderCreationOnPut()
     {
         this.lazyCreate = true;
@@ -82,6 +90,54 @@ public class SimpleWebdavConfig
         return this;
     }
 
+    public SimpleWebdavConfig withConcurrentLocking()
+    {
+        this.concurrentLocking = true;
+        return this;
+    }
+
+    public SimpleWebdavConfig withoutConcurrentLocking()
+    {
+        this.concurrentLocking = false;
+        return this;
+    }
+
+    public SimpleWebdavConfig withLockFreeReads()
+    {
+        this.lockFreeReads = true;
+        return this;
+    }
+
+    public SimpleWebdavConfig withoutLockFreeReads()
+    {
+        this.lockFreeReads = false;
+        return this;
+    }
+
+    public SimpleWebdavConfig withCompressionThreshold( final int threshold )
+    {
+        this.compressionThreshold = threshold;
+        return this;
+    }
+
+    public SimpleWebdavConfig withoutCompression()
+    {
+        this.compressionThreshold = -1;
+        return this;
+    }
+
+    public SimpleWebdavConfig withContentDigestAlgorithm( final String algorithm )
+    {
+        this.contentDigestAlgorithm = algorithm;
+        return this;
+    }
+
+    public SimpleWebdavConfig withoutContentDigest()
+    {
+        this.contentDigestAlgorithm = null;
+        return this;
+    }
+
     @Override
     public boolean isLazyFolderCreationOnPut()
     {
@@ -106,4 +162,28 @@ public class SimpleWebdavConfig
         return defaultIndex;
     }
 
+    @Override
+    public boolean isConcurrentLocking()
+    {
+        return concurrentLocking;
+    }
+
+    @Override
+    public boolean isLockFreeReads()
+    {
+        return lockFreeReads;
+    }
+
+    @Override
+    public int getCompressionThreshold()
+    {
+        return compressionThreshold;
+    }
+
+    @Override
+    public String getContentDigestAlgorithm()
+    {
+        return contentDigestAlgorithm;
+    }
+
 }
@@ -0,0 +1,429 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.locking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import net.sf.webdav.exceptions.LockFailedException;
+import net.sf.webdav.spi.ITransaction;
+
+/**
+ * IResourceLocks implementation for servers handling many requests in
+ * parallel. Where ResourceLocks serializes every lock and unlock on one
+ * monitor, this only makes operations on overlapping paths wait for each
+ * other.
+ * <p/>
+ * Each path maps to one of a fixed set of read/write lock stripes. Working
+ * on a path takes the write lock of its own stripe and the read locks of the
+ * stripes of all its parents, in stripe order. Operations on a path and on one
+ * of its parents or children therefore exclude each other, while operations on
+ * unrelated paths only share read locks.
+ * <p/>
+ * Only locks that have an owner are stored, in sorted maps, so the children
+ * of a path can be found with a range lookup instead of a tree of
+ * intermediate LockedObjects. Expired locks are ignored when checking for
+ * conflicts. Real locks are removed through an index by expiry time on each
+ * unlock; temporary locks only live for the duration of a request, so there
+ * are few of them and they are simply swept every few hundred unlocks.
+ */
+public class ConcurrentResourceLocks implements IResourceLocks {
+
+    private static org.slf4j.Logger LOG = org.slf4j.LoggerFactory
+            .getLogger(ConcurrentResourceLocks.class);
+
+    /**
+     * default number of lock stripes
+     */
+    public static final int DEFAULT_STRIPES = 256;
+
+    /**
+     * number of temporary unlocks after which expired temporary locks are
+     * swept out
+     */
+    private static final int SWEEP_INTERVAL = 500;
+
+    private final ReentrantReadWriteLock[] _stripes;
+
+    private final LockTable _locks = new LockTable();
+
+    private final LockTable _tempLocks = new LockTable();
+
+    /**
+     * real locks by expiry time, guarded by itself
+     */
+    private final LockExpiryIndex _expiry = new LockExpiryIndex();
+
+    private final AtomicInteger _tempUnlockCounter = new AtomicInteger();
+
+    public ConcurrentResourceLocks() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param stripes
+     *      number of lock stripes; more stripes mean less contention between
+     *      unrelated paths that happen to share one
+     */
+    public ConcurrentResourceLocks(int stripes) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("stripes must be positive: "
+                    + stripes);
+        }
+        _stripes = new ReentrantReadWriteLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            _stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    public boolean lock(ITransaction transaction, String path, String owner,
+            boolean exclusive, int depth, int timeout, boolean temporary)
+            throws LockFailedException {
+
+        LockTable table = temporary ? _tempLocks : _locks;
+
+        List<Lock> held = acquire(path);
+        try {
+            if (!canLock(table, path, exclusive, depth)) {
+                LOG.trace("Lock resource at " + path + " failed because"
+                        + "\na parent or child resource is currently locked");
+                return false;
+            }
+
+            LockedObject lo = table._byPath.get(path);
+            if (lo != null && lo.hasExpired()) {
+                remove(table, lo);
+                lo = null;
+            }
+            boolean created = lo == null;
+            if (created) {
+                lo = new LockedObject(path);
+            }
+
+            if (!lo.addLockedObjectOwner(owner)) {
+                LOG.trace("Couldn't set owner \"" + owner
+                        + "\" to resource at '" + path + "'");
+                return false;
+            }
+
+            lo._type = temporary ? "read" : "write";
+            lo._exclusive = exclusive;
+            lo._lockDepth = depth;
+            lo._expiresAt = System.currentTimeMillis() + (timeout * 1000);
+            if (created) {
+                table.add(lo);
+            }
+            if (!temporary) {
+                synchronized (_expiry) {
+                    _expiry.schedule(lo);
+                }
+            }
+            return true;
+        } finally {
+            release(held);
+        }
+    }
+
+    public boolean unlock(ITransaction transaction, String id, String owner) {
+
+        LockedObject lo = _locks._byID.get(id);
+        if (lo != null) {
+            String path = lo.getPath();
+            List<Lock> held = acquire(path);
+            try {
+                if (_locks._byPath.get(path) != lo) {
+                    // the lock was removed in the meantime. someone tried to
+                    // unlock it anyway. could point to a problem
+                    LOG.trace("net.sf.webdav.locking.ConcurrentResourceLocks.unlock(): no lock for path "
+                            + path);
+                    return false;
+                }
+
+                lo.removeLockedObjectOwner(owner);
+                if (lo._owner == null) {
+                    remove(_locks, lo);
+                }
+            } finally {
+                release(held);
+            }
+        }
+
+        checkTimeouts(transaction, false);
+
+        return true;
+    }
+
+    public void unlockTemporaryLockedObjects(ITransaction transaction,
+            String path, String owner) {
+
+        List<Lock> held = acquire(path);
+        try {
+            LockedObject lo = _tempLocks._byPath.get(path);
+            if (lo != null) {
+                lo.removeLockedObjectOwner(owner);
+                if (lo._owner == null) {
+                    remove(_tempLocks, lo);
+                }
+            } else {
+                // there is no lock at that path. someone tried to unlock it
+                // anyway. could point to a problem
+                LOG.trace("net.sf.webdav.locking.ConcurrentResourceLocks.unlock(): no lock for path "
+                        + path);
+            }
+        } finally {
+            release(held);
+        }
+
+        if (_tempUnlockCounter.incrementAndGet() % SWEEP_INTERVAL == 0) {
+            checkTimeouts(transaction, true);
+        }
+    }
+
+    public void checkTimeouts(ITransaction transaction, boolean temporary) {
+        if (temporary) {
+            for (LockedObject lo : _tempLocks._byPath.values()) {
+                if (lo.hasExpired()) {
+                    removeIfExpired(_tempLocks, lo);
+                }
+            }
+        } else {
+            List<LockedObject> due;
+            synchronized (_expiry) {
+                due = _expiry.pollDue(System.currentTimeMillis());
+            }
+            for (LockedObject lo : due) {
+                removeIfExpired(_locks, lo);
+            }
+        }
+    }
+
+    public boolean exclusiveLock(ITransaction transaction, String path,
+            String owner, int depth, int timeout) throws LockFailedException {
+        return lock(transaction, path, owner, true, depth, timeout, false);
+    }
+
+    public boolean sharedLock(ITransaction transaction, String path,
+            String owner, int depth, int timeout) throws LockFailedException {
+        return lock(transaction, path, owner, false, depth, timeout, false);
+    }
+
+    public LockedObject getLockedObjectByID(ITransaction transaction, String id) {
+        return unlessExpired(_locks._byID.get(id));
+    }
+
+    public LockedObject getLockedObjectByPath(ITransaction transaction,
+            String path) {
+        return unlessExpired(_locks._byPath.get(path));
+    }
+
+    public LockedObject getTempLockedObjectByID(ITransaction transaction,
+            String id) {
+        return unlessExpired(_tempLocks._byID.get(id));
+    }
+
+    public LockedObject getTempLockedObjectByPath(ITransaction transaction,
+            String path) {
+        return unlessExpired(_tempLocks._byPath.get(path));
+    }
+
+    /**
+     * expired locks may linger until they are swept out, but are not handed
+     * out anymore
+     */
+    private LockedObject unlessExpired(LockedObject lo) {
+        return lo == null || lo.hasExpired() ? null : lo;
+    }
+
+    /**
+     * checks if a lock of the given exclusivity can be placed at path. Locks
+     * on path itself and on its parents are always considered, locks on its
+     * children only up to "depth" levels down. The caller must hold the
+     * stripes for path.
+     */
+    private boolean canLock(LockTable table, String path, boolean exclusive,
+            int depth) {
+        for (String p = path; p != null; p = getParentPath(p)) {
+            if (conflicts(table._byPath.get(p), exclusive)) {
+                return false;
+            }
+        }
+
+        if (depth > 0) {
+            String prefix = path.endsWith("/") ? path : path + "/";
+            String end = prefix.substring(0, prefix.length() - 1) + (char) ('/' + 1);
+            for (Map.Entry<String, LockedObject> child : table._byPath
+                    .subMap(prefix, true, end, false).entrySet()) {
+                String childPath = child.getKey();
+                if (childPath.equals(path)
+                        || getLevel(childPath, prefix.length()) > depth) {
+                    continue;
+                }
+                if (conflicts(child.getValue(), exclusive)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * removes the LockedObject if it is still in the table and has expired.
+     * Real locks that have been refreshed in the meantime are filed under
+     * their new expiry time instead.
+     */
+    private void removeIfExpired(LockTable table, LockedObject lo) {
+        List<Lock> held = acquire(lo.getPath());
+        try {
+            if (table._byPath.get(lo.getPath()) != lo) {
+                return;
+            }
+            if (lo.hasExpired()) {
+                remove(table, lo);
+            } else if (table == _locks) {
+                synchronized (_expiry) {
+                    _expiry.schedule(lo);
+                }
+            }
+        } finally {
+            release(held);
+        }
+    }
+
+    /**
+     * removes the LockedObject from the table, and from the expiry index if
+     * it is a real lock. The caller must hold the stripes for its path.
+     */
+    private void remove(LockTable table, LockedObject lo) {
+        table.remove(lo);
+        if (table == _locks) {
+            synchronized (_expiry) {
+                _expiry.cancel(lo);
+            }
+        }
+    }
+
+    private boolean conflicts(LockedObject lo, boolean exclusive) {
+        return lo != null && lo._owner != null && !lo.hasExpired()
+                && (lo._exclusive || exclusive);
+    }
+
+    /**
+     * @return how many levels below the path the given child is, the child
+     *  path starting at index "from"
+     */
+    private int getLevel(String childPath, int from) {
+        int level = 1;
+        for (int i = from; i < childPath.length() - 1; i++) {
+            if (childPath.charAt(i) == '/') {
+                level++;
+            }
+        }
+        return level;
+    }
+
+    /**
+     * takes the write lock of the stripe of path and the read locks of the
+     * stripes of its parents. Stripes are locked in index order, and a stripe
+     * shared by path and one of its parents is only locked once, for writing,
+     * so concurrent callers can't deadlock.
+     * 
+     * @return the locks held, to be passed to {@link #release(List)}
+     */
+    private List<Lock> acquire(String path) {
+        TreeMap<Integer, Boolean> stripes = new TreeMap<Integer, Boolean>();
+        stripes.put(getStripe(path), Boolean.TRUE);
+        for (String p = getParentPath(path); p != null; p = getParentPath(p)) {
+            Integer stripe = getStripe(p);
+            if (!stripes.containsKey(stripe)) {
+                stripes.put(stripe, Boolean.FALSE);
+            }
+        }
+
+        List<Lock> held = new ArrayList<Lock>(stripes.size());
+        for (Map.Entry<Integer, Boolean> stripe : stripes.entrySet()) {
+            ReentrantReadWriteLock rwLock = _stripes[stripe.getKey()];
+            Lock lock = stripe.getValue() ? rwLock.writeLock() : rwLock
+                    .readLock();
+            lock.lock();
+            held.add(lock);
+        }
+        return held;
+    }
+
+    private void release(List<Lock> held) {
+        for (int i = held.size() - 1; i >= 0; i--) {
+            held.get(i).unlock();
+        }
+    }
+
+    private int getStripe(String path) {
+        int hash = path.hashCode();
+        hash ^= (hash >>> 16);
+        return (hash & 0x7fffffff) % _stripes.length;
+    }
+
+    /**
+     * creates the parent path from the given path by removing the last '/' and
+     * everything after that
+     * 
+     * @param path
+     *      the path
+     * @return parent path
+     */
+    private String getParentPath(String path) {
+        int slash = path.lastIndexOf('/');
+        if (slash == -1 || path.equals("/")) {
+            return null;
+        } else {
+            if (slash == 0) {
+                // return "root" if parent path is empty string
+                return "/";
+            } else {
+                return path.substring(0, slash);
+            }
+        }
+    }
+
+    /**
+     * the locks of one kind (temporary or real), by path and by id
+     */
+    private static class LockTable {
+
+        final ConcurrentNavigableMap<String, LockedObject> _byPath = new ConcurrentSkipListMap<String, LockedObject>();
+
+        final ConcurrentMap<String, LockedObject> _byID = new ConcurrentHashMap<String, LockedObject>();
+
+        void add(LockedObject lo) {
+            _byID.put(lo.getID(), lo);
+            _byPath.put(lo.getPath(), lo);
+        }
+
+        void remove(LockedObject lo) {
+            _byPath.remove(lo.getPath(), lo);
+            _byID.remove(lo.getID(), lo);
+        }
+    }
+
+}
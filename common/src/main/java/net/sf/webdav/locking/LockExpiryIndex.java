@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.locking;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Index of LockedObjects by the second their lock expires in, so a lock
+ * manager can find the expired locks without looking at all the others.
+ * Scheduling and cancelling cost O(log n) in the number of distinct
+ * seconds, and polling only touches the locks that are due.
+ * <p/>
+ * Not thread safe; the lock manager has to guard it.
+ * 
+ * @see ResourceLocks#checkTimeouts(net.sf.webdav.spi.ITransaction, boolean)
+ */
+class LockExpiryIndex {
+
+    private final TreeMap<Long, Set<LockedObject>> _bySecond = new TreeMap<Long, Set<LockedObject>>();
+
+    /**
+     * (re)schedules the LockedObject for its current expiry time
+     * 
+     * @param lo
+     *      the LockedObject
+     */
+    void schedule(LockedObject lo) {
+        // round up, so everything in a due second has expired
+        long second = (lo._expiresAt + 999) / 1000;
+        if (lo._expirySecond == second) {
+            return;
+        }
+        cancel(lo);
+
+        Set<LockedObject> due = _bySecond.get(second);
+        if (due == null) {
+            due = new LinkedHashSet<LockedObject>();
+            _bySecond.put(second, due);
+        }
+        due.add(lo);
+        lo._expirySecond = second;
+    }
+
+    /**
+     * removes the LockedObject from the index, if it is in there
+     * 
+     * @param lo
+     *      the LockedObject
+     */
+    void cancel(LockedObject lo) {
+        if (lo._expirySecond != 0) {
+            Set<LockedObject> due = _bySecond.get(lo._expirySecond);
+            if (due != null) {
+                due.remove(lo);
+                if (due.isEmpty()) {
+                    _bySecond.remove(lo._expirySecond);
+                }
+            }
+            lo._expirySecond = 0;
+        }
+    }
+
+    /**
+     * removes and returns all LockedObjects that were scheduled to expire at
+     * or before "now". Their expiry time may have been refreshed since they
+     * were scheduled, so callers have to check it again and reschedule the
+     * ones that are still alive.
+     * 
+     * @param now
+     *      current time (ms)
+     * @return LockedObjects that are due
+     */
+    List<LockedObject> pollDue(long now) {
+        List<LockedObject> due = new ArrayList<LockedObject>();
+        long second = now / 1000;
+        while (!_bySecond.isEmpty() && _bySecond.firstKey() <= second) {
+            Map.Entry<Long, Set<LockedObject>> entry = _bySecond.pollFirstEntry();
+            for (LockedObject lo : entry.getValue()) {
+                lo._expirySecond = 0;
+                due.add(lo);
+            }
+        }
+        return due;
+    }
+
+}
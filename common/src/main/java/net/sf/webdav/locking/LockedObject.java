@@ -40,14 +40,19 @@ public class LockedObject {
     /**
      * Describing the timeout of a locked object (ms)
      */
-    protected long _expiresAt;
+    protected volatile long _expiresAt;
+
+    /**
+     * second this object is filed under in a LockExpiryIndex, 0 if it isn't
+     */
+    long _expirySecond;
 
     /**
      * owner of the lock. shared locks can have multiple owners. is null if no
      * owner is present
      */
     // protected String[] _owner = null;
-    protected String[] _owner = null;
+    protected volatile String[] _owner = null;
 
     /**
      * children of that lock
@@ -60,7 +65,7 @@ public class LockedObject {
      * weather the lock is exclusive or not. if owner=null the exclusive value
      * doesn't matter
      */
-    protected boolean _exclusive = false;
+    protected volatile boolean _exclusive = false;
 
     /**
      * weather the lock is a write or read lock
@@ -87,7 +92,20 @@ public class LockedObject {
             _resourceLocks._tempLocks.put(path, this);
             _resourceLocks._tempLocksByID.put(_id, this);
         }
-        _resourceLocks._cleanupCounter++;
+    }
+
+    /**
+     * Creates a LockedObject that is not part of a ResourceLocks tree. Lock
+     * managers using this keep track of the object themselves, and must not
+     * call {@link #removeLockedObject()} or
+     * {@link #removeTempLockedObject()} on it.
+     * 
+     * @param path
+     *      the path to the locked object
+     */
+    LockedObject(String path) {
+        _path = path;
+        _id = UUID.randomUUID().toString();
     }
 
     /**
@@ -334,6 +352,9 @@ public class LockedObject {
      */
     public void refreshTimeout(int timeout) {
         _expiresAt = System.currentTimeMillis() + (timeout * 1000);
+        if (_resourceLocks != null) {
+            _resourceLocks.rescheduleExpiry(this);
+        }
     }
 
     /**
@@ -15,7 +15,6 @@
  */
 package net.sf.webdav.locking;
 
-import java.util.Enumeration;
 import java.util.Hashtable;
 
 import net.sf.webdav.exceptions.LockFailedException;
@@ -34,14 +33,6 @@ public class ResourceLocks implements IResourceLocks {
     private static org.slf4j.Logger LOG = org.slf4j.LoggerFactory
             .getLogger(ResourceLocks.class);
 
-    /**
-     * after creating this much LockedObjects, a cleanup deletes unused
-     * LockedObjects
-     */
-    private final int _cleanupLimit = 100000;
-
-    protected int _cleanupCounter = 0;
-
     /**
      * keys: path value: LockedObject from that path
      * Concurrent access can occur
@@ -72,6 +63,14 @@ public class ResourceLocks implements IResourceLocks {
 
     protected LockedObject _tempRoot = null;
 
+    /**
+     * locks and temporary locks by expiry time, so checkTimeouts only has to
+     * look at the ones that are due
+     */
+    private final LockExpiryIndex _expiry = new LockExpiryIndex();
+
+    private final LockExpiryIndex _tempExpiry = new LockExpiryIndex();
+
     private boolean _temporary = true;
 
     public ResourceLocks() {
@@ -98,29 +97,20 @@ public class ResourceLocks implements IResourceLocks {
             lo._exclusive = exclusive;
             lo._lockDepth = depth;
             lo._expiresAt = System.currentTimeMillis() + (timeout * 1000);
-            if (lo._parent != null) {
-                lo._parent._expiresAt = lo._expiresAt;
-                if (lo._parent.equals(_root)) {
-                    LockedObject rootLo = getLockedObjectByPath(transaction,
-                            _root.getPath());
-                    rootLo._expiresAt = lo._expiresAt;
-                } else if (lo._parent.equals(_tempRoot)) {
-                    LockedObject tempRootLo = getTempLockedObjectByPath(
-                            transaction, _tempRoot.getPath());
-                    tempRootLo._expiresAt = lo._expiresAt;
-                }
-            }
             if (lo.addLockedObjectOwner(owner)) {
+                (temporary ? _tempExpiry : _expiry).schedule(lo);
                 return true;
             } else {
                 LOG.trace("Couldn't set owner \"" + owner
                         + "\" to resource at '" + path + "'");
+                prune(lo, temporary);
                 return false;
             }
         } else {
             // can not lock
             LOG.trace("Lock resource at " + path + " failed because"
                     + "\na parent or child resource is currently locked");
+            prune(lo, temporary);
             return false;
         }
     }
@@ -133,9 +123,7 @@ public class ResourceLocks implements IResourceLocks {
             if (_locks.containsKey(path)) {
                 LockedObject lo = _locks.get(path);
                 lo.removeLockedObjectOwner(owner);
-
-                if (lo._children == null && lo._owner == null)
-                    lo.removeLockedObject();
+                prune(lo, !_temporary);
 
             } else {
                 // there is no lock at that path. someone tried to unlock it
@@ -145,11 +133,6 @@ public class ResourceLocks implements IResourceLocks {
                                 + path);
                 return false;
             }
-
-            if (_cleanupCounter > _cleanupLimit) {
-                _cleanupCounter = 0;
-                cleanLockedObjects(transaction, _root, !_temporary);
-            }
         }
         checkTimeouts(transaction, !_temporary);
 
@@ -162,6 +145,7 @@ public class ResourceLocks implements IResourceLocks {
         if (_tempLocks.containsKey(path)) {
             LockedObject lo = _tempLocks.get(path);
             lo.removeLockedObjectOwner(owner);
+            prune(lo, _temporary);
 
         } else {
             // there is no lock at that path. someone tried to unlock it
@@ -171,36 +155,47 @@ public class ResourceLocks implements IResourceLocks {
                             + path);
         }
 
-        if (_cleanupCounter > _cleanupLimit) {
-            _cleanupCounter = 0;
-            cleanLockedObjects(transaction, _tempRoot, _temporary);
-        }
-
         checkTimeouts(transaction, _temporary);
 
     }
 
-    public void checkTimeouts(ITransaction transaction, boolean temporary) {
-        if (!temporary) {
-            Enumeration<LockedObject> lockedObjects = _locks.elements();
-            while (lockedObjects.hasMoreElements()) {
-                LockedObject currentLockedObject = lockedObjects.nextElement();
+    public synchronized void checkTimeouts(ITransaction transaction,
+            boolean temporary) {
+        Hashtable<String, LockedObject> locks = temporary ? _tempLocks : _locks;
+        LockExpiryIndex expiry = temporary ? _tempExpiry : _expiry;
 
-                if (currentLockedObject._expiresAt < System.currentTimeMillis()) {
-                    currentLockedObject.removeLockedObject();
-                }
+        long now = System.currentTimeMillis();
+        for (LockedObject lo : expiry.pollDue(now)) {
+            if (locks.get(lo.getPath()) != lo) {
+                // already removed
+                continue;
             }
-        } else {
-            Enumeration<LockedObject> lockedObjects = _tempLocks.elements();
-            while (lockedObjects.hasMoreElements()) {
-                LockedObject currentLockedObject = lockedObjects.nextElement();
-
-                if (currentLockedObject._expiresAt < System.currentTimeMillis()) {
-                    currentLockedObject.removeTempLockedObject();
-                }
+            if (lo._expiresAt < now) {
+                lo._owner = null;
+                prune(lo, temporary);
+            } else {
+                // refreshed since it was scheduled
+                expiry.schedule(lo);
             }
         }
+    }
 
+    /**
+     * files a LockedObject whose timeout was refreshed under its new expiry
+     * time
+     * 
+     * @param lo
+     *      LockedObject
+     */
+    synchronized void rescheduleExpiry(LockedObject lo) {
+        if (lo._owner == null) {
+            return;
+        }
+        if (_locks.get(lo.getPath()) == lo) {
+            _expiry.schedule(lo);
+        } else if (_tempLocks.get(lo.getPath()) == lo) {
+            _tempExpiry.schedule(lo);
+        }
     }
 
     public boolean exclusiveLock(ITransaction transaction, String path,
@@ -306,59 +301,27 @@ public class ResourceLocks implements IResourceLocks {
     }
 
     /**
-     * deletes unused LockedObjects and resets the counter. works recursively
-     * starting at the given LockedObject
+     * deletes the given LockedObject if it has neither owners nor children,
+     * and then its parents that are left unused that way.
      * 
-     * @param transaction
      * @param lo
      *      LockedObject
      * @param temporary
      *      Clean temporary or real locks
-     * 
-     * @return if cleaned
      */
-    private boolean cleanLockedObjects(ITransaction transaction,
-            LockedObject lo, boolean temporary) {
-
-        if (lo._children == null) {
-            if (lo._owner == null) {
-                if (temporary) {
-                    lo.removeTempLockedObject();
-                } else {
-                    lo.removeLockedObject();
-                }
-
-                return true;
+    private void prune(LockedObject lo, boolean temporary) {
+        LockExpiryIndex expiry = temporary ? _tempExpiry : _expiry;
+        // the root is the only LockedObject without a parent
+        while (lo != null && lo._parent != null && lo._owner == null
+                && lo._children == null) {
+            LockedObject parent = lo._parent;
+            expiry.cancel(lo);
+            if (temporary) {
+                lo.removeTempLockedObject();
             } else {
-                return false;
-            }
-        } else {
-            boolean canDelete = true;
-            int limit = lo._children.length;
-            for (int i = 0; i < limit; i++) {
-                if (!cleanLockedObjects(transaction, lo._children[i], temporary)) {
-                    canDelete = false;
-                } else {
-
-                    // because the deleting shifts the array
-                    i--;
-                    limit--;
-                }
-            }
-            if (canDelete) {
-                if (lo._owner == null) {
-                    if (temporary) {
-                        lo.removeTempLockedObject();
-                    } else {
-                        lo.removeLockedObject();
-                    }
-                    return true;
-                } else {
-                    return false;
-                }
-            } else {
-                return false;
+                lo.removeLockedObject();
             }
+            lo = parent;
         }
     }
 
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.locking;
+
+import net.sf.webdav.exceptions.LockFailedException;
+import net.sf.webdav.spi.ITransaction;
+
+/**
+ * IResourceLocks wrapper that hands out temporary locks without recording
+ * them anywhere, and passes everything else on to the wrapped instance.
+ * <p/>
+ * Read methods only take shared temporary locks, which never conflict with
+ * each other or with the real (LOCK method) locks. On stores that don't
+ * need them for consistency they are pure overhead, so WebdavService gives
+ * the read methods this wrapper when
+ * {@link net.sf.webdav.spi.WebdavConfig#isLockFreeReads()} is set. Methods
+ * that modify resources keep using the wrapped instance directly.
+ */
+public class TempLockFreeResourceLocks implements IResourceLocks {
+
+    private final IResourceLocks _resourceLocks;
+
+    public TempLockFreeResourceLocks(IResourceLocks resourceLocks) {
+        _resourceLocks = resourceLocks;
+    }
+
+    public boolean lock(ITransaction transaction, String path, String owner,
+            boolean exclusive, int depth, int timeout, boolean temporary)
+            throws LockFailedException {
+        if (temporary) {
+            return true;
+        }
+        return _resourceLocks.lock(transaction, path, owner, exclusive,
+                depth, timeout, temporary);
+    }
+
+    public boolean unlock(ITransaction transaction, String id, String owner) {
+        return _resourceLocks.unlock(transaction, id, owner);
+    }
+
+    public void unlockTemporaryLockedObjects(ITransaction transaction,
+            String path, String owner) {
+        // nothing was locked
+    }
+
+    public void checkTimeouts(ITransaction transaction, boolean temporary) {
+        _resourceLocks.checkTimeouts(transaction, temporary);
+    }
+
+    public boolean exclusiveLock(ITransaction transaction, String path,
+            String owner, int depth, int timeout) throws LockFailedException {
+        return _resourceLocks.exclusiveLock(transaction, path, owner, depth,
+                timeout);
+    }
+
+    public boolean sharedLock(ITransaction transaction, String path,
+            String owner, int depth, int timeout) throws LockFailedException {
+        return _resourceLocks.sharedLock(transaction, path, owner, depth,
+                timeout);
+    }
+
+    public LockedObject getLockedObjectByID(ITransaction transaction, String id) {
+        return _resourceLocks.getLockedObjectByID(transaction, id);
+    }
+
+    public LockedObject getLockedObjectByPath(ITransaction transaction,
+            String path) {
+        return _resourceLocks.getLockedObjectByPath(transaction, path);
+    }
+
+    public LockedObject getTempLockedObjectByID(ITransaction transaction,
+            String id) {
+        return _resourceLocks.getTempLockedObjectByID(transaction, id);
+    }
+
+    public LockedObject getTempLockedObjectByPath(ITransaction transaction,
+            String path) {
+        return _resourceLocks.getTempLockedObjectByPath(transaction, path);
+    }
+
+}
@@ -21,7 +21,9 @@ import java.text.SimpleDateFormat;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.TimeZone;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -34,7 +36,9 @@ import net.sf.webdav.exceptions.LockFailedException;
 import net.sf.webdav.exceptions.WebdavException;
 import net.sf.webdav.locking.IResourceLocks;
 import net.sf.webdav.locking.LockedObject;
+import net.sf.webdav.spi.IChildListingWebdavStore;
 import net.sf.webdav.spi.ITransaction;
+import net.sf.webdav.spi.IWebdavStore;
 import net.sf.webdav.spi.WebdavRequest;
 import net.sf.webdav.spi.WebdavResponse;
 import net.sf.webdav.util.URLEncoder;
@@ -57,13 +61,21 @@ public abstract class AbstractMethod
     /**
      * Simple date format for the creation date ISO 8601 representation
      * (partial).
+     * 
+     * @deprecated shared across request threads, which SimpleDateFormat does
+     *             not support; use {@link net.sf.webdav.util.DateFormatter#formatIso8601(java.util.Date)}
      */
+    @Deprecated
     protected static final SimpleDateFormat CREATION_DATE_FORMAT = new SimpleDateFormat( "yyyy-MM-dd'T'HH:mm:ss'Z'" );
 
     /**
      * Simple date format for the last modified date. (RFC 822 updated by RFC
      * 1123)
+     * 
+     * @deprecated shared across request threads, which SimpleDateFormat does
+     *             not support; use {@link net.sf.webdav.util.DateFormatter#formatRfc1123(java.util.Date)}
      */
+    @Deprecated
     protected static final SimpleDateFormat LAST_MODIFIED_DATE_FORMAT = new SimpleDateFormat( "EEE, dd MMM yyyy HH:mm:ss z", Locale.US );
 
     static
@@ -187,6 +199,54 @@ public abstract class AbstractMethod
         return path;
     }
 
+    /**
+     * Joins a child name onto the path of its parent folder.
+     */
+    protected String getChildPath( final String folderPath, final String childName )
+    {
+        if ( folderPath.endsWith( "/" ) )
+        {
+            return folderPath + childName;
+        }
+        return folderPath + "/" + childName;
+    }
+
+    /**
+     * Lists the children of a folder along with their metadata, in one call
+     * if the store supports it and by looking up each child otherwise.
+     * Children that disappear while being listed are left out.
+     * 
+     * @return map from child name to StoredObject, never <code>null</code>
+     */
+    protected Map<String, StoredObject> getChildren( final IWebdavStore store, final ITransaction transaction, final String folderPath )
+        throws WebdavException
+    {
+        Map<String, StoredObject> children;
+        if ( store instanceof IChildListingWebdavStore )
+        {
+            children = ( (IChildListingWebdavStore) store ).getChildren( transaction, folderPath );
+        }
+        else
+        {
+            children = null;
+            final String[] names = store.getChildrenNames( transaction, folderPath );
+            if ( names != null )
+            {
+                children = new LinkedHashMap<String, StoredObject>();
+                for ( final String name : names )
+                {
+                    final StoredObject so = store.getStoredObject( transaction, getChildPath( folderPath, name ) );
+                    if ( so != null )
+                    {
+                        children.put( name, so );
+                    }
+                }
+            }
+        }
+
+        return children == null ? new LinkedHashMap<String, StoredObject>() : children;
+    }
+
     /**
      * Return JAXP document builder instance.
      */
@@ -245,7 +305,8 @@ public abstract class AbstractMethod
     }
 
     /**
-     * Get the ETag associated with a file.
+     * Get the ETag associated with a file. It is a strong one built from the
+     * content digest if the store provides one, and a weak one otherwise.
      * 
      * @param so
      *      StoredObject to get resourceLength, lastModified and a hashCode of
@@ -255,6 +316,12 @@ public abstract class AbstractMethod
     protected String getETag( final StoredObject so )
     {
 
+        // a digest of the content makes for a strong validator
+        if ( so != null && so.isResource() && so.getContentDigest() != null )
+        {
+            return "\"" + so.getContentDigest() + "\"";
+        }
+
         String resourceLength = "";
         String lastModified = "";
 
@@ -411,7 +478,8 @@ public abstract class AbstractMethod
         final HashMap<String, String> namespaces = new HashMap<String, String>();
         namespaces.put( "DAV:", "D" );
 
-        final XMLWriter generatedXML = new XMLWriter( namespaces );
+        final Writer writer = resp.getWriter();
+        final XMLWriter generatedXML = new XMLWriter( writer, namespaces, XMLWriter.DEFAULT_FLUSH_THRESHOLD );
         generatedXML.writeXMLHeader();
 
         generatedXML.writeElement( "DAV::multistatus", XMLWriter.OPENING );
@@ -427,22 +495,6 @@ public abstract class AbstractMethod
             generatedXML.writeElement( "DAV::response", XMLWriter.OPENING );
 
             generatedXML.writeElement( "DAV::href", XMLWriter.OPENING );
-            String toAppend = null;
-            if ( absoluteUri.endsWith( errorPath ) )
-            {
-                toAppend = absoluteUri;
-
-            }
-            else if ( absoluteUri.contains( errorPath ) )
-            {
-
-                final int endIndex = absoluteUri.indexOf( errorPath ) + errorPath.length();
-                toAppend = absoluteUri.substring( 0, endIndex );
-            }
-            if ( !toAppend.startsWith( "/" ) && !toAppend.startsWith( "http:" ) )
-            {
-                toAppend = "/" + toAppend;
-            }
             generatedXML.writeText( errorPath );
             generatedXML.writeElement( "DAV::href", XMLWriter.CLOSING );
             generatedXML.writeElement( "DAV::status", XMLWriter.OPENING );
@@ -455,8 +507,7 @@ public abstract class AbstractMethod
 
         generatedXML.writeElement( "DAV::multistatus", XMLWriter.CLOSING );
 
-        final Writer writer = resp.getWriter();
-        writer.write( generatedXML.toString() );
+        generatedXML.sendData();
         writer.close();
 
     }
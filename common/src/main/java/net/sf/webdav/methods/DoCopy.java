@@ -24,6 +24,7 @@ import static net.sf.webdav.WebdavStatus.SC_NOT_FOUND;
 
 import java.io.IOException;
 import java.util.Hashtable;
+import java.util.Map;
 
 import net.sf.webdav.StoredObject;
 import net.sf.webdav.WebdavStatus;
@@ -32,7 +33,8 @@ import net.sf.webdav.exceptions.LockFailedException;
 import net.sf.webdav.exceptions.ObjectAlreadyExistsException;
 import net.sf.webdav.exceptions.ObjectNotFoundException;
 import net.sf.webdav.exceptions.WebdavException;
-import net.sf.webdav.locking.ResourceLocks;
+import net.sf.webdav.locking.IResourceLocks;
+import net.sf.webdav.spi.ICopyingWebdavStore;
 import net.sf.webdav.spi.ITransaction;
 import net.sf.webdav.spi.IWebdavStore;
 import net.sf.webdav.spi.WebdavRequest;
@@ -47,13 +49,13 @@ public class DoCopy
 
     private final IWebdavStore _store;
 
-    private final ResourceLocks _resourceLocks;
+    private final IResourceLocks _resourceLocks;
 
     private final DoDelete _doDelete;
 
     private final boolean _readOnly;
 
-    public DoCopy( final IWebdavStore store, final ResourceLocks resourceLocks, final DoDelete doDelete, final boolean readOnly )
+    public DoCopy( final IWebdavStore store, final IResourceLocks resourceLocks, final DoDelete doDelete, final boolean readOnly )
     {
         _store = store;
         _resourceLocks = resourceLocks;
@@ -136,6 +138,38 @@ public class DoCopy
     public boolean copyResource( final ITransaction transaction, final WebdavRequest req, final WebdavResponse resp )
         throws WebdavException, IOException, LockFailedException
     {
+        return copyResource( transaction, req, resp, false );
+    }
+
+    /**
+     * Move a resource. Same as {@link #copyResource(ITransaction, WebdavRequest, WebdavResponse)},
+     * except that the source is moved by the store if it implements
+     * {@link ICopyingWebdavStore}, and otherwise deleted after copying.
+     * 
+     * @param transaction
+     *      indicates that the method is within the scope of a WebDAV
+     *      transaction
+     * @param req
+     *      Servlet request
+     * @param resp
+     *      Servlet response
+     * @return true if the move is successful
+     * @throws WebdavException
+     *      if an error in the underlying store occurs
+     * @throws IOException
+     *      when an error occurs while sending the response
+     * @throws LockFailedException
+     */
+    public boolean moveResource( final ITransaction transaction, final WebdavRequest req, final WebdavResponse resp )
+        throws WebdavException, IOException, LockFailedException
+    {
+        return copyResource( transaction, req, resp, true );
+    }
+
+    private boolean copyResource( final ITransaction transaction, final WebdavRequest req, final WebdavResponse resp,
+                                  final boolean move )
+        throws WebdavException, IOException, LockFailedException
+    {
 
         // Parsing destination header
         final String destinationPath = parseDestinationHeader( req, resp );
@@ -237,7 +271,14 @@ public class DoCopy
                     }
 
                 }
-                copy( transaction, path, destinationPath, errorList, req, resp );
+                if ( move )
+                {
+                    move( transaction, path, destinationPath, errorList, req, resp );
+                }
+                else
+                {
+                    copy( transaction, path, destinationPath, errorList, req, resp );
+                }
 
                 if ( !errorList.isEmpty() )
                 {
@@ -286,6 +327,13 @@ public class DoCopy
     {
 
         final StoredObject sourceSo = _store.getStoredObject( transaction, sourcePath );
+        if ( _store instanceof ICopyingWebdavStore
+            && ( sourceSo.isResource() || ( sourceSo.isFolder() && isInfiniteDepth( req ) ) )
+            && ( (ICopyingWebdavStore) _store ).copyObject( transaction, sourcePath, destinationPath ) )
+        {
+            return;
+        }
+
         if ( sourceSo.isResource() )
         {
             _store.createResource( transaction, destinationPath );
@@ -313,6 +361,48 @@ public class DoCopy
         }
     }
 
+    /**
+     * moves the specified resource(s) to the specified destination, through
+     * the store if it can, otherwise by copying and deleting the source.
+     * preconditions must be handled by the caller.
+     * 
+     * @param transaction
+     *      indicates that the method is within the scope of a WebDAV
+     *      transaction
+     * @param sourcePath
+     *      path of the resource to move
+     * @param destinationPath
+     *      path to move it to
+     * @param errorList
+     *      all errors that ocurred
+     * @param req
+     *      HttpServletRequest
+     * @param resp
+     *      HttpServletResponse
+     * @throws WebdavException
+     *      if an error in the underlying store occurs
+     * @throws IOException
+     */
+    private void move( final ITransaction transaction, final String sourcePath, final String destinationPath,
+                       final Hashtable<String, WebdavStatus> errorList, final WebdavRequest req, final WebdavResponse resp )
+        throws WebdavException, IOException
+    {
+        if ( _store instanceof ICopyingWebdavStore
+            && ( (ICopyingWebdavStore) _store ).moveObject( transaction, sourcePath, destinationPath ) )
+        {
+            return;
+        }
+
+        copy( transaction, sourcePath, destinationPath, errorList, req, resp );
+        _doDelete.deleteResource( transaction, sourcePath, errorList, req, resp );
+    }
+
+    private boolean isInfiniteDepth( final WebdavRequest req )
+    {
+        final String depth = req.getHeader( "Depth" );
+        return depth == null || !depth.equals( "0" );
+    }
+
     /**
      * helper method of copy() recursively copies the FOLDER at source path to
      * destination path
@@ -341,62 +431,51 @@ public class DoCopy
         final String destinationPath = getCleanPath( destPath );
 
         _store.createFolder( transaction, destinationPath );
-        boolean infiniteDepth = true;
-        final String depth = req.getHeader( "Depth" );
-        if ( depth != null )
-        {
-            if ( depth.equals( "0" ) )
-            {
-                infiniteDepth = false;
-            }
-        }
-        if ( infiniteDepth )
+        if ( isInfiniteDepth( req ) )
         {
-            String[] children = _store.getChildrenNames( transaction, sourcePath );
-            children = children == null ? new String[] {} : children;
-
-            StoredObject childSo;
-            for ( int i = children.length - 1; i >= 0; i-- )
+            final Map<String, StoredObject> children = getChildren( _store, transaction, sourcePath );
+            for ( final Map.Entry<String, StoredObject> child : children.entrySet() )
             {
-                children[i] = ensureLeadingSlash( children[i] );
+                final String childSourcePath = getChildPath( sourcePath, child.getKey() );
+                final String childDestinationPath = getChildPath( destinationPath, child.getKey() );
+                final StoredObject childSo = child.getValue();
 
                 try
                 {
-                    childSo = _store.getStoredObject( transaction, ( sourcePath + children[i] ) );
                     if ( childSo.isResource() )
                     {
-                        _store.createResource( transaction, destinationPath + children[i] );
+                        _store.createResource( transaction, childDestinationPath );
                         final long resourceLength =
-                            _store.setResourceContent( transaction, destinationPath + children[i],
-                                                       _store.getResourceContent( transaction, sourcePath + children[i] ), childSo.getResourceLength());
+                            _store.setResourceContent( transaction, childDestinationPath,
+                                                       _store.getResourceContent( transaction, childSourcePath ), childSo.getResourceLength());
 
                         if ( resourceLength != -1 )
                         {
-                            final StoredObject destinationSo = _store.getStoredObject( transaction, destinationPath + children[i] );
+                            final StoredObject destinationSo = _store.getStoredObject( transaction, childDestinationPath );
                             destinationSo.setResourceLength( resourceLength );
                         }
 
                     }
                     else
                     {
-                        copyFolder( transaction, sourcePath + children[i], destinationPath + children[i], errorList, req, resp );
+                        copyFolder( transaction, childSourcePath, childDestinationPath, errorList, req, resp );
                     }
                 }
                 catch ( final AccessDeniedException e )
                 {
-                    errorList.put( destinationPath + children[i], SC_FORBIDDEN );
+                    errorList.put( childDestinationPath, SC_FORBIDDEN );
                 }
                 catch ( final ObjectNotFoundException e )
                 {
-                    errorList.put( destinationPath + children[i], SC_NOT_FOUND );
+                    errorList.put( childDestinationPath, SC_NOT_FOUND );
                 }
                 catch ( final ObjectAlreadyExistsException e )
                 {
-                    errorList.put( destinationPath + children[i], SC_CONFLICT );
+                    errorList.put( childDestinationPath, SC_CONFLICT );
                 }
                 catch ( final WebdavException e )
                 {
-                    errorList.put( destinationPath + children[i], SC_INTERNAL_SERVER_ERROR );
+                    errorList.put( childDestinationPath, SC_INTERNAL_SERVER_ERROR );
                 }
             }
         }
@@ -22,6 +22,7 @@ import static net.sf.webdav.WebdavStatus.SC_NOT_FOUND;
 
 import java.io.IOException;
 import java.util.Hashtable;
+import java.util.Map;
 
 import net.sf.webdav.StoredObject;
 import net.sf.webdav.WebdavStatus;
@@ -30,7 +31,8 @@ import net.sf.webdav.exceptions.LockFailedException;
 import net.sf.webdav.exceptions.ObjectAlreadyExistsException;
 import net.sf.webdav.exceptions.ObjectNotFoundException;
 import net.sf.webdav.exceptions.WebdavException;
-import net.sf.webdav.locking.ResourceLocks;
+import net.sf.webdav.locking.IResourceLocks;
+import net.sf.webdav.spi.IBulkRemovingWebdavStore;
 import net.sf.webdav.spi.ITransaction;
 import net.sf.webdav.spi.IWebdavStore;
 import net.sf.webdav.spi.WebdavRequest;
@@ -44,11 +46,11 @@ public class DoDelete
 
     private final IWebdavStore _store;
 
-    private final ResourceLocks _resourceLocks;
+    private final IResourceLocks _resourceLocks;
 
     private final boolean _readOnly;
 
-    public DoDelete( final IWebdavStore store, final ResourceLocks resourceLocks, final boolean readOnly )
+    public DoDelete( final IWebdavStore store, final IResourceLocks resourceLocks, final boolean readOnly )
     {
         _store = store;
         _resourceLocks = resourceLocks;
@@ -165,8 +167,11 @@ public class DoDelete
                 {
                     if ( so.isFolder() )
                     {
-                        deleteFolder( transaction, path, errorList, req, resp );
-                        _store.removeObject( transaction, path );
+                        if ( !removeFolder( transaction, path, errorList ) )
+                        {
+                            deleteFolder( transaction, path, errorList, req, resp );
+                            _store.removeObject( transaction, path );
+                        }
                     }
                     else
                     {
@@ -211,43 +216,80 @@ public class DoDelete
         throws WebdavException
     {
 
-        String[] children = _store.getChildrenNames( transaction, path );
-        children = children == null ? new String[] {} : children;
-        StoredObject so = null;
-        for ( int i = children.length - 1; i >= 0; i-- )
+        final Map<String, StoredObject> children = getChildren( _store, transaction, path );
+        for ( final Map.Entry<String, StoredObject> child : children.entrySet() )
         {
-            children[i] = "/" + children[i];
+            final String childPath = getChildPath( path, child.getKey() );
             try
             {
-                so = _store.getStoredObject( transaction, path + children[i] );
-                if ( so.isResource() )
+                if ( child.getValue().isResource() )
                 {
-                    _store.removeObject( transaction, path + children[i] );
+                    _store.removeObject( transaction, childPath );
 
                 }
                 else
                 {
-                    deleteFolder( transaction, path + children[i], errorList, req, resp );
+                    deleteFolder( transaction, childPath, errorList, req, resp );
 
-                    _store.removeObject( transaction, path + children[i] );
+                    _store.removeObject( transaction, childPath );
 
                 }
             }
-            catch ( final AccessDeniedException e )
-            {
-                errorList.put( path + children[i], SC_FORBIDDEN );
-            }
-            catch ( final ObjectNotFoundException e )
-            {
-                errorList.put( path + children[i], SC_NOT_FOUND );
-            }
             catch ( final WebdavException e )
             {
-                errorList.put( path + children[i], SC_INTERNAL_SERVER_ERROR );
+                errorList.put( childPath, getErrorStatus( e ) );
             }
         }
-        so = null;
 
     }
 
+    /**
+     * helper method of deleteResource() that lets the store remove the folder
+     * and all of its contents at once, if it can
+     * 
+     * @param transaction
+     *      indicates that the method is within the scope of a WebDAV
+     *      transaction
+     * @param path
+     *      the folder to be deleted
+     * @param errorList
+     *      all errors that ocurred
+     * @return false if the store can't do this, and the folder must be walked
+     * @throws WebdavException
+     *      if an error in the underlying store occurs
+     */
+    private boolean removeFolder( final ITransaction transaction, final String path, final Hashtable<String, WebdavStatus> errorList )
+        throws WebdavException
+    {
+        if ( !( _store instanceof IBulkRemovingWebdavStore ) )
+        {
+            return false;
+        }
+
+        final Map<String, WebdavException> failures = ( (IBulkRemovingWebdavStore) _store ).removeFolder( transaction, path );
+        if ( failures == null )
+        {
+            return false;
+        }
+
+        for ( final Map.Entry<String, WebdavException> failure : failures.entrySet() )
+        {
+            errorList.put( failure.getKey(), getErrorStatus( failure.getValue() ) );
+        }
+        return true;
+    }
+
+    private WebdavStatus getErrorStatus( final WebdavException e )
+    {
+        if ( e instanceof AccessDeniedException )
+        {
+            return SC_FORBIDDEN;
+        }
+        if ( e instanceof ObjectNotFoundException )
+        {
+            return SC_NOT_FOUND;
+        }
+        return SC_INTERNAL_SERVER_ERROR;
+    }
+
 }
@@ -18,21 +18,30 @@ package net.sf.webdav.methods;
 import static net.sf.webdav.WebdavStatus.SC_METHOD_NOT_ALLOWED;
 import static net.sf.webdav.WebdavStatus.SC_NOT_FOUND;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Locale;
+import java.util.Map;
 
 import net.sf.webdav.StoredObject;
 import net.sf.webdav.exceptions.WebdavException;
-import net.sf.webdav.locking.ResourceLocks;
+import net.sf.webdav.impl.CompressingWebdavResponse;
+import net.sf.webdav.locking.IResourceLocks;
+import net.sf.webdav.spi.IFileBackedWebdavStore;
 import net.sf.webdav.spi.IMimeTyper;
+import net.sf.webdav.spi.IRangedWebdavStore;
 import net.sf.webdav.spi.ITransaction;
 import net.sf.webdav.spi.IWebdavStore;
+import net.sf.webdav.spi.WebdavFileResponse;
 import net.sf.webdav.spi.WebdavRequest;
 import net.sf.webdav.spi.WebdavResponse;
+import net.sf.webdav.spi.WebdavStreamResponse;
+import net.sf.webdav.util.ByteRange;
+import net.sf.webdav.util.ReleasingInputStream;
 
 public class DoGet
     extends DoHead
@@ -40,15 +49,39 @@ public class DoGet
 
     private static org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger( DoGet.class );
 
-    public DoGet( final IWebdavStore store, final String dftIndexFile, final String insteadOf404, final ResourceLocks resourceLocks,
+    private final int _compressionThreshold;
+
+    public DoGet( final IWebdavStore store, final String dftIndexFile, final String insteadOf404, final IResourceLocks resourceLocks,
                   final IMimeTyper mimeTyper, final boolean contentLengthHeader )
     {
-        super( store, dftIndexFile, insteadOf404, resourceLocks, mimeTyper, contentLengthHeader );
+        this( store, dftIndexFile, insteadOf404, resourceLocks, mimeTyper, contentLengthHeader, -1 );
+    }
 
+    /**
+     * @param compressionThreshold
+     *      minimum size in bytes of an HTML folder listing to send compressed,
+     *      or a negative number to never compress it
+     */
+    public DoGet( final IWebdavStore store, final String dftIndexFile, final String insteadOf404, final IResourceLocks resourceLocks,
+                  final IMimeTyper mimeTyper, final boolean contentLengthHeader, final int compressionThreshold )
+    {
+        super( store, dftIndexFile, insteadOf404, resourceLocks, mimeTyper, contentLengthHeader );
+        _compressionThreshold = compressionThreshold;
     }
 
     @Override
     protected void doBody( final ITransaction transaction, final WebdavResponse resp, final String path )
+    {
+        doBody( transaction, resp, path, null );
+    }
+
+    /**
+     * Files handed to a {@link WebdavFileResponse} and content handed to a
+     * {@link WebdavStreamResponse} keep the read lock until the response is
+     * done with them.
+     */
+    @Override
+    protected boolean doBody( final ITransaction transaction, final WebdavResponse resp, final String path, final Runnable release )
     {
 
         try
@@ -59,8 +92,17 @@ public class DoGet
                 final String methodsAllowed = DeterminableMethod.determineMethodsAllowed( so );
                 resp.addHeader( "Allow", methodsAllowed );
                 resp.sendError( SC_METHOD_NOT_ALLOWED );
-                return;
+                return false;
+            }
+            if ( sendFile( transaction, resp, path, 0, so.getResourceLength(), release ) )
+            {
+                return release != null;
+            }
+            if ( sendStream( transaction, resp, path, so.getResourceLength(), release ) )
+            {
+                return release != null;
             }
+
             final OutputStream out = resp.getOutputStream();
             final InputStream in = _store.getResourceContent( transaction, path );
             try
@@ -100,6 +142,193 @@ public class DoGet
         {
             LOG.trace( e.toString() );
         }
+        return false;
+    }
+
+    @Override
+    protected void doRangeBody( final ITransaction transaction, final WebdavResponse resp, final String path, final ByteRange[] ranges,
+                                final String contentType )
+        throws IOException, WebdavException
+    {
+        doRangeBody( transaction, resp, path, ranges, contentType, null );
+    }
+
+    @Override
+    protected boolean doRangeBody( final ITransaction transaction, final WebdavResponse resp, final String path, final ByteRange[] ranges,
+                                   final String contentType, final Runnable release )
+        throws IOException, WebdavException
+    {
+        if ( ranges.length == 1 && sendFile( transaction, resp, path, ranges[0].getStart(), ranges[0].getRangeLength(), release ) )
+        {
+            return release != null;
+        }
+
+        final OutputStream out = resp.getOutputStream();
+        try
+        {
+            if ( ranges.length == 1 )
+            {
+                copyRange( transaction, path, ranges[0], out );
+            }
+            else
+            {
+                for ( final ByteRange range : ranges )
+                {
+                    final StringBuilder partHeader = new StringBuilder();
+                    partHeader.append( "\r\n--" )
+                              .append( MIME_SEPARATION )
+                              .append( "\r\n" );
+                    if ( contentType != null )
+                    {
+                        partHeader.append( "Content-Type: " )
+                                  .append( contentType )
+                                  .append( "\r\n" );
+                    }
+                    partHeader.append( "Content-Range: " )
+                              .append( range.toContentRange() )
+                              .append( "\r\n\r\n" );
+                    out.write( partHeader.toString()
+                                         .getBytes( "ISO-8859-1" ) );
+
+                    copyRange( transaction, path, range, out );
+                }
+                out.write( ( "\r\n--" + MIME_SEPARATION + "--\r\n" ).getBytes( "ISO-8859-1" ) );
+            }
+        }
+        finally
+        {
+            try
+            {
+                out.flush();
+                out.close();
+            }
+            catch ( final Exception e )
+            {
+                LOG.warn( "Flushing OutputStream causes Exception!\n" + e.toString() );
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lets the response write the resource's file, or a slice of it, directly,
+     * if the store keeps the resource in a local file and the response knows
+     * how to send one. <code>release</code>, if given, is run when the
+     * response no longer reads the file.
+     * 
+     * @return true if the response took over the body
+     */
+    private boolean sendFile( final ITransaction transaction, final WebdavResponse resp, final String path, final long offset, final long length,
+                              final Runnable release )
+        throws IOException, WebdavException
+    {
+        if ( !( _store instanceof IFileBackedWebdavStore ) || !( resp instanceof WebdavFileResponse ) )
+        {
+            return false;
+        }
+
+        final File file = ( (IFileBackedWebdavStore) _store ).getResourceFile( transaction, path );
+        if ( file == null )
+        {
+            return false;
+        }
+
+        return ( (WebdavFileResponse) resp ).sendFile( file, offset, length, release );
+    }
+
+    /**
+     * Hands the resource's content to the response to send in the background,
+     * if the response can. <code>release</code>, if given, is run when the
+     * response closes the content.
+     * 
+     * @return true if the response took over the content
+     */
+    private boolean sendStream( final ITransaction transaction, final WebdavResponse resp, final String path, final long length,
+                                final Runnable release )
+        throws IOException, WebdavException
+    {
+        if ( !( resp instanceof WebdavStreamResponse ) )
+        {
+            return false;
+        }
+
+        final InputStream content = _store.getResourceContent( transaction, path );
+        final InputStream in = release == null ? content : new ReleasingInputStream( content, release );
+        boolean sent = false;
+        try
+        {
+            sent = ( (WebdavStreamResponse) resp ).sendStream( in, length );
+        }
+        finally
+        {
+            if ( !sent )
+            {
+                content.close();
+            }
+        }
+        return sent;
+    }
+
+    /**
+     * Writes the bytes of a single range of the resource to the given stream.
+     * Stores implementing {@link IRangedWebdavStore} are asked for the range
+     * directly, any other store has its content skipped up to the start of
+     * the range.
+     */
+    private void copyRange( final ITransaction transaction, final String path, final ByteRange range, final OutputStream out )
+        throws IOException, WebdavException
+    {
+        final long offset = range.getStart();
+        long remaining = range.getRangeLength();
+
+        InputStream in;
+        if ( _store instanceof IRangedWebdavStore )
+        {
+            in = ( (IRangedWebdavStore) _store ).getResourceContent( transaction, path, offset, remaining );
+        }
+        else
+        {
+            in = _store.getResourceContent( transaction, path );
+            long toSkip = offset;
+            while ( toSkip > 0 )
+            {
+                final long skipped = in.skip( toSkip );
+                if ( skipped > 0 )
+                {
+                    toSkip -= skipped;
+                }
+                else if ( in.read() == -1 )
+                {
+                    break;
+                }
+                else
+                {
+                    toSkip--;
+                }
+            }
+        }
+
+        try
+        {
+            final byte[] copyBuffer = new byte[(int) Math.min( BUF_SIZE, remaining )];
+            int read = -1;
+            while ( remaining > 0 && ( read = in.read( copyBuffer, 0, (int) Math.min( copyBuffer.length, remaining ) ) ) != -1 )
+            {
+                out.write( copyBuffer, 0, read );
+                remaining -= read;
+            }
+        }
+        finally
+        {
+            try
+            {
+                in.close();
+            }
+            catch ( final Exception e )
+            {
+                LOG.warn( "Closing InputStream causes Exception!\n" + e.toString() );
+            }
+        }
     }
 
     @Override
@@ -130,9 +359,9 @@ public class DoGet
                 final DateFormat shortDF = getDateTimeFormat( req.getLocale() );
                 resp.setContentType( "text/html" );
                 resp.setCharacterEncoding( "UTF8" );
-                final OutputStream out = resp.getOutputStream();
-                String[] children = _store.getChildrenNames( transaction, path );
-                children = children == null ? new String[] {} : children;
+                final CompressingWebdavResponse compressed = CompressingWebdavResponse.negotiate( req, resp, _compressionThreshold );
+                final OutputStream out = ( compressed == null ? resp : compressed ).getOutputStream();
+                final Map<String, StoredObject> children = getChildren( _store, transaction, path );
 
                 // FIXME Use a content template for this!!
                 final StringBuilder childrenTemp = new StringBuilder();
@@ -148,8 +377,10 @@ public class DoGet
                 childrenTemp.append( "<tr>" );
                 childrenTemp.append( "<td colspan=\"4\"><a href=\"../\">Parent</a></td></tr>" );
                 boolean isEven = false;
-                for ( final String child : children )
+                for ( final Map.Entry<String, StoredObject> entry : children.entrySet() )
                 {
+                    final String child = entry.getKey();
+                    final StoredObject obj = entry.getValue();
                     isEven = !isEven;
                     childrenTemp.append( "<tr class=\"" );
                     childrenTemp.append( isEven ? "even" : "odd" );
@@ -157,7 +388,6 @@ public class DoGet
                     childrenTemp.append( "<td>" );
                     childrenTemp.append( "<a href=\"" );
                     childrenTemp.append( child );
-                    final StoredObject obj = _store.getStoredObject( transaction, path + "/" + child );
                     if ( obj.isFolder() )
                     {
                         childrenTemp.append( "/" );
@@ -202,6 +432,10 @@ public class DoGet
                 childrenTemp.append( "</body></html>" );
                 out.write( childrenTemp.toString()
                                        .getBytes( "UTF-8" ) );
+                if ( compressed != null )
+                {
+                    compressed.finish();
+                }
             }
         }
     }
@@ -284,4 +518,5 @@ public class DoGet
     {
         return "";
     }
+
 }
@@ -17,20 +17,26 @@ package net.sf.webdav.methods;
 
 import static net.sf.webdav.WebdavStatus.SC_NOT_FOUND;
 import static net.sf.webdav.WebdavStatus.SC_NOT_MODIFIED;
+import static net.sf.webdav.WebdavStatus.SC_PARTIAL_CONTENT;
+import static net.sf.webdav.WebdavStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE;
 
 import java.io.IOException;
+import java.text.ParseException;
 
 import net.sf.webdav.StoredObject;
 import net.sf.webdav.WebdavStatus;
 import net.sf.webdav.exceptions.AccessDeniedException;
 import net.sf.webdav.exceptions.ObjectAlreadyExistsException;
 import net.sf.webdav.exceptions.WebdavException;
-import net.sf.webdav.locking.ResourceLocks;
+import net.sf.webdav.locking.IResourceLocks;
 import net.sf.webdav.spi.IMimeTyper;
 import net.sf.webdav.spi.ITransaction;
 import net.sf.webdav.spi.IWebdavStore;
 import net.sf.webdav.spi.WebdavRequest;
 import net.sf.webdav.spi.WebdavResponse;
+import net.sf.webdav.util.ByteRange;
+import net.sf.webdav.util.ContentDigest;
+import net.sf.webdav.util.DateFormatter;
 
 public class DoHead
     extends AbstractMethod
@@ -42,15 +48,25 @@ public class DoHead
 
     protected String _insteadOf404;
 
-    protected ResourceLocks _resourceLocks;
+    protected IResourceLocks _resourceLocks;
 
     protected IMimeTyper _mimeTyper;
 
     protected boolean _contentLength;
 
+    /**
+     * MIME multipart separation string for multi-range responses
+     */
+    protected static final String MIME_SEPARATION = "WEBDAV_MIME_BOUNDARY";
+
+    /**
+     * Returned by {@link #parseRange} when the whole resource is to be sent.
+     */
+    protected static final ByteRange[] FULL = new ByteRange[0];
+
     private static org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger( DoHead.class );
 
-    public DoHead( final IWebdavStore store, final String dftIndexFile, final String insteadOf404, final ResourceLocks resourceLocks,
+    public DoHead( final IWebdavStore store, final String dftIndexFile, final String insteadOf404, final IResourceLocks resourceLocks,
                    final IMimeTyper mimeTyper, final boolean contentLengthHeader )
     {
         _store = store;
@@ -112,6 +128,16 @@ public class DoHead
 
             if ( _resourceLocks.lock( transaction, path, tempLockOwner, false, 0, TEMP_TIMEOUT, TEMPORARY ) )
             {
+                final String lockedPath = path;
+                final Runnable release = new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        _resourceLocks.unlockTemporaryLockedObjects( transaction, lockedPath, tempLockOwner );
+                    }
+                };
+                boolean sending = false;
                 try
                 {
 
@@ -142,43 +168,75 @@ public class DoHead
 
                             final String eTag = getETag( so );
                             resp.addHeader( "ETag", eTag );
+                            resp.setHeader( "Accept-Ranges", "bytes" );
 
-                            final long resourceLength = so.getResourceLength();
-
-                            if ( _contentLength )
+                            final String digest = so.getContentDigest();
+                            if ( digest != null )
                             {
-                                if ( resourceLength > 0 )
-                                {
-                                    if ( resourceLength <= Integer.MAX_VALUE )
-                                    {
-                                        resp.setContentLength( (int) resourceLength );
-                                    }
-                                    else
-                                    {
-                                        resp.setHeader( "content-length", "" + resourceLength );
-                                        // is "content-length" the right header?
-                                        // is long a valid format?
-                                    }
-                                }
+                                resp.setHeader( "Digest", digest );
                             }
 
-                            final String mimeType = _mimeTyper.getMimeType( path );
-                            if ( mimeType != null )
+                            final long resourceLength = so.getResourceLength();
+
+                            final ByteRange[] ranges = parseRange( req, resp, so, eTag );
+                            if ( ranges == null )
                             {
-                                resp.setContentType( mimeType );
+                                // the range was not satisfiable, and the error has been sent
+                                return;
                             }
-                            else
+
+                            String contentType = _mimeTyper.getMimeType( path );
+                            if ( contentType == null )
                             {
                                 final int lastSlash = path.replace( '\\', '/' )
                                                           .lastIndexOf( '/' );
                                 final int lastDot = path.indexOf( ".", lastSlash );
                                 if ( lastDot == -1 )
                                 {
-                                    resp.setContentType( "text/html" );
+                                    contentType = "text/html";
+                                }
+                            }
+
+                            if ( ranges.length == 0 )
+                            {
+                                if ( _contentLength )
+                                {
+                                    setContentLength( resp, resourceLength );
+                                }
+
+                                final String contentMD5 = digest == null ? null : ContentDigest.getContentMD5( digest );
+                                if ( contentMD5 != null )
+                                {
+                                    resp.setHeader( "Content-MD5", contentMD5 );
+                                }
+
+                                if ( contentType != null )
+                                {
+                                    resp.setContentType( contentType );
                                 }
+
+                                sending = doBody( transaction, resp, path, release );
                             }
+                            else if ( ranges.length == 1 )
+                            {
+                                resp.setStatus( SC_PARTIAL_CONTENT );
+                                resp.setHeader( "Content-Range", ranges[0].toContentRange() );
+                                setContentLength( resp, ranges[0].getRangeLength() );
+
+                                if ( contentType != null )
+                                {
+                                    resp.setContentType( contentType );
+                                }
+
+                                sending = doRangeBody( transaction, resp, path, ranges, contentType, release );
+                            }
+                            else
+                            {
+                                resp.setStatus( SC_PARTIAL_CONTENT );
+                                resp.setContentType( "multipart/byteranges; boundary=" + MIME_SEPARATION );
 
-                            doBody( transaction, resp, path );
+                                sending = doRangeBody( transaction, resp, path, ranges, contentType, release );
+                            }
                         }
                     }
                     else
@@ -200,7 +258,10 @@ public class DoHead
                 }
                 finally
                 {
-                    _resourceLocks.unlockTemporaryLockedObjects( transaction, path, tempLockOwner );
+                    if ( !sending )
+                    {
+                        release.run();
+                    }
                 }
             }
             else
@@ -220,6 +281,97 @@ public class DoHead
 
     }
 
+    /**
+     * Parses the Range and If-Range headers of the request.
+     * 
+     * @param req
+     *      the request
+     * @param resp
+     *      the response, used to send a 416 if none of the ranges can be
+     *      satisfied
+     * @param so
+     *      the resource being read
+     * @param eTag
+     *      the current ETag of the resource
+     * @return the ranges to send, an empty array if the whole resource should
+     *  be sent, or <code>null</code> if an error has already been sent
+     */
+    protected ByteRange[] parseRange( final WebdavRequest req, final WebdavResponse resp, final StoredObject so, final String eTag )
+        throws IOException
+    {
+        final String rangeHeader = req.getHeader( "Range" );
+        if ( rangeHeader == null )
+        {
+            return FULL;
+        }
+
+        final String ifRange = req.getHeader( "If-Range" );
+        if ( ifRange != null )
+        {
+            if ( ifRange.indexOf( '"' ) != -1 )
+            {
+                // If-Range uses the strong comparison, which weak tags never pass
+                final String tag = ifRange.trim();
+                if ( tag.startsWith( "W/" ) || eTag.startsWith( "W/" ) || !tag.equals( eTag ) )
+                {
+                    return FULL;
+                }
+            }
+            else
+            {
+                try
+                {
+                    final long date = DateFormatter.parseRfc1123( ifRange.trim() )
+                                                   .getTime();
+                    // HTTP dates have a resolution of one second
+                    if ( so.getLastModified()
+                           .getTime() >= date + 1000 )
+                    {
+                        return FULL;
+                    }
+                }
+                catch ( final ParseException e )
+                {
+                    return FULL;
+                }
+            }
+        }
+
+        final long length = so.getResourceLength();
+        final ByteRange[] ranges = ByteRange.parse( rangeHeader, length );
+        if ( ranges == null )
+        {
+            // syntactically invalid or asking for too much, so the header is ignored
+            return FULL;
+        }
+
+        if ( ranges.length == 0 )
+        {
+            resp.setHeader( "Content-Range", "bytes */" + length );
+            resp.sendError( SC_REQUESTED_RANGE_NOT_SATISFIABLE );
+            return null;
+        }
+
+        return ranges;
+    }
+
+    protected void setContentLength( final WebdavResponse resp, final long length )
+    {
+        if ( length > 0 )
+        {
+            if ( length <= Integer.MAX_VALUE )
+            {
+                resp.setContentLength( (int) length );
+            }
+            else
+            {
+                resp.setHeader( "content-length", "" + length );
+                // is "content-length" the right header?
+                // is long a valid format?
+            }
+        }
+    }
+
     protected void folderBody( final ITransaction transaction, final String path, final WebdavResponse resp, final WebdavRequest req )
         throws IOException, WebdavException
     {
@@ -231,4 +383,46 @@ public class DoHead
     {
         // no body for HEAD
     }
+
+    /**
+     * Sends the body of a whole resource, which may still be going out when
+     * this returns.
+     * 
+     * @param release
+     *      releases the temporary read lock taken for the request
+     * @return true if the body is still being sent, in which case
+     *  <code>release</code> is run once it's done; false if the lock can be
+     *  released now
+     */
+    protected boolean doBody( final ITransaction transaction, final WebdavResponse resp, final String path, final Runnable release )
+        throws IOException, WebdavException
+    {
+        doBody( transaction, resp, path );
+        return false;
+    }
+
+    protected void doRangeBody( final ITransaction transaction, final WebdavResponse resp, final String path, final ByteRange[] ranges,
+                                final String contentType )
+        throws IOException, WebdavException
+    {
+        // no body for HEAD
+    }
+
+    /**
+     * Sends the body of a partial response, which may still be going out
+     * when this returns.
+     * 
+     * @param release
+     *      releases the temporary read lock taken for the request
+     * @return true if the body is still being sent, in which case
+     *  <code>release</code> is run once it's done; false if the lock can be
+     *  released now
+     */
+    protected boolean doRangeBody( final ITransaction transaction, final WebdavResponse resp, final String path, final ByteRange[] ranges,
+                                   final String contentType, final Runnable release )
+        throws IOException, WebdavException
+    {
+        doRangeBody( transaction, resp, path, ranges, contentType );
+        return false;
+    }
 }
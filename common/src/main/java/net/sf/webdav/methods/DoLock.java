@@ -27,8 +27,9 @@ import static net.sf.webdav.WebdavStatus.SC_PRECONDITION_FAILED;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.List;
 
-import javax.xml.parsers.DocumentBuilder;
+import javax.xml.stream.XMLStreamException;
 
 import net.sf.webdav.StoredObject;
 import net.sf.webdav.WebdavStatus;
@@ -40,16 +41,9 @@ import net.sf.webdav.spi.ITransaction;
 import net.sf.webdav.spi.IWebdavStore;
 import net.sf.webdav.spi.WebdavRequest;
 import net.sf.webdav.spi.WebdavResponse;
+import net.sf.webdav.util.XMLRequestReader;
 import net.sf.webdav.util.XMLWriter;
 
-import org.w3c.dom.DOMException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
-
 public class DoLock
     extends AbstractMethod
 {
@@ -390,155 +384,61 @@ public class DoLock
         throws WebdavException, IOException
     {
 
-        Node lockInfoNode = null;
-        DocumentBuilder documentBuilder = null;
-
-        documentBuilder = getDocumentBuilder();
+        final XMLRequestReader.LockInfo lockInfo;
         try
         {
-            final Document document = documentBuilder.parse( new InputSource( req.getInputStream() ) );
-
-            // Get the root element of the document
-            final Element rootElement = document.getDocumentElement();
+            lockInfo = XMLRequestReader.readLockInfo( req.getInputStream() );
+        }
+        catch ( final XMLStreamException e )
+        {
+            resp.sendError( SC_INTERNAL_SERVER_ERROR );
+            e.printStackTrace();
+            return false;
+        }
 
-            lockInfoNode = rootElement;
+        if ( lockInfo.hasUnexpectedContent() )
+        {
+            return false;
+        }
 
-            if ( lockInfoNode != null )
+        final List<String> scopes = lockInfo.getScopes();
+        if ( scopes == null || scopes.isEmpty() )
+        {
+            return false;
+        }
+        for ( final String scope : scopes )
+        {
+            if ( scope.endsWith( "exclusive" ) )
             {
-                NodeList childList = lockInfoNode.getChildNodes();
-                Node lockScopeNode = null;
-                Node lockTypeNode = null;
-                Node lockOwnerNode = null;
-
-                Node currentNode = null;
-                String nodeName = null;
-
-                for ( int i = 0; i < childList.getLength(); i++ )
-                {
-                    currentNode = childList.item( i );
-
-                    if ( currentNode.getNodeType() == Node.ELEMENT_NODE || currentNode.getNodeType() == Node.TEXT_NODE )
-                    {
-
-                        nodeName = currentNode.getNodeName();
-
-                        if ( nodeName.endsWith( "locktype" ) )
-                        {
-                            lockTypeNode = currentNode;
-                        }
-                        if ( nodeName.endsWith( "lockscope" ) )
-                        {
-                            lockScopeNode = currentNode;
-                        }
-                        if ( nodeName.endsWith( "owner" ) )
-                        {
-                            lockOwnerNode = currentNode;
-                        }
-                    }
-                    else
-                    {
-                        return false;
-                    }
-                }
-
-                if ( lockScopeNode != null )
-                {
-                    String scope = null;
-                    childList = lockScopeNode.getChildNodes();
-                    for ( int i = 0; i < childList.getLength(); i++ )
-                    {
-                        currentNode = childList.item( i );
-
-                        if ( currentNode.getNodeType() == Node.ELEMENT_NODE )
-                        {
-                            scope = currentNode.getNodeName();
-
-                            if ( scope.endsWith( "exclusive" ) )
-                            {
-                                _exclusive = true;
-                            }
-                            else if ( scope.equals( "shared" ) )
-                            {
-                                _exclusive = false;
-                            }
-                        }
-                    }
-                    if ( scope == null )
-                    {
-                        return false;
-                    }
-
-                }
-                else
-                {
-                    return false;
-                }
-
-                if ( lockTypeNode != null )
-                {
-                    childList = lockTypeNode.getChildNodes();
-                    for ( int i = 0; i < childList.getLength(); i++ )
-                    {
-                        currentNode = childList.item( i );
-
-                        if ( currentNode.getNodeType() == Node.ELEMENT_NODE )
-                        {
-                            _type = currentNode.getNodeName();
-
-                            if ( _type.endsWith( "write" ) )
-                            {
-                                _type = "write";
-                            }
-                            else if ( _type.equals( "read" ) )
-                            {
-                                _type = "read";
-                            }
-                        }
-                    }
-                    if ( _type == null )
-                    {
-                        return false;
-                    }
-                }
-                else
-                {
-                    return false;
-                }
-
-                if ( lockOwnerNode != null )
-                {
-                    childList = lockOwnerNode.getChildNodes();
-                    for ( int i = 0; i < childList.getLength(); i++ )
-                    {
-                        currentNode = childList.item( i );
-
-                        if ( currentNode.getNodeType() == Node.ELEMENT_NODE || currentNode.getNodeType() == Node.TEXT_NODE )
-                        {
-                            _lockOwner = currentNode.getTextContent();
-                        }
-                    }
-                }
-                if ( _lockOwner == null )
-                {
-                    return false;
-                }
+                _exclusive = true;
             }
-            else
+            else if ( scope.equals( "shared" ) )
             {
-                return false;
+                _exclusive = false;
             }
-
         }
-        catch ( final DOMException e )
+
+        final List<String> types = lockInfo.getTypes();
+        if ( types == null || types.isEmpty() )
         {
-            resp.sendError( SC_INTERNAL_SERVER_ERROR );
-            e.printStackTrace();
             return false;
         }
-        catch ( final SAXException e )
+        for ( final String type : types )
+        {
+            _type = type;
+            if ( _type.endsWith( "write" ) )
+            {
+                _type = "write";
+            }
+            else if ( _type.equals( "read" ) )
+            {
+                _type = "read";
+            }
+        }
+
+        _lockOwner = lockInfo.getOwner();
+        if ( _lockOwner == null )
         {
-            resp.sendError( SC_INTERNAL_SERVER_ERROR );
-            e.printStackTrace();
             return false;
         }
 
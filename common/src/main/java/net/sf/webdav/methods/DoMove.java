@@ -23,7 +23,7 @@ import net.sf.webdav.exceptions.AccessDeniedException;
 import net.sf.webdav.exceptions.LockFailedException;
 import net.sf.webdav.exceptions.ObjectAlreadyExistsException;
 import net.sf.webdav.exceptions.WebdavException;
-import net.sf.webdav.locking.ResourceLocks;
+import net.sf.webdav.locking.IResourceLocks;
 import net.sf.webdav.spi.ITransaction;
 import net.sf.webdav.spi.WebdavRequest;
 import net.sf.webdav.spi.WebdavResponse;
@@ -34,18 +34,15 @@ public class DoMove
 
     private static org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger( DoMove.class );
 
-    private final ResourceLocks _resourceLocks;
-
-    private final DoDelete _doDelete;
+    private final IResourceLocks _resourceLocks;
 
     private final DoCopy _doCopy;
 
     private final boolean _readOnly;
 
-    public DoMove( final ResourceLocks resourceLocks, final DoDelete doDelete, final DoCopy doCopy, final boolean readOnly )
+    public DoMove( final IResourceLocks resourceLocks, final DoCopy doCopy, final boolean readOnly )
     {
         _resourceLocks = resourceLocks;
-        _doDelete = doDelete;
         _doCopy = doCopy;
         _readOnly = readOnly;
     }
@@ -91,16 +88,7 @@ public class DoMove
                 try
                 {
 
-                    if ( _doCopy.copyResource( transaction, req, resp ) )
-                    {
-
-                        errorList = new Hashtable<String, WebdavStatus>();
-                        _doDelete.deleteResource( transaction, sourcePath, errorList, req, resp );
-                        if ( !errorList.isEmpty() )
-                        {
-                            sendReport( req, resp, errorList );
-                        }
-                    }
+                    _doCopy.moveResource( transaction, req, resp );
 
                 }
                 catch ( final AccessDeniedException e )
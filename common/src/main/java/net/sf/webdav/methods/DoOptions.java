@@ -22,7 +22,7 @@ import net.sf.webdav.WebdavStatus;
 import net.sf.webdav.exceptions.AccessDeniedException;
 import net.sf.webdav.exceptions.LockFailedException;
 import net.sf.webdav.exceptions.WebdavException;
-import net.sf.webdav.locking.ResourceLocks;
+import net.sf.webdav.locking.IResourceLocks;
 import net.sf.webdav.spi.ITransaction;
 import net.sf.webdav.spi.IWebdavStore;
 import net.sf.webdav.spi.WebdavRequest;
@@ -34,9 +34,9 @@ public class DoOptions extends DeterminableMethod {
             .getLogger(DoOptions.class);
 
     private IWebdavStore _store;
-    private ResourceLocks _resourceLocks;
+    private IResourceLocks _resourceLocks;
 
-    public DoOptions(IWebdavStore store, ResourceLocks resLocks) {
+    public DoOptions(IWebdavStore store, IResourceLocks resLocks) {
         _store = store;
         _resourceLocks = resLocks;
     }
@@ -28,29 +28,26 @@ import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
-
-import javax.xml.parsers.DocumentBuilder;
+import java.util.Map;
 
 import net.sf.webdav.StoredObject;
 import net.sf.webdav.WebdavStatus;
 import net.sf.webdav.exceptions.AccessDeniedException;
 import net.sf.webdav.exceptions.LockFailedException;
 import net.sf.webdav.exceptions.WebdavException;
+import net.sf.webdav.impl.CompressingWebdavResponse;
+import net.sf.webdav.locking.IResourceLocks;
 import net.sf.webdav.locking.LockedObject;
-import net.sf.webdav.locking.ResourceLocks;
 import net.sf.webdav.spi.IMimeTyper;
 import net.sf.webdav.spi.ITransaction;
 import net.sf.webdav.spi.IWebdavStore;
 import net.sf.webdav.spi.WebdavRequest;
 import net.sf.webdav.spi.WebdavResponse;
-import net.sf.webdav.util.XMLHelper;
+import net.sf.webdav.util.DateFormatter;
+import net.sf.webdav.util.UTF8XMLWriter;
+import net.sf.webdav.util.XMLRequestReader;
 import net.sf.webdav.util.XMLWriter;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.xml.sax.InputSource;
-
 public class DoPropfind
     extends AbstractMethod
 {
@@ -74,17 +71,30 @@ public class DoPropfind
 
     private final IWebdavStore _store;
 
-    private final ResourceLocks _resourceLocks;
+    private final IResourceLocks _resourceLocks;
 
     private final IMimeTyper _mimeTyper;
 
+    private final int _compressionThreshold;
+
     private int _depth;
 
-    public DoPropfind( final IWebdavStore store, final ResourceLocks resLocks, final IMimeTyper mimeTyper )
+    public DoPropfind( final IWebdavStore store, final IResourceLocks resLocks, final IMimeTyper mimeTyper )
+    {
+        this( store, resLocks, mimeTyper, -1 );
+    }
+
+    /**
+     * @param compressionThreshold
+     *      minimum size in bytes of a multistatus document to send
+     *      compressed, or a negative number to never compress it
+     */
+    public DoPropfind( final IWebdavStore store, final IResourceLocks resLocks, final IMimeTyper mimeTyper, final int compressionThreshold )
     {
         _store = store;
         _resourceLocks = resLocks;
         _mimeTyper = mimeTyper;
+        _compressionThreshold = compressionThreshold;
     }
 
     @Override
@@ -103,6 +113,7 @@ public class DoPropfind
         {
 
             StoredObject so = null;
+            XMLWriter generatedXML = null;
             try
             {
                 so = _store.getStoredObject( transaction, path );
@@ -117,28 +128,23 @@ public class DoPropfind
                 path = getCleanPath( getRelativePath( req ) );
 
                 int propertyFindType = FIND_ALL_PROP;
-                Node propNode = null;
+                XMLRequestReader.Propfind propfind = null;
 
                 // Windows 7 does a propfind with content length 0
                 if ( req.getContentLength() > 0 )
                 {
-                    final DocumentBuilder documentBuilder = getDocumentBuilder();
                     try
                     {
-                        final Document document = documentBuilder.parse( new InputSource( req.getInputStream() ) );
-                        // Get the root element of the document
-                        final Element rootElement = document.getDocumentElement();
-
-                        propNode = XMLHelper.findSubElement( rootElement, "prop" );
-                        if ( propNode != null )
+                        propfind = XMLRequestReader.readPropfind( req.getInputStream() );
+                        if ( propfind.getProperties() != null )
                         {
                             propertyFindType = FIND_BY_PROPERTY;
                         }
-                        else if ( XMLHelper.findSubElement( rootElement, "propname" ) != null )
+                        else if ( propfind.isPropname() )
                         {
                             propertyFindType = FIND_PROPERTY_NAMES;
                         }
-                        else if ( XMLHelper.findSubElement( rootElement, "allprop" ) != null )
+                        else if ( propfind.isAllprop() )
                         {
                             propertyFindType = FIND_ALL_PROP;
                         }
@@ -161,37 +167,43 @@ public class DoPropfind
                 if ( propertyFindType == FIND_BY_PROPERTY )
                 {
                     propertyFindType = 0;
-                    properties = XMLHelper.getPropertiesFromXML( propNode );
+                    properties = propfind.getProperties();
                 }
 
                 resp.setStatus( SC_MULTI_STATUS );
                 resp.setContentType( "text/xml; charset=UTF-8" );
 
-                // Create multistatus object
-                final XMLWriter generatedXML = new XMLWriter( resp.getWriter(), namespaces );
+                // Create multistatus object, streaming responses out as they are generated
+                final CompressingWebdavResponse compressed = CompressingWebdavResponse.negotiate( req, resp, _compressionThreshold );
+                generatedXML = new UTF8XMLWriter( ( compressed == null ? resp : compressed ).getOutputStream(), namespaces,
+                                                  XMLWriter.DEFAULT_FLUSH_THRESHOLD );
                 generatedXML.writeXMLHeader();
                 generatedXML.writeElement( "DAV::multistatus", XMLWriter.OPENING );
                 if ( _depth == 0 )
                 {
-                    parseProperties( transaction, req, generatedXML, path, propertyFindType, properties, _mimeTyper.getMimeType( path ) );
+                    parseProperties( transaction, req, generatedXML, path, so, propertyFindType, properties, _mimeTyper.getMimeType( path ) );
                 }
                 else
                 {
-                    recursiveParseProperties( transaction, path, req, generatedXML, propertyFindType, properties, _depth,
+                    recursiveParseProperties( transaction, path, so, req, generatedXML, propertyFindType, properties, _depth,
                                               _mimeTyper.getMimeType( path ) );
                 }
                 generatedXML.writeElement( "DAV::multistatus", XMLWriter.CLOSING );
 
                 generatedXML.sendData();
+                if ( compressed != null )
+                {
+                    compressed.finish();
+                }
             }
             catch ( final AccessDeniedException e )
             {
-                resp.sendError( SC_FORBIDDEN );
+                sendError( resp, generatedXML, SC_FORBIDDEN, e );
             }
             catch ( final WebdavException e )
             {
                 LOG.warn( "Sending INTERNAL error!" );
-                resp.sendError( SC_INTERNAL_SERVER_ERROR );
+                sendError( resp, generatedXML, SC_INTERNAL_SERVER_ERROR, e );
             }
             finally
             {
@@ -206,11 +218,31 @@ public class DoPropfind
         }
     }
 
+    /**
+     * Sends an error status, unless part of the multistatus document has
+     * already been streamed to the client. In that case the status can't be
+     * changed anymore, and the document is left truncated.
+     */
+    private void sendError( final WebdavResponse resp, final XMLWriter generatedXML, final WebdavStatus status, final WebdavException e )
+        throws IOException
+    {
+        if ( generatedXML != null && generatedXML.isDataSent() )
+        {
+            LOG.error( "PROPFIND failed after the response was committed; cannot send " + status, e );
+        }
+        else
+        {
+            resp.sendError( status );
+        }
+    }
+
     /**
      * goes recursive through all folders. used by propfind
      * 
      * @param currentPath
      *      the current path
+     * @param so
+     *      the StoredObject at the current path
      * @param req
      *      HttpServletRequest
      * @param generatedXML
@@ -221,30 +253,28 @@ public class DoPropfind
      * @throws IOException
      *      if an error in the underlying store occurs
      */
-    private void recursiveParseProperties( final ITransaction transaction, final String currentPath, final WebdavRequest req,
+    private void recursiveParseProperties( final ITransaction transaction, final String currentPath, final StoredObject so,
+                                           final WebdavRequest req,
                                            final XMLWriter generatedXML, final int propertyFindType, final List<String> properties, final int depth,
                                            final String mimeType )
         throws WebdavException
     {
 
-        parseProperties( transaction, req, generatedXML, currentPath, propertyFindType, properties, mimeType );
+        parseProperties( transaction, req, generatedXML, currentPath, so, propertyFindType, properties, mimeType );
 
-        if ( depth > 0 )
+        // once the client is gone, walking the rest of the tree is wasted work
+        if ( depth > 0 && so.isFolder() && !generatedXML.hasWriteError() )
         {
-            // no need to get name if depth is already zero
-            String[] names = _store.getChildrenNames( transaction, currentPath );
-            names = names == null ? new String[] {} : names;
-            String newPath = null;
-
-            for ( final String name : names )
+            // no need to get the children if depth is already zero
+            final Map<String, StoredObject> children = getChildren( _store, transaction, currentPath );
+            for ( final Map.Entry<String, StoredObject> child : children.entrySet() )
             {
-                newPath = currentPath;
-                if ( !( newPath.endsWith( "/" ) ) )
+                if ( generatedXML.hasWriteError() )
                 {
-                    newPath += "/";
+                    break;
                 }
-                newPath += name;
-                recursiveParseProperties( transaction, newPath, req, generatedXML, propertyFindType, properties, depth - 1, mimeType );
+                recursiveParseProperties( transaction, getChildPath( currentPath, child.getKey() ), child.getValue(), req, generatedXML,
+                                          propertyFindType, properties, depth - 1, mimeType );
             }
         }
     }
@@ -258,6 +288,8 @@ public class DoPropfind
      *      XML response to the Propfind request
      * @param path
      *      Path of the current resource
+     * @param so
+     *      StoredObject of the current resource
      * @param type
      *      Propfind type
      * @param propertiesVector
@@ -265,15 +297,13 @@ public class DoPropfind
      *      contains those properties
      */
     private void parseProperties( final ITransaction transaction, final WebdavRequest req, final XMLWriter generatedXML, final String path,
-                                  final int type, final List<String> propertiesVector, final String mimeType )
+                                  StoredObject so, final int type, final List<String> propertiesVector, final String mimeType )
         throws WebdavException
     {
 
-        StoredObject so = _store.getStoredObject( transaction, path );
-
         final boolean isFolder = so.isFolder();
-        final String creationdate = CREATION_DATE_FORMAT.format( so.getCreationDate() );
-        final String lastModified = LAST_MODIFIED_DATE_FORMAT.format( so.getLastModified() );
+        final String creationdate = DateFormatter.formatIso8601( so.getCreationDate() );
+        final String lastModified = DateFormatter.formatRfc1123( so.getLastModified() );
         final String resourceLength = String.valueOf( so.getResourceLength() );
 
         // ResourceInfo resourceInfo = new ResourceInfo(path, resources);
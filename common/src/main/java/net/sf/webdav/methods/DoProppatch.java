@@ -29,27 +29,21 @@ import java.util.Hashtable;
 import java.util.List;
 import java.util.Vector;
 
-import javax.xml.parsers.DocumentBuilder;
-
 import net.sf.webdav.StoredObject;
 import net.sf.webdav.WebdavStatus;
 import net.sf.webdav.exceptions.AccessDeniedException;
 import net.sf.webdav.exceptions.LockFailedException;
 import net.sf.webdav.exceptions.WebdavException;
+import net.sf.webdav.locking.IResourceLocks;
 import net.sf.webdav.locking.LockedObject;
-import net.sf.webdav.locking.ResourceLocks;
 import net.sf.webdav.spi.ITransaction;
 import net.sf.webdav.spi.IWebdavStore;
 import net.sf.webdav.spi.WebdavRequest;
 import net.sf.webdav.spi.WebdavResponse;
-import net.sf.webdav.util.XMLHelper;
+import net.sf.webdav.util.UTF8XMLWriter;
+import net.sf.webdav.util.XMLRequestReader;
 import net.sf.webdav.util.XMLWriter;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.xml.sax.InputSource;
-
 public class DoProppatch
     extends AbstractMethod
 {
@@ -60,9 +54,9 @@ public class DoProppatch
 
     private final IWebdavStore _store;
 
-    private final ResourceLocks _resourceLocks;
+    private final IResourceLocks _resourceLocks;
 
-    public DoProppatch( final IWebdavStore store, final ResourceLocks resLocks, final boolean readOnly )
+    public DoProppatch( final IWebdavStore store, final IResourceLocks resLocks, final boolean readOnly )
     {
         _readOnly = readOnly;
         _store = store;
@@ -149,20 +143,13 @@ public class DoProppatch
 
                 path = getCleanPath( getRelativePath( req ) );
 
-                Node tosetNode = null;
-                Node toremoveNode = null;
-
                 if ( req.getContentLength() != 0 )
                 {
-                    final DocumentBuilder documentBuilder = getDocumentBuilder();
                     try
                     {
-                        final Document document = documentBuilder.parse( new InputSource( req.getInputStream() ) );
-                        // Get the root element of the document
-                        final Element rootElement = document.getDocumentElement();
-
-                        tosetNode = XMLHelper.findSubElement( XMLHelper.findSubElement( rootElement, "set" ), "prop" );
-                        toremoveNode = XMLHelper.findSubElement( XMLHelper.findSubElement( rootElement, "remove" ), "prop" );
+                        final XMLRequestReader.Proppatch proppatch = XMLRequestReader.readProppatch( req.getInputStream() );
+                        toset = proppatch.getToSet();
+                        toremove = proppatch.getToRemove();
                     }
                     catch ( final Exception e )
                     {
@@ -180,15 +167,13 @@ public class DoProppatch
                 final HashMap<String, String> namespaces = new HashMap<String, String>();
                 namespaces.put( "DAV:", "D" );
 
-                if ( tosetNode != null )
+                if ( toset != null )
                 {
-                    toset = XMLHelper.getPropertiesFromXML( tosetNode );
                     tochange.addAll( toset );
                 }
 
-                if ( toremoveNode != null )
+                if ( toremove != null )
                 {
-                    toremove = XMLHelper.getPropertiesFromXML( toremoveNode );
                     tochange.addAll( toremove );
                 }
 
@@ -196,7 +181,7 @@ public class DoProppatch
                 resp.setContentType( "text/xml; charset=UTF-8" );
 
                 // Create multistatus object
-                final XMLWriter generatedXML = new XMLWriter( resp.getWriter(), namespaces );
+                final XMLWriter generatedXML = new UTF8XMLWriter( resp.getOutputStream(), namespaces );
                 generatedXML.writeXMLHeader();
                 generatedXML.writeElement( "DAV::multistatus", XMLWriter.OPENING );
 
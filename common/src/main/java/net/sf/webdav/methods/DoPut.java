@@ -24,6 +24,8 @@ import static net.sf.webdav.WebdavStatus.SC_NOT_FOUND;
 import static net.sf.webdav.WebdavStatus.SC_NO_CONTENT;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
 import java.util.Hashtable;
 
 import net.sf.webdav.StoredObject;
@@ -33,10 +35,12 @@ import net.sf.webdav.exceptions.LockFailedException;
 import net.sf.webdav.exceptions.WebdavException;
 import net.sf.webdav.locking.IResourceLocks;
 import net.sf.webdav.locking.LockedObject;
+import net.sf.webdav.spi.IDigestingWebdavStore;
 import net.sf.webdav.spi.ITransaction;
 import net.sf.webdav.spi.IWebdavStore;
 import net.sf.webdav.spi.WebdavRequest;
 import net.sf.webdav.spi.WebdavResponse;
+import net.sf.webdav.util.ContentDigest;
 
 public class DoPut
     extends AbstractMethod
@@ -52,14 +56,33 @@ public class DoPut
 
     private final boolean _lazyFolderCreationOnPut;
 
+    private final String _digestAlgorithm;
+
     private String _userAgent;
 
     public DoPut( final IWebdavStore store, final IResourceLocks resLocks, final boolean readOnly, final boolean lazyFolderCreationOnPut )
     {
+        this( store, resLocks, readOnly, lazyFolderCreationOnPut, null );
+    }
+
+    /**
+     * @param digestAlgorithm
+     *      algorithm of the content digest to compute while storing the body
+     *      and to hand to an {@link IDigestingWebdavStore}, or
+     *      <code>null</code> for none
+     */
+    public DoPut( final IWebdavStore store, final IResourceLocks resLocks, final boolean readOnly, final boolean lazyFolderCreationOnPut,
+                  final String digestAlgorithm )
+    {
+        if ( digestAlgorithm != null )
+        {
+            ContentDigest.checkAlgorithm( digestAlgorithm );
+        }
         _store = store;
         _resourceLocks = resLocks;
         _readOnly = readOnly;
         _lazyFolderCreationOnPut = lazyFolderCreationOnPut;
+        _digestAlgorithm = digestAlgorithm;
     }
 
     @Override
@@ -175,8 +198,22 @@ public class DoPut
                     // User-Agent workarounds
                     doUserAgentWorkaround( resp );
 
-                    // setting resourceContent
-                    final long resourceLength = _store.setResourceContent( transaction, path, req.getInputStream(), req.getContentLength());
+                    // setting resourceContent, digesting it on the way if the store keeps digests
+                    InputStream content = req.getInputStream();
+                    DigestInputStream digesting = null;
+                    if ( _digestAlgorithm != null && _store instanceof IDigestingWebdavStore )
+                    {
+                        digesting = ContentDigest.digesting( content, _digestAlgorithm );
+                        content = digesting;
+                    }
+
+                    final long resourceLength = _store.setResourceContent( transaction, path, content, req.getContentLength());
+
+                    if ( digesting != null )
+                    {
+                        final String digest = ContentDigest.toInstanceDigest( digesting.getMessageDigest() );
+                        ( (IDigestingWebdavStore) _store ).setResourceDigest( transaction, path, digest );
+                    }
 
                     so = _store.getStoredObject( transaction, path );
                     if ( resourceLength != -1 )
@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.spi;
+
+import java.io.InputStream;
+import java.util.Map;
+
+import net.sf.webdav.StoredObject;
+
+/**
+ * Non-blocking counterpart of the data access methods of
+ * {@link IWebdavStore}, for callers that can't afford to hold a thread while
+ * a store round-trip is in progress. Each method returns right away and
+ * reports to its callback once the operation is done.
+ * <p/>
+ * Transactions are not part of this interface: they are begun, committed
+ * and rolled back through the {@link IWebdavStore} the async store works
+ * on, and passed in here.
+ */
+public interface IAsyncWebdavStore
+{
+
+    /**
+     * @see IWebdavStore#getStoredObject(ITransaction, String)
+     */
+    void getStoredObject( ITransaction transaction, String uri, IWebdavCallback<StoredObject> callback );
+
+    /**
+     * @see IWebdavStore#getChildrenNames(ITransaction, String)
+     */
+    void getChildrenNames( ITransaction transaction, String folderUri, IWebdavCallback<String[]> callback );
+
+    /**
+     * Lists the children of a folder along with their metadata, in one call
+     * if the underlying store is an {@link IChildListingWebdavStore} and by
+     * looking up each child otherwise. Children that disappear while being
+     * listed are left out; the result is <code>null</code> if the folder
+     * doesn't exist.
+     * 
+     * @see IChildListingWebdavStore#getChildren(ITransaction, String)
+     */
+    void getChildren( ITransaction transaction, String folderUri, IWebdavCallback<Map<String, StoredObject>> callback );
+
+    /**
+     * Opens the content of a resource. Reading the stream may still block
+     * until its data arrives.
+     * 
+     * @see IWebdavStore#getResourceContent(ITransaction, String)
+     */
+    void getResourceContent( ITransaction transaction, String resourceUri, IWebdavCallback<InputStream> callback );
+
+    /**
+     * Stores the content of a resource. <code>content</code> is read on a
+     * thread of the store, so it must not depend on the calling thread to be
+     * filled.
+     * 
+     * @see IWebdavStore#setResourceContent(ITransaction, String, InputStream, long)
+     */
+    void setResourceContent( ITransaction transaction, String resourceUri, InputStream content, long contentLength,
+                             IWebdavCallback<Long> callback );
+
+    /**
+     * @see IWebdavStore#removeObject(ITransaction, String)
+     */
+    void removeObject( ITransaction transaction, String uri, IWebdavCallback<Void> callback );
+
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.spi;
+
+import java.util.Map;
+
+import net.sf.webdav.exceptions.WebdavException;
+
+/**
+ * Optional extension of {@link IWebdavStore} for stores that can remove a
+ * whole tree more cheaply than one
+ * {@link IWebdavStore#removeObject(ITransaction, String)} call per object.
+ * DELETE on a folder uses this when the store implements it, instead of
+ * walking the folder.
+ */
+public interface IBulkRemovingWebdavStore
+    extends IWebdavStore
+{
+
+    /**
+     * Removes the folder specified by <code>folderUri</code> and everything
+     * below it. Objects that can't be removed are reported, and don't stop
+     * the removal of the others.
+     * 
+     * @param transaction
+     *      indicates that the method is within the scope of a WebDAV
+     *      transaction
+     * @param folderUri
+     *      URI of the folder
+     * @return the URIs of the objects that could not be removed, mapped to
+     *  the reason, so an empty map if everything was removed; or
+     *  <code>null</code> if the store can't remove this folder in bulk,
+     *  without having changed anything
+     * @throws WebdavException
+     *      if something goes wrong on the store level
+     */
+    Map<String, WebdavException> removeFolder( ITransaction transaction, String folderUri )
+        throws WebdavException;
+
+}
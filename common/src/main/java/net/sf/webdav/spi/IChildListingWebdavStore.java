@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.spi;
+
+import java.util.Map;
+
+import net.sf.webdav.StoredObject;
+import net.sf.webdav.exceptions.WebdavException;
+
+/**
+ * Optional extension of {@link IWebdavStore} for stores that can describe the
+ * children of a folder in a single pass. Methods that walk a collection
+ * (PROPFIND, COPY, DELETE and GET on a folder) use this when the store
+ * implements it, instead of calling
+ * {@link IWebdavStore#getStoredObject(ITransaction, String)} once for every
+ * name returned by {@link IWebdavStore#getChildrenNames(ITransaction, String)}.
+ */
+public interface IChildListingWebdavStore
+    extends IWebdavStore
+{
+
+    /**
+     * Gets the children of the folder specified by <code>folderUri</code>,
+     * together with their metadata.
+     * 
+     * @param transaction
+     *      indicates that the method is within the scope of a WebDAV
+     *      transaction
+     * @param folderUri
+     *      URI of the folder
+     * @return map from child name (as returned by
+     *  {@link IWebdavStore#getChildrenNames(ITransaction, String)}) to the
+     *  child's StoredObject, in listing order, or <code>null</code> if
+     *  <code>folderUri</code> is not a folder
+     * @throws WebdavException
+     *      if something goes wrong on the store level
+     */
+    Map<String, StoredObject> getChildren( ITransaction transaction, String folderUri )
+        throws WebdavException;
+
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.spi;
+
+import net.sf.webdav.exceptions.WebdavException;
+
+/**
+ * Optional extension of {@link IWebdavStore} for stores that can copy and
+ * move objects themselves, without the content passing through
+ * {@link IWebdavStore#getResourceContent(ITransaction, String)} and
+ * {@link IWebdavStore#setResourceContent(ITransaction, String, java.io.InputStream, long)}.
+ * COPY and MOVE use this when the store implements it. A store may still
+ * decline an individual request, in which case the content is copied as
+ * usual and MOVE deletes the source afterwards.
+ * <p/>
+ * In both methods the destination does not exist when they are called;
+ * COPY and MOVE delete it first if overwriting is allowed.
+ */
+public interface ICopyingWebdavStore
+    extends IWebdavStore
+{
+
+    /**
+     * Copies the resource or folder at <code>sourceUri</code>, including
+     * everything below a folder, to <code>destinationUri</code>.
+     * 
+     * @param transaction
+     *      indicates that the method is within the scope of a WebDAV
+     *      transaction
+     * @param sourceUri
+     *      URI of the object to copy
+     * @param destinationUri
+     *      URI of the copy
+     * @return <code>false</code> if the store can't copy this object itself,
+     *  without having changed anything
+     * @throws WebdavException
+     *      if something goes wrong on the store level
+     */
+    boolean copyObject( ITransaction transaction, String sourceUri, String destinationUri )
+        throws WebdavException;
+
+    /**
+     * Moves (renames) the resource or folder at <code>sourceUri</code>,
+     * including everything below a folder, to <code>destinationUri</code>.
+     * 
+     * @param transaction
+     *      indicates that the method is within the scope of a WebDAV
+     *      transaction
+     * @param sourceUri
+     *      URI of the object to move
+     * @param destinationUri
+     *      new URI of the object
+     * @return <code>false</code> if the store can't move this object itself,
+     *  without having changed anything
+     * @throws WebdavException
+     *      if something goes wrong on the store level
+     */
+    boolean moveObject( ITransaction transaction, String sourceUri, String destinationUri )
+        throws WebdavException;
+
+}
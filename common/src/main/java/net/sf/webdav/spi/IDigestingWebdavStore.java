@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.spi;
+
+import net.sf.webdav.exceptions.WebdavException;
+
+/**
+ * Optional extension of {@link IWebdavStore} for stores that can keep a
+ * digest of a resource's content alongside it. PUT computes the digest
+ * while the body streams into
+ * {@link IWebdavStore#setResourceContent(ITransaction, String, java.io.InputStream, long)}
+ * and hands it over here; the store returns it from
+ * {@link net.sf.webdav.StoredObject#getContentDigest()} for as long as the
+ * content is unchanged, which turns the resource's ETag into a strong one.
+ * <p/>
+ * Storing new content through
+ * {@link IWebdavStore#setResourceContent(ITransaction, String, java.io.InputStream, long)}
+ * must drop a previously stored digest.
+ * <p/>
+ * The content PUT hands to such a store is a
+ * {@link java.security.DigestInputStream}. A store that can only attach
+ * metadata when the content is written may take the digest from it (from a
+ * clone of its message digest, so PUT's own digest is not reset) once it has
+ * read the content, and then treat the call here as already done.
+ */
+public interface IDigestingWebdavStore
+    extends IWebdavStore
+{
+
+    /**
+     * Stores the digest of the current content of a resource.
+     * 
+     * @param transaction
+     *      indicates that the method is within the scope of a WebDAV
+     *      transaction
+     * @param resourceUri
+     *      URI of the resource
+     * @param digest
+     *      the digest as an RFC 3230 instance digest, e.g.
+     *      <code>SHA-256=X48E9qOokqqrvdts8nOJRJN3OWDUoyWxBf7kbu9DBPE=</code>
+     * @throws WebdavException
+     *      if something goes wrong on the store level
+     */
+    void setResourceDigest( ITransaction transaction, String resourceUri, String digest )
+        throws WebdavException;
+
+}
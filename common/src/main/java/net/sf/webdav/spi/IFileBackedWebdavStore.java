@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.spi;
+
+import java.io.File;
+
+import net.sf.webdav.exceptions.WebdavException;
+
+/**
+ * Optional extension of {@link IWebdavStore} for stores that keep resource
+ * content in local files. When the response also supports it (see
+ * {@link WebdavFileResponse}), GET requests hand the file straight to the
+ * response instead of copying it through
+ * {@link IWebdavStore#getResourceContent(ITransaction, String)}.
+ * <p/>
+ * A response may keep reading a file it has opened after the resource's
+ * read lock is gone, so new content must replace the file rather than be
+ * written into it.
+ */
+public interface IFileBackedWebdavStore
+    extends IWebdavStore
+{
+
+    /**
+     * Gets the local file holding the content of the resource specified by
+     * <code>resourceUri</code>.
+     * 
+     * @param transaction
+     *      indicates that the method is within the scope of a WebDAV
+     *      transaction
+     * @param resourceUri
+     *      URI of the content resource
+     * @return the file, or <code>null</code> if the content is not available
+     *  as a regular local file
+     * @throws WebdavException
+     *      if something goes wrong on the store level
+     */
+    File getResourceFile( ITransaction transaction, String resourceUri )
+        throws WebdavException;
+
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.spi;
+
+import java.io.InputStream;
+
+import net.sf.webdav.exceptions.WebdavException;
+
+/**
+ * Optional extension of {@link IWebdavStore} for stores that can read a slice
+ * of a resource without streaming everything in front of it. GET requests
+ * carrying a Range header use this when the store implements it, and fall
+ * back to skipping over the stream from
+ * {@link IWebdavStore#getResourceContent(ITransaction, String)} otherwise.
+ */
+public interface IRangedWebdavStore
+    extends IWebdavStore
+{
+
+    /**
+     * Gets part of the content of the resource specified by
+     * <code>resourceUri</code>.
+     * 
+     * @param transaction
+     *      indicates that the method is within the scope of a WebDAV
+     *      transaction
+     * @param resourceUri
+     *      URI of the content resource
+     * @param offset
+     *      position of the first byte to read
+     * @param length
+     *      number of bytes to read
+     * @return input stream that yields at most <code>length</code> bytes,
+     *  starting at <code>offset</code>
+     * @throws WebdavException
+     *      if something goes wrong on the store level
+     */
+    InputStream getResourceContent( ITransaction transaction, String resourceUri, long offset, long length )
+        throws WebdavException;
+
+}
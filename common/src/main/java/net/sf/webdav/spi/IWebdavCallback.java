@@ -0,0 +1,43 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.spi;
+
+import net.sf.webdav.exceptions.WebdavException;
+
+/**
+ * Receives the outcome of an {@link IAsyncWebdavStore} operation. Exactly
+ * one of the methods is called, once, usually on a thread of the store.
+ * 
+ * @param <T>
+ *      type of the operation's result
+ */
+public interface IWebdavCallback<T>
+{
+
+    /**
+     * @param result
+     *      the result of the operation, <code>null</code> where the
+     *      blocking equivalent would have returned <code>null</code>
+     */
+    void completed( T result );
+
+    /**
+     * @param error
+     *      what the blocking equivalent of the operation would have thrown
+     */
+    void failed( WebdavException error );
+
+}
@@ -26,4 +26,36 @@ public interface WebdavConfig
 
     String getDefaultIndexPath();
 
+    /**
+     * Whether to use {@link net.sf.webdav.locking.ConcurrentResourceLocks},
+     * which only makes requests on overlapping paths wait for each other,
+     * instead of {@link net.sf.webdav.locking.ResourceLocks}, which handles
+     * one lock operation at a time.
+     */
+    boolean isConcurrentLocking();
+
+    /**
+     * Whether GET, HEAD, PROPFIND and OPTIONS should skip the temporary locks
+     * they normally take on the requested path. Suitable for stores that
+     * don't rely on those locks to keep reads consistent with concurrent
+     * writes.
+     */
+    boolean isLockFreeReads();
+
+    /**
+     * Minimum size in bytes of a PROPFIND multistatus document or an HTML
+     * folder listing before it is sent gzip or deflate compressed, for clients
+     * that accept either. A negative value disables compression.
+     */
+    int getCompressionThreshold();
+
+    /**
+     * Digest algorithm, such as <code>SHA-256</code> or <code>MD5</code>,
+     * that PUT computes over the body and hands to an
+     * {@link IDigestingWebdavStore}, or <code>null</code> to compute none.
+     * Resources with a stored digest get a strong ETag and a
+     * <code>Digest</code> header.
+     */
+    String getContentDigestAlgorithm();
+
 }
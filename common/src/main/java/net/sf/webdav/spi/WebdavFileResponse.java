@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.spi;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Optional extension of {@link WebdavResponse} for adapters that can write a
+ * file to the client without copying it through the JVM heap, e.g. with
+ * {@link java.nio.channels.FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}
+ * or the container's own sendfile support.
+ */
+public interface WebdavFileResponse
+    extends WebdavResponse
+{
+
+    /**
+     * Writes a slice of a file as the response body. Headers (status,
+     * Content-Length, Content-Type, ...) have already been set by the caller.
+     * 
+     * @param file
+     *      the file to send
+     * @param offset
+     *      position of the first byte to send
+     * @param length
+     *      number of bytes to send
+     * @param release
+     *      if not null, run once the file is no longer read, which may be
+     *      after this returns; it's how the caller learns that the read lock
+     *      on the resource can go
+     * @return true if the file was sent or is being sent, in which case
+     *  <code>release</code> will be run; false if this response can't send
+     *  the requested slice directly and the caller should stream it instead
+     * @throws IOException
+     *      if writing to the client fails, in which case <code>release</code>
+     *      has not been run
+     */
+    boolean sendFile( File file, long offset, long length, Runnable release )
+        throws IOException;
+
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.spi;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Optional extension of {@link WebdavResponse} for adapters that can write a
+ * store's content to the client in the background, so that the thread
+ * handling the request doesn't have to wait for a slow client.
+ */
+public interface WebdavStreamResponse
+    extends WebdavResponse
+{
+
+    /**
+     * Takes over <code>content</code> and writes it as the response body.
+     * Headers (status, Content-Length, Content-Type, ...) have already been
+     * set by the caller. The response is completed, and <code>content</code>
+     * closed, once everything has been written or the client has gone away;
+     * that usually happens after this method has returned.
+     * <p>
+     * By then the request's transaction has been committed, so the store has
+     * to hand out content that stays readable outside it. Locks the method
+     * holds for the body are released when <code>content</code> is closed,
+     * so it must be closed once sending is over, however that ends.
+     * </p>
+     * 
+     * @param content
+     *      the body to send
+     * @param length
+     *      number of bytes in <code>content</code>, or -1 if unknown
+     * @return true if the response took over <code>content</code>, false if
+     *  it can't and the caller should copy it (and close it) instead
+     * @throws IOException
+     *      if the response can't start sending
+     */
+    boolean sendStream( InputStream content, long length )
+        throws IOException;
+
+}
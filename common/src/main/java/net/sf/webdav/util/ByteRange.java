@@ -0,0 +1,215 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A single byte range out of a Range request header, with inclusive start and
+ * end positions.
+ */
+public class ByteRange
+{
+
+    /**
+     * Most ranges a Range header may ask for before it's ignored.
+     */
+    public static final int MAX_RANGES = 100;
+
+    private static final Comparator<ByteRange> BY_START = new Comparator<ByteRange>()
+    {
+        @Override
+        public int compare( final ByteRange a, final ByteRange b )
+        {
+            return a.start < b.start ? -1 : a.start == b.start ? 0 : 1;
+        }
+    };
+
+    private final long start;
+
+    private final long end;
+
+    private final long length;
+
+    public ByteRange( final long start, final long end, final long length )
+    {
+        this.start = start;
+        this.end = end;
+        this.length = length;
+    }
+
+    public long getStart()
+    {
+        return start;
+    }
+
+    public long getEnd()
+    {
+        return end;
+    }
+
+    /**
+     * @return the total length of the resource this range was taken from
+     */
+    public long getLength()
+    {
+        return length;
+    }
+
+    /**
+     * @return number of bytes covered by this range
+     */
+    public long getRangeLength()
+    {
+        return end - start + 1;
+    }
+
+    /**
+     * @return the value for a Content-Range header describing this range
+     */
+    public String toContentRange()
+    {
+        return "bytes " + start + "-" + end + "/" + length;
+    }
+
+    /**
+     * Parses the value of a Range header against a resource of the given
+     * length. Overlapping and adjacent ranges are merged, in order of their
+     * start. Headers asking for more than {@link #MAX_RANGES} ranges, or for
+     * more bytes in total than the resource has (which takes overlapping
+     * ranges), are rejected like malformed ones, so a small request can't
+     * have the resource sent many times over.
+     * 
+     * @param header
+     *      value of the Range header
+     * @param length
+     *      length of the resource
+     * @return the satisfiable ranges, possibly empty if none of them overlap
+     *  the resource, or <code>null</code> if the header is malformed or asks
+     *  for too much and should be ignored
+     */
+    public static ByteRange[] parse( final String header, final long length )
+    {
+        if ( header == null || !header.startsWith( "bytes=" ) )
+        {
+            return null;
+        }
+
+        final String[] specs = header.substring( 6 )
+                                     .split( "," );
+        if ( specs.length > MAX_RANGES )
+        {
+            return null;
+        }
+
+        int count = 0;
+        long requested = 0;
+        final ByteRange[] ranges = new ByteRange[specs.length];
+        for ( String spec : specs )
+        {
+            spec = spec.trim();
+            final int dash = spec.indexOf( '-' );
+            if ( dash < 0 )
+            {
+                return null;
+            }
+
+            long start;
+            long end;
+            try
+            {
+                if ( dash == 0 )
+                {
+                    // suffix range, the last N bytes
+                    final long suffix = Long.parseLong( spec.substring( 1 ) );
+                    if ( suffix <= 0 )
+                    {
+                        continue;
+                    }
+                    start = Math.max( 0, length - suffix );
+                    end = length - 1;
+                }
+                else
+                {
+                    start = Long.parseLong( spec.substring( 0, dash ) );
+                    if ( dash == spec.length() - 1 )
+                    {
+                        end = length - 1;
+                    }
+                    else
+                    {
+                        end = Long.parseLong( spec.substring( dash + 1 ) );
+                        if ( end < start )
+                        {
+                            return null;
+                        }
+                        end = Math.min( end, length - 1 );
+                    }
+                }
+            }
+            catch ( final NumberFormatException e )
+            {
+                return null;
+            }
+
+            if ( start < 0 || start >= length )
+            {
+                // not satisfiable, but others in the set may be
+                continue;
+            }
+
+            ranges[count++] = new ByteRange( start, end, length );
+            requested += end - start + 1;
+            if ( requested > length )
+            {
+                return null;
+            }
+        }
+
+        return merge( ranges, count );
+    }
+
+    /**
+     * Sorts the first <code>count</code> ranges by start and merges those
+     * that overlap or touch.
+     */
+    private static ByteRange[] merge( final ByteRange[] ranges, final int count )
+    {
+        if ( count < 2 )
+        {
+            return Arrays.copyOf( ranges, count );
+        }
+
+        Arrays.sort( ranges, 0, count, BY_START );
+        int merged = 0;
+        for ( int i = 1; i < count; i++ )
+        {
+            final ByteRange last = ranges[merged];
+            final ByteRange next = ranges[i];
+            if ( next.start <= last.end + 1 )
+            {
+                ranges[merged] = new ByteRange( last.start, Math.max( last.end, next.end ), last.length );
+            }
+            else
+            {
+                ranges[++merged] = next;
+            }
+        }
+        return Arrays.copyOf( ranges, merged + 1 );
+    }
+
+}
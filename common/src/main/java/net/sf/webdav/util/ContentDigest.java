@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.util;
+
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Helpers for content digests in the RFC 3230 instance digest form
+ * <code>&lt;algorithm&gt;=&lt;base64 value&gt;</code>, as sent in the
+ * <code>Digest</code> header and kept by
+ * {@link net.sf.webdav.spi.IDigestingWebdavStore}.
+ */
+public final class ContentDigest
+{
+
+    public static final String SHA_256 = "SHA-256";
+
+    public static final String MD5 = "MD5";
+
+    private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    private ContentDigest()
+    {
+    }
+
+    /**
+     * Fails early for an algorithm the JVM doesn't provide.
+     * 
+     * @throws IllegalArgumentException
+     *      if the algorithm is not available
+     */
+    public static void checkAlgorithm( final String algorithm )
+    {
+        newDigest( algorithm );
+    }
+
+    /**
+     * Wraps a stream so the named digest is computed over everything read
+     * through it.
+     */
+    public static DigestInputStream digesting( final InputStream in, final String algorithm )
+    {
+        return new DigestInputStream( in, newDigest( algorithm ) );
+    }
+
+    /**
+     * Completes the digest and renders it as an instance digest.
+     */
+    public static String toInstanceDigest( final MessageDigest digest )
+    {
+        return digest.getAlgorithm() + "=" + toBase64( digest.digest() );
+    }
+
+    /**
+     * @return the base64 value of an MD5 instance digest, for a
+     *      <code>Content-MD5</code> header, or null for other algorithms
+     */
+    public static String getContentMD5( final String instanceDigest )
+    {
+        final String prefix = MD5 + "=";
+        return instanceDigest.regionMatches( true, 0, prefix, 0, prefix.length() ) ? instanceDigest.substring( prefix.length() )
+                        : null;
+    }
+
+    /**
+     * Standard (RFC 4648) base64 with padding, as used by instance digests
+     * and <code>Content-MD5</code>. Kept here so the common module needs
+     * neither <code>javax.xml.bind</code>, which is gone from JDK 11, nor
+     * the JDK 8 <code>java.util.Base64</code>.
+     */
+    public static String toBase64( final byte[] data )
+    {
+        final StringBuilder sb = new StringBuilder( ( data.length + 2 ) / 3 * 4 );
+        int i = 0;
+        for ( ; i + 2 < data.length; i += 3 )
+        {
+            final int n = ( data[i] & 0xff ) << 16 | ( data[i + 1] & 0xff ) << 8 | data[i + 2] & 0xff;
+            sb.append( BASE64[n >>> 18] )
+              .append( BASE64[n >>> 12 & 0x3f] )
+              .append( BASE64[n >>> 6 & 0x3f] )
+              .append( BASE64[n & 0x3f] );
+        }
+
+        final int rest = data.length - i;
+        if ( rest > 0 )
+        {
+            final int n = ( data[i] & 0xff ) << 16 | ( rest == 2 ? ( data[i + 1] & 0xff ) << 8 : 0 );
+            sb.append( BASE64[n >>> 18] )
+              .append( BASE64[n >>> 12 & 0x3f] )
+              .append( rest == 2 ? BASE64[n >>> 6 & 0x3f] : '=' )
+              .append( '=' );
+        }
+        return sb.toString();
+    }
+
+    private static MessageDigest newDigest( final String algorithm )
+    {
+        try
+        {
+            return MessageDigest.getInstance( algorithm );
+        }
+        catch ( final NoSuchAlgorithmException e )
+        {
+            throw new IllegalArgumentException( "Unsupported digest algorithm: " + algorithm, e );
+        }
+    }
+
+}
@@ -0,0 +1,266 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.util;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Thread-safe formatting of the timestamps used in DAV properties and HTTP
+ * headers: RFC 1123 (<code>getlastmodified</code>, <code>Last-Modified</code>)
+ * and the ISO 8601 form used by <code>creationdate</code>, both in GMT.
+ * <p>
+ * Dates are rendered field by field into a char buffer instead of through
+ * {@link SimpleDateFormat}. As both formats have a resolution of one second,
+ * the rendered strings are kept in small per-format caches keyed by second.
+ */
+public final class DateFormatter
+{
+
+    /**
+     * Pattern of {@link #formatRfc1123(long)}, for use with
+     * {@link SimpleDateFormat}.
+     */
+    public static final String RFC_1123_PATTERN = "EEE, dd MMM yyyy HH:mm:ss z";
+
+    /**
+     * Pattern of {@link #formatIso8601(long)}, for use with
+     * {@link SimpleDateFormat}.
+     */
+    public static final String ISO_8601_PATTERN = "yyyy-MM-dd'T'HH:mm:ss'Z'";
+
+    private static final int CACHE_SIZE = 1024;
+
+    private static final long SECONDS_PER_DAY = 24L * 60 * 60;
+
+    private static final char[][] DAYS =
+        { "Sun".toCharArray(), "Mon".toCharArray(), "Tue".toCharArray(), "Wed".toCharArray(), "Thu".toCharArray(),
+            "Fri".toCharArray(), "Sat".toCharArray() };
+
+    private static final char[][] MONTHS =
+        { "Jan".toCharArray(), "Feb".toCharArray(), "Mar".toCharArray(), "Apr".toCharArray(), "May".toCharArray(),
+            "Jun".toCharArray(), "Jul".toCharArray(), "Aug".toCharArray(), "Sep".toCharArray(), "Oct".toCharArray(),
+            "Nov".toCharArray(), "Dec".toCharArray() };
+
+    private static final AtomicReferenceArray<Formatted> RFC_1123_CACHE = new AtomicReferenceArray<Formatted>( CACHE_SIZE );
+
+    private static final AtomicReferenceArray<Formatted> ISO_8601_CACHE = new AtomicReferenceArray<Formatted>( CACHE_SIZE );
+
+    private static final ThreadLocal<SimpleDateFormat> RFC_1123_PARSER = new ThreadLocal<SimpleDateFormat>()
+    {
+        @Override
+        protected SimpleDateFormat initialValue()
+        {
+            return gmtFormat( RFC_1123_PATTERN );
+        }
+    };
+
+    private DateFormatter()
+    {
+    }
+
+    /**
+     * Formats a date as in <code>Sun, 06 Nov 1994 08:49:37 GMT</code>.
+     */
+    public static String formatRfc1123( final Date date )
+    {
+        return formatRfc1123( date.getTime() );
+    }
+
+    /**
+     * Formats a date as in <code>Sun, 06 Nov 1994 08:49:37 GMT</code>.
+     */
+    public static String formatRfc1123( final long millis )
+    {
+        final long second = floorDiv( millis, 1000 );
+        final int slot = (int) ( second & ( CACHE_SIZE - 1 ) );
+        final Formatted cached = RFC_1123_CACHE.get( slot );
+        if ( cached != null && cached.second == second )
+        {
+            return cached.text;
+        }
+
+        final int[] fields = fields( second );
+        final String text;
+        if ( fields == null )
+        {
+            text = gmtFormat( RFC_1123_PATTERN ).format( new Date( millis ) );
+        }
+        else
+        {
+            final char[] buf = new char[29];
+            System.arraycopy( DAYS[fields[6]], 0, buf, 0, 3 );
+            buf[3] = ',';
+            buf[4] = ' ';
+            twoDigits( buf, 5, fields[2] );
+            buf[7] = ' ';
+            System.arraycopy( MONTHS[fields[1] - 1], 0, buf, 8, 3 );
+            buf[11] = ' ';
+            fourDigits( buf, 12, fields[0] );
+            buf[16] = ' ';
+            time( buf, 17, fields );
+            buf[25] = ' ';
+            buf[26] = 'G';
+            buf[27] = 'M';
+            buf[28] = 'T';
+            text = new String( buf );
+        }
+        RFC_1123_CACHE.set( slot, new Formatted( second, text ) );
+        return text;
+    }
+
+    /**
+     * Formats a date as in <code>1994-11-06T08:49:37Z</code>.
+     */
+    public static String formatIso8601( final Date date )
+    {
+        return formatIso8601( date.getTime() );
+    }
+
+    /**
+     * Formats a date as in <code>1994-11-06T08:49:37Z</code>.
+     */
+    public static String formatIso8601( final long millis )
+    {
+        final long second = floorDiv( millis, 1000 );
+        final int slot = (int) ( second & ( CACHE_SIZE - 1 ) );
+        final Formatted cached = ISO_8601_CACHE.get( slot );
+        if ( cached != null && cached.second == second )
+        {
+            return cached.text;
+        }
+
+        final int[] fields = fields( second );
+        final String text;
+        if ( fields == null )
+        {
+            text = gmtFormat( ISO_8601_PATTERN ).format( new Date( millis ) );
+        }
+        else
+        {
+            final char[] buf = new char[20];
+            fourDigits( buf, 0, fields[0] );
+            buf[4] = '-';
+            twoDigits( buf, 5, fields[1] );
+            buf[7] = '-';
+            twoDigits( buf, 8, fields[2] );
+            buf[10] = 'T';
+            time( buf, 11, fields );
+            buf[19] = 'Z';
+            text = new String( buf );
+        }
+        ISO_8601_CACHE.set( slot, new Formatted( second, text ) );
+        return text;
+    }
+
+    /**
+     * Parses an RFC 1123 date such as the one in an <code>If-Range</code>
+     * header.
+     */
+    public static Date parseRfc1123( final String text )
+        throws ParseException
+    {
+        return RFC_1123_PARSER.get()
+                              .parse( text );
+    }
+
+    private static SimpleDateFormat gmtFormat( final String pattern )
+    {
+        final SimpleDateFormat format = new SimpleDateFormat( pattern, Locale.US );
+        format.setTimeZone( TimeZone.getTimeZone( "GMT" ) );
+        return format;
+    }
+
+    /**
+     * Splits seconds since the epoch into year, month, day, hour, minute,
+     * second and day of week (Sunday is 0), or returns null for years outside
+     * 0-9999.
+     */
+    private static int[] fields( final long epochSecond )
+    {
+        final long days = floorDiv( epochSecond, SECONDS_PER_DAY );
+        final int secondOfDay = (int) ( epochSecond - days * SECONDS_PER_DAY );
+
+        // civil date from days since the epoch, proleptic Gregorian calendar
+        final long z = days + 719468;
+        final long era = ( z >= 0 ? z : z - 146096 ) / 146097;
+        final long doe = z - era * 146097;
+        final long yoe = ( doe - doe / 1460 + doe / 36524 - doe / 146096 ) / 365;
+        final long doy = doe - ( 365 * yoe + yoe / 4 - yoe / 100 );
+        final long mp = ( 5 * doy + 2 ) / 153;
+        final int day = (int) ( doy - ( 153 * mp + 2 ) / 5 + 1 );
+        final int month = (int) ( mp < 10 ? mp + 3 : mp - 9 );
+        final long year = yoe + era * 400 + ( month <= 2 ? 1 : 0 );
+        if ( year < 0 || year > 9999 )
+        {
+            return null;
+        }
+
+        final int dayOfWeek = (int) ( ( ( days + 4 ) % 7 + 7 ) % 7 );
+        return new int[] { (int) year, month, day, secondOfDay / 3600, secondOfDay / 60 % 60, secondOfDay % 60, dayOfWeek };
+    }
+
+    private static void time( final char[] buf, final int off, final int[] fields )
+    {
+        twoDigits( buf, off, fields[3] );
+        buf[off + 2] = ':';
+        twoDigits( buf, off + 3, fields[4] );
+        buf[off + 5] = ':';
+        twoDigits( buf, off + 6, fields[5] );
+    }
+
+    private static void twoDigits( final char[] buf, final int off, final int value )
+    {
+        buf[off] = (char) ( '0' + value / 10 );
+        buf[off + 1] = (char) ( '0' + value % 10 );
+    }
+
+    private static void fourDigits( final char[] buf, final int off, final int value )
+    {
+        twoDigits( buf, off, value / 100 );
+        twoDigits( buf, off + 2, value % 100 );
+    }
+
+    private static long floorDiv( final long x, final long y )
+    {
+        final long q = x / y;
+        return ( x % y != 0 && ( ( x ^ y ) < 0 ) ) ? q - 1 : q;
+    }
+
+    /**
+     * One cached rendering, replaced as a whole so readers never see a torn
+     * entry.
+     */
+    private static final class Formatted
+    {
+
+        final long second;
+
+        final String text;
+
+        Formatted( final long second, final String text )
+        {
+            this.second = second;
+            this.text = text;
+        }
+
+    }
+
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs an action, once, when the stream is closed. Used to hold a resource's
+ * read lock for as long as its content is being sent.
+ */
+public final class ReleasingInputStream
+    extends FilterInputStream
+{
+
+    private final Runnable release;
+
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    public ReleasingInputStream( final InputStream in, final Runnable release )
+    {
+        super( in );
+        this.release = release;
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+        try
+        {
+            super.close();
+        }
+        finally
+        {
+            if ( released.compareAndSet( false, true ) )
+            {
+                release.run();
+            }
+        }
+    }
+
+}
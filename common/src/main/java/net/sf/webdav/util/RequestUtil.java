@@ -16,7 +16,6 @@
 package net.sf.webdav.util;
 
 import java.io.UnsupportedEncodingException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -24,7 +23,6 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Locale.Category;
 import java.util.Map;
-import java.util.TimeZone;
 
 /**
  * General purpose request parsing and encoding utility methods.
@@ -37,16 +35,6 @@ import java.util.TimeZone;
 public final class RequestUtil
 {
 
-    /**
-     * The DateFormat to use for generating readable dates in cookies.
-     */
-    private static SimpleDateFormat FORMAT = new SimpleDateFormat( " EEEE, dd-MMM-yy kk:mm:ss zz" );
-
-    static
-    {
-        FORMAT.setTimeZone( TimeZone.getTimeZone( "GMT" ) );
-    }
-
     /**
      * Shamelessly copied from: http://stackoverflow.com/questions/6824157/parse-accept-language-header-in-java
      */
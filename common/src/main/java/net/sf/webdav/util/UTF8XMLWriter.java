@@ -0,0 +1,381 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link XMLWriter} that encodes straight to UTF-8 bytes on an
+ * {@link OutputStream}. Tags are encoded once and cached per writer; the
+ * standard DAV: elements are pre-encoded for the usual <code>D</code> prefix
+ * and shared by all writers. Unlike {@link XMLWriter}, text and property
+ * values are escaped by the writer, so callers pass them unescaped.
+ */
+public class UTF8XMLWriter
+    extends XMLWriter
+{
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private static final String DAV_NAMESPACE = "DAV:";
+
+    private static final String DAV_PREFIX = "D";
+
+    private static final String[] DAV_ELEMENTS =
+        { "activelock", "collection", "creationdate", "depth", "displayname", "exclusive", "getcontentlanguage",
+            "getcontentlength", "getcontenttype", "getetag", "getlastmodified", "href", "lockdiscovery", "lockentry",
+            "lockscope", "locktoken", "locktype", "multistatus", "owner", "prop", "propstat", "resourcetype", "response",
+            "responsedescription", "shared", "source", "status", "supportedlock", "timeout", "write" };
+
+    private static final Map<String, Tag> DAV_TAGS = createDavTags();
+
+    private static final byte[] XML_HEADER = "<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n".getBytes( UTF_8 );
+
+    private static final byte[] CDATA_START = "<![CDATA[".getBytes( UTF_8 );
+
+    private static final byte[] CDATA_END = "]]>".getBytes( UTF_8 );
+
+    private static final byte[] CDATA_SPLIT = "]]]]><![CDATA[>".getBytes( UTF_8 );
+
+    private static final byte[] AMP = "&amp;".getBytes( UTF_8 );
+
+    private static final byte[] LT = "&lt;".getBytes( UTF_8 );
+
+    private static final byte[] GT = "&gt;".getBytes( UTF_8 );
+
+    private final OutputStream _out;
+
+    private final Map<String, Tag> _sharedTags;
+
+    private final Map<String, Tag> _tags = new HashMap<String, Tag>();
+
+    private byte[] _bytes = new byte[DEFAULT_FLUSH_THRESHOLD];
+
+    private int _count;
+
+    /**
+     * Constructor for a writer that holds the whole document until
+     * {@link #sendData()}.
+     */
+    public UTF8XMLWriter( final OutputStream out, final Map<String, String> namespaces )
+    {
+        this( out, namespaces, -1 );
+    }
+
+    /**
+     * Constructor for a streaming writer, see
+     * {@link XMLWriter#XMLWriter(java.io.Writer, Map, int)}.
+     */
+    public UTF8XMLWriter( final OutputStream out, final Map<String, String> namespaces, final int flushThreshold )
+    {
+        super( namespaces );
+        _out = out;
+        _flushThreshold = flushThreshold;
+        _sharedTags = DAV_PREFIX.equals( namespaces.get( DAV_NAMESPACE ) ) ? DAV_TAGS : null;
+    }
+
+    @Override
+    public String toString()
+    {
+        return new String( _bytes, 0, _count, UTF_8 );
+    }
+
+    @Override
+    public void writeProperty( final String name, final String value )
+    {
+        writeElement( name, OPENING );
+        writeText( value );
+        writeElement( name, CLOSING );
+    }
+
+    @Override
+    public void writeElement( final String name, final int type )
+    {
+        if ( _isRootElement )
+        {
+            writeRootElement( name, type );
+            return;
+        }
+
+        final Tag tag = getTag( name );
+        switch ( type )
+        {
+            case OPENING:
+                append( tag.opening );
+                break;
+            case CLOSING:
+                append( tag.closing );
+                if ( _flushThreshold >= 0 && _count >= _flushThreshold )
+                {
+                    writeBuffer();
+                }
+                break;
+            case NO_CONTENT:
+            default:
+                append( tag.empty );
+                break;
+        }
+    }
+
+    @Override
+    public void writeText( final String text )
+    {
+        final int len = text.length();
+        for ( int i = 0; i < len; i++ )
+        {
+            final char c = text.charAt( i );
+            switch ( c )
+            {
+                case '&':
+                    append( AMP );
+                    break;
+                case '<':
+                    append( LT );
+                    break;
+                case '>':
+                    append( GT );
+                    break;
+                default:
+                    i = appendChar( text, i, c );
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public void writeData( final String data )
+    {
+        append( CDATA_START );
+        final int len = data.length();
+        for ( int i = 0; i < len; i++ )
+        {
+            final char c = data.charAt( i );
+            if ( c == ']' && data.startsWith( "]]>", i ) )
+            {
+                // a CDATA section cannot contain its own terminator
+                append( CDATA_SPLIT );
+                i += 2;
+            }
+            else
+            {
+                i = appendChar( data, i, c );
+            }
+        }
+        append( CDATA_END );
+    }
+
+    @Override
+    public void writeXMLHeader()
+    {
+        append( XML_HEADER );
+    }
+
+    @Override
+    public void sendData()
+        throws IOException
+    {
+        if ( _out != null )
+        {
+            writeBuffer();
+            if ( _writeError != null )
+            {
+                throw _writeError;
+            }
+            _out.flush();
+        }
+    }
+
+    @Override
+    protected void writeBuffer()
+    {
+        if ( _out == null )
+        {
+            return;
+        }
+        if ( _writeError == null && _count > 0 )
+        {
+            try
+            {
+                _out.write( _bytes, 0, _count );
+                _dataSent = true;
+            }
+            catch ( final IOException e )
+            {
+                _writeError = e;
+            }
+        }
+        _count = 0;
+    }
+
+    private void writeRootElement( final String name, final int type )
+    {
+        final Tag tag = getTag( name );
+        _isRootElement = false;
+        if ( type == CLOSING )
+        {
+            append( tag.closing );
+            return;
+        }
+
+        final StringBuilder sb = new StringBuilder( tag.start );
+        for ( final Map.Entry<String, String> ns : _namespaces.entrySet() )
+        {
+            sb.append( " xmlns:" )
+              .append( ns.getValue() )
+              .append( "=\"" )
+              .append( ns.getKey() )
+              .append( "\"" );
+        }
+        sb.append( type == OPENING ? ">" : "/>" );
+        append( sb.toString()
+                  .getBytes( UTF_8 ) );
+    }
+
+    private Tag getTag( final String name )
+    {
+        Tag tag = _sharedTags == null ? null : _sharedTags.get( name );
+        if ( tag == null )
+        {
+            tag = _tags.get( name );
+            if ( tag == null )
+            {
+                tag = new Tag( _namespaces, name );
+                _tags.put( name, tag );
+            }
+        }
+        return tag;
+    }
+
+    private int appendChar( final String s, int i, final char c )
+    {
+        if ( c < 0x80 )
+        {
+            ensureCapacity( 1 );
+            _bytes[_count++] = (byte) c;
+        }
+        else if ( c < 0x800 )
+        {
+            ensureCapacity( 2 );
+            _bytes[_count++] = (byte) ( 0xc0 | ( c >> 6 ) );
+            _bytes[_count++] = (byte) ( 0x80 | ( c & 0x3f ) );
+        }
+        else if ( Character.isHighSurrogate( c ) && i + 1 < s.length() && Character.isLowSurrogate( s.charAt( i + 1 ) ) )
+        {
+            final int cp = Character.toCodePoint( c, s.charAt( ++i ) );
+            ensureCapacity( 4 );
+            _bytes[_count++] = (byte) ( 0xf0 | ( cp >> 18 ) );
+            _bytes[_count++] = (byte) ( 0x80 | ( ( cp >> 12 ) & 0x3f ) );
+            _bytes[_count++] = (byte) ( 0x80 | ( ( cp >> 6 ) & 0x3f ) );
+            _bytes[_count++] = (byte) ( 0x80 | ( cp & 0x3f ) );
+        }
+        else if ( Character.isSurrogate( c ) )
+        {
+            // unpaired surrogate, encoded as '?' the way String.getBytes() does
+            ensureCapacity( 1 );
+            _bytes[_count++] = '?';
+        }
+        else
+        {
+            ensureCapacity( 3 );
+            _bytes[_count++] = (byte) ( 0xe0 | ( c >> 12 ) );
+            _bytes[_count++] = (byte) ( 0x80 | ( ( c >> 6 ) & 0x3f ) );
+            _bytes[_count++] = (byte) ( 0x80 | ( c & 0x3f ) );
+        }
+        return i;
+    }
+
+    private void append( final byte[] b )
+    {
+        ensureCapacity( b.length );
+        System.arraycopy( b, 0, _bytes, _count, b.length );
+        _count += b.length;
+    }
+
+    private void ensureCapacity( final int n )
+    {
+        if ( _count + n > _bytes.length )
+        {
+            final byte[] grown = new byte[Math.max( _bytes.length * 2, _count + n )];
+            System.arraycopy( _bytes, 0, grown, 0, _count );
+            _bytes = grown;
+        }
+    }
+
+    private static String qualifiedName( final Map<String, String> namespaces, final String name )
+    {
+        final int pos = name.lastIndexOf( ':' );
+        if ( pos < 0 )
+        {
+            throw new IllegalArgumentException( "All XML elements must have a namespace" );
+        }
+        final String prefix = namespaces.get( name.substring( 0, pos ) );
+        return prefix == null ? name.substring( pos + 1 ) : prefix + ":" + name.substring( pos + 1 );
+    }
+
+    private static Map<String, Tag> createDavTags()
+    {
+        final Map<String, String> namespaces = new HashMap<String, String>();
+        namespaces.put( DAV_NAMESPACE, DAV_PREFIX );
+
+        final Map<String, Tag> tags = new HashMap<String, Tag>();
+        for ( final String element : DAV_ELEMENTS )
+        {
+            final String name = DAV_NAMESPACE + ":" + element;
+            tags.put( name, new Tag( namespaces, name ) );
+        }
+        return tags;
+    }
+
+    /**
+     * The encoded opening, closing and empty forms of one element.
+     */
+    private static final class Tag
+    {
+
+        final String start;
+
+        final byte[] opening;
+
+        final byte[] closing;
+
+        final byte[] empty;
+
+        Tag( final Map<String, String> namespaces, final String name )
+        {
+            final String qname = qualifiedName( namespaces, name );
+
+            // elements outside the declared namespaces carry their own default namespace
+            String nsdecl = "";
+            final int pos = name.lastIndexOf( ':' );
+            final String ns = name.substring( 0, pos );
+            if ( namespaces.get( ns ) == null )
+            {
+                nsdecl = " xmlns=\"" + ns + "\"";
+            }
+
+            start = "<" + qname + nsdecl;
+            opening = ( start + ">" ).getBytes( UTF_8 );
+            closing = ( "</" + qname + ">\n" ).getBytes( UTF_8 );
+            empty = ( start + "/>" ).getBytes( UTF_8 );
+        }
+
+    }
+
+}
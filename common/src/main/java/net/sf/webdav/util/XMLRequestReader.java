@@ -0,0 +1,448 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.util;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads the bodies of PROPFIND, PROPPATCH and LOCK requests with a streaming
+ * StAX parser, picking out just what the methods need instead of building a
+ * DOM. Elements are matched the same way {@link XMLHelper} matches them:
+ * property names and PROPFIND/PROPPATCH structure by local name, LOCK
+ * structure by qualified name.
+ */
+public final class XMLRequestReader
+{
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private XMLRequestReader()
+    {
+    }
+
+    private static XMLInputFactory createFactory()
+    {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty( XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE );
+        factory.setProperty( XMLInputFactory.IS_COALESCING, Boolean.TRUE );
+        factory.setProperty( XMLInputFactory.SUPPORT_DTD, Boolean.FALSE );
+        factory.setProperty( XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE );
+        return factory;
+    }
+
+    /**
+     * The parts of a PROPFIND body.
+     */
+    public static final class Propfind
+    {
+
+        private List<String> properties;
+
+        private boolean propname;
+
+        private boolean allprop;
+
+        /**
+         * @return the names (namespace + ":" + local name) listed in the first
+         *  <code>prop</code> element, or <code>null</code> if there is none
+         */
+        public List<String> getProperties()
+        {
+            return properties;
+        }
+
+        public boolean isPropname()
+        {
+            return propname;
+        }
+
+        public boolean isAllprop()
+        {
+            return allprop;
+        }
+    }
+
+    /**
+     * The parts of a PROPPATCH body.
+     */
+    public static final class Proppatch
+    {
+
+        private List<String> toSet;
+
+        private List<String> toRemove;
+
+        /**
+         * @return the property names in the first <code>set/prop</code>, or
+         *  <code>null</code> if there is none
+         */
+        public List<String> getToSet()
+        {
+            return toSet;
+        }
+
+        /**
+         * @return the property names in the first <code>remove/prop</code>,
+         *  or <code>null</code> if there is none
+         */
+        public List<String> getToRemove()
+        {
+            return toRemove;
+        }
+    }
+
+    /**
+     * The parts of a LOCK body.
+     */
+    public static final class LockInfo
+    {
+
+        private final List<String> scopes = new ArrayList<String>();
+
+        private final List<String> types = new ArrayList<String>();
+
+        private boolean hasScope;
+
+        private boolean hasType;
+
+        private String owner;
+
+        private boolean unexpectedContent;
+
+        /**
+         * @return qualified names of the elements in <code>lockscope</code>,
+         *  or <code>null</code> if there is no <code>lockscope</code>
+         */
+        public List<String> getScopes()
+        {
+            return hasScope ? scopes : null;
+        }
+
+        /**
+         * @return qualified names of the elements in <code>locktype</code>,
+         *  or <code>null</code> if there is no <code>locktype</code>
+         */
+        public List<String> getTypes()
+        {
+            return hasType ? types : null;
+        }
+
+        /**
+         * @return text of the last element or text in <code>owner</code>
+         */
+        public String getOwner()
+        {
+            return owner;
+        }
+
+        /**
+         * @return true if <code>lockinfo</code> holds something other than
+         *  elements and text, e.g. comments
+         */
+        public boolean hasUnexpectedContent()
+        {
+            return unexpectedContent;
+        }
+    }
+
+    public static Propfind readPropfind( final InputStream in )
+        throws XMLStreamException
+    {
+        final Propfind result = new Propfind();
+        final XMLStreamReader reader = open( in );
+        try
+        {
+            while ( nextChild( reader ) )
+            {
+                final String name = reader.getLocalName();
+                if ( "prop".equals( name ) && result.properties == null )
+                {
+                    result.properties = readPropertyNames( reader );
+                }
+                else
+                {
+                    result.propname |= "propname".equals( name );
+                    result.allprop |= "allprop".equals( name );
+                    skipElement( reader );
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return result;
+    }
+
+    public static Proppatch readProppatch( final InputStream in )
+        throws XMLStreamException
+    {
+        final Proppatch result = new Proppatch();
+        final XMLStreamReader reader = open( in );
+        boolean setSeen = false;
+        boolean removeSeen = false;
+        try
+        {
+            while ( nextChild( reader ) )
+            {
+                final String name = reader.getLocalName();
+                if ( "set".equals( name ) && !setSeen )
+                {
+                    setSeen = true;
+                    result.toSet = readFirstProp( reader );
+                }
+                else if ( "remove".equals( name ) && !removeSeen )
+                {
+                    removeSeen = true;
+                    result.toRemove = readFirstProp( reader );
+                }
+                else
+                {
+                    skipElement( reader );
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return result;
+    }
+
+    public static LockInfo readLockInfo( final InputStream in )
+        throws XMLStreamException
+    {
+        final LockInfo result = new LockInfo();
+        final XMLStreamReader reader = open( in );
+        try
+        {
+            while ( reader.hasNext() )
+            {
+                final int event = reader.next();
+                if ( event == XMLStreamConstants.END_ELEMENT || event == XMLStreamConstants.END_DOCUMENT )
+                {
+                    break;
+                }
+                if ( event == XMLStreamConstants.COMMENT || event == XMLStreamConstants.PROCESSING_INSTRUCTION )
+                {
+                    result.unexpectedContent = true;
+                    continue;
+                }
+                if ( event != XMLStreamConstants.START_ELEMENT )
+                {
+                    continue;
+                }
+
+                final String name = qualifiedName( reader );
+                if ( name.endsWith( "lockscope" ) )
+                {
+                    result.hasScope = true;
+                    readChildNames( reader, result.scopes );
+                }
+                else if ( name.endsWith( "locktype" ) )
+                {
+                    result.hasType = true;
+                    readChildNames( reader, result.types );
+                }
+                else if ( name.endsWith( "owner" ) )
+                {
+                    result.owner = readLastChildText( reader );
+                }
+                else
+                {
+                    skipElement( reader );
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return result;
+    }
+
+    /**
+     * Opens the stream and moves to the root element.
+     */
+    private static XMLStreamReader open( final InputStream in )
+        throws XMLStreamException
+    {
+        final XMLStreamReader reader = FACTORY.createXMLStreamReader( in );
+        while ( reader.next() != XMLStreamConstants.START_ELEMENT )
+        {
+            if ( !reader.hasNext() )
+            {
+                throw new XMLStreamException( "No root element" );
+            }
+        }
+        return reader;
+    }
+
+    /**
+     * Moves to the start of the next child element of the current element.
+     * 
+     * @return false, positioned at the end of the current element, if there
+     *  are no more children
+     */
+    private static boolean nextChild( final XMLStreamReader reader )
+        throws XMLStreamException
+    {
+        while ( reader.hasNext() )
+        {
+            final int event = reader.next();
+            if ( event == XMLStreamConstants.START_ELEMENT )
+            {
+                return true;
+            }
+            if ( event == XMLStreamConstants.END_ELEMENT )
+            {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves from the start of an element to its end.
+     */
+    private static void skipElement( final XMLStreamReader reader )
+        throws XMLStreamException
+    {
+        int depth = 1;
+        while ( depth > 0 )
+        {
+            final int event = reader.next();
+            if ( event == XMLStreamConstants.START_ELEMENT )
+            {
+                depth++;
+            }
+            else if ( event == XMLStreamConstants.END_ELEMENT )
+            {
+                depth--;
+            }
+        }
+    }
+
+    private static List<String> readPropertyNames( final XMLStreamReader reader )
+        throws XMLStreamException
+    {
+        final List<String> properties = new ArrayList<String>();
+        while ( nextChild( reader ) )
+        {
+            // same form as XMLHelper.getPropertiesFromXML, "null:" included
+            final String namespace = reader.getNamespaceURI();
+            properties.add( ( namespace == null || namespace.isEmpty() ? null : namespace ) + ":"
+                + reader.getLocalName() );
+            skipElement( reader );
+        }
+        return properties;
+    }
+
+    private static List<String> readFirstProp( final XMLStreamReader reader )
+        throws XMLStreamException
+    {
+        List<String> properties = null;
+        while ( nextChild( reader ) )
+        {
+            if ( properties == null && "prop".equals( reader.getLocalName() ) )
+            {
+                properties = readPropertyNames( reader );
+            }
+            else
+            {
+                skipElement( reader );
+            }
+        }
+        return properties;
+    }
+
+    private static void readChildNames( final XMLStreamReader reader, final List<String> names )
+        throws XMLStreamException
+    {
+        while ( nextChild( reader ) )
+        {
+            names.add( qualifiedName( reader ) );
+            skipElement( reader );
+        }
+    }
+
+    private static String readLastChildText( final XMLStreamReader reader )
+        throws XMLStreamException
+    {
+        String last = null;
+        while ( reader.hasNext() )
+        {
+            final int event = reader.next();
+            if ( event == XMLStreamConstants.START_ELEMENT )
+            {
+                last = readTextContent( reader );
+            }
+            else if ( event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.SPACE
+                || event == XMLStreamConstants.CDATA )
+            {
+                last = reader.getText();
+            }
+            else if ( event == XMLStreamConstants.END_ELEMENT )
+            {
+                break;
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Moves from the start of an element to its end, collecting all the text
+     * inside it.
+     */
+    private static String readTextContent( final XMLStreamReader reader )
+        throws XMLStreamException
+    {
+        final StringBuilder text = new StringBuilder();
+        int depth = 1;
+        while ( depth > 0 )
+        {
+            final int event = reader.next();
+            if ( event == XMLStreamConstants.START_ELEMENT )
+            {
+                depth++;
+            }
+            else if ( event == XMLStreamConstants.END_ELEMENT )
+            {
+                depth--;
+            }
+            else if ( event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.SPACE
+                || event == XMLStreamConstants.CDATA )
+            {
+                text.append( reader.getText() );
+            }
+        }
+        return text.toString();
+    }
+
+    private static String qualifiedName( final XMLStreamReader reader )
+    {
+        final String prefix = reader.getPrefix();
+        return prefix == null || prefix.isEmpty() ? reader.getLocalName() : prefix + ":" + reader.getLocalName();
+    }
+
+}
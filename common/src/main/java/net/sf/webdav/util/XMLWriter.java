@@ -44,6 +44,12 @@ public class XMLWriter {
      */
     public static final int NO_CONTENT = 2;
 
+    /**
+     * Default number of buffered characters after which a streaming writer
+     * hands its output on to the underlying writer.
+     */
+    public static final int DEFAULT_FLUSH_THRESHOLD = 8192;
+
     // ----------------------------------------------------- Instance Variables
 
     /**
@@ -66,6 +72,22 @@ public class XMLWriter {
      */
     protected boolean _isRootElement = true;
 
+    /**
+     * Number of buffered characters after which the buffer is written out at
+     * the next closing tag, or -1 to keep everything until sendData()
+     */
+    protected int _flushThreshold = -1;
+
+    /**
+     * Is true once part of the document has been written to the writer
+     */
+    protected boolean _dataSent = false;
+
+    /**
+     * First error raised by the writer while streaming, rethrown by sendData()
+     */
+    protected IOException _writeError = null;
+
     // ----------------------------------------------------------- Constructors
 
     /**
@@ -83,6 +105,20 @@ public class XMLWriter {
         _namespaces = namespaces;
     }
 
+    /**
+     * Constructor for a streaming writer. Instead of holding the whole
+     * document until {@link #sendData()}, the buffered output is passed on to
+     * the writer at the first closing tag after it has grown to
+     * <code>flushThreshold</code> characters. Errors raised by the writer in
+     * the meantime are reported by {@link #sendData()}.
+     */
+    public XMLWriter(Writer writer, Map<String, String> namespaces,
+            int flushThreshold) {
+        _writer = writer;
+        _namespaces = namespaces;
+        _flushThreshold = flushThreshold;
+    }
+
     // --------------------------------------------------------- Public Methods
 
     /**
@@ -170,6 +206,9 @@ public class XMLWriter {
             _buffer.append("</");
             _buffer.append( name);
             _buffer.append( ">\n");
+            if (_flushThreshold >= 0 && _buffer.length() >= _flushThreshold) {
+                writeBuffer();
+            }
             break;
         case NO_CONTENT:
         default:
@@ -215,10 +254,54 @@ public class XMLWriter {
      */
     public void sendData() throws IOException {
         if (_writer != null) {
-            _writer.write(_buffer.toString());
+            writeBuffer();
+            if (_writeError != null) {
+                throw _writeError;
+            }
             _writer.flush();
-            _buffer = new StringBuffer();
         }
     }
 
+    /**
+     * Tells whether part of the document has already been written out, in
+     * which case the response can no longer be replaced by an error.
+     * 
+     * @return true if data has been passed on to the writer
+     */
+    public boolean isDataSent() {
+        return _dataSent;
+    }
+
+    /**
+     * Tells whether streaming to the writer has failed. Nothing written from
+     * then on reaches the client, so callers generating a large document
+     * should check this and stop early; {@link #sendData()} rethrows the
+     * error.
+     * 
+     * @return true if the writer has raised an error
+     */
+    public boolean hasWriteError() {
+        return _writeError != null;
+    }
+
+    /**
+     * Passes the buffered output on to the writer. Once writing has failed
+     * the output is dropped instead, so the buffer doesn't keep growing with
+     * the rest of the document.
+     */
+    protected void writeBuffer() {
+        if (_writer == null) {
+            return;
+        }
+        if (_writeError == null && _buffer.length() > 0) {
+            try {
+                _writer.write(_buffer.toString());
+                _dataSent = true;
+            } catch (IOException e) {
+                _writeError = e;
+            }
+        }
+        _buffer.setLength(0);
+    }
+
 }
@@ -0,0 +1,292 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.webdav.StoredObject;
+import net.sf.webdav.exceptions.AccessDeniedException;
+import net.sf.webdav.exceptions.WebdavException;
+import net.sf.webdav.spi.IChildListingWebdavStore;
+import net.sf.webdav.spi.ITransaction;
+import net.sf.webdav.spi.IWebdavCallback;
+import net.sf.webdav.spi.IWebdavStore;
+import net.sf.webdav.testutil.MockTest;
+
+import org.jmock.Expectations;
+import org.jmock.api.Invocation;
+import org.jmock.lib.action.CustomAction;
+import org.junit.Test;
+
+public class AsyncWebdavStoreAdapterTest
+    extends MockTest
+{
+
+    static IWebdavStore mockStore;
+
+    static ITransaction mockTransaction;
+
+    @Override
+    public void setupFixtures()
+        throws Exception
+    {
+        mockStore = _mockery.mock( IWebdavStore.class );
+        mockTransaction = _mockery.mock( ITransaction.class );
+    }
+
+    @Test
+    public void resultsArriveThroughTheCallback()
+        throws Exception
+    {
+        final StoredObject fileSo = initFileStoredObject( resourceContent );
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                one( mockStore ).getStoredObject( mockTransaction, "/file" );
+                will( returnValue( fileSo ) );
+
+                one( mockStore ).removeObject( mockTransaction, "/file" );
+            }
+        } );
+
+        final AsyncWebdavStoreAdapter store = new AsyncWebdavStoreAdapter( mockStore, 1, 1 );
+        try
+        {
+            final RecordingCallback<StoredObject> lookup = new RecordingCallback<StoredObject>();
+            store.getStoredObject( mockTransaction, "/file", lookup );
+            lookup.await();
+            assertThat( lookup.result, sameInstance( fileSo ) );
+            assertThat( lookup.error, nullValue() );
+
+            final RecordingCallback<Void> removal = new RecordingCallback<Void>();
+            store.removeObject( mockTransaction, "/file", removal );
+            removal.await();
+            assertThat( removal.error, nullValue() );
+        }
+        finally
+        {
+            store.shutdown();
+        }
+    }
+
+    @Test
+    public void failuresArriveThroughTheCallback()
+        throws Exception
+    {
+        _mockery.checking( new Expectations()
+        {
+            {
+                one( mockStore ).getChildrenNames( mockTransaction, "/secret/" );
+                will( throwException( new AccessDeniedException( "/secret/" ) ) );
+
+                one( mockStore ).getResourceContent( mockTransaction, "/broken" );
+                will( throwException( new IllegalStateException( "broken" ) ) );
+            }
+        } );
+
+        final AsyncWebdavStoreAdapter store = new AsyncWebdavStoreAdapter( mockStore, 1, 1 );
+        try
+        {
+            final RecordingCallback<String[]> listing = new RecordingCallback<String[]>();
+            store.getChildrenNames( mockTransaction, "/secret/", listing );
+            listing.await();
+            assertThat( listing.error, instanceOf( AccessDeniedException.class ) );
+
+            final RecordingCallback<InputStream> read = new RecordingCallback<InputStream>();
+            store.getResourceContent( mockTransaction, "/broken", read );
+            read.await();
+            assertThat( read.error.getCause()
+                                  .getMessage(), equalTo( "broken" ) );
+        }
+        finally
+        {
+            store.shutdown();
+        }
+    }
+
+    @Test
+    public void childrenAreListedInOneCallWhenTheStoreSupportsIt()
+        throws Exception
+    {
+        final IChildListingWebdavStore listingStore = _mockery.mock( IChildListingWebdavStore.class );
+        final Map<String, StoredObject> listing =
+            Collections.singletonMap( "file", initFileStoredObject( resourceContent ) );
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                one( listingStore ).getChildren( mockTransaction, "/folder/" );
+                will( returnValue( listing ) );
+            }
+        } );
+
+        final AsyncWebdavStoreAdapter store = new AsyncWebdavStoreAdapter( listingStore, 1, 1 );
+        try
+        {
+            final RecordingCallback<Map<String, StoredObject>> children = new RecordingCallback<Map<String, StoredObject>>();
+            store.getChildren( mockTransaction, "/folder/", children );
+            children.await();
+            assertThat( children.result, sameInstance( listing ) );
+        }
+        finally
+        {
+            store.shutdown();
+        }
+    }
+
+    @Test
+    public void childrenFallBackToNamesAndLookups()
+        throws Exception
+    {
+        final StoredObject fileSo = initFileStoredObject( resourceContent );
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                one( mockStore ).getChildrenNames( mockTransaction, "/folder" );
+                will( returnValue( new String[] { "file", "gone" } ) );
+
+                one( mockStore ).getStoredObject( mockTransaction, "/folder/file" );
+                will( returnValue( fileSo ) );
+
+                one( mockStore ).getStoredObject( mockTransaction, "/folder/gone" );
+                will( returnValue( null ) );
+
+                one( mockStore ).getChildrenNames( mockTransaction, "/missing" );
+                will( returnValue( null ) );
+            }
+        } );
+
+        final AsyncWebdavStoreAdapter store = new AsyncWebdavStoreAdapter( mockStore, 1, 1 );
+        try
+        {
+            final RecordingCallback<Map<String, StoredObject>> children = new RecordingCallback<Map<String, StoredObject>>();
+            store.getChildren( mockTransaction, "/folder", children );
+            children.await();
+            assertThat( children.result.size(), equalTo( 1 ) );
+            assertThat( children.result.get( "file" ), sameInstance( fileSo ) );
+
+            final RecordingCallback<Map<String, StoredObject>> missing = new RecordingCallback<Map<String, StoredObject>>();
+            store.getChildren( mockTransaction, "/missing", missing );
+            missing.await();
+            assertThat( missing.result, nullValue() );
+            assertThat( missing.error, nullValue() );
+        }
+        finally
+        {
+            store.shutdown();
+        }
+    }
+
+    @Test
+    public void operationsBeyondThePoolAndQueueAreRejected()
+        throws Exception
+    {
+        final CountDownLatch started = new CountDownLatch( 1 );
+        final CountDownLatch release = new CountDownLatch( 1 );
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                one( mockStore ).getStoredObject( mockTransaction, "/slow" );
+                will( new CustomAction( "block until released" )
+                {
+                    @Override
+                    public Object invoke( final Invocation invocation )
+                        throws Throwable
+                    {
+                        started.countDown();
+                        release.await();
+                        return null;
+                    }
+                } );
+
+                one( mockStore ).getStoredObject( mockTransaction, "/queued" );
+                will( returnValue( null ) );
+            }
+        } );
+
+        final AsyncWebdavStoreAdapter store = new AsyncWebdavStoreAdapter( mockStore, 1, 1 );
+        try
+        {
+            final RecordingCallback<StoredObject> slow = new RecordingCallback<StoredObject>();
+            store.getStoredObject( mockTransaction, "/slow", slow );
+            assertTrue( started.await( 5, TimeUnit.SECONDS ) );
+
+            final RecordingCallback<StoredObject> queued = new RecordingCallback<StoredObject>();
+            store.getStoredObject( mockTransaction, "/queued", queued );
+
+            final RecordingCallback<StoredObject> rejected = new RecordingCallback<StoredObject>();
+            store.getStoredObject( mockTransaction, "/rejected", rejected );
+            rejected.await();
+            assertThat( rejected.error, instanceOf( WebdavException.class ) );
+
+            release.countDown();
+            slow.await();
+            queued.await();
+            assertThat( queued.error, nullValue() );
+        }
+        finally
+        {
+            release.countDown();
+            store.shutdown();
+        }
+    }
+
+    private static final class RecordingCallback<T>
+        implements IWebdavCallback<T>
+    {
+
+        private final CountDownLatch _done = new CountDownLatch( 1 );
+
+        T result;
+
+        WebdavException error;
+
+        @Override
+        public void completed( final T result )
+        {
+            this.result = result;
+            _done.countDown();
+        }
+
+        @Override
+        public void failed( final WebdavException error )
+        {
+            this.error = error;
+            _done.countDown();
+        }
+
+        void await()
+            throws InterruptedException
+        {
+            assertTrue( "callback not called", _done.await( 5, TimeUnit.SECONDS ) );
+        }
+    }
+
+}
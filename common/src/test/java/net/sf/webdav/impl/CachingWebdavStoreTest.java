@@ -0,0 +1,285 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import net.sf.webdav.StoredObject;
+import net.sf.webdav.spi.ITransaction;
+import net.sf.webdav.spi.IWebdavStore;
+import net.sf.webdav.testutil.MockTest;
+
+import org.jmock.Expectations;
+import org.jmock.api.Invocation;
+import org.jmock.lib.action.CustomAction;
+import org.junit.Test;
+
+public class CachingWebdavStoreTest
+    extends MockTest
+{
+
+    static IWebdavStore mockStore;
+
+    static ITransaction mockTransaction;
+
+    @Override
+    public void setupFixtures()
+        throws Exception
+    {
+        mockStore = _mockery.mock( IWebdavStore.class );
+        mockTransaction = _mockery.mock( ITransaction.class );
+    }
+
+    @Test
+    public void lookupsAndMissesAreSharedAcrossTransactions()
+        throws Exception
+    {
+        final StoredObject fileSo = initFileStoredObject( resourceContent );
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                one( mockStore ).getStoredObject( mockTransaction, "/file" );
+                will( returnValue( fileSo ) );
+
+                one( mockStore ).getStoredObject( mockTransaction, "/missing" );
+                will( returnValue( null ) );
+
+                one( mockStore ).getChildrenNames( mockTransaction, "/" );
+                will( returnValue( new String[] { "file" } ) );
+            }
+        } );
+
+        final CachingWebdavStore store = new CachingWebdavStore( mockStore );
+
+        final StoredObject first = store.getStoredObject( mockTransaction, "/file" );
+        final StoredObject second = store.getStoredObject( mockTransaction, "/file" );
+        assertThat( first.getResourceLength(), equalTo( resourceLength ) );
+        assertThat( second, not( sameInstance( first ) ) );
+        assertThat( store.getResourceLength( mockTransaction, "/file" ), equalTo( resourceLength ) );
+
+        assertThat( store.getStoredObject( mockTransaction, "/missing" ), nullValue() );
+        assertThat( store.getStoredObject( mockTransaction, "/missing" ), nullValue() );
+
+        assertThat( store.getChildrenNames( mockTransaction, "/" ).length, equalTo( 1 ) );
+        assertThat( store.getChildrenNames( mockTransaction, "/" ).length, equalTo( 1 ) );
+
+        assertThat( store.getMissCount(), equalTo( 3L ) );
+        assertThat( store.getHitCount(), equalTo( 4L ) );
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void writesInvalidateThePathAndItsParentListing()
+        throws Exception
+    {
+        final StoredObject fileSo = initFileStoredObject( resourceContent );
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                exactly( 2 ).of( mockStore )
+                            .getChildrenNames( mockTransaction, "/folder" );
+                will( returnValue( new String[0] ) );
+
+                one( mockStore ).getStoredObject( mockTransaction, "/folder/file" );
+                will( returnValue( null ) );
+
+                one( mockStore ).setResourceContent( mockTransaction, "/folder/file", bais, resourceLength );
+                will( returnValue( resourceLength ) );
+
+                one( mockStore ).getStoredObject( mockTransaction, "/folder/file" );
+                will( returnValue( fileSo ) );
+            }
+        } );
+
+        final CachingWebdavStore store = new CachingWebdavStore( mockStore );
+
+        store.getChildrenNames( mockTransaction, "/folder" );
+        assertThat( store.getStoredObject( mockTransaction, "/folder/file" ), nullValue() );
+
+        store.setResourceContent( mockTransaction, "/folder/file", bais, resourceLength );
+
+        store.getChildrenNames( mockTransaction, "/folder" );
+        assertThat( store.getStoredObject( mockTransaction, "/folder/file" )
+                         .getResourceLength(), equalTo( resourceLength ) );
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void removingAFolderDropsEverythingCachedBelowIt()
+        throws Exception
+    {
+        final StoredObject fileSo = initFileStoredObject( resourceContent );
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                exactly( 2 ).of( mockStore )
+                            .getStoredObject( mockTransaction, "/a/b/c" );
+                will( returnValue( fileSo ) );
+
+                one( mockStore ).getStoredObject( mockTransaction, "/ab" );
+                will( returnValue( fileSo ) );
+
+                one( mockStore ).removeObject( mockTransaction, "/a" );
+            }
+        } );
+
+        final CachingWebdavStore store = new CachingWebdavStore( mockStore );
+
+        store.getStoredObject( mockTransaction, "/a/b/c" );
+        store.getStoredObject( mockTransaction, "/ab" );
+
+        store.removeObject( mockTransaction, "/a" );
+
+        store.getStoredObject( mockTransaction, "/a/b/c" );
+        store.getStoredObject( mockTransaction, "/ab" );
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void lookupRacingAWriteIsNotCached()
+        throws Exception
+    {
+        final StoredObject oldSo = initFileStoredObject( resourceContent );
+        final StoredObject newSo = initFileStoredObject( resourceContent );
+        final CachingWebdavStore store = new CachingWebdavStore( mockStore );
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                one( mockStore ).getStoredObject( mockTransaction, "/file" );
+                will( new CustomAction( "write while the lookup is in flight" )
+                {
+                    @Override
+                    public Object invoke( final Invocation invocation )
+                        throws Throwable
+                    {
+                        store.setResourceContent( mockTransaction, "/file", bais, resourceLength );
+                        return oldSo;
+                    }
+                } );
+
+                one( mockStore ).setResourceContent( mockTransaction, "/file", bais, resourceLength );
+                will( returnValue( resourceLength ) );
+
+                one( mockStore ).getStoredObject( mockTransaction, "/file" );
+                will( returnValue( newSo ) );
+            }
+        } );
+
+        store.getStoredObject( mockTransaction, "/file" );
+        store.getStoredObject( mockTransaction, "/file" );
+        store.getStoredObject( mockTransaction, "/file" );
+
+        assertThat( store.getMissCount(), equalTo( 2L ) );
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void cachedObjectsKeepTheirContentDigest()
+        throws Exception
+    {
+        final StoredObject fileSo = initFileStoredObject( resourceContent );
+        fileSo.setContentDigest( "SHA-256=q83vEjRWeJA=" );
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                one( mockStore ).getStoredObject( mockTransaction, "/file" );
+                will( returnValue( fileSo ) );
+            }
+        } );
+
+        final CachingWebdavStore store = new CachingWebdavStore( mockStore );
+
+        assertThat( store.getStoredObject( mockTransaction, "/file" )
+                         .getContentDigest(), equalTo( "SHA-256=q83vEjRWeJA=" ) );
+        assertThat( store.getStoredObject( mockTransaction, "/file" )
+                         .getContentDigest(), equalTo( "SHA-256=q83vEjRWeJA=" ) );
+        assertThat( store.getHitCount(), equalTo( 1L ) );
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void leastRecentlyUsedEntriesAreEvicted()
+        throws Exception
+    {
+        final StoredObject fileSo = initFileStoredObject( resourceContent );
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                exactly( 2 ).of( mockStore )
+                            .getStoredObject( mockTransaction, "/a" );
+                will( returnValue( fileSo ) );
+
+                one( mockStore ).getStoredObject( mockTransaction, "/b" );
+                will( returnValue( fileSo ) );
+
+                one( mockStore ).getStoredObject( mockTransaction, "/c" );
+                will( returnValue( fileSo ) );
+            }
+        } );
+
+        final CachingWebdavStore store = new CachingWebdavStore( mockStore, 2, 60000, 60000 );
+
+        store.getStoredObject( mockTransaction, "/a" );
+        store.getStoredObject( mockTransaction, "/b" );
+        store.getStoredObject( mockTransaction, "/b" );
+        store.getStoredObject( mockTransaction, "/c" );
+        store.getStoredObject( mockTransaction, "/a" );
+
+        assertThat( store.getEvictionCount(), equalTo( 2L ) );
+        assertThat( store.size(), equalTo( 2 ) );
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void expiredEntriesAreLoadedAgain()
+        throws Exception
+    {
+        final StoredObject fileSo = initFileStoredObject( resourceContent );
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                exactly( 2 ).of( mockStore )
+                            .getStoredObject( mockTransaction, "/a" );
+                will( returnValue( fileSo ) );
+            }
+        } );
+
+        final CachingWebdavStore store = new CachingWebdavStore( mockStore, 10, 0, 0 );
+
+        store.getStoredObject( mockTransaction, "/a" );
+        store.getStoredObject( mockTransaction, "/a" );
+
+        _mockery.assertIsSatisfied();
+    }
+
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+
+import net.sf.webdav.testutil.MockHttpServletResponse;
+
+import org.junit.Test;
+
+public class CompressingWebdavResponseTest
+{
+
+    @Test
+    public void testSelectEncoding()
+    {
+        assertThat( CompressingWebdavResponse.selectEncoding( null ), nullValue() );
+        assertThat( CompressingWebdavResponse.selectEncoding( "identity" ), nullValue() );
+        assertThat( CompressingWebdavResponse.selectEncoding( "gzip, deflate, br" ), equalTo( CompressingWebdavResponse.GZIP ) );
+        assertThat( CompressingWebdavResponse.selectEncoding( "gzip;q=0.5, deflate" ), equalTo( CompressingWebdavResponse.DEFLATE ) );
+        assertThat( CompressingWebdavResponse.selectEncoding( "*;q=0.1, gzip;q=0" ), equalTo( CompressingWebdavResponse.DEFLATE ) );
+        assertThat( CompressingWebdavResponse.selectEncoding( "*;q=0" ), nullValue() );
+    }
+
+    @Test
+    public void testBodyAboveThresholdIsCompressed()
+        throws Exception
+    {
+        final MockHttpServletResponse resp = new MockHttpServletResponse();
+        final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        resp.setOutputStream( sent );
+
+        final CompressingWebdavResponse compressed = new CompressingWebdavResponse( resp, CompressingWebdavResponse.GZIP, 16 );
+        final OutputStream out = compressed.getOutputStream();
+        final StringBuilder body = new StringBuilder();
+        for ( int i = 0; i < 1000; i++ )
+        {
+            body.append( "<D:response/>" );
+            out.write( "<D:response/>".getBytes( "UTF-8" ) );
+        }
+        compressed.finish();
+
+        assertThat( resp.getHeaders()
+                        .get( "Content-Encoding" ), equalTo( CompressingWebdavResponse.GZIP ) );
+        final byte[] unzipped = readFully( new GZIPInputStream( new ByteArrayInputStream( sent.toByteArray() ) ) );
+        assertThat( new String( unzipped, "UTF-8" ), equalTo( body.toString() ) );
+    }
+
+    @Test
+    public void testBodyBelowThresholdIsSentAsIs()
+        throws Exception
+    {
+        final MockHttpServletResponse resp = new MockHttpServletResponse();
+        final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        resp.setOutputStream( sent );
+
+        final CompressingWebdavResponse compressed = new CompressingWebdavResponse( resp, CompressingWebdavResponse.GZIP, 1024 );
+        compressed.getOutputStream()
+                  .write( "<D:multistatus/>".getBytes( "UTF-8" ) );
+        compressed.finish();
+
+        assertThat( resp.getHeaders()
+                        .get( "Content-Encoding" ), nullValue() );
+        assertThat( new String( sent.toByteArray(), "UTF-8" ), equalTo( "<D:multistatus/>" ) );
+    }
+
+    private static byte[] readFully( final InputStream in )
+        throws Exception
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buf = new byte[4096];
+        for ( int n; ( n = in.read( buf ) ) != -1; )
+        {
+            out.write( buf, 0, n );
+        }
+        return out.toByteArray();
+    }
+
+}
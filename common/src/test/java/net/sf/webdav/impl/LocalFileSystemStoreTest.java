@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+
+import net.sf.webdav.testutil.MockTest;
+
+import org.junit.Test;
+
+public class LocalFileSystemStoreTest
+    extends MockTest
+{
+
+    private static final String DIGEST = "SHA-256=v4xbBWbTMrBp5K1tLAqHw4UhCzb3BvAjpHfVValaz3o=";
+
+    @Test
+    public void digestIsKeptUntilTheContentChanges()
+        throws Exception
+    {
+        final File root = tempFolder.newFolder( "davRoot" );
+        assumeTrue( supportsUserAttributes( root ) );
+
+        final LocalFileSystemStore store = new LocalFileSystemStore( root, true );
+        store.createResource( null, "/file" );
+        store.setResourceContent( null, "/file", new ByteArrayInputStream( resourceContent ), resourceLength );
+        store.setResourceDigest( null, "/file", DIGEST );
+
+        assertThat( store.getStoredObject( null, "/file" )
+                         .getContentDigest(), equalTo( DIGEST ) );
+
+        store.setResourceContent( null, "/file", new ByteArrayInputStream( resourceContent ), resourceLength );
+
+        assertThat( store.getStoredObject( null, "/file" )
+                         .getContentDigest(), nullValue() );
+    }
+
+    @Test
+    public void digestsAreIgnoredUnlessEnabled()
+        throws Exception
+    {
+        final LocalFileSystemStore store = new LocalFileSystemStore( tempFolder.newFolder( "davRoot" ) );
+        store.createResource( null, "/file" );
+        store.setResourceContent( null, "/file", new ByteArrayInputStream( resourceContent ), resourceLength );
+        store.setResourceDigest( null, "/file", DIGEST );
+
+        assertThat( store.getStoredObject( null, "/file" )
+                         .getContentDigest(), nullValue() );
+    }
+
+    @Test
+    public void newContentReplacesTheFileInsteadOfRewritingIt()
+        throws Exception
+    {
+        final LocalFileSystemStore store = new LocalFileSystemStore( tempFolder.newFolder( "davRoot" ) );
+        store.createResource( null, "/file" );
+        store.setResourceContent( null, "/file", new ByteArrayInputStream( resourceContent ), resourceLength );
+
+        final InputStream sending = new FileInputStream( store.getResourceFile( null, "/file" ) );
+        try
+        {
+            store.setResourceContent( null, "/file", new ByteArrayInputStream( "new".getBytes() ), 3 );
+
+            final byte[] sent = new byte[resourceContent.length];
+            assertThat( sending.read( sent ), equalTo( resourceContent.length ) );
+            assertThat( sent, equalTo( resourceContent ) );
+        }
+        finally
+        {
+            sending.close();
+        }
+
+        assertThat( store.getResourceLength( null, "/file" ), equalTo( 3L ) );
+        assertThat( store.getChildrenNames( null, "/" ), equalTo( new String[] { "file" } ) );
+    }
+
+    /**
+     * FileStore.supportsFileAttributeView() goes by mount options and says no
+     * for some file systems that do keep user attributes, so try one instead.
+     */
+    private static boolean supportsUserAttributes( final File folder )
+    {
+        try
+        {
+            final UserDefinedFileAttributeView view =
+                Files.getFileAttributeView( folder.toPath(), UserDefinedFileAttributeView.class );
+            view.write( "webdav.probe", ByteBuffer.wrap( new byte[] { 1 } ) );
+            view.delete( "webdav.probe" );
+            return true;
+        }
+        catch ( final IOException | UnsupportedOperationException e )
+        {
+            return false;
+        }
+    }
+
+}
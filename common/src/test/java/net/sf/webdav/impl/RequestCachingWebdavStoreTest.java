@@ -0,0 +1,269 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.Collections;
+import java.util.Map;
+
+import net.sf.webdav.StoredObject;
+import net.sf.webdav.spi.IChildListingWebdavStore;
+import net.sf.webdav.spi.ITransaction;
+import net.sf.webdav.spi.IWebdavStore;
+import net.sf.webdav.testutil.MockTest;
+
+import org.jmock.Expectations;
+import org.junit.Test;
+
+public class RequestCachingWebdavStoreTest
+    extends MockTest
+{
+
+    static IWebdavStore mockStore;
+
+    static ITransaction mockTransaction;
+
+    @Override
+    public void setupFixtures()
+        throws Exception
+    {
+        mockStore = _mockery.mock( IWebdavStore.class );
+        mockTransaction = _mockery.mock( ITransaction.class );
+    }
+
+    @Test
+    public void storedObjectIsLookedUpOncePerTransaction()
+        throws Exception
+    {
+        final StoredObject fileSo = initFileStoredObject( resourceContent );
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                one( mockStore ).begin( null );
+                will( returnValue( mockTransaction ) );
+
+                one( mockStore ).getStoredObject( mockTransaction, "/file" );
+                will( returnValue( fileSo ) );
+
+                one( mockStore ).getStoredObject( mockTransaction, "/missing" );
+                will( returnValue( null ) );
+
+                one( mockStore ).commit( mockTransaction );
+            }
+        } );
+
+        final RequestCachingWebdavStore store = new RequestCachingWebdavStore( mockStore );
+        final ITransaction transaction = store.begin( null );
+
+        assertThat( store.getStoredObject( transaction, "/file" ), sameInstance( fileSo ) );
+        assertThat( store.getStoredObject( transaction, "/file" ), sameInstance( fileSo ) );
+        assertThat( store.getResourceLength( transaction, "/file" ), equalTo( resourceLength ) );
+        assertThat( store.getStoredObject( transaction, "/missing" ), nullValue() );
+        assertThat( store.getStoredObject( transaction, "/missing" ), nullValue() );
+
+        store.commit( transaction );
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void mutationsInvalidateThePathAndItsParent()
+        throws Exception
+    {
+        final StoredObject folderSo = initFolderStoredObject();
+        final StoredObject fileSo = initFileStoredObject( resourceContent );
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                one( mockStore ).begin( null );
+                will( returnValue( mockTransaction ) );
+
+                exactly( 2 ).of( mockStore )
+                            .getStoredObject( mockTransaction, "/folder" );
+                will( returnValue( folderSo ) );
+
+                one( mockStore ).getStoredObject( mockTransaction, "/folder/file" );
+                will( returnValue( null ) );
+
+                one( mockStore ).createResource( mockTransaction, "/folder/file" );
+
+                one( mockStore ).getStoredObject( mockTransaction, "/folder/file" );
+                will( returnValue( fileSo ) );
+            }
+        } );
+
+        final RequestCachingWebdavStore store = new RequestCachingWebdavStore( mockStore );
+        final ITransaction transaction = store.begin( null );
+
+        store.getStoredObject( transaction, "/folder" );
+        assertThat( store.getStoredObject( transaction, "/folder/file" ), nullValue() );
+
+        store.createResource( transaction, "/folder/file" );
+
+        assertThat( store.getStoredObject( transaction, "/folder" ), sameInstance( folderSo ) );
+        assertThat( store.getStoredObject( transaction, "/folder/file" ), sameInstance( fileSo ) );
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void childListingFillsTheMemo()
+        throws Exception
+    {
+        final StoredObject fileSo = initFileStoredObject( resourceContent );
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                one( mockStore ).begin( null );
+                will( returnValue( mockTransaction ) );
+
+                one( mockStore ).getChildrenNames( mockTransaction, "/folder/" );
+                will( returnValue( new String[] { "file" } ) );
+
+                one( mockStore ).getStoredObject( mockTransaction, "/folder/file" );
+                will( returnValue( fileSo ) );
+            }
+        } );
+
+        final RequestCachingWebdavStore store = new RequestCachingWebdavStore( mockStore );
+        final ITransaction transaction = store.begin( null );
+
+        final Map<String, StoredObject> children = store.getChildren( transaction, "/folder/" );
+        assertThat( children.get( "file" ), sameInstance( fileSo ) );
+        assertThat( store.getStoredObject( transaction, "/folder/file" ), sameInstance( fileSo ) );
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void listingsOfChildListingStoresAreNotMemoized()
+        throws Exception
+    {
+        final IChildListingWebdavStore listingStore = _mockery.mock( IChildListingWebdavStore.class );
+        final StoredObject fileSo = initFileStoredObject( resourceContent );
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                one( listingStore ).begin( null );
+                will( returnValue( mockTransaction ) );
+
+                one( listingStore ).getChildren( mockTransaction, "/folder/" );
+                will( returnValue( Collections.singletonMap( "file", fileSo ) ) );
+
+                one( listingStore ).getStoredObject( mockTransaction, "/folder/file" );
+                will( returnValue( fileSo ) );
+            }
+        } );
+
+        final RequestCachingWebdavStore store = new RequestCachingWebdavStore( listingStore );
+        final ITransaction transaction = store.begin( null );
+
+        assertThat( store.getChildren( transaction, "/folder/" )
+                         .get( "file" ), sameInstance( fileSo ) );
+        assertThat( store.getStoredObject( transaction, "/folder/file" ), sameInstance( fileSo ) );
+        assertThat( store.getStoredObject( transaction, "/folder/file" ), sameInstance( fileSo ) );
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void memoDropsLeastRecentlyUsedEntriesBeyondItsSize()
+        throws Exception
+    {
+        final StoredObject fileSo = initFileStoredObject( resourceContent );
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                one( mockStore ).begin( null );
+                will( returnValue( mockTransaction ) );
+
+                exactly( 2 ).of( mockStore )
+                            .getStoredObject( mockTransaction, "/a" );
+                will( returnValue( fileSo ) );
+
+                one( mockStore ).getStoredObject( mockTransaction, "/b" );
+                will( returnValue( fileSo ) );
+
+                one( mockStore ).getStoredObject( mockTransaction, "/c" );
+                will( returnValue( fileSo ) );
+            }
+        } );
+
+        final RequestCachingWebdavStore store = new RequestCachingWebdavStore( mockStore, 2 );
+        final ITransaction transaction = store.begin( null );
+
+        store.getStoredObject( transaction, "/a" );
+        store.getStoredObject( transaction, "/b" );
+        store.getStoredObject( transaction, "/b" );
+        store.getStoredObject( transaction, "/c" );
+        store.getStoredObject( transaction, "/b" );
+        store.getStoredObject( transaction, "/a" );
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void removingAFolderDropsOnlyItsSubtree()
+        throws Exception
+    {
+        final StoredObject fileSo = initFileStoredObject( resourceContent );
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                one( mockStore ).begin( null );
+                will( returnValue( mockTransaction ) );
+
+                exactly( 2 ).of( mockStore )
+                            .getStoredObject( mockTransaction, "/a/b/c" );
+                will( returnValue( fileSo ) );
+
+                one( mockStore ).getStoredObject( mockTransaction, "/ab" );
+                will( returnValue( fileSo ) );
+
+                one( mockStore ).getStoredObject( mockTransaction, "/x/y" );
+                will( returnValue( fileSo ) );
+
+                one( mockStore ).removeObject( mockTransaction, "/a" );
+            }
+        } );
+
+        final RequestCachingWebdavStore store = new RequestCachingWebdavStore( mockStore );
+        final ITransaction transaction = store.begin( null );
+
+        store.getStoredObject( transaction, "/a/b/c" );
+        store.getStoredObject( transaction, "/ab" );
+        store.getStoredObject( transaction, "/x/y" );
+
+        store.removeObject( transaction, "/a" );
+
+        store.getStoredObject( transaction, "/a/b/c" );
+        store.getStoredObject( transaction, "/ab" );
+        store.getStoredObject( transaction, "/x/y" );
+
+        _mockery.assertIsSatisfied();
+    }
+
+}
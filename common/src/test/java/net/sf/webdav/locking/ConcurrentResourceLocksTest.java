@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.locking;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import net.sf.webdav.testutil.MockTest;
+
+import org.junit.Test;
+
+public class ConcurrentResourceLocksTest
+    extends MockTest
+{
+
+    private static final int TIMEOUT = 3600;
+
+    @Test
+    public void exclusiveLockBlocksParentsAndChildren()
+        throws Exception
+    {
+        final ConcurrentResourceLocks locks = new ConcurrentResourceLocks();
+
+        assertThat( locks.exclusiveLock( null, "/a/b", "owner1", 0, TIMEOUT ), equalTo( true ) );
+
+        assertThat( locks.exclusiveLock( null, "/a/b/c", "owner2", 0, TIMEOUT ), equalTo( false ) );
+        assertThat( locks.sharedLock( null, "/a", "owner2", 1, TIMEOUT ), equalTo( false ) );
+        assertThat( locks.sharedLock( null, "/", "owner2", 3, TIMEOUT ), equalTo( false ) );
+
+        // siblings are not affected
+        assertThat( locks.exclusiveLock( null, "/a/bb", "owner3", 0, TIMEOUT ), equalTo( true ) );
+        // and neither are children deeper than the requested depth
+        assertThat( locks.sharedLock( null, "/", "owner2", 1, TIMEOUT ), equalTo( true ) );
+    }
+
+    @Test
+    public void sharedLocksCanBeCombined()
+        throws Exception
+    {
+        final ConcurrentResourceLocks locks = new ConcurrentResourceLocks();
+
+        assertThat( locks.sharedLock( null, "/a", "owner1", 3, TIMEOUT ), equalTo( true ) );
+        assertThat( locks.sharedLock( null, "/a/b", "owner2", 0, TIMEOUT ), equalTo( true ) );
+        assertThat( locks.exclusiveLock( null, "/a/b", "owner3", 0, TIMEOUT ), equalTo( false ) );
+
+        final LockedObject lo = locks.getLockedObjectByPath( null, "/a/b" );
+        assertThat( lo, notNullValue() );
+        assertThat( lo.isShared(), equalTo( true ) );
+        assertThat( locks.getLockedObjectByID( null, lo.getID() ), equalTo( lo ) );
+    }
+
+    @Test
+    public void unlockReleasesTheResource()
+        throws Exception
+    {
+        final ConcurrentResourceLocks locks = new ConcurrentResourceLocks();
+
+        assertThat( locks.exclusiveLock( null, "/a", "owner1", 0, TIMEOUT ), equalTo( true ) );
+        final String id = locks.getLockedObjectByPath( null, "/a" )
+                               .getID();
+
+        assertThat( locks.unlock( null, id, "owner1" ), equalTo( true ) );
+        assertThat( locks.getLockedObjectByPath( null, "/a" ), nullValue() );
+        assertThat( locks.getLockedObjectByID( null, id ), nullValue() );
+        assertThat( locks.exclusiveLock( null, "/a/b", "owner2", 0, TIMEOUT ), equalTo( true ) );
+    }
+
+    @Test
+    public void temporaryLocksAreKeptApart()
+        throws Exception
+    {
+        final ConcurrentResourceLocks locks = new ConcurrentResourceLocks();
+
+        assertThat( locks.lock( null, "/a", "temp", false, 0, TEMP_TIMEOUT, TEMPORARY ), equalTo( true ) );
+        assertThat( locks.exclusiveLock( null, "/a", "owner1", 0, TIMEOUT ), equalTo( true ) );
+        assertThat( locks.getTempLockedObjectByPath( null, "/a" ), notNullValue() );
+
+        locks.unlockTemporaryLockedObjects( null, "/a", "temp" );
+        assertThat( locks.getTempLockedObjectByPath( null, "/a" ), nullValue() );
+        assertThat( locks.getLockedObjectByPath( null, "/a" ), notNullValue() );
+    }
+
+    @Test
+    public void expiredLocksDoNotBlock()
+        throws Exception
+    {
+        final ConcurrentResourceLocks locks = new ConcurrentResourceLocks();
+
+        assertThat( locks.exclusiveLock( null, "/a", "owner1", 0, -1 ), equalTo( true ) );
+        assertThat( locks.getLockedObjectByPath( null, "/a" ), nullValue() );
+
+        assertThat( locks.exclusiveLock( null, "/a/b", "owner2", 0, TIMEOUT ), equalTo( true ) );
+
+        locks.checkTimeouts( null, false );
+        assertThat( locks.getLockedObjectByPath( null, "/a/b" ), notNullValue() );
+    }
+
+    @Test
+    public void stripesSharedByParentAndChildDoNotDeadlock()
+        throws Exception
+    {
+        final ConcurrentResourceLocks locks = new ConcurrentResourceLocks( 1 );
+
+        assertThat( locks.exclusiveLock( null, "/a/b/c", "owner1", 0, TIMEOUT ), equalTo( true ) );
+        assertThat( locks.exclusiveLock( null, "/a/b", "owner2", 1, TIMEOUT ), equalTo( false ) );
+    }
+
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.locking;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import net.sf.webdav.testutil.MockTest;
+
+import org.junit.Test;
+
+public class ResourceLocksTest
+    extends MockTest
+{
+
+    private static final int TIMEOUT = 3600;
+
+    @Test
+    public void expiredLockIsRemovedWithItsUnusedParents()
+        throws Exception
+    {
+        final ResourceLocks locks = new ResourceLocks();
+
+        assertThat( locks.exclusiveLock( null, "/a/b/c", "owner1", 0, -1 ), equalTo( true ) );
+        assertThat( locks.exclusiveLock( null, "/d", "owner2", 0, TIMEOUT ), equalTo( true ) );
+        assertThat( locks._locks.size(), equalTo( 5 ) );
+
+        locks.checkTimeouts( null, false );
+
+        assertThat( locks.getLockedObjectByPath( null, "/a/b/c" ), nullValue() );
+        assertThat( locks.getLockedObjectByPath( null, "/a" ), nullValue() );
+        assertThat( locks.getLockedObjectByPath( null, "/d" ), notNullValue() );
+        assertThat( locks._locks.size(), equalTo( 2 ) );
+        assertThat( locks._locksByID.size(), equalTo( 2 ) );
+    }
+
+    @Test
+    public void refreshedLockDoesNotExpire()
+        throws Exception
+    {
+        final ResourceLocks locks = new ResourceLocks();
+
+        assertThat( locks.exclusiveLock( null, "/a", "owner1", 0, -1 ), equalTo( true ) );
+        locks.getLockedObjectByPath( null, "/a" )
+             .refreshTimeout( TIMEOUT );
+
+        locks.checkTimeouts( null, false );
+
+        assertThat( locks.getLockedObjectByPath( null, "/a" ), notNullValue() );
+        assertThat( locks.exclusiveLock( null, "/a/b", "owner2", 0, TIMEOUT ), equalTo( false ) );
+    }
+
+    @Test
+    public void unlockingTemporaryLocksRemovesThem()
+        throws Exception
+    {
+        final ResourceLocks locks = new ResourceLocks();
+
+        assertThat( locks.lock( null, "/a/b", "temp1", false, 0, TEMP_TIMEOUT, TEMPORARY ), equalTo( true ) );
+        assertThat( locks.lock( null, "/a/c", "temp2", false, 0, TEMP_TIMEOUT, TEMPORARY ), equalTo( true ) );
+
+        locks.unlockTemporaryLockedObjects( null, "/a/b", "temp1" );
+        assertThat( locks.getTempLockedObjectByPath( null, "/a/b" ), nullValue() );
+        assertThat( locks.getTempLockedObjectByPath( null, "/a" ), notNullValue() );
+
+        locks.unlockTemporaryLockedObjects( null, "/a/c", "temp2" );
+        assertThat( locks.getTempLockedObjectByPath( null, "/a" ), nullValue() );
+        assertThat( locks._tempLocks.size(), equalTo( 1 ) );
+        assertThat( locks._tempLocksByID.size(), equalTo( 1 ) );
+    }
+
+    @Test
+    public void failedLockLeavesNothingBehind()
+        throws Exception
+    {
+        final ResourceLocks locks = new ResourceLocks();
+
+        assertThat( locks.exclusiveLock( null, "/a", "owner1", 0, TIMEOUT ), equalTo( true ) );
+        assertThat( locks.exclusiveLock( null, "/a/b/c", "owner2", 0, TIMEOUT ), equalTo( false ) );
+
+        assertThat( locks.getLockedObjectByPath( null, "/a/b" ), nullValue() );
+        assertThat( locks._locks.size(), equalTo( 2 ) );
+    }
+
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.locking;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import net.sf.webdav.spi.ITransaction;
+import net.sf.webdav.testutil.MockTest;
+
+import org.jmock.Expectations;
+import org.junit.Test;
+
+public class TempLockFreeResourceLocksTest
+    extends MockTest
+{
+
+    static IResourceLocks mockResourceLocks;
+
+    static ITransaction mockTransaction;
+
+    @Override
+    public void setupFixtures()
+        throws Exception
+    {
+        mockResourceLocks = _mockery.mock( IResourceLocks.class );
+        mockTransaction = _mockery.mock( ITransaction.class );
+    }
+
+    @Test
+    public void temporaryLocksAreNotPassedOn()
+        throws Exception
+    {
+        final TempLockFreeResourceLocks locks = new TempLockFreeResourceLocks( mockResourceLocks );
+
+        assertThat( locks.lock( mockTransaction, "/a", "temp", false, 0, TEMP_TIMEOUT, TEMPORARY ), equalTo( true ) );
+        locks.unlockTemporaryLockedObjects( mockTransaction, "/a", "temp" );
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void realLocksArePassedOn()
+        throws Exception
+    {
+        _mockery.checking( new Expectations()
+        {
+            {
+                one( mockResourceLocks ).lock( mockTransaction, "/a", "owner", true, 0, 3600, false );
+                will( returnValue( false ) );
+
+                one( mockResourceLocks ).getLockedObjectByPath( mockTransaction, "/a" );
+                will( returnValue( null ) );
+            }
+        } );
+
+        final TempLockFreeResourceLocks locks = new TempLockFreeResourceLocks( mockResourceLocks );
+
+        assertThat( locks.lock( mockTransaction, "/a", "owner", true, 0, 3600, false ), equalTo( false ) );
+        locks.getLockedObjectByPath( mockTransaction, "/a" );
+
+        _mockery.assertIsSatisfied();
+    }
+
+}
@@ -22,6 +22,7 @@ import net.sf.webdav.StoredObject;
 import net.sf.webdav.WebdavStatus;
 import net.sf.webdav.locking.LockedObject;
 import net.sf.webdav.locking.ResourceLocks;
+import net.sf.webdav.spi.ICopyingWebdavStore;
 import net.sf.webdav.spi.ITransaction;
 import net.sf.webdav.spi.IWebdavStore;
 import net.sf.webdav.spi.WebdavRequest;
@@ -812,4 +813,72 @@ public class DoCopyTest
         _mockery.assertIsSatisfied();
 
     }
+
+    @Test
+    public void testDoCopyFolderUsesStoreCopy()
+        throws Exception
+    {
+        final ICopyingWebdavStore copyingStore = _mockery.mock( ICopyingWebdavStore.class );
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                one( mockReq ).getAttribute( "javax.servlet.include.request_uri" );
+                will( returnValue( null ) );
+
+                one( mockReq ).getPathInfo();
+                will( returnValue( sourceCollectionPath ) );
+
+                one( mockReq ).getHeader( "Destination" );
+                will( returnValue( destCollectionPath ) );
+
+                one( mockReq ).getServerName();
+                will( returnValue( "serverName" ) );
+
+                one( mockReq ).getContextPath();
+                will( returnValue( "" ) );
+
+                one( mockReq ).getPathInfo();
+                will( returnValue( destCollectionPath ) );
+
+                one( mockReq ).getServicePath();
+                will( returnValue( "/servletPath" ) );
+
+                one( mockReq ).getAttribute( "javax.servlet.include.request_uri" );
+                will( returnValue( null ) );
+
+                one( mockReq ).getPathInfo();
+                will( returnValue( sourceCollectionPath ) );
+
+                one( mockReq ).getHeader( "Overwrite" );
+                will( returnValue( "F" ) );
+
+                final StoredObject sourceCollectionSo = initFolderStoredObject();
+
+                exactly( 2 ).of( copyingStore )
+                            .getStoredObject( mockTransaction, sourceCollectionPath );
+                will( returnValue( sourceCollectionSo ) );
+
+                one( copyingStore ).getStoredObject( mockTransaction, destCollectionPath );
+                will( returnValue( null ) );
+
+                one( mockRes ).setStatus( WebdavStatus.SC_CREATED );
+
+                one( mockReq ).getHeader( "Depth" );
+                will( returnValue( null ) );
+
+                one( copyingStore ).copyObject( mockTransaction, sourceCollectionPath, destCollectionPath );
+                will( returnValue( true ) );
+            }
+        } );
+
+        final ResourceLocks resLocks = new ResourceLocks();
+
+        final DoDelete doDelete = new DoDelete( copyingStore, resLocks, !readOnly );
+
+        final DoCopy doCopy = new DoCopy( copyingStore, resLocks, doDelete, !readOnly );
+        doCopy.execute( mockTransaction, mockReq, mockRes );
+
+        _mockery.assertIsSatisfied();
+    }
 }
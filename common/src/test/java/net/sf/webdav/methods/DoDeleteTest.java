@@ -15,12 +15,20 @@
  */
 package net.sf.webdav.methods;
 
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.junit.Assert.assertThat;
+
 import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Collections;
 
 import net.sf.webdav.StoredObject;
 import net.sf.webdav.WebdavStatus;
+import net.sf.webdav.exceptions.AccessDeniedException;
+import net.sf.webdav.exceptions.WebdavException;
 import net.sf.webdav.locking.LockedObject;
 import net.sf.webdav.locking.ResourceLocks;
+import net.sf.webdav.spi.IBulkRemovingWebdavStore;
 import net.sf.webdav.spi.ITransaction;
 import net.sf.webdav.spi.IWebdavStore;
 import net.sf.webdav.spi.WebdavRequest;
@@ -386,4 +394,48 @@ public class DoDeleteTest
         _mockery.assertIsSatisfied();
     }
 
+    @Test
+    public void testDeleteFolderUsesBulkRemoval()
+        throws Exception
+    {
+        final IBulkRemovingWebdavStore bulkStore = _mockery.mock( IBulkRemovingWebdavStore.class );
+        final StringWriter report = new StringWriter();
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                one( mockReq ).getAttribute( "javax.servlet.include.request_uri" );
+                will( returnValue( null ) );
+
+                one( mockReq ).getPathInfo();
+                will( returnValue( sourceCollectionPath ) );
+
+                one( mockRes ).setStatus( WebdavStatus.SC_NO_CONTENT );
+
+                one( bulkStore ).getStoredObject( mockTransaction, sourceCollectionPath );
+                will( returnValue( initFolderStoredObject() ) );
+
+                one( bulkStore ).removeFolder( mockTransaction, sourceCollectionPath );
+                will( returnValue( Collections.<String, WebdavException> singletonMap( sourceFilePath,
+                                                                                        new AccessDeniedException() ) ) );
+
+                one( mockRes ).setStatus( WebdavStatus.SC_MULTI_STATUS );
+
+                one( mockReq ).getRequestURI();
+                will( returnValue( sourceCollectionPath ) );
+
+                one( mockRes ).getWriter();
+                will( returnValue( new PrintWriter( report ) ) );
+            }
+        } );
+
+        final DoDelete doDelete = new DoDelete( bulkStore, new ResourceLocks(), !readOnly );
+
+        doDelete.execute( mockTransaction, mockReq, mockRes );
+
+        _mockery.assertIsSatisfied();
+        assertThat( report.toString(), containsString( sourceFilePath ) );
+        assertThat( report.toString(), containsString( "403" ) );
+    }
+
 }
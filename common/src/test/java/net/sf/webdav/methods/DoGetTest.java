@@ -20,20 +20,27 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
 import java.util.Locale;
 
 import net.sf.webdav.StoredObject;
 import net.sf.webdav.WebdavStatus;
 import net.sf.webdav.locking.ResourceLocks;
+import net.sf.webdav.spi.IFileBackedWebdavStore;
 import net.sf.webdav.spi.IMimeTyper;
 import net.sf.webdav.spi.ITransaction;
 import net.sf.webdav.spi.IWebdavStore;
+import net.sf.webdav.spi.WebdavFileResponse;
 import net.sf.webdav.spi.WebdavRequest;
 import net.sf.webdav.spi.WebdavResponse;
+import net.sf.webdav.spi.WebdavStreamResponse;
 import net.sf.webdav.testutil.MockTest;
 import net.sf.webdav.testutil.TestingOutputStream;
 
 import org.jmock.Expectations;
+import org.jmock.api.Invocation;
+import org.jmock.lib.action.CustomAction;
 import org.junit.Test;
 
 public class DoGetTest
@@ -133,6 +140,11 @@ public class DoGetTest
 
                 one( mockRes ).addHeader( with( any( String.class ) ), with( any( String.class ) ) );
 
+                one( mockRes ).setHeader( "Accept-Ranges", "bytes" );
+
+                one( mockReq ).getHeader( "Range" );
+                will( returnValue( null ) );
+
                 one( mockMimeTyper ).getMimeType( "/index.html" );
                 will( returnValue( "text/foo" ) );
 
@@ -213,11 +225,11 @@ public class DoGetTest
                 will( returnValue( new String[] { "AAA", "BBB" } ) );
 
                 atLeast( 1 ).of( mockStore )
-                            .getStoredObject( mockTransaction, "/foo//AAA" );
+                            .getStoredObject( mockTransaction, "/foo/AAA" );
                 will( returnValue( aaaSo ) );
 
                 atLeast( 1 ).of( mockStore )
-                            .getStoredObject( mockTransaction, "/foo//BBB" );
+                            .getStoredObject( mockTransaction, "/foo/BBB" );
                 will( returnValue( bbbSo ) );
 
             }
@@ -305,6 +317,11 @@ public class DoGetTest
 
                 one( mockRes ).addHeader( with( any( String.class ) ), with( any( String.class ) ) );
 
+                one( mockRes ).setHeader( "Accept-Ranges", "bytes" );
+
+                one( mockReq ).getHeader( "Range" );
+                will( returnValue( null ) );
+
                 one( mockMimeTyper ).getMimeType( "/alternative" );
                 will( returnValue( "text/foo" ) );
 
@@ -334,4 +351,515 @@ public class DoGetTest
         _mockery.assertIsSatisfied();
     }
 
+    @Test
+    public void testRangeOfaPageResultsInPartialContent()
+        throws Exception
+    {
+
+        final TestingOutputStream rangeTos = new TestingOutputStream();
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                one( mockReq ).getAttribute( "javax.servlet.include.request_uri" );
+                will( returnValue( null ) );
+
+                one( mockReq ).getPathInfo();
+                will( returnValue( "/index.html" ) );
+
+                final StoredObject indexSo = initFileStoredObject( resourceContent );
+
+                one( mockStore ).getStoredObject( mockTransaction, "/index.html" );
+                will( returnValue( indexSo ) );
+
+                one( mockReq ).getHeader( "If-None-Match" );
+                will( returnValue( null ) );
+
+                one( mockRes ).setDateHeader( "last-modified", indexSo.getLastModified()
+                                                                      .getTime() );
+
+                one( mockRes ).addHeader( with( any( String.class ) ), with( any( String.class ) ) );
+
+                one( mockRes ).setHeader( "Accept-Ranges", "bytes" );
+
+                one( mockReq ).getHeader( "Range" );
+                will( returnValue( "bytes=1-5" ) );
+
+                one( mockReq ).getHeader( "If-Range" );
+                will( returnValue( null ) );
+
+                one( mockMimeTyper ).getMimeType( "/index.html" );
+                will( returnValue( "text/foo" ) );
+
+                one( mockRes ).setStatus( WebdavStatus.SC_PARTIAL_CONTENT );
+
+                one( mockRes ).setHeader( "Content-Range", "bytes 1-5/8" );
+
+                one( mockRes ).setContentLength( 5 );
+
+                one( mockRes ).setContentType( "text/foo" );
+
+                one( mockRes ).getOutputStream();
+                will( returnValue( rangeTos ) );
+
+                one( mockStore ).getResourceContent( mockTransaction, "/index.html" );
+                will( returnValue( new ByteArrayInputStream( resourceContent ) ) );
+            }
+        } );
+
+        final DoGet doGet = new DoGet( mockStore, null, null, new ResourceLocks(), mockMimeTyper, false );
+
+        doGet.execute( mockTransaction, mockReq, mockRes );
+
+        assertEquals( "hello", rangeTos.toString() );
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testIfRangeWithWeakETagResultsInFullContent()
+        throws Exception
+    {
+
+        final TestingOutputStream fullTos = new TestingOutputStream();
+        final StoredObject indexSo = initFileStoredObject( resourceContent );
+        final String weakETag = "W/\"" + resourceLength + "-" + indexSo.getLastModified()
+                                                                       .getTime() + "\"";
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                one( mockReq ).getAttribute( "javax.servlet.include.request_uri" );
+                will( returnValue( null ) );
+
+                one( mockReq ).getPathInfo();
+                will( returnValue( "/index.html" ) );
+
+                exactly( 2 ).of( mockStore )
+                            .getStoredObject( mockTransaction, "/index.html" );
+                will( returnValue( indexSo ) );
+
+                one( mockReq ).getHeader( "If-None-Match" );
+                will( returnValue( null ) );
+
+                one( mockRes ).setDateHeader( "last-modified", indexSo.getLastModified()
+                                                                      .getTime() );
+
+                one( mockRes ).addHeader( "ETag", weakETag );
+
+                one( mockRes ).setHeader( "Accept-Ranges", "bytes" );
+
+                one( mockReq ).getHeader( "Range" );
+                will( returnValue( "bytes=1-5" ) );
+
+                one( mockReq ).getHeader( "If-Range" );
+                will( returnValue( weakETag ) );
+
+                one( mockMimeTyper ).getMimeType( "/index.html" );
+                will( returnValue( "text/foo" ) );
+
+                one( mockRes ).setContentType( "text/foo" );
+
+                one( mockRes ).getOutputStream();
+                will( returnValue( fullTos ) );
+
+                one( mockStore ).getResourceContent( mockTransaction, "/index.html" );
+                will( returnValue( new ByteArrayInputStream( resourceContent ) ) );
+            }
+        } );
+
+        final DoGet doGet = new DoGet( mockStore, null, null, new ResourceLocks(), mockMimeTyper, false );
+
+        doGet.execute( mockTransaction, mockReq, mockRes );
+
+        assertEquals( "<hello/>", fullTos.toString() );
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testOverlappingRangesResultInFullContent()
+        throws Exception
+    {
+
+        final TestingOutputStream fullTos = new TestingOutputStream();
+        final StoredObject indexSo = initFileStoredObject( resourceContent );
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                one( mockReq ).getAttribute( "javax.servlet.include.request_uri" );
+                will( returnValue( null ) );
+
+                one( mockReq ).getPathInfo();
+                will( returnValue( "/index.html" ) );
+
+                exactly( 2 ).of( mockStore )
+                            .getStoredObject( mockTransaction, "/index.html" );
+                will( returnValue( indexSo ) );
+
+                one( mockReq ).getHeader( "If-None-Match" );
+                will( returnValue( null ) );
+
+                one( mockRes ).setDateHeader( "last-modified", indexSo.getLastModified()
+                                                                      .getTime() );
+
+                one( mockRes ).addHeader( with( equal( "ETag" ) ), with( any( String.class ) ) );
+
+                one( mockRes ).setHeader( "Accept-Ranges", "bytes" );
+
+                one( mockReq ).getHeader( "Range" );
+                will( returnValue( "bytes=0-,0-,0-,0-" ) );
+
+                one( mockReq ).getHeader( "If-Range" );
+                will( returnValue( null ) );
+
+                one( mockMimeTyper ).getMimeType( "/index.html" );
+                will( returnValue( "text/foo" ) );
+
+                one( mockRes ).setContentType( "text/foo" );
+
+                one( mockRes ).getOutputStream();
+                will( returnValue( fullTos ) );
+
+                one( mockStore ).getResourceContent( mockTransaction, "/index.html" );
+                will( returnValue( new ByteArrayInputStream( resourceContent ) ) );
+            }
+        } );
+
+        final DoGet doGet = new DoGet( mockStore, null, null, new ResourceLocks(), mockMimeTyper, false );
+
+        doGet.execute( mockTransaction, mockReq, mockRes );
+
+        assertEquals( "<hello/>", fullTos.toString() );
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testIfRangeWithStrongETagResultsInPartialContent()
+        throws Exception
+    {
+
+        final TestingOutputStream rangeTos = new TestingOutputStream();
+        final StoredObject indexSo = initFileStoredObject( resourceContent );
+        indexSo.setContentDigest( "SHA-256=v4xbBWbTMrBp5K1tLAqHw4UhCzb3BvAjpHfVValaz3o=" );
+        final String strongETag = "\"SHA-256=v4xbBWbTMrBp5K1tLAqHw4UhCzb3BvAjpHfVValaz3o=\"";
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                one( mockReq ).getAttribute( "javax.servlet.include.request_uri" );
+                will( returnValue( null ) );
+
+                one( mockReq ).getPathInfo();
+                will( returnValue( "/index.html" ) );
+
+                one( mockStore ).getStoredObject( mockTransaction, "/index.html" );
+                will( returnValue( indexSo ) );
+
+                one( mockReq ).getHeader( "If-None-Match" );
+                will( returnValue( null ) );
+
+                one( mockRes ).setDateHeader( "last-modified", indexSo.getLastModified()
+                                                                      .getTime() );
+
+                one( mockRes ).addHeader( "ETag", strongETag );
+
+                one( mockRes ).setHeader( "Accept-Ranges", "bytes" );
+
+                one( mockRes ).setHeader( "Digest", indexSo.getContentDigest() );
+
+                one( mockReq ).getHeader( "Range" );
+                will( returnValue( "bytes=1-5" ) );
+
+                one( mockReq ).getHeader( "If-Range" );
+                will( returnValue( strongETag ) );
+
+                one( mockMimeTyper ).getMimeType( "/index.html" );
+                will( returnValue( "text/foo" ) );
+
+                one( mockRes ).setStatus( WebdavStatus.SC_PARTIAL_CONTENT );
+
+                one( mockRes ).setHeader( "Content-Range", "bytes 1-5/8" );
+
+                one( mockRes ).setContentLength( 5 );
+
+                one( mockRes ).setContentType( "text/foo" );
+
+                one( mockRes ).getOutputStream();
+                will( returnValue( rangeTos ) );
+
+                one( mockStore ).getResourceContent( mockTransaction, "/index.html" );
+                will( returnValue( new ByteArrayInputStream( resourceContent ) ) );
+            }
+        } );
+
+        final DoGet doGet = new DoGet( mockStore, null, null, new ResourceLocks(), mockMimeTyper, false );
+
+        doGet.execute( mockTransaction, mockReq, mockRes );
+
+        assertEquals( "hello", rangeTos.toString() );
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testUnsatisfiableRangeResultsIn416()
+        throws Exception
+    {
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                one( mockReq ).getAttribute( "javax.servlet.include.request_uri" );
+                will( returnValue( null ) );
+
+                one( mockReq ).getPathInfo();
+                will( returnValue( "/index.html" ) );
+
+                final StoredObject indexSo = initFileStoredObject( resourceContent );
+
+                one( mockStore ).getStoredObject( mockTransaction, "/index.html" );
+                will( returnValue( indexSo ) );
+
+                one( mockReq ).getHeader( "If-None-Match" );
+                will( returnValue( null ) );
+
+                one( mockRes ).setDateHeader( "last-modified", indexSo.getLastModified()
+                                                                      .getTime() );
+
+                one( mockRes ).addHeader( with( any( String.class ) ), with( any( String.class ) ) );
+
+                one( mockRes ).setHeader( "Accept-Ranges", "bytes" );
+
+                one( mockReq ).getHeader( "Range" );
+                will( returnValue( "bytes=100-" ) );
+
+                one( mockReq ).getHeader( "If-Range" );
+                will( returnValue( null ) );
+
+                one( mockRes ).setHeader( "Content-Range", "bytes */8" );
+
+                one( mockRes ).sendError( WebdavStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE );
+            }
+        } );
+
+        final DoGet doGet = new DoGet( mockStore, null, null, new ResourceLocks(), mockMimeTyper, false );
+
+        doGet.execute( mockTransaction, mockReq, mockRes );
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testAccessOfaFileBackedPageIsSentAsFile()
+        throws Exception
+    {
+
+        final IFileBackedWebdavStore mockFileStore = _mockery.mock( IFileBackedWebdavStore.class );
+        final WebdavFileResponse mockFileRes = _mockery.mock( WebdavFileResponse.class );
+        final File file = tempFolder.newFile( "index.html" );
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                one( mockReq ).getAttribute( "javax.servlet.include.request_uri" );
+                will( returnValue( null ) );
+
+                one( mockReq ).getPathInfo();
+                will( returnValue( "/index.html" ) );
+
+                final StoredObject indexSo = initFileStoredObject( resourceContent );
+
+                exactly( 2 ).of( mockFileStore )
+                            .getStoredObject( mockTransaction, "/index.html" );
+                will( returnValue( indexSo ) );
+
+                one( mockReq ).getHeader( "If-None-Match" );
+                will( returnValue( null ) );
+
+                one( mockFileRes ).setDateHeader( "last-modified", indexSo.getLastModified()
+                                                                          .getTime() );
+
+                one( mockFileRes ).addHeader( with( any( String.class ) ), with( any( String.class ) ) );
+
+                one( mockFileRes ).setHeader( "Accept-Ranges", "bytes" );
+
+                one( mockReq ).getHeader( "Range" );
+                will( returnValue( null ) );
+
+                one( mockMimeTyper ).getMimeType( "/index.html" );
+                will( returnValue( "text/foo" ) );
+
+                one( mockFileRes ).setContentType( "text/foo" );
+
+                one( mockFileStore ).getResourceFile( mockTransaction, "/index.html" );
+                will( returnValue( file ) );
+
+                one( mockFileRes ).sendFile( with( equal( file ) ), with( equal( 0L ) ), with( equal( (long) resourceContent.length ) ),
+                                             with( any( Runnable.class ) ) );
+                will( returnValue( true ) );
+            }
+        } );
+
+        final DoGet doGet = new DoGet( mockFileStore, null, null, new ResourceLocks(), mockMimeTyper, false );
+
+        doGet.execute( mockTransaction, mockReq, mockFileRes );
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testRangeOfaFileBackedPageIsSentAsFileSliceUnderTheReadLock()
+        throws Exception
+    {
+
+        final IFileBackedWebdavStore mockFileStore = _mockery.mock( IFileBackedWebdavStore.class );
+        final WebdavFileResponse mockFileRes = _mockery.mock( WebdavFileResponse.class );
+        final File file = tempFolder.newFile( "index.html" );
+        final Runnable[] release = new Runnable[1];
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                one( mockReq ).getAttribute( "javax.servlet.include.request_uri" );
+                will( returnValue( null ) );
+
+                one( mockReq ).getPathInfo();
+                will( returnValue( "/index.html" ) );
+
+                final StoredObject indexSo = initFileStoredObject( resourceContent );
+
+                one( mockFileStore ).getStoredObject( mockTransaction, "/index.html" );
+                will( returnValue( indexSo ) );
+
+                one( mockReq ).getHeader( "If-None-Match" );
+                will( returnValue( null ) );
+
+                one( mockFileRes ).setDateHeader( "last-modified", indexSo.getLastModified()
+                                                                          .getTime() );
+
+                one( mockFileRes ).addHeader( with( any( String.class ) ), with( any( String.class ) ) );
+
+                one( mockFileRes ).setHeader( "Accept-Ranges", "bytes" );
+
+                one( mockReq ).getHeader( "Range" );
+                will( returnValue( "bytes=1-5" ) );
+
+                one( mockReq ).getHeader( "If-Range" );
+                will( returnValue( null ) );
+
+                one( mockMimeTyper ).getMimeType( "/index.html" );
+                will( returnValue( "text/foo" ) );
+
+                one( mockFileRes ).setStatus( WebdavStatus.SC_PARTIAL_CONTENT );
+
+                one( mockFileRes ).setHeader( "Content-Range", "bytes 1-5/8" );
+
+                one( mockFileRes ).setContentLength( 5 );
+
+                one( mockFileRes ).setContentType( "text/foo" );
+
+                one( mockFileStore ).getResourceFile( mockTransaction, "/index.html" );
+                will( returnValue( file ) );
+
+                one( mockFileRes ).sendFile( with( equal( file ) ), with( equal( 1L ) ), with( equal( 5L ) ), with( any( Runnable.class ) ) );
+                will( new CustomAction( "take over the file" )
+                {
+                    @Override
+                    public Object invoke( final Invocation invocation )
+                        throws Throwable
+                    {
+                        release[0] = (Runnable) invocation.getParameter( 3 );
+                        return true;
+                    }
+                } );
+            }
+        } );
+
+        final ResourceLocks locks = new ResourceLocks();
+        final DoGet doGet = new DoGet( mockFileStore, null, null, locks, mockMimeTyper, false );
+
+        doGet.execute( mockTransaction, mockReq, mockFileRes );
+
+        assertThat( locks.lock( mockTransaction, "/index.html", "writer", true, 0, 10, true ), equalTo( false ) );
+
+        release[0].run();
+        assertThat( locks.lock( mockTransaction, "/index.html", "writer", true, 0, 10, true ), equalTo( true ) );
+
+        _mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testStreamedPageKeepsItsReadLockUntilTheContentIsClosed()
+        throws Exception
+    {
+
+        final WebdavStreamResponse mockStreamRes = _mockery.mock( WebdavStreamResponse.class );
+        final InputStream[] sent = new InputStream[1];
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                one( mockReq ).getAttribute( "javax.servlet.include.request_uri" );
+                will( returnValue( null ) );
+
+                one( mockReq ).getPathInfo();
+                will( returnValue( "/index.html" ) );
+
+                final StoredObject indexSo = initFileStoredObject( resourceContent );
+
+                exactly( 2 ).of( mockStore )
+                            .getStoredObject( mockTransaction, "/index.html" );
+                will( returnValue( indexSo ) );
+
+                one( mockReq ).getHeader( "If-None-Match" );
+                will( returnValue( null ) );
+
+                one( mockStreamRes ).setDateHeader( "last-modified", indexSo.getLastModified()
+                                                                            .getTime() );
+
+                one( mockStreamRes ).addHeader( with( any( String.class ) ), with( any( String.class ) ) );
+
+                one( mockStreamRes ).setHeader( "Accept-Ranges", "bytes" );
+
+                one( mockReq ).getHeader( "Range" );
+                will( returnValue( null ) );
+
+                one( mockMimeTyper ).getMimeType( "/index.html" );
+                will( returnValue( "text/foo" ) );
+
+                one( mockStreamRes ).setContentType( "text/foo" );
+
+                one( mockStore ).getResourceContent( mockTransaction, "/index.html" );
+                will( returnValue( new ByteArrayInputStream( resourceContent ) ) );
+
+                one( mockStreamRes ).sendStream( with( any( InputStream.class ) ), with( equal( (long) resourceContent.length ) ) );
+                will( new CustomAction( "take over the content" )
+                {
+                    @Override
+                    public Object invoke( final Invocation invocation )
+                        throws Throwable
+                    {
+                        sent[0] = (InputStream) invocation.getParameter( 0 );
+                        return true;
+                    }
+                } );
+            }
+        } );
+
+        final ResourceLocks locks = new ResourceLocks();
+        final DoGet doGet = new DoGet( mockStore, null, null, locks, mockMimeTyper, false );
+
+        doGet.execute( mockTransaction, mockReq, mockStreamRes );
+
+        assertThat( locks.lock( mockTransaction, "/index.html", "writer", true, 0, 10, true ), equalTo( false ) );
+
+        sent[0].close();
+        assertThat( locks.lock( mockTransaction, "/index.html", "writer", true, 0, 10, true ), equalTo( true ) );
+
+        _mockery.assertIsSatisfied();
+    }
+
 }
@@ -115,6 +115,11 @@ public class DoHeadTest
 
                 one( mockRes ).addHeader( with( any( String.class ) ), with( any( String.class ) ) );
 
+                one( mockRes ).setHeader( "Accept-Ranges", "bytes" );
+
+                one( mockReq ).getHeader( "Range" );
+                will( returnValue( null ) );
+
                 one( mockMimeTyper ).getMimeType( "/index.html" );
                 will( returnValue( "text/foo" ) );
 
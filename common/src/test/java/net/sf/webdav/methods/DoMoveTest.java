@@ -20,6 +20,7 @@ import java.io.ByteArrayInputStream;
 import net.sf.webdav.StoredObject;
 import net.sf.webdav.WebdavStatus;
 import net.sf.webdav.locking.ResourceLocks;
+import net.sf.webdav.spi.ICopyingWebdavStore;
 import net.sf.webdav.spi.ITransaction;
 import net.sf.webdav.spi.IWebdavStore;
 import net.sf.webdav.spi.WebdavRequest;
@@ -87,7 +88,7 @@ public class DoMoveTest
         final DoDelete doDelete = new DoDelete( mockStore, resLocks, readOnly );
         final DoCopy doCopy = new DoCopy( mockStore, resLocks, doDelete, readOnly );
 
-        final DoMove doMove = new DoMove( resLocks, doDelete, doCopy, readOnly );
+        final DoMove doMove = new DoMove( resLocks, doCopy, readOnly );
 
         doMove.execute( mockTransaction, mockReq, mockRes );
     }
@@ -172,7 +173,7 @@ public class DoMoveTest
         final DoDelete doDelete = new DoDelete( mockStore, resLocks, !readOnly );
         final DoCopy doCopy = new DoCopy( mockStore, resLocks, doDelete, !readOnly );
 
-        final DoMove doMove = new DoMove( resLocks, doDelete, doCopy, !readOnly );
+        final DoMove doMove = new DoMove( resLocks, doCopy, !readOnly );
 
         doMove.execute( mockTransaction, mockReq, mockRes );
     }
@@ -235,7 +236,7 @@ public class DoMoveTest
         final DoDelete doDelete = new DoDelete( mockStore, resLocks, !readOnly );
         final DoCopy doCopy = new DoCopy( mockStore, resLocks, doDelete, !readOnly );
 
-        final DoMove doMove = new DoMove( resLocks, doDelete, doCopy, !readOnly );
+        final DoMove doMove = new DoMove( resLocks, doCopy, !readOnly );
 
         doMove.execute( mockTransaction, mockReq, mockRes );
     }
@@ -323,7 +324,7 @@ public class DoMoveTest
         final DoDelete doDelete = new DoDelete( mockStore, resLocks, !readOnly );
         final DoCopy doCopy = new DoCopy( mockStore, resLocks, doDelete, !readOnly );
 
-        final DoMove doMove = new DoMove( resLocks, doDelete, doCopy, !readOnly );
+        final DoMove doMove = new DoMove( resLocks, doCopy, !readOnly );
 
         doMove.execute( mockTransaction, mockReq, mockRes );
     }
@@ -380,7 +381,7 @@ public class DoMoveTest
         final DoDelete doDelete = new DoDelete( mockStore, resLocks, !readOnly );
         final DoCopy doCopy = new DoCopy( mockStore, resLocks, doDelete, !readOnly );
 
-        final DoMove doMove = new DoMove( resLocks, doDelete, doCopy, !readOnly );
+        final DoMove doMove = new DoMove( resLocks, doCopy, !readOnly );
 
         doMove.execute( mockTransaction, mockReq, mockRes );
     }
@@ -429,7 +430,7 @@ public class DoMoveTest
         final DoDelete doDelete = new DoDelete( mockStore, resLocks, !readOnly );
         final DoCopy doCopy = new DoCopy( mockStore, resLocks, doDelete, !readOnly );
 
-        final DoMove doMove = new DoMove( resLocks, doDelete, doCopy, !readOnly );
+        final DoMove doMove = new DoMove( resLocks, doCopy, !readOnly );
 
         doMove.execute( mockTransaction, mockReq, mockRes );
     }
@@ -539,7 +540,7 @@ public class DoMoveTest
         final DoDelete doDelete = new DoDelete( mockStore, resLocks, !readOnly );
         final DoCopy doCopy = new DoCopy( mockStore, resLocks, doDelete, !readOnly );
 
-        final DoMove doMove = new DoMove( resLocks, doDelete, doCopy, !readOnly );
+        final DoMove doMove = new DoMove( resLocks, doCopy, !readOnly );
 
         doMove.execute( mockTransaction, mockReq, mockRes );
     }
@@ -601,7 +602,7 @@ public class DoMoveTest
         final DoDelete doDelete = new DoDelete( mockStore, resLocks, !readOnly );
         final DoCopy doCopy = new DoCopy( mockStore, resLocks, doDelete, !readOnly );
 
-        final DoMove doMove = new DoMove( resLocks, doDelete, doCopy, !readOnly );
+        final DoMove doMove = new DoMove( resLocks, doCopy, !readOnly );
 
         doMove.execute( mockTransaction, mockReq, mockRes );
     }
@@ -724,9 +725,74 @@ public class DoMoveTest
         final DoDelete doDelete = new DoDelete( mockStore, resLocks, !readOnly );
         final DoCopy doCopy = new DoCopy( mockStore, resLocks, doDelete, !readOnly );
 
-        final DoMove doMove = new DoMove( resLocks, doDelete, doCopy, !readOnly );
+        final DoMove doMove = new DoMove( resLocks, doCopy, !readOnly );
 
         doMove.execute( mockTransaction, mockReq, mockRes );
     }
 
+    @Test
+    public void testMovingOfaCollectionUsesStoreMove()
+        throws Exception
+    {
+        final ICopyingWebdavStore copyingStore = _mockery.mock( ICopyingWebdavStore.class );
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                one( mockReq ).getAttribute( "javax.servlet.include.request_uri" );
+                will( returnValue( null ) );
+
+                one( mockReq ).getPathInfo();
+                will( returnValue( sourceCollectionPath ) );
+
+                exactly( 2 ).of( mockReq )
+                            .getHeader( "Destination" );
+                will( returnValue( destCollectionPath ) );
+
+                one( mockReq ).getServerName();
+                will( returnValue( "serverName" ) );
+
+                one( mockReq ).getContextPath();
+                will( returnValue( "" ) );
+
+                one( mockReq ).getPathInfo();
+                will( returnValue( destCollectionPath ) );
+
+                one( mockReq ).getServicePath();
+                will( returnValue( "/servletPath" ) );
+
+                one( mockReq ).getAttribute( "javax.servlet.include.request_uri" );
+                will( returnValue( null ) );
+
+                one( mockReq ).getPathInfo();
+                will( returnValue( sourceCollectionPath ) );
+
+                one( mockReq ).getHeader( "Overwrite" );
+                will( returnValue( "F" ) );
+
+                final StoredObject sourceCollectionSo = initFolderStoredObject();
+
+                one( copyingStore ).getStoredObject( mockTransaction, sourceCollectionPath );
+                will( returnValue( sourceCollectionSo ) );
+
+                one( copyingStore ).getStoredObject( mockTransaction, destCollectionPath );
+                will( returnValue( null ) );
+
+                one( mockRes ).setStatus( WebdavStatus.SC_CREATED );
+
+                one( copyingStore ).moveObject( mockTransaction, sourceCollectionPath, destCollectionPath );
+                will( returnValue( true ) );
+            }
+        } );
+
+        final ResourceLocks resLocks = new ResourceLocks();
+        final DoDelete doDelete = new DoDelete( copyingStore, resLocks, !readOnly );
+        final DoCopy doCopy = new DoCopy( copyingStore, resLocks, doDelete, !readOnly );
+
+        final DoMove doMove = new DoMove( resLocks, doCopy, !readOnly );
+
+        doMove.execute( mockTransaction, mockReq, mockRes );
+
+        _mockery.assertIsSatisfied();
+    }
 }
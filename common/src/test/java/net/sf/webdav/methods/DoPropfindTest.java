@@ -15,17 +15,22 @@
  */
 package net.sf.webdav.methods;
 
-import java.io.PrintWriter;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import net.sf.webdav.StoredObject;
 import net.sf.webdav.WebdavStatus;
 import net.sf.webdav.locking.ResourceLocks;
+import net.sf.webdav.spi.IChildListingWebdavStore;
 import net.sf.webdav.spi.IMimeTyper;
 import net.sf.webdav.spi.ITransaction;
 import net.sf.webdav.spi.IWebdavStore;
 import net.sf.webdav.spi.WebdavRequest;
 import net.sf.webdav.spi.WebdavResponse;
 import net.sf.webdav.testutil.MockTest;
+import net.sf.webdav.testutil.TestingOutputStream;
 
 import org.jmock.Expectations;
 import org.junit.Test;
@@ -43,7 +48,7 @@ public class DoPropfindTest
 
     static ITransaction mockTransaction;
 
-    static PrintWriter printWriter;
+    static TestingOutputStream tos;
 
     static byte[] resourceContent = new byte[] { '<', 'h', 'e', 'l', 'l', 'o', '/', '>' };
 
@@ -56,6 +61,7 @@ public class DoPropfindTest
         mockReq = _mockery.mock( WebdavRequest.class );
         mockRes = _mockery.mock( WebdavResponse.class );
         mockTransaction = _mockery.mock( ITransaction.class );
+        tos = new TestingOutputStream();
     }
 
     @Test
@@ -95,15 +101,12 @@ public class DoPropfindTest
 
                 one( mockRes ).setContentType( "text/xml; charset=UTF-8" );
 
-                one( mockRes ).getWriter();
-                will( returnValue( printWriter ) );
+                one( mockRes ).getOutputStream();
+                will( returnValue( tos ) );
 
                 one( mockMimeTyper ).getMimeType( path );
                 will( returnValue( "text/xml; charset=UTF-8" ) );
 
-                one( mockStore ).getStoredObject( mockTransaction, path );
-                will( returnValue( rootSo ) );
-
                 one( mockReq ).getContextPath();
                 will( returnValue( "" ) );
 
@@ -124,9 +127,6 @@ public class DoPropfindTest
                 one( mockReq ).getServicePath();
                 will( returnValue( path ) );
 
-                one( mockStore ).getChildrenNames( mockTransaction, path + "file1" );
-                will( returnValue( new String[] {} ) );
-
                 final StoredObject file2So = initFileStoredObject( resourceContent );
 
                 one( mockStore ).getStoredObject( mockTransaction, path + "file2" );
@@ -137,9 +137,6 @@ public class DoPropfindTest
 
                 one( mockReq ).getServicePath();
                 will( returnValue( path ) );
-
-                one( mockStore ).getChildrenNames( mockTransaction, path + "file2" );
-                will( returnValue( new String[] {} ) );
             }
         } );
 
@@ -147,6 +144,75 @@ public class DoPropfindTest
         doPropfind.execute( mockTransaction, mockReq, mockRes );
 
         _mockery.assertIsSatisfied();
+
+        final String xml = tos.toString();
+        assertTrue( xml.startsWith( "<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n<D:multistatus xmlns:D=\"DAV:\">" ) );
+        assertTrue( xml.contains( "<D:href>/file1</D:href>" ) );
+        assertTrue( xml.endsWith( "</D:multistatus>\n" ) );
+    }
+
+    @Test
+    public void doPropFindOnDirectoryUsesChildListing()
+        throws Exception
+    {
+        final String path = "/";
+        final IChildListingWebdavStore listingStore = _mockery.mock( IChildListingWebdavStore.class );
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                one( mockReq ).getAttribute( "javax.servlet.include.request_uri" );
+                will( returnValue( null ) );
+
+                one( mockReq ).getPathInfo();
+                will( returnValue( path ) );
+
+                one( mockReq ).getHeader( "Depth" );
+                will( returnValue( "1" ) );
+
+                final StoredObject rootSo = initFolderStoredObject();
+
+                one( listingStore ).getStoredObject( mockTransaction, path );
+                will( returnValue( rootSo ) );
+
+                one( mockReq ).getAttribute( "javax.servlet.include.request_uri" );
+                will( returnValue( null ) );
+
+                one( mockReq ).getPathInfo();
+                will( returnValue( path ) );
+
+                one( mockReq ).getContentLength();
+                will( returnValue( -1 ) );
+
+                one( mockRes ).setStatus( WebdavStatus.SC_MULTI_STATUS );
+
+                one( mockRes ).setContentType( "text/xml; charset=UTF-8" );
+
+                one( mockRes ).getOutputStream();
+                will( returnValue( tos ) );
+
+                one( mockMimeTyper ).getMimeType( path );
+                will( returnValue( "text/xml; charset=UTF-8" ) );
+
+                final Map<String, StoredObject> children = new LinkedHashMap<String, StoredObject>();
+                children.put( "file1", initFileStoredObject( resourceContent ) );
+                children.put( "folder1", initFolderStoredObject() );
+
+                one( listingStore ).getChildren( mockTransaction, path );
+                will( returnValue( children ) );
+
+                exactly( 3 ).of( mockReq ).getContextPath();
+                will( returnValue( "" ) );
+
+                exactly( 3 ).of( mockReq ).getServicePath();
+                will( returnValue( path ) );
+            }
+        } );
+
+        final DoPropfind doPropfind = new DoPropfind( listingStore, new ResourceLocks(), mockMimeTyper );
+        doPropfind.execute( mockTransaction, mockReq, mockRes );
+
+        _mockery.assertIsSatisfied();
     }
 
     @Test
@@ -186,15 +252,12 @@ public class DoPropfindTest
 
                 one( mockRes ).setContentType( "text/xml; charset=UTF-8" );
 
-                one( mockRes ).getWriter();
-                will( returnValue( printWriter ) );
+                one( mockRes ).getOutputStream();
+                will( returnValue( tos ) );
 
                 one( mockMimeTyper ).getMimeType( path );
                 will( returnValue( "text/xml; charset=UTF-8" ) );
 
-                one( mockStore ).getStoredObject( mockTransaction, path );
-                will( returnValue( fileSo ) );
-
                 one( mockReq ).getContextPath();
                 will( returnValue( "" ) );
 
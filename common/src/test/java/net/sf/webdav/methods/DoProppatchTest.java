@@ -16,7 +16,6 @@
 package net.sf.webdav.methods;
 
 import java.io.ByteArrayInputStream;
-import java.io.PrintWriter;
 
 import net.sf.webdav.StoredObject;
 import net.sf.webdav.WebdavStatus;
@@ -27,6 +26,7 @@ import net.sf.webdav.spi.IWebdavStore;
 import net.sf.webdav.spi.WebdavRequest;
 import net.sf.webdav.spi.WebdavResponse;
 import net.sf.webdav.testutil.MockTest;
+import net.sf.webdav.testutil.TestingOutputStream;
 
 import org.jmock.Expectations;
 import org.junit.Test;
@@ -160,7 +160,7 @@ public class DoProppatchTest
     {
 
         final String path = "/testFile";
-        final PrintWriter pw = new PrintWriter( "/tmp/XMLTestFile" );
+        final TestingOutputStream tos = new TestingOutputStream();
 
         _mockery.checking( new Expectations()
         {
@@ -192,8 +192,8 @@ public class DoProppatchTest
 
                 one( mockRes ).setContentType( "text/xml; charset=UTF-8" );
 
-                one( mockRes ).getWriter();
-                will( returnValue( pw ) );
+                one( mockRes ).getOutputStream();
+                will( returnValue( tos ) );
 
                 one( mockReq ).getContextPath();
                 will( returnValue( "" ) );
@@ -15,6 +15,8 @@
  */
 package net.sf.webdav.methods;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.io.PrintWriter;
 
 import net.sf.webdav.StoredObject;
@@ -22,6 +24,7 @@ import net.sf.webdav.WebdavStatus;
 import net.sf.webdav.locking.IResourceLocks;
 import net.sf.webdav.locking.LockedObject;
 import net.sf.webdav.locking.ResourceLocks;
+import net.sf.webdav.spi.IDigestingWebdavStore;
 import net.sf.webdav.spi.ITransaction;
 import net.sf.webdav.spi.IWebdavStore;
 import net.sf.webdav.spi.WebdavRequest;
@@ -29,6 +32,8 @@ import net.sf.webdav.spi.WebdavResponse;
 import net.sf.webdav.testutil.MockTest;
 
 import org.jmock.Expectations;
+import org.jmock.api.Invocation;
+import org.jmock.lib.action.CustomAction;
 import org.junit.Test;
 
 public class DoPutTest
@@ -135,6 +140,73 @@ public class DoPutTest
         _mockery.assertIsSatisfied();
     }
 
+    @Test
+    public void testDoPutHandsContentDigestToDigestingStore()
+        throws Exception
+    {
+        final IDigestingWebdavStore digestingStore = _mockery.mock( IDigestingWebdavStore.class );
+        final String expectedDigest = "SHA-256=v4xbBWbTMrBp5K1tLAqHw4UhCzb3BvAjpHfVValaz3o=";
+
+        _mockery.checking( new Expectations()
+        {
+            {
+                one( mockReq ).getAttribute( "javax.servlet.include.request_uri" );
+                will( returnValue( null ) );
+
+                one( mockReq ).getPathInfo();
+                will( returnValue( path ) );
+
+                one( mockReq ).getHeader( "User-Agent" );
+                will( returnValue( "Goliath agent" ) );
+
+                one( mockReq ).getContentLength();
+                will( returnValue( (int) resourceLength ) );
+
+                final StoredObject parentSo = initFolderStoredObject();
+
+                one( digestingStore ).getStoredObject( mockTransaction, parentPath );
+                will( returnValue( parentSo ) );
+
+                one( digestingStore ).getStoredObject( mockTransaction, path );
+                will( returnValue( null ) );
+
+                one( digestingStore ).createResource( mockTransaction, path );
+
+                one( mockRes ).setStatus( WebdavStatus.SC_CREATED );
+
+                one( mockReq ).getInputStream();
+                will( returnValue( new ByteArrayInputStream( resourceContent ) ) );
+
+                one( digestingStore ).setResourceContent( with( equal( mockTransaction ) ), with( equal( path ) ),
+                                                          with( any( InputStream.class ) ), with( equal( resourceLength ) ) );
+                will( new CustomAction( "read the content" )
+                {
+                    @Override
+                    public Object invoke( final Invocation invocation )
+                        throws Throwable
+                    {
+                        final InputStream in = (InputStream) invocation.getParameter( 2 );
+                        while ( in.read( new byte[4] ) != -1 )
+                        {
+                            // drain
+                        }
+                        return resourceLength;
+                    }
+                } );
+
+                one( digestingStore ).setResourceDigest( mockTransaction, path, expectedDigest );
+
+                one( digestingStore ).getStoredObject( mockTransaction, path );
+                will( returnValue( initFileStoredObject( resourceContent ) ) );
+            }
+        } );
+
+        final DoPut doPut = new DoPut( digestingStore, new ResourceLocks(), !readOnly, lazyFolderCreationOnPut, "SHA-256" );
+        doPut.execute( mockTransaction, mockReq, mockRes );
+
+        _mockery.assertIsSatisfied();
+    }
+
     @Test
     public void testDoPutIfLazyFolderCreationOnPutIsFalse()
         throws Exception
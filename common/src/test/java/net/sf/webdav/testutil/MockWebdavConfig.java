@@ -29,6 +29,14 @@ public class MockWebdavConfig
 
     private String defaultIndexPath;
 
+    private boolean concurrentLocking;
+
+    private boolean lockFreeReads;
+
+    private int compressionThreshold = -1;
+
+    private String contentDigestAlgorithm;
+
     @Override
     public boolean isLazyFolderCreationOnPut()
     {
@@ -53,6 +61,30 @@ public class MockWebdavConfig
         return defaultIndexPath;
     }
 
+    @Override
+    public boolean isConcurrentLocking()
+    {
+        return concurrentLocking;
+    }
+
+    @Override
+    public boolean isLockFreeReads()
+    {
+        return lockFreeReads;
+    }
+
+    @Override
+    public int getCompressionThreshold()
+    {
+        return compressionThreshold;
+    }
+
+    @Override
+    public String getContentDigestAlgorithm()
+    {
+        return contentDigestAlgorithm;
+    }
+
     public void setLazyFolderCreationOnPut( final boolean lazyFolderCreationOnPut )
     {
         this.lazyFolderCreationOnPut = lazyFolderCreationOnPut;
@@ -73,4 +105,24 @@ public class MockWebdavConfig
         this.defaultIndexPath = defaultIndexPath;
     }
 
+    public void setConcurrentLocking( final boolean concurrentLocking )
+    {
+        this.concurrentLocking = concurrentLocking;
+    }
+
+    public void setLockFreeReads( final boolean lockFreeReads )
+    {
+        this.lockFreeReads = lockFreeReads;
+    }
+
+    public void setCompressionThreshold( final int compressionThreshold )
+    {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public void setContentDigestAlgorithm( final String contentDigestAlgorithm )
+    {
+        this.contentDigestAlgorithm = contentDigestAlgorithm;
+    }
+
 }
@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.util;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class ByteRangeTest
+{
+
+    @Test
+    public void testOverlappingAndAdjacentRangesAreMerged()
+    {
+        final ByteRange[] ranges = ByteRange.parse( "bytes=50-59, 0-9,5-19,20-29", 100 );
+
+        assertThat( ranges.length, equalTo( 2 ) );
+        assertThat( ranges[0].toContentRange(), equalTo( "bytes 0-29/100" ) );
+        assertThat( ranges[1].toContentRange(), equalTo( "bytes 50-59/100" ) );
+    }
+
+    @Test
+    public void testRangesAskingForTheResourceManyTimesAreIgnored()
+    {
+        assertThat( ByteRange.parse( "bytes=0-,0-", 100 ), nullValue() );
+        assertThat( ByteRange.parse( "bytes=0-59,-50", 100 ), nullValue() );
+    }
+
+    @Test
+    public void testTooManyRangesAreIgnored()
+    {
+        final StringBuilder header = new StringBuilder( "bytes=0-0" );
+        for ( int i = 1; i < ByteRange.MAX_RANGES; i++ )
+        {
+            header.append( ',' )
+                  .append( i * 2 )
+                  .append( '-' )
+                  .append( i * 2 );
+        }
+
+        assertThat( ByteRange.parse( header.toString(), 1000 ).length, equalTo( ByteRange.MAX_RANGES ) );
+        assertThat( ByteRange.parse( header.append( ",999-999" )
+                                           .toString(), 1000 ), nullValue() );
+    }
+
+    @Test
+    public void testUnsatisfiableRangesAreDropped()
+    {
+        assertThat( ByteRange.parse( "bytes=200-300", 100 ).length, equalTo( 0 ) );
+        assertThat( ByteRange.parse( "bytes=200-300,90-", 100 )[0].toContentRange(), equalTo( "bytes 90-99/100" ) );
+    }
+
+}
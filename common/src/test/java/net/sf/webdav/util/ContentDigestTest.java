@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.util;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.security.MessageDigest;
+
+import org.junit.Test;
+
+public class ContentDigestTest
+{
+
+    @Test
+    public void testBase64MatchesRfc4648Vectors()
+        throws Exception
+    {
+        final String[][] vectors =
+            { { "", "" }, { "f", "Zg==" }, { "fo", "Zm8=" }, { "foo", "Zm9v" }, { "foob", "Zm9vYg==" },
+                { "fooba", "Zm9vYmE=" }, { "foobar", "Zm9vYmFy" } };
+        for ( final String[] vector : vectors )
+        {
+            assertThat( ContentDigest.toBase64( vector[0].getBytes( "US-ASCII" ) ), equalTo( vector[1] ) );
+        }
+
+        assertThat( ContentDigest.toBase64( new byte[] { (byte) 0xfb, (byte) 0xff, (byte) 0xbf } ), equalTo( "+/+/" ) );
+    }
+
+    @Test
+    public void testInstanceDigest()
+        throws Exception
+    {
+        final MessageDigest md5 = MessageDigest.getInstance( ContentDigest.MD5 );
+        md5.update( "foo".getBytes( "US-ASCII" ) );
+
+        final String digest = ContentDigest.toInstanceDigest( md5 );
+        assertThat( digest, equalTo( "MD5=rL0Y20zC+Fzt72VPzMSk2A==" ) );
+        assertThat( ContentDigest.getContentMD5( digest ), equalTo( "rL0Y20zC+Fzt72VPzMSk2A==" ) );
+        assertThat( ContentDigest.getContentMD5( "SHA-256=LCa0a2j/xo/5m0U8HTBBNBNCLXBkg7+g+YpeiGJm564=" ), nullValue() );
+    }
+
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.util;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class DateFormatterTest
+{
+
+    @Test
+    public void testFormatsMatchSimpleDateFormat()
+        throws Exception
+    {
+        final SimpleDateFormat rfc1123 = new SimpleDateFormat( DateFormatter.RFC_1123_PATTERN, Locale.US );
+        rfc1123.setTimeZone( TimeZone.getTimeZone( "GMT" ) );
+        final SimpleDateFormat iso8601 = new SimpleDateFormat( DateFormatter.ISO_8601_PATTERN, Locale.US );
+        iso8601.setTimeZone( TimeZone.getTimeZone( "GMT" ) );
+
+        final Random random = new Random( 42 );
+        final long[] fixed = { 0, -1, 951782400000L, 784111777999L, 253402300799000L };
+        for ( int i = 0; i < 10000; i++ )
+        {
+            final long millis = i < fixed.length ? fixed[i] : ( random.nextLong() % 253402300799000L );
+            final Date date = new Date( millis < 0 ? -millis : millis );
+
+            assertThat( DateFormatter.formatRfc1123( date ), equalTo( rfc1123.format( date ) ) );
+            assertThat( DateFormatter.formatIso8601( date ), equalTo( iso8601.format( date ) ) );
+        }
+    }
+
+    @Test
+    public void testParseRfc1123()
+        throws Exception
+    {
+        assertThat( DateFormatter.parseRfc1123( "Sun, 06 Nov 1994 08:49:37 GMT" )
+                                 .getTime(), equalTo( 784111777000L ) );
+        assertThat( DateFormatter.formatRfc1123( 784111777000L ), equalTo( "Sun, 06 Nov 1994 08:49:37 GMT" ) );
+    }
+
+}
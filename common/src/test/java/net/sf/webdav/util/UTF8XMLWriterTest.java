@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.util;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class UTF8XMLWriterTest
+{
+
+    @Test
+    public void testElementsTextAndData()
+        throws Exception
+    {
+        final Map<String, String> namespaces = new HashMap<String, String>();
+        namespaces.put( "DAV:", "D" );
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        final XMLWriter xml = new UTF8XMLWriter( out, namespaces );
+        xml.writeElement( "DAV::prop", XMLWriter.OPENING );
+        xml.writeProperty( "DAV::href", "/a&b/<caf\u00e9>/\ud83d\ude00" );
+        xml.writeElement( "DAV::displayname", XMLWriter.OPENING );
+        xml.writeData( "x]]>y" );
+        xml.writeElement( "DAV::displayname", XMLWriter.CLOSING );
+        xml.writeElement( "urn:z:author", XMLWriter.NO_CONTENT );
+        xml.writeElement( "DAV::prop", XMLWriter.CLOSING );
+        xml.sendData();
+
+        assertThat( new String( out.toByteArray(), "UTF-8" ),
+                    equalTo( "<D:prop xmlns:D=\"DAV:\"><D:href>/a&amp;b/&lt;caf\u00e9&gt;/\ud83d\ude00</D:href>\n"
+                        + "<D:displayname><![CDATA[x]]]]><![CDATA[>y]]></D:displayname>\n"
+                        + "<author xmlns=\"urn:z\"/></D:prop>\n" ) );
+    }
+
+    @Test
+    public void testWriteErrorDropsFurtherOutput()
+        throws Exception
+    {
+        final Map<String, String> namespaces = new HashMap<String, String>();
+        namespaces.put( "DAV:", "D" );
+        final IOException error = new IOException( "broken pipe" );
+        final int[] writes = new int[1];
+        final OutputStream out = new OutputStream()
+        {
+            @Override
+            public void write( final int b )
+                throws IOException
+            {
+                write( new byte[] { (byte) b }, 0, 1 );
+            }
+
+            @Override
+            public void write( final byte[] b, final int off, final int len )
+                throws IOException
+            {
+                writes[0]++;
+                throw error;
+            }
+        };
+
+        final XMLWriter xml = new UTF8XMLWriter( out, namespaces, 64 );
+        for ( int i = 0; i < 1000; i++ )
+        {
+            xml.writeProperty( "DAV::href", "/" + i );
+        }
+
+        assertThat( xml.hasWriteError(), equalTo( true ) );
+        assertThat( writes[0], equalTo( 1 ) );
+        assertThat( xml.toString()
+                       .length() < 64, equalTo( true ) );
+
+        try
+        {
+            xml.sendData();
+            fail( "the write error should have been rethrown" );
+        }
+        catch ( final IOException e )
+        {
+            assertThat( e, sameInstance( error ) );
+        }
+    }
+
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.util;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class XMLRequestReaderTest
+{
+
+    @Test
+    public void testPropfindPropertyNames()
+        throws Exception
+    {
+        final XMLRequestReader.Propfind propfind =
+            XMLRequestReader.readPropfind( body( "<?xml version=\"1.0\" encoding=\"utf-8\" ?>"
+                + "<D:propfind xmlns:D=\"DAV:\"><D:prop><D:getcontentlength/><D:resourcetype/></D:prop></D:propfind>" ) );
+
+        assertThat( propfind.getProperties(), equalTo( Arrays.asList( "DAV::getcontentlength", "DAV::resourcetype" ) ) );
+    }
+
+    @Test
+    public void testProppatchSetAndRemove()
+        throws Exception
+    {
+        final XMLRequestReader.Proppatch proppatch =
+            XMLRequestReader.readProppatch( body( "<D:propertyupdate xmlns:D=\"DAV:\" xmlns:Z=\"urn:z\">"
+                + "<D:set><D:prop><Z:author>x</Z:author></D:prop></D:set>"
+                + "<D:remove><D:prop><Z:copyright/></D:prop></D:remove></D:propertyupdate>" ) );
+
+        assertThat( proppatch.getToSet(), equalTo( Arrays.asList( "urn:z:author" ) ) );
+        assertThat( proppatch.getToRemove(), equalTo( Arrays.asList( "urn:z:copyright" ) ) );
+    }
+
+    @Test
+    public void testLockInfoWithoutOwner()
+        throws Exception
+    {
+        final XMLRequestReader.LockInfo lockInfo =
+            XMLRequestReader.readLockInfo( body( "<D:lockinfo xmlns:D=\"DAV:\">"
+                + "<D:lockscope><D:exclusive/></D:lockscope><D:locktype><D:write/></D:locktype></D:lockinfo>" ) );
+
+        assertTrue( lockInfo.getScopes().get( 0 ).endsWith( "exclusive" ) );
+        assertTrue( lockInfo.getTypes().get( 0 ).endsWith( "write" ) );
+        assertThat( lockInfo.getOwner(), nullValue() );
+    }
+
+    private static InputStream body( final String xml )
+        throws Exception
+    {
+        return new ByteArrayInputStream( xml.getBytes( "UTF-8" ) );
+    }
+
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.sf.webdav.util;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class XMLWriterTest
+{
+
+    private static final Map<String, String> NAMESPACES = new HashMap<String, String>();
+
+    static
+    {
+        NAMESPACES.put( "DAV:", "D" );
+    }
+
+    @Test
+    public void testNothingIsWrittenBeforeSendDataWithoutThreshold()
+        throws Exception
+    {
+        final StringWriter out = new StringWriter();
+        final XMLWriter xml = new XMLWriter( out, NAMESPACES );
+        xml.writeElement( "DAV::multistatus", XMLWriter.OPENING );
+        writeResponses( xml, 100 );
+
+        assertThat( out.toString(), equalTo( "" ) );
+        assertThat( xml.isDataSent(), equalTo( false ) );
+
+        xml.sendData();
+        assertThat( out.toString()
+                       .startsWith( "<D:multistatus xmlns:D=\"DAV:\"><D:href>/0</D:href>\n" ), equalTo( true ) );
+    }
+
+    @Test
+    public void testOutputIsStreamedAtClosingTagsPastTheThreshold()
+        throws Exception
+    {
+        final StringWriter out = new StringWriter();
+        final XMLWriter xml = new XMLWriter( out, NAMESPACES, 64 );
+
+        xml.writeElement( "DAV::multistatus", XMLWriter.OPENING );
+        xml.writeProperty( "DAV::href", "/short" );
+        assertThat( out.toString(), equalTo( "" ) );
+
+        writeResponses( xml, 10 );
+        assertThat( xml.isDataSent(), equalTo( true ) );
+        final int streamed = out.toString()
+                                .length();
+        assertThat( streamed >= 64, equalTo( true ) );
+        assertThat( xml.toString()
+                       .length() < 64, equalTo( true ) );
+
+        xml.writeElement( "DAV::multistatus", XMLWriter.CLOSING );
+        xml.sendData();
+        assertThat( xml.toString(), equalTo( "" ) );
+        assertThat( out.toString()
+                       .endsWith( "</D:multistatus>\n" ), equalTo( true ) );
+    }
+
+    @Test
+    public void testWriteErrorStopsOutputAndIsRethrown()
+        throws Exception
+    {
+        final IOException error = new IOException( "connection reset" );
+        final FailingWriter out = new FailingWriter( error );
+        final XMLWriter xml = new XMLWriter( out, NAMESPACES, 64 );
+
+        writeResponses( xml, 10 );
+        assertThat( xml.hasWriteError(), equalTo( true ) );
+        assertThat( out._writes, equalTo( 1 ) );
+
+        // later output is dropped rather than piling up in the buffer
+        writeResponses( xml, 1000 );
+        assertThat( out._writes, equalTo( 1 ) );
+        assertThat( xml.toString()
+                       .length() < 64, equalTo( true ) );
+
+        try
+        {
+            xml.sendData();
+            fail( "the write error should have been rethrown" );
+        }
+        catch ( final IOException e )
+        {
+            assertThat( e, sameInstance( error ) );
+        }
+    }
+
+    private static void writeResponses( final XMLWriter xml, final int count )
+    {
+        for ( int i = 0; i < count; i++ )
+        {
+            xml.writeProperty( "DAV::href", "/" + i );
+        }
+    }
+
+    private static final class FailingWriter
+        extends Writer
+    {
+        private final IOException _error;
+
+        private int _writes;
+
+        FailingWriter( final IOException error )
+        {
+            _error = error;
+        }
+
+        @Override
+        public void write( final char[] cbuf, final int off, final int len )
+            throws IOException
+        {
+            _writes++;
+            throw _error;
+        }
+
+        @Override
+        public void write( final String str )
+            throws IOException
+        {
+            _writes++;
+            throw _error;
+        }
+
+        @Override
+        public void flush()
+        {
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+
+}
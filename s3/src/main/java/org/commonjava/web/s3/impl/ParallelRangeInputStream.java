@@ -0,0 +1,204 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.web.s3.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+
+/**
+ * Reads a byte range of an S3 object as fixed-size ranged GETs, fetched concurrently into a bounded
+ * window of buffers and handed out in order. At most <code>concurrency</code> chunks are fetched or
+ * buffered at any time, and a new one is started whenever the oldest has been consumed. Together with
+ * the chunk being read, a stream holds up to <code>concurrency + 1</code> chunk buffers.
+ * <p/>
+ * An optional head stream, already open on the bytes before the first chunk, is read first, while the
+ * following chunks are fetched in the background.
+ * <p/>
+ * Every chunk is fetched on the condition that the object still has the given ETag, so a stream never
+ * mixes bytes of two versions of the object; if it has been replaced, the read fails.
+ */
+class ParallelRangeInputStream extends InputStream {
+
+  private final AmazonS3 s3client;
+  private final String bucket;
+  private final String key;
+  private final String etag;
+  private final int chunkSize;
+  private final int concurrency;
+  private final ExecutorService executor;
+
+  private final Deque<Future<byte[]>> window = new ArrayDeque<>();
+
+  private InputStream head;
+  private long nextOffset;
+  private final long end;
+
+  private byte[] buffer;
+  private int position;
+  private boolean closed;
+
+  /**
+   * @param etag ETag of the version of the object to read
+   * @param head stream over the bytes before <code>from</code>, or <code>null</code>
+   * @param from offset of the first byte to fetch in chunks
+   * @param end offset after the last byte to fetch
+   */
+  ParallelRangeInputStream(AmazonS3 s3client, String bucket, String key, String etag, InputStream head, long from, long end,
+                           int chunkSize, int concurrency, ExecutorService executor) {
+    this.s3client = s3client;
+    this.bucket = bucket;
+    this.key = key;
+    this.etag = etag;
+    this.head = head;
+    this.nextOffset = from;
+    this.end = end;
+    this.chunkSize = chunkSize;
+    this.concurrency = concurrency;
+    this.executor = executor;
+    fillWindow();
+  }
+
+  @Override
+  public int read() throws IOException {
+    byte[] one = new byte[1];
+    int read = read(one, 0, 1);
+    return read < 0 ? -1 : one[0] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    if (len == 0) {
+      return 0;
+    }
+
+    if (head != null) {
+      int read = head.read(b, off, len);
+      if (read >= 0) {
+        return read;
+      }
+      head.close();
+      head = null;
+    }
+
+    if (buffer == null || position == buffer.length) {
+      if (!nextChunk()) {
+        return -1;
+      }
+    }
+
+    int read = Math.min(len, buffer.length - position);
+    System.arraycopy(buffer, position, b, off, read);
+    position += read;
+    return read;
+  }
+
+  @Override
+  public int available() throws IOException {
+    if (head != null) {
+      return head.available();
+    }
+    return buffer == null ? 0 : buffer.length - position;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    buffer = null;
+    for (Future<byte[]> chunk : window) {
+      chunk.cancel(true);
+    }
+    window.clear();
+    if (head != null) {
+      head.close();
+      head = null;
+    }
+  }
+
+  private boolean nextChunk() throws IOException {
+    Future<byte[]> chunk = window.poll();
+    if (chunk == null) {
+      return false;
+    }
+    try {
+      buffer = chunk.get();
+      position = 0;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while reading " + key);
+    } catch (ExecutionException e) {
+      throw new IOException("Failed to read " + key, e.getCause());
+    }
+    fillWindow();
+    return true;
+  }
+
+  private void fillWindow() {
+    while (window.size() < concurrency && nextOffset < end) {
+      final long from = nextOffset;
+      final int length = (int) Math.min(chunkSize, end - from);
+      nextOffset += length;
+      window.add(executor.submit(new Callable<byte[]>() {
+        @Override
+        public byte[] call() throws IOException {
+          return fetch(from, length);
+        }
+      }));
+    }
+  }
+
+  private byte[] fetch(long from, int length) throws IOException {
+    GetObjectRequest request = new GetObjectRequest(bucket, key).withRange(from, from + length - 1);
+    if (etag != null) {
+      request.withMatchingETagConstraint(etag);
+    }
+    S3Object object = s3client.getObject(request);
+    if (object == null) {
+      throw new IOException(key + " was replaced while being read");
+    }
+    InputStream in = object.getObjectContent();
+    try {
+      byte[] chunk = new byte[length];
+      int total = 0;
+      while (total < length) {
+        int read = in.read(chunk, total, length - total);
+        if (read < 0) {
+          throw new IOException("Premature end of " + key + " at offset " + (from + total));
+        }
+        total += read;
+      }
+      return chunk;
+    } finally {
+      in.close();
+    }
+  }
+}
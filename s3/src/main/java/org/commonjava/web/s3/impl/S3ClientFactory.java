@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.web.s3.impl;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.retry.PredefinedBackoffStrategies;
+import com.amazonaws.retry.PredefinedRetryPolicies;
+import com.amazonaws.retry.RetryPolicy;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+
+/**
+ * Builds S3 clients with the connection pool and retry settings from {@link S3Properties}, reporting
+ * their requests to an {@link S3RequestMetrics} shared by all clients from this factory.
+ */
+public class S3ClientFactory {
+
+  private final S3Properties s3Properties;
+  private final S3RequestMetrics metrics = new S3RequestMetrics();
+
+  public S3ClientFactory(S3Properties s3Properties) {
+    this.s3Properties = s3Properties;
+  }
+
+  /**
+   * Builds a client using the default region and credential provider chains.
+   */
+  public AmazonS3 createClient() {
+    return createClient(AmazonS3ClientBuilder.standard());
+  }
+
+  /**
+   * Builds a client from a builder the caller has already set the region, endpoint or credentials of.
+   * The builder's client configuration and metrics collector are replaced.
+   */
+  public AmazonS3 createClient(AmazonS3ClientBuilder builder) {
+    return builder.withClientConfiguration(createClientConfiguration())
+        .withMetricsCollector(this.metrics)
+        .build();
+  }
+
+  public ClientConfiguration createClientConfiguration() {
+    RetryPolicy retryPolicy = new RetryPolicy(PredefinedRetryPolicies.DEFAULT_RETRY_CONDITION,
+        new PredefinedBackoffStrategies.FullJitterBackoffStrategy(this.s3Properties.getRetryBaseDelayMillis(), this.s3Properties.getMaxRetryBackoffMillis()),
+        this.s3Properties.getMaxErrorRetry(), false);
+
+    return new ClientConfiguration()
+        .withMaxConnections(this.s3Properties.getMaxConnections())
+        .withConnectionTimeout(this.s3Properties.getConnectionTimeoutMillis())
+        .withSocketTimeout(this.s3Properties.getSocketTimeoutMillis())
+        .withTcpKeepAlive(this.s3Properties.isTcpKeepAlive())
+        .withRetryPolicy(retryPolicy);
+  }
+
+  public S3RequestMetrics getMetrics() {
+    return this.metrics;
+  }
+
+}
@@ -16,7 +16,8 @@
 package org.commonjava.web.s3.impl;
 
 /**
- * Properties carrying the S3 bucket name and (optional) prefix.
+ * Properties carrying the S3 bucket name and (optional) prefix, and the tuning of multipart uploads,
+ * parallel downloads, folder detection and of the client built by {@link S3ClientFactory}.
  *
  * @author Ryan Heaton
  */
@@ -26,6 +27,82 @@ public class S3Properties {
 
   private final String keyspacePrefix;
 
+  /**
+   * Smallest part S3 accepts in a multipart upload, except for the last part.
+   */
+  public static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+  public static final long DEFAULT_MULTIPART_THRESHOLD = 16 * 1024 * 1024;
+
+  public static final int DEFAULT_PART_SIZE = 8 * 1024 * 1024;
+
+  public static final int DEFAULT_UPLOAD_CONCURRENCY = 4;
+
+  private long multipartThreshold = DEFAULT_MULTIPART_THRESHOLD;
+
+  private int partSize = DEFAULT_PART_SIZE;
+
+  private int uploadConcurrency = DEFAULT_UPLOAD_CONCURRENCY;
+
+  private long readAheadThreshold;
+
+  private int readAheadChunkSize;
+
+  private int readAheadConcurrency;
+
+  /**
+   * Where the timestamps of a folder come from. S3 has no folders, only keys sharing a prefix, so a
+   * folder's dates have to be borrowed. This applies to a folder that's looked up by itself; the
+   * sub-folders in a folder listing always have the time of the listing, so a listing never costs a
+   * request per sub-folder.
+   */
+  public enum FolderTimestamps {
+    /**
+     * The folder marker object, if it was looked up, or else the first key found in the folder; the
+     * time of the lookup if the folder only contains sub-folders.
+     */
+    FIRST_ENTRY,
+
+    /**
+     * Always the time of the lookup.
+     */
+    LOOKUP_TIME
+  }
+
+  public static final long DEFAULT_MISSING_FOLDER_CACHE_MILLIS = 1000;
+
+  private boolean folderMarkerHead;
+
+  private FolderTimestamps folderTimestamps = FolderTimestamps.FIRST_ENTRY;
+
+  private long missingFolderCacheMillis = DEFAULT_MISSING_FOLDER_CACHE_MILLIS;
+
+  public static final int DEFAULT_MAX_CONNECTIONS = 128;
+
+  public static final int DEFAULT_CONNECTION_TIMEOUT_MILLIS = 10 * 1000;
+
+  public static final int DEFAULT_SOCKET_TIMEOUT_MILLIS = 50 * 1000;
+
+  public static final int DEFAULT_MAX_ERROR_RETRY = 3;
+
+  public static final int DEFAULT_RETRY_BASE_DELAY_MILLIS = 100;
+
+  public static final int DEFAULT_MAX_RETRY_BACKOFF_MILLIS = 20 * 1000;
+
+  private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+
+  private int connectionTimeoutMillis = DEFAULT_CONNECTION_TIMEOUT_MILLIS;
+
+  private int socketTimeoutMillis = DEFAULT_SOCKET_TIMEOUT_MILLIS;
+
+  private boolean tcpKeepAlive = true;
+
+  private int maxErrorRetry = DEFAULT_MAX_ERROR_RETRY;
+
+  private int retryBaseDelayMillis = DEFAULT_RETRY_BASE_DELAY_MILLIS;
+
+  private int maxRetryBackoffMillis = DEFAULT_MAX_RETRY_BACKOFF_MILLIS;
+
   public S3Properties(String bucketName) {
     this(bucketName, "");
   }
@@ -43,6 +120,174 @@ public class S3Properties {
     return keyspacePrefix;
   }
 
+  /**
+   * Configures multipart uploads. Content at least <code>threshold</code> bytes long, or of unknown
+   * length and longer than one part, is uploaded in parts of <code>partSize</code> bytes, with at most
+   * <code>concurrency</code> parts in flight (and buffered in memory) per upload. Content of known length
+   * that wouldn't fit into S3's 10000 parts that way is sent in larger parts.
+   */
+  public S3Properties withMultipartUpload(long threshold, int partSize, int concurrency) {
+    if (partSize < MIN_PART_SIZE) {
+      throw new IllegalArgumentException("Part size must be at least " + MIN_PART_SIZE + " bytes: " + partSize);
+    }
+    if (concurrency < 1) {
+      throw new IllegalArgumentException("Upload concurrency must be positive: " + concurrency);
+    }
+    this.multipartThreshold = threshold;
+    this.partSize = partSize;
+    this.uploadConcurrency = concurrency;
+    return this;
+  }
+
+  /**
+   * Enables parallel downloads. Reads of at least <code>threshold</code> bytes are split into ranged GETs
+   * of <code>chunkSize</code> bytes, with up to <code>concurrency</code> of them fetched (and buffered in
+   * memory) at a time. Counting the chunk being read, each such read holds up to
+   * <code>(concurrency + 1) * chunkSize</code> bytes.
+   */
+  public S3Properties withReadAhead(long threshold, int chunkSize, int concurrency) {
+    if (threshold < 1) {
+      throw new IllegalArgumentException("Read-ahead threshold must be positive: " + threshold);
+    }
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("Read-ahead chunk size must be positive: " + chunkSize);
+    }
+    if (concurrency < 1) {
+      throw new IllegalArgumentException("Read-ahead concurrency must be positive: " + concurrency);
+    }
+    this.readAheadThreshold = threshold;
+    this.readAheadChunkSize = chunkSize;
+    this.readAheadConcurrency = concurrency;
+    return this;
+  }
+
+  public boolean isReadAhead() {
+    return readAheadThreshold > 0;
+  }
+
+  public long getReadAheadThreshold() {
+    return readAheadThreshold;
+  }
+
+  public int getReadAheadChunkSize() {
+    return readAheadChunkSize;
+  }
+
+  public int getReadAheadConcurrency() {
+    return readAheadConcurrency;
+  }
+
+  /**
+   * Configures the client's HTTP connection pool. Every concurrent upload part, copy and read-ahead
+   * chunk holds a connection, as does every response stream still being read, so
+   * <code>maxConnections</code> has to cover those for all concurrent requests; requests beyond it wait
+   * for a connection to be released. It also bounds the store's transfer threads.
+   */
+  public S3Properties withConnectionPool(int maxConnections, int connectionTimeoutMillis, int socketTimeoutMillis, boolean tcpKeepAlive) {
+    if (maxConnections < 1) {
+      throw new IllegalArgumentException("Max connections must be positive: " + maxConnections);
+    }
+    this.maxConnections = maxConnections;
+    this.connectionTimeoutMillis = connectionTimeoutMillis;
+    this.socketTimeoutMillis = socketTimeoutMillis;
+    this.tcpKeepAlive = tcpKeepAlive;
+    return this;
+  }
+
+  /**
+   * Configures retries of failed and throttled requests. The n-th retry waits a random time between 0
+   * and <code>baseDelayMillis * 2^n</code>, capped at <code>maxBackoffMillis</code>, so that clients
+   * throttled together don't retry together.
+   */
+  public S3Properties withRetries(int maxErrorRetry, int baseDelayMillis, int maxBackoffMillis) {
+    if (maxErrorRetry < 0) {
+      throw new IllegalArgumentException("Max error retry must not be negative: " + maxErrorRetry);
+    }
+    if (baseDelayMillis < 1 || maxBackoffMillis < baseDelayMillis) {
+      throw new IllegalArgumentException("Invalid retry backoff: " + baseDelayMillis + "-" + maxBackoffMillis);
+    }
+    this.maxErrorRetry = maxErrorRetry;
+    this.retryBaseDelayMillis = baseDelayMillis;
+    this.maxRetryBackoffMillis = maxBackoffMillis;
+    return this;
+  }
+
+  public int getMaxConnections() {
+    return maxConnections;
+  }
+
+  public int getConnectionTimeoutMillis() {
+    return connectionTimeoutMillis;
+  }
+
+  public int getSocketTimeoutMillis() {
+    return socketTimeoutMillis;
+  }
+
+  public boolean isTcpKeepAlive() {
+    return tcpKeepAlive;
+  }
+
+  public int getMaxErrorRetry() {
+    return maxErrorRetry;
+  }
+
+  public int getRetryBaseDelayMillis() {
+    return retryBaseDelayMillis;
+  }
+
+  public int getMaxRetryBackoffMillis() {
+    return maxRetryBackoffMillis;
+  }
+
+  /**
+   * Whether to look for a folder's marker object (the empty "folder/" key written when a folder is
+   * created) with a HEAD request before listing the folder. Worth it when most folders are created
+   * through WebDAV and so have markers.
+   */
+  public S3Properties withFolderMarkerHead(boolean folderMarkerHead) {
+    this.folderMarkerHead = folderMarkerHead;
+    return this;
+  }
+
+  public S3Properties withFolderTimestamps(FolderTimestamps folderTimestamps) {
+    this.folderTimestamps = folderTimestamps;
+    return this;
+  }
+
+  /**
+   * How long to remember that a folder doesn't exist; 0 disables this. Writes through the same store
+   * forget it right away, but folders created by other clients can go unnoticed for this long.
+   */
+  public S3Properties withMissingFolderCache(long millis) {
+    this.missingFolderCacheMillis = millis;
+    return this;
+  }
+
+  public boolean isFolderMarkerHead() {
+    return folderMarkerHead;
+  }
+
+  public FolderTimestamps getFolderTimestamps() {
+    return folderTimestamps;
+  }
+
+  public long getMissingFolderCacheMillis() {
+    return missingFolderCacheMillis;
+  }
+
+  public long getMultipartThreshold() {
+    return multipartThreshold;
+  }
+
+  public int getPartSize() {
+    return partSize;
+  }
+
+  public int getUploadConcurrency() {
+    return uploadConcurrency;
+  }
+
   static String normalizeFolderUri(final String folderUri) {
     String result = normalizeResourceUri(folderUri);
 
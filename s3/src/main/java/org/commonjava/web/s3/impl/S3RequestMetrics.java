@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.web.s3.impl;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.TimingInfo;
+
+/**
+ * Collects counters from the S3 client's request metrics. Each counted request includes its retries.
+ */
+public class S3RequestMetrics extends RequestMetricCollector {
+
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+  private final AtomicLong retries = new AtomicLong();
+  private final AtomicLong throttledRetries = new AtomicLong();
+  private final AtomicLong requestMillis = new AtomicLong();
+  private final AtomicLong pendingConnectionsPeak = new AtomicLong();
+
+  @Override
+  public void collectMetrics(Request<?> request, Response<?> response) {
+    AWSRequestMetrics metrics = request.getAWSRequestMetrics();
+    if (metrics == null) {
+      return;
+    }
+    TimingInfo timing = metrics.getTimingInfo();
+
+    this.requests.incrementAndGet();
+    List<Object> exceptions = metrics.getProperty(Field.Exception);
+    if (response == null || (exceptions != null && !exceptions.isEmpty())) {
+      this.failures.incrementAndGet();
+    }
+    this.retries.addAndGet(counter(timing, Field.RetryCount));
+    this.throttledRetries.addAndGet(counter(timing, Field.ThrottledRetryCount));
+
+    Double millis = timing.getTimeTakenMillisIfKnown();
+    if (millis != null) {
+      this.requestMillis.addAndGet(millis.longValue());
+    }
+
+    long pending = counter(timing, Field.HttpClientPoolPendingCount);
+    for (long peak = this.pendingConnectionsPeak.get(); pending > peak; peak = this.pendingConnectionsPeak.get()) {
+      if (this.pendingConnectionsPeak.compareAndSet(peak, pending)) {
+        break;
+      }
+    }
+  }
+
+  private static long counter(TimingInfo timing, Field field) {
+    Number value = timing.getCounter(field.name());
+    return value == null ? 0 : value.longValue();
+  }
+
+  public long getRequestCount() {
+    return this.requests.get();
+  }
+
+  public long getFailureCount() {
+    return this.failures.get();
+  }
+
+  public long getRetryCount() {
+    return this.retries.get();
+  }
+
+  public long getThrottledRetryCount() {
+    return this.throttledRetries.get();
+  }
+
+  /**
+   * Total time spent in requests, retries and backoff included.
+   */
+  public long getRequestMillis() {
+    return this.requestMillis.get();
+  }
+
+  /**
+   * Most requests seen waiting for a pooled connection at once; anything above 0 means the pool is
+   * too small for the load.
+   */
+  public long getPendingConnectionsPeak() {
+    return this.pendingConnectionsPeak.get();
+  }
+
+}
@@ -16,44 +16,134 @@
 package org.commonjava.web.s3.impl;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.CopyObjectResult;
+import com.amazonaws.services.s3.model.CopyPartRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest.KeyVersion;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException.DeleteError;
 import com.amazonaws.services.s3.model.ListObjectsRequest;
 import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
 import com.amazonaws.services.s3.model.PutObjectResult;
 import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.UploadPartRequest;
 import net.sf.webdav.StoredObject;
 import net.sf.webdav.exceptions.AccessDeniedException;
 import net.sf.webdav.exceptions.ObjectAlreadyExistsException;
 import net.sf.webdav.exceptions.ObjectNotFoundException;
 import net.sf.webdav.exceptions.UnauthenticatedException;
 import net.sf.webdav.exceptions.WebdavException;
+import net.sf.webdav.spi.IBulkRemovingWebdavStore;
+import net.sf.webdav.spi.IChildListingWebdavStore;
+import net.sf.webdav.spi.ICopyingWebdavStore;
+import net.sf.webdav.spi.IDigestingWebdavStore;
+import net.sf.webdav.spi.IRangedWebdavStore;
 import net.sf.webdav.spi.ITransaction;
-import net.sf.webdav.spi.IWebdavStore;
+import net.sf.webdav.util.ContentDigest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Webdav service provider implemented via S3 bucket.
  */
-public class S3Store implements IWebdavStore {
+public class S3Store implements IRangedWebdavStore, IChildListingWebdavStore, ICopyingWebdavStore, IBulkRemovingWebdavStore, IDigestingWebdavStore {
+
+  /**
+   * Largest object a single CopyObject request can copy.
+   */
+  private static final long MAX_SINGLE_COPY_SIZE = 5L * 1024 * 1024 * 1024;
+
+  private static final long COPY_PART_SIZE = 512L * 1024 * 1024;
+
+  private static final int MAX_PARTS = 10000;
+
+  /**
+   * Largest object S3 stores.
+   */
+  private static final long MAX_OBJECT_SIZE = 5L * 1024 * 1024 * 1024 * 1024;
+
+  private static final int MAX_DELETE_BATCH = 1000;
+
+  /**
+   * User metadata entry holding the content digest. New content replaces the object and with it the entry,
+   * so it is sent along with the content whenever the digest is known before the upload starts.
+   */
+  private static final String DIGEST_METADATA = "webdav-digest";
+
+  /**
+   * Bound on the remembered missing folders; past it the whole map is dropped rather than tracking age.
+   */
+  private static final int MAX_MISSING_FOLDERS = 10000;
 
   private final AmazonS3 s3client;
   private final S3Properties s3Properties;
+  private final ThreadPoolExecutor transferExecutor;
+
+  /**
+   * Folder prefixes recently found to be missing, with the time until which that can be trusted.
+   */
+  private final ConcurrentMap<String, Long> missingFolders = new ConcurrentHashMap<>();
 
   private static final Logger LOG = LoggerFactory.getLogger(S3Store.class);
 
+  /**
+   * Transfers run on a pool of at most as many threads as the client has connections, since any more
+   * would only wait for a connection. Call {@link #shutdown()} when done with the store.
+   */
   public S3Store(AmazonS3 s3client, S3Properties s3Properties) {
     this.s3client = s3client;
     this.s3Properties = s3Properties;
+    int threads = s3Properties.getMaxConnections();
+    this.transferExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+        new DaemonThreadFactory("s3-transfer-"));
+    this.transferExecutor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Stops taking new transfers; the ones already submitted still run.
+   */
+  public void shutdown() {
+    this.transferExecutor.shutdown();
   }
 
   @Override
@@ -75,18 +165,27 @@ public class S3Store implements IWebdavStore {
   @Override
   public void rollback(ITransaction transaction) throws WebdavException {
     LOG.debug("Rollback transaction {}", transaction);
+    if (transaction instanceof S3WebdavTransaction) {
+      Map<String, String> pending = ((S3WebdavTransaction) transaction).getPendingUploads();
+      for (Map.Entry<String, String> upload : pending.entrySet()) {
+        abortUpload(upload.getValue(), upload.getKey());
+      }
+      pending.clear();
+    }
   }
 
   @Override
   public void createFolder(ITransaction transaction, final String uri) throws WebdavException {
     LOG.debug("Create folder {} at {}", uri, transaction);
-    String folderUri = S3Properties.normalizeFolderUri(uri);
+    String folderKey = this.s3Properties.getKeyspacePrefix() + S3Properties.normalizeFolderUri(uri);
     ObjectMetadata metadata = new ObjectMetadata();
     metadata.setContentLength(0);
     try {
-      this.s3client.putObject(this.s3Properties.getBucketName(), this.s3Properties.getKeyspacePrefix() + folderUri, new ByteArrayInputStream(new byte[0]), metadata);
+      this.s3client.putObject(this.s3Properties.getBucketName(), folderKey, new ByteArrayInputStream(new byte[0]), metadata);
     } catch (AmazonServiceException e) {
       throw mapAmazonServiceException(e);
+    } finally {
+      forgetMissingFolders(folderKey);
     }
   }
 
@@ -96,43 +195,306 @@ public class S3Store implements IWebdavStore {
     //not needed for s3; the resource content is the same as creating the resource.
   }
 
+  /**
+   * With read-ahead enabled, the first GET asks for the bytes up to the read-ahead threshold. If the
+   * object turns out to be longer, the remainder is fetched in parallel chunks while the first part is
+   * being read, each on the condition that the object still has the ETag of that first GET.
+   */
   @Override
   public InputStream getResourceContent(ITransaction transaction, final String resourceUri) throws WebdavException {
     LOG.debug("Read resource {} at {}", resourceUri, transaction);
+    String key = this.s3Properties.getKeyspacePrefix() + S3Properties.normalizeResourceUri(resourceUri);
     try {
-      S3Object object = this.s3client.getObject(this.s3Properties.getBucketName(), this.s3Properties.getKeyspacePrefix() + S3Properties.normalizeResourceUri(resourceUri));
+      if (!this.s3Properties.isReadAhead()) {
+        S3Object object = this.s3client.getObject(this.s3Properties.getBucketName(), key);
+        return object.getObjectContent();
+      }
+
+      S3Object object;
+      try {
+        object = this.s3client.getObject(new GetObjectRequest(this.s3Properties.getBucketName(), key)
+            .withRange(0, this.s3Properties.getReadAheadThreshold() - 1));
+      } catch (AmazonServiceException e) {
+        if (e.getStatusCode() != 416) {
+          throw e;
+        }
+        //empty objects can't satisfy any range.
+        object = this.s3client.getObject(this.s3Properties.getBucketName(), key);
+      }
+
+      long length = object.getObjectMetadata().getInstanceLength();
+      long headLength = object.getObjectMetadata().getContentLength();
+      if (length <= headLength) {
+        return object.getObjectContent();
+      }
+      return readAhead(key, object, headLength, length);
+    } catch (AmazonServiceException e) {
+      throw mapAmazonServiceException(e);
+    }
+  }
+
+  @Override
+  public InputStream getResourceContent(ITransaction transaction, final String resourceUri, long offset, long length) throws WebdavException {
+    LOG.debug("Read resource {} bytes {}-{} at {}", resourceUri, offset, offset + length - 1, transaction);
+    String key = this.s3Properties.getKeyspacePrefix() + S3Properties.normalizeResourceUri(resourceUri);
+    try {
+      if (this.s3Properties.isReadAhead() && length >= this.s3Properties.getReadAheadThreshold()) {
+        //the first chunk is fetched up front, so the others can be tied to the version it came from.
+        int headLength = (int) Math.min(this.s3Properties.getReadAheadChunkSize(), length);
+        S3Object head = this.s3client.getObject(new GetObjectRequest(this.s3Properties.getBucketName(), key)
+            .withRange(offset, offset + headLength - 1));
+        return readAhead(key, head, offset + headLength, offset + length);
+      }
+      GetObjectRequest request = new GetObjectRequest(this.s3Properties.getBucketName(), key)
+          .withRange(offset, offset + length - 1);
+      S3Object object = this.s3client.getObject(request);
       return object.getObjectContent();
     } catch (AmazonServiceException e) {
       throw mapAmazonServiceException(e);
     }
   }
 
+  private InputStream readAhead(String key, S3Object head, long from, long end) {
+    LOG.debug("Reading {} bytes {}-{} in parallel chunks", key, from, end - 1);
+    return new ParallelRangeInputStream(this.s3client, this.s3Properties.getBucketName(), key, head.getObjectMetadata().getETag(),
+        head.getObjectContent(), from, end,
+        this.s3Properties.getReadAheadChunkSize(), this.s3Properties.getReadAheadConcurrency(), this.transferExecutor);
+  }
+
+  /**
+   * Content shorter than the multipart threshold is sent with a single PUT. Longer content, and content
+   * of unknown length that doesn't fit into one part, is sent as a multipart upload. Parts are made
+   * larger than configured when the content wouldn't otherwise fit into S3's limit of 10000 parts;
+   * content of unknown length fails once it runs past that limit.
+   * <p/>
+   * When the content comes as a {@link DigestInputStream}, as it does from PUT with digests enabled, a
+   * single-part body is read into memory first (it is below the multipart threshold), so its digest can
+   * go out as user metadata of the same request. That makes the later
+   * {@link #setResourceDigest(ITransaction, String, String)} free.
+   */
   @Override
   public long setResourceContent(ITransaction transaction, final String resourceUri, InputStream content, long contentLength) throws WebdavException {
     LOG.debug("Set resource content for {} at {}", resourceUri, transaction);
 
-    ObjectMetadata metadata = new ObjectMetadata();
-    metadata.setContentLength(contentLength);
+    String key = this.s3Properties.getKeyspacePrefix() + S3Properties.normalizeResourceUri(resourceUri);
+    S3WebdavTransaction s3Transaction = transaction instanceof S3WebdavTransaction ? (S3WebdavTransaction) transaction : null;
+    DigestInputStream digesting = content instanceof DigestInputStream ? (DigestInputStream) content : null;
     try {
-      PutObjectResult result = this.s3client.putObject(this.s3Properties.getBucketName(), this.s3Properties.getKeyspacePrefix() + S3Properties.normalizeResourceUri(resourceUri), content, metadata);
-      return result.getMetadata().getContentLength();
+      if (contentLength > MAX_OBJECT_SIZE) {
+        throw new WebdavException("Content of %s is larger than %d bytes: %d", resourceUri, MAX_OBJECT_SIZE, contentLength);
+      }
+      if (contentLength >= 0 && contentLength < this.s3Properties.getMultipartThreshold()) {
+        if (digesting == null || contentLength > Integer.MAX_VALUE) {
+          return putObject(s3Transaction, key, content, contentLength, null);
+        }
+        byte[] body = new byte[(int) contentLength];
+        int read = readPart(content, body);
+        return putObject(s3Transaction, key, new ByteArrayInputStream(body, 0, read), read, currentDigest(digesting));
+      }
+
+      byte[] part = new byte[partSize(contentLength, this.s3Properties.getPartSize())];
+      int read = readPart(content, part);
+      if (read < part.length) {
+        return putObject(s3Transaction, key, new ByteArrayInputStream(part, 0, read), read, digesting == null ? null : currentDigest(digesting));
+      }
+      return uploadMultipart(s3Transaction, key, content, part);
     } catch (AmazonServiceException e) {
       throw mapAmazonServiceException(e);
+    } catch (IOException e) {
+      throw new WebdavException("Failed to read content for %s", e, resourceUri);
+    } finally {
+      forgetMissingFolders(key);
+    }
+  }
+
+  /**
+   * The configured part size, or the smallest that fits content of the given length into
+   * {@link #MAX_PARTS} parts if that's larger.
+   */
+  static int partSize(long contentLength, int configuredPartSize) {
+    if (contentLength <= (long) configuredPartSize * MAX_PARTS) {
+      return configuredPartSize;
+    }
+    return (int) ((contentLength + MAX_PARTS - 1) / MAX_PARTS);
+  }
+
+  private long putObject(S3WebdavTransaction transaction, String key, InputStream content, long contentLength, String digest) {
+    ObjectMetadata metadata = new ObjectMetadata();
+    metadata.setContentLength(contentLength);
+    if (digest != null) {
+      metadata.addUserMetadata(DIGEST_METADATA, digest);
+    }
+    PutObjectResult result = this.s3client.putObject(this.s3Properties.getBucketName(), key, content, metadata);
+    if (transaction != null) {
+      transaction.contentWritten(key, result.getETag(), digest);
+    }
+    return result.getMetadata().getContentLength();
+  }
+
+  /**
+   * The digest of what has been read through the stream so far, leaving the stream's own digest running.
+   */
+  private static String currentDigest(DigestInputStream digesting) {
+    try {
+      return ContentDigest.toInstanceDigest((MessageDigest) digesting.getMessageDigest().clone());
+    } catch (CloneNotSupportedException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Uploads the content in parts, starting with the already read, full <code>firstPart</code>. Reading
+   * the next part overlaps with uploading the previous ones, up to the configured number of parts in
+   * flight. Any failure aborts the upload, so no orphaned parts are left behind.
+   */
+  private long uploadMultipart(S3WebdavTransaction s3Transaction, final String key, InputStream content, byte[] firstPart) throws IOException, WebdavException {
+    final String bucket = this.s3Properties.getBucketName();
+    final String uploadId = this.s3client.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucket, key)).getUploadId();
+    LOG.debug("Started multipart upload {} of {}", uploadId, key);
+
+    if (s3Transaction != null) {
+      s3Transaction.uploadStarted(uploadId, key);
+    }
+
+    final Semaphore inFlight = new Semaphore(this.s3Properties.getUploadConcurrency());
+    final AtomicBoolean failed = new AtomicBoolean();
+    List<Future<PartETag>> parts = new ArrayList<>();
+    boolean completed = false;
+    try {
+      long total = 0;
+      int checked = 0;
+      byte[] part = firstPart;
+      int read = part.length;
+      while (read > 0) {
+        if (parts.size() == MAX_PARTS) {
+          throw new WebdavException("Content of %s doesn't fit into %d parts of %d bytes; its length has to be known up front", key,
+              MAX_PARTS, part.length);
+        }
+        inFlight.acquire();
+        //stop reading the request as soon as a part has failed.
+        while (checked < parts.size() && parts.get(checked).isDone()) {
+          parts.get(checked++).get();
+        }
+
+        final UploadPartRequest request = new UploadPartRequest().withBucketName(bucket)
+            .withKey(key)
+            .withUploadId(uploadId)
+            .withPartNumber(parts.size() + 1)
+            .withInputStream(new ByteArrayInputStream(part, 0, read))
+            .withPartSize(read);
+        parts.add(this.transferExecutor.submit(new Callable<PartETag>() {
+          @Override
+          public PartETag call() {
+            try {
+              return failed.get() ? null : s3client.uploadPart(request).getPartETag();
+            } finally {
+              inFlight.release();
+            }
+          }
+        }));
+        total += read;
+
+        part = new byte[part.length];
+        read = readPart(content, part);
+      }
+
+      List<PartETag> etags = new ArrayList<>(parts.size());
+      for (Future<PartETag> future : parts) {
+        etags.add(future.get());
+      }
+      CompleteMultipartUploadResult result = this.s3client.completeMultipartUpload(new CompleteMultipartUploadRequest(bucket, key, uploadId, etags));
+      completed = true;
+      if (s3Transaction != null) {
+        s3Transaction.contentWritten(key, result.getETag(), null);
+      }
+      LOG.debug("Completed multipart upload {} of {}: {} bytes in {} parts", uploadId, key, total, etags.size());
+      return total;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new WebdavException("Interrupted while uploading %s", e, key);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof AmazonServiceException) {
+        throw (AmazonServiceException) e.getCause();
+      }
+      throw new WebdavException("Failed to upload part of %s", e.getCause(), key);
+    } catch (RejectedExecutionException e) {
+      throw new WebdavException("Cannot upload %s, the store has been shut down", e, key);
+    } finally {
+      if (!completed) {
+        //an abort racing a part upload can leave that part behind.
+        failed.set(true);
+        awaitAll(parts);
+        abortUpload(key, uploadId);
+      }
+      if (s3Transaction != null) {
+        s3Transaction.uploadFinished(uploadId);
+      }
     }
   }
 
+  private void abortUpload(String key, String uploadId) {
+    LOG.debug("Aborting multipart upload {} of {}", uploadId, key);
+    try {
+      this.s3client.abortMultipartUpload(new AbortMultipartUploadRequest(this.s3Properties.getBucketName(), key, uploadId));
+    } catch (AmazonClientException e) {
+      LOG.warn("Failed to abort multipart upload " + uploadId + " of " + key, e);
+    }
+  }
+
+  /**
+   * Fills the buffer from the stream, returning less than its length only at the end of the stream.
+   */
+  private static int readPart(InputStream content, byte[] part) throws IOException {
+    int total = 0;
+    while (total < part.length) {
+      int read = content.read(part, total, part.length - total);
+      if (read < 0) {
+        break;
+      }
+      total += read;
+    }
+    return total;
+  }
+
   @Override
   public String[] getChildrenNames(ITransaction transaction, final String uri) throws WebdavException {
     LOG.debug("List children names of folder {} at {}", uri, transaction);
+    Map<String, StoredObject> children = listChildren(uri);
+    if (children == null) {
+      return null;
+    }
+    Set<String> names = children.keySet();
+    return names.toArray(new String[names.size()]);
+  }
 
-    List<String> children = new ArrayList<>();
-    String keyspacePrefix = this.s3Properties.getKeyspacePrefix();
-    String folderUri = S3Properties.normalizeFolderUri(uri);
+  /**
+   * Lists the children of a folder with a delimited listing, building the metadata of resources from
+   * the same pages instead of issuing a HEAD request per child. Sub-folders only show up as common
+   * prefixes, which carry no dates, so they get the time of the listing whatever the
+   * {@link S3Properties.FolderTimestamps} policy; looking each one up would cost a request per
+   * sub-folder. The policy applies to folders read with {@link #getStoredObject(ITransaction, String)}.
+   *
+   * @return null if the folder has neither a marker object nor any key below it
+   */
+  @Override
+  public Map<String, StoredObject> getChildren(ITransaction transaction, final String uri) throws WebdavException {
+    LOG.debug("List children of folder {} at {}", uri, transaction);
+    return listChildren(uri);
+  }
+
+  private Map<String, StoredObject> listChildren(final String uri) throws WebdavException {
+    Map<String, StoredObject> children = new LinkedHashMap<>();
+    final String keyspacePrefix = this.s3Properties.getKeyspacePrefix();
+    final String folderUri = S3Properties.normalizeFolderUri(uri);
+    boolean found = folderUri.isEmpty();
+    Date now = new Date();
     try {
       ObjectListing objects = this.s3client.listObjects(new ListObjectsRequest(this.s3Properties.getBucketName(), keyspacePrefix + folderUri, null, "/", null));
       while (objects != null) {
+        found |= !objects.getCommonPrefixes().isEmpty() || !objects.getObjectSummaries().isEmpty();
         for (String folder : objects.getCommonPrefixes()) {
-          children.add(folder.substring(keyspacePrefix.length() + folderUri.length()));
+          String name = folder.substring(keyspacePrefix.length() + folderUri.length());
+          children.put(name, folderObject(now));
         }
 
         for (S3ObjectSummary object : objects.getObjectSummaries()) {
@@ -141,7 +503,12 @@ public class S3Store implements IWebdavStore {
             name = name.substring(folderUri.length());
           }
           if (!name.isEmpty()) {
-            children.add(name);
+            StoredObject so = new StoredObject();
+            so.setFolder(false);
+            so.setResourceLength(object.getSize());
+            so.setLastModified(object.getLastModified());
+            so.setCreationDate(object.getLastModified());
+            children.put(name, so);
           }
         }
 
@@ -151,10 +518,350 @@ public class S3Store implements IWebdavStore {
           objects = null;
         }
       }
+    } catch (AmazonServiceException e) {
+      throw mapAmazonServiceException(e);
+    }
+
+    if (!found) {
+      rememberMissingFolder(keyspacePrefix + folderUri);
+      return null;
+    }
+    return children;
+  }
+
+  /**
+   * Copies with server-side CopyObject requests, so no content passes through this server. Objects over
+   * 5 GB are copied in parts, and a folder is copied key by key, with up to the upload concurrency
+   * requests in flight.
+   */
+  @Override
+  public boolean copyObject(ITransaction transaction, String sourceUri, String destinationUri) throws WebdavException {
+    LOG.debug("Copy {} to {} at {}", sourceUri, destinationUri, transaction);
+    copyKeys(sourceUri, destinationUri);
+    return true;
+  }
+
+  /**
+   * S3 has no rename, so this is a server-side copy followed by batched deletes of the source keys.
+   */
+  @Override
+  public boolean moveObject(ITransaction transaction, String sourceUri, String destinationUri) throws WebdavException {
+    LOG.debug("Move {} to {} at {}", sourceUri, destinationUri, transaction);
+    List<String> keys = copyKeys(sourceUri, destinationUri);
+    List<List<String>> batches = new ArrayList<>();
+    for (int from = 0; from < keys.size(); from += MAX_DELETE_BATCH) {
+      batches.add(keys.subList(from, Math.min(from + MAX_DELETE_BATCH, keys.size())));
+    }
+
+    Map<String, WebdavException> failures = deleteKeys(batches.iterator());
+    if (!failures.isEmpty()) {
+      throw new WebdavException("Copied %s to %s, but failed to remove %d of the source objects", sourceUri, destinationUri, failures.size());
+    }
+    return true;
+  }
+
+  /**
+   * @return the copied source keys
+   */
+  private List<String> copyKeys(String sourceUri, String destinationUri) throws WebdavException {
+    StoredObject source = getStoredObject(null, sourceUri);
+    if (source == null) {
+      throw new ObjectNotFoundException(sourceUri);
+    }
+
+    String keyspacePrefix = this.s3Properties.getKeyspacePrefix();
+    List<String> keys = new ArrayList<>();
+    List<Callable<Void>> copies = new ArrayList<>();
+    try {
+      if (source.isFolder()) {
+        String sourcePrefix = keyspacePrefix + S3Properties.normalizeFolderUri(sourceUri);
+        String destinationPrefix = keyspacePrefix + S3Properties.normalizeFolderUri(destinationUri);
+        for (S3ObjectSummary summary : listAllObjects(sourcePrefix)) {
+          keys.add(summary.getKey());
+          copies.add(copyTask(summary.getKey(), destinationPrefix + summary.getKey().substring(sourcePrefix.length()), summary.getSize()));
+        }
+      } else {
+        String sourceKey = keyspacePrefix + S3Properties.normalizeResourceUri(sourceUri);
+        keys.add(sourceKey);
+        copies.add(copyTask(sourceKey, keyspacePrefix + S3Properties.normalizeResourceUri(destinationUri), source.getResourceLength()));
+      }
+    } catch (AmazonServiceException e) {
+      throw mapAmazonServiceException(e);
+    }
+
+    try {
+      runConcurrently(copies);
+    } finally {
+      forgetMissingFolders(keyspacePrefix + S3Properties.normalizeFolderUri(destinationUri));
+    }
+    return keys;
+  }
+
+  private Callable<Void> copyTask(final String sourceKey, final String destinationKey, final long size) {
+    return new Callable<Void>() {
+      @Override
+      public Void call() throws WebdavException {
+        if (size <= MAX_SINGLE_COPY_SIZE) {
+          s3client.copyObject(s3Properties.getBucketName(), sourceKey, s3Properties.getBucketName(), destinationKey);
+        } else {
+          copyMultipart(sourceKey, destinationKey, size);
+        }
+        return null;
+      }
+    };
+  }
+
+  private void copyMultipart(final String sourceKey, final String destinationKey, long size) throws WebdavException {
+    final String bucket = this.s3Properties.getBucketName();
+    final String uploadId = this.s3client.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucket, destinationKey)).getUploadId();
+    LOG.debug("Started multipart copy {} of {} to {}", uploadId, sourceKey, destinationKey);
 
-      return children.toArray(new String[children.size()]);
+    long partSize = Math.max(COPY_PART_SIZE, (size + MAX_PARTS - 1) / MAX_PARTS);
+    List<Callable<PartETag>> parts = new ArrayList<>();
+    for (long first = 0; first < size; first += partSize) {
+      final CopyPartRequest request = new CopyPartRequest().withSourceBucketName(bucket)
+          .withSourceKey(sourceKey)
+          .withDestinationBucketName(bucket)
+          .withDestinationKey(destinationKey)
+          .withUploadId(uploadId)
+          .withPartNumber(parts.size() + 1)
+          .withFirstByte(first)
+          .withLastByte(Math.min(first + partSize, size) - 1);
+      parts.add(new Callable<PartETag>() {
+        @Override
+        public PartETag call() {
+          return s3client.copyPart(request).getPartETag();
+        }
+      });
+    }
+
+    boolean completed = false;
+    try {
+      List<PartETag> etags = runConcurrently(parts);
+      this.s3client.completeMultipartUpload(new CompleteMultipartUploadRequest(bucket, destinationKey, uploadId, etags));
+      completed = true;
     } catch (AmazonServiceException e) {
       throw mapAmazonServiceException(e);
+    } finally {
+      if (!completed) {
+        abortUpload(destinationKey, uploadId);
+      }
+    }
+  }
+
+  /**
+   * Lists the folder page by page and removes each page of keys with one DeleteObjects request, while
+   * the listing continues. The folder's own marker object is part of the listing.
+   */
+  @Override
+  public Map<String, WebdavException> removeFolder(ITransaction transaction, String uri) throws WebdavException {
+    LOG.debug("Remove folder {} at {}", uri, transaction);
+    final String prefix = this.s3Properties.getKeyspacePrefix() + S3Properties.normalizeFolderUri(uri);
+    try {
+      return deleteKeys(new Iterator<List<String>>() {
+        private ObjectListing page = s3client.listObjects(s3Properties.getBucketName(), prefix);
+
+        @Override
+        public boolean hasNext() {
+          while (page != null && page.getObjectSummaries().isEmpty()) {
+            page = page.isTruncated() ? s3client.listNextBatchOfObjects(page) : null;
+          }
+          return page != null;
+        }
+
+        @Override
+        public List<String> next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          List<String> keys = new ArrayList<>(page.getObjectSummaries().size());
+          for (S3ObjectSummary summary : page.getObjectSummaries()) {
+            keys.add(summary.getKey());
+          }
+          page = page.isTruncated() ? s3client.listNextBatchOfObjects(page) : null;
+          return keys;
+        }
+
+        @Override
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      });
+    } catch (AmazonServiceException e) {
+      throw mapAmazonServiceException(e);
+    }
+  }
+
+  /**
+   * Deletes each batch of at most 1000 keys with one DeleteObjects request, concurrently.
+   *
+   * @return the URIs of keys that could not be deleted, mapped to the reason
+   */
+  private Map<String, WebdavException> deleteKeys(Iterator<List<String>> batches) throws WebdavException {
+    final Iterator<List<String>> keys = batches;
+    List<List<DeleteError>> results = runConcurrently(new Iterator<Callable<List<DeleteError>>>() {
+      @Override
+      public boolean hasNext() {
+        return keys.hasNext();
+      }
+
+      @Override
+      public Callable<List<DeleteError>> next() {
+        final List<String> batch = keys.next();
+        return new Callable<List<DeleteError>>() {
+          @Override
+          public List<DeleteError> call() {
+            List<KeyVersion> keyVersions = new ArrayList<>(batch.size());
+            for (String key : batch) {
+              keyVersions.add(new KeyVersion(key));
+            }
+            try {
+              s3client.deleteObjects(new DeleteObjectsRequest(s3Properties.getBucketName()).withQuiet(true).withKeys(keyVersions));
+              return new ArrayList<>();
+            } catch (MultiObjectDeleteException e) {
+              return e.getErrors();
+            }
+          }
+        };
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    });
+
+    String keyspacePrefix = this.s3Properties.getKeyspacePrefix();
+    Map<String, WebdavException> failures = new LinkedHashMap<>();
+    for (List<DeleteError> errors : results) {
+      for (DeleteError error : errors) {
+        String uri = "/" + error.getKey().substring(keyspacePrefix.length());
+        WebdavException reason = "AccessDenied".equals(error.getCode())
+            ? new AccessDeniedException(error.getMessage())
+            : new WebdavException("Failed to delete %s: %s", error.getKey(), error.getMessage());
+        failures.put(uri, reason);
+      }
+    }
+    return failures;
+  }
+
+  private List<S3ObjectSummary> listAllObjects(String prefix) {
+    List<S3ObjectSummary> summaries = new ArrayList<>();
+    ObjectListing objects = this.s3client.listObjects(this.s3Properties.getBucketName(), prefix);
+    while (objects != null) {
+      summaries.addAll(objects.getObjectSummaries());
+      objects = objects.isTruncated() ? this.s3client.listNextBatchOfObjects(objects) : null;
+    }
+    return summaries;
+  }
+
+  /**
+   * Runs the tasks on the transfer pool, with at most the upload concurrency of them in flight, and
+   * returns their results in order. Tasks are taken from the iterator only as slots free up. On the
+   * first failure the tasks that haven't started are skipped, the running ones are waited for, and the
+   * failure is rethrown, so nothing of the operation is still going on once the caller hears of it.
+   * A single task, or tasks run from a transfer thread, run on the calling thread: a transfer thread
+   * waiting for tasks queued behind it could wait forever, with the pool bounded.
+   */
+  private <T> List<T> runConcurrently(List<? extends Callable<T>> tasks) throws WebdavException {
+    if (tasks.size() == 1) {
+      return runInline(tasks.iterator());
+    }
+    return runConcurrently(tasks.iterator());
+  }
+
+  private <T> List<T> runConcurrently(Iterator<? extends Callable<T>> tasks) throws WebdavException {
+    if (Thread.currentThread() instanceof TransferThread) {
+      return runInline(tasks);
+    }
+
+    final Semaphore inFlight = new Semaphore(this.s3Properties.getUploadConcurrency());
+    final AtomicBoolean failed = new AtomicBoolean();
+    List<Future<T>> futures = new ArrayList<>();
+    boolean done = false;
+    try {
+      int checked = 0;
+      while (tasks.hasNext()) {
+        inFlight.acquire();
+        final Callable<T> task = tasks.next();
+        while (checked < futures.size() && futures.get(checked).isDone()) {
+          futures.get(checked++).get();
+        }
+        futures.add(this.transferExecutor.submit(new Callable<T>() {
+          @Override
+          public T call() throws Exception {
+            try {
+              return failed.get() ? null : task.call();
+            } finally {
+              inFlight.release();
+            }
+          }
+        }));
+      }
+
+      List<T> results = new ArrayList<>(futures.size());
+      for (Future<T> future : futures) {
+        results.add(future.get());
+      }
+      done = true;
+      return results;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new WebdavException("Interrupted while waiting for S3 requests", e);
+    } catch (ExecutionException e) {
+      throw taskFailure(e.getCause());
+    } catch (RejectedExecutionException e) {
+      throw new WebdavException("Cannot run S3 requests, the store has been shut down", e);
+    } finally {
+      if (!done) {
+        failed.set(true);
+        awaitAll(futures);
+      }
+    }
+  }
+
+  private <T> List<T> runInline(Iterator<? extends Callable<T>> tasks) throws WebdavException {
+    List<T> results = new ArrayList<>();
+    while (tasks.hasNext()) {
+      try {
+        results.add(tasks.next().call());
+      } catch (Exception e) {
+        throw taskFailure(e);
+      }
+    }
+    return results;
+  }
+
+  private WebdavException taskFailure(Throwable cause) {
+    if (cause instanceof AmazonServiceException) {
+      return mapAmazonServiceException((AmazonServiceException) cause);
+    }
+    if (cause instanceof WebdavException) {
+      return (WebdavException) cause;
+    }
+    return new WebdavException("S3 request failed: %s", cause, cause.getMessage());
+  }
+
+  /**
+   * Waits for every task to finish, however it does. Tasks of a failed operation skip their work, so
+   * this only waits for the requests already in flight.
+   */
+  private static void awaitAll(List<? extends Future<?>> futures) {
+    boolean interrupted = false;
+    for (Future<?> future : futures) {
+      while (true) {
+        try {
+          future.get();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException | CancellationException e) {
+          break;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
     }
   }
 
@@ -169,6 +876,48 @@ public class S3Store implements IWebdavStore {
     }
   }
 
+  /**
+   * Nothing to do if the digest already went out with the content, which is the case for single-part
+   * content written by PUT in the same transaction.
+   * <p/>
+   * Otherwise (multipart uploads, whose metadata is fixed when they are initiated, and digests set
+   * outside of a PUT) S3 metadata can't be changed in place, so the object is copied onto itself with
+   * the digest added. That costs a HEAD and a server-side copy of the whole object, and in a versioned
+   * bucket it leaves an extra version behind. The copy is made conditional on the ETag of the content
+   * the digest was computed for, so content written concurrently by someone else is never labelled with
+   * it. Objects too large for a single copy keep no digest.
+   */
+  @Override
+  public void setResourceDigest(ITransaction transaction, String resourceUri, String digest) throws WebdavException {
+    LOG.debug("Set resource digest for {} at {}", resourceUri, transaction);
+    String bucket = this.s3Properties.getBucketName();
+    String key = this.s3Properties.getKeyspacePrefix() + S3Properties.normalizeResourceUri(resourceUri);
+    S3WebdavTransaction s3Transaction = transaction instanceof S3WebdavTransaction ? (S3WebdavTransaction) transaction : null;
+    if (s3Transaction != null && digest.equals(s3Transaction.getWrittenDigest(key))) {
+      return;
+    }
+
+    try {
+      ObjectMetadata metadata = this.s3client.getObjectMetadata(bucket, key);
+      if (digest.equals(metadata.getUserMetaDataOf(DIGEST_METADATA)) || metadata.getContentLength() > MAX_SINGLE_COPY_SIZE) {
+        return;
+      }
+
+      String etag = s3Transaction == null ? null : s3Transaction.getWrittenETag(key);
+      ObjectMetadata updated = metadata.clone();
+      updated.addUserMetadata(DIGEST_METADATA, digest);
+      CopyObjectResult result = this.s3client.copyObject(new CopyObjectRequest(bucket, key, bucket, key)
+          .withNewObjectMetadata(updated)
+          .withMatchingETagConstraint(etag == null ? metadata.getETag() : etag));
+      if (result == null) {
+        LOG.debug("Not storing digest of {}, its content has changed since", key);
+      }
+    } catch (AmazonServiceException e) {
+      //digests are optional, don't fail the PUT that produced the content over one.
+      LOG.debug("Cannot store digest of {}: {}", key, e.getMessage());
+    }
+  }
+
   @Override
   public void removeObject(ITransaction transaction, String uri) throws WebdavException {
     LOG.debug("Remove resource {} at {}", uri, transaction);
@@ -202,6 +951,7 @@ public class S3Store implements IWebdavStore {
       result.setResourceLength(objectMetadata.getContentLength());
       result.setLastModified(objectMetadata.getLastModified());
       result.setCreationDate(objectMetadata.getLastModified());
+      result.setContentDigest(objectMetadata.getUserMetaDataOf(DIGEST_METADATA));
       return result;
     } catch (AmazonServiceException e) {
       if (e.getStatusCode() == 404) {
@@ -212,27 +962,98 @@ public class S3Store implements IWebdavStore {
     }
   }
 
+  /**
+   * A folder exists if its marker object does, or if any key starts with its prefix. Both are answered
+   * with a single-entry request, and misses are remembered for a short while, since every 404 and every
+   * parent lookup during a PUT ends up here.
+   */
   StoredObject readFolderObject(final String uri) {
-    ObjectListing objects = this.s3client.listObjects(this.s3Properties.getBucketName(), this.s3Properties.getKeyspacePrefix() + S3Properties.normalizeFolderUri(uri));
+    String bucket = this.s3Properties.getBucketName();
+    String prefix = this.s3Properties.getKeyspacePrefix() + S3Properties.normalizeFolderUri(uri);
+    if (isMissingFolder(prefix)) {
+      LOG.debug("Folder {} is known to be missing", prefix);
+      return null;
+    }
 
-    if (objects.getCommonPrefixes().isEmpty() && objects.getObjectSummaries().isEmpty()) {
+    boolean lookupTime = this.s3Properties.getFolderTimestamps() == S3Properties.FolderTimestamps.LOOKUP_TIME;
+    if (this.s3Properties.isFolderMarkerHead() && !prefix.isEmpty()) {
+      try {
+        ObjectMetadata marker = this.s3client.getObjectMetadata(bucket, prefix);
+        return folderObject(lookupTime ? new Date() : marker.getLastModified());
+      } catch (AmazonServiceException e) {
+        if (e.getStatusCode() != 404) {
+          throw e;
+        }
+        //not created through WebDAV; it can still exist implicitly.
+      }
+    }
+
+    ObjectListing objects = this.s3client.listObjects(new ListObjectsRequest()
+        .withBucketName(bucket)
+        .withPrefix(prefix)
+        .withDelimiter("/")
+        .withMaxKeys(1));
+    List<S3ObjectSummary> summaries = objects.getObjectSummaries();
+    if (summaries.isEmpty() && objects.getCommonPrefixes().isEmpty()) {
+      rememberMissingFolder(prefix);
       return null; //looks like there's no directory there.
     }
 
+    //the marker, where there is one, sorts first.
+    return folderObject(lookupTime || summaries.isEmpty() ? new Date() : summaries.get(0).getLastModified());
+  }
+
+  private StoredObject folderObject(Date modified) {
     StoredObject result = new StoredObject();
+    result.setFolder(true);
+    result.setResourceLength(0);
+    result.setLastModified(modified);
+    result.setCreationDate(modified);
+    return result;
+  }
 
-    long length = 0;
-    long earliest = System.currentTimeMillis();
-    for (S3ObjectSummary summary : objects.getObjectSummaries()) {
-      length = Math.max(length, summary.getSize());
-      earliest = Math.min(earliest, summary.getLastModified().getTime());
+  private boolean isMissingFolder(String prefix) {
+    Long until = this.missingFolders.get(prefix);
+    if (until == null) {
+      return false;
     }
+    if (until > System.currentTimeMillis()) {
+      return true;
+    }
+    this.missingFolders.remove(prefix, until);
+    return false;
+  }
 
-    result.setFolder(true);
-    result.setResourceLength(length);
-    result.setLastModified(new Date(earliest));
-    result.setCreationDate(result.getLastModified());
-    return result;
+  private void rememberMissingFolder(String prefix) {
+    long ttl = this.s3Properties.getMissingFolderCacheMillis();
+    if (ttl <= 0) {
+      return;
+    }
+    if (this.missingFolders.size() >= MAX_MISSING_FOLDERS) {
+      this.missingFolders.clear();
+    }
+    this.missingFolders.put(prefix, System.currentTimeMillis() + ttl);
+  }
+
+  /**
+   * Writing a key brings all of its parent folders into existence, and writing a folder key (or a
+   * folder copy) may fill in any folder below it.
+   */
+  private void forgetMissingFolders(String key) {
+    if (this.missingFolders.isEmpty()) {
+      return;
+    }
+    this.missingFolders.remove("");
+    for (int i = key.indexOf('/'); i >= 0; i = key.indexOf('/', i + 1)) {
+      this.missingFolders.remove(key.substring(0, i + 1));
+    }
+    if (key.endsWith("/")) {
+      for (Iterator<String> it = this.missingFolders.keySet().iterator(); it.hasNext(); ) {
+        if (it.next().startsWith(key)) {
+          it.remove();
+        }
+      }
+    }
   }
 
   WebdavException mapAmazonServiceException(AmazonServiceException e) {
@@ -259,4 +1080,28 @@ public class S3Store implements IWebdavStore {
 
     return target;
   }
+
+  private static final class DaemonThreadFactory implements ThreadFactory {
+
+    private final String prefix;
+    private final AtomicInteger count = new AtomicInteger();
+
+    DaemonThreadFactory(String prefix) {
+      this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread t = new TransferThread(r, prefix + count.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    }
+  }
+
+  private static final class TransferThread extends Thread {
+
+    TransferThread(Runnable r, String name) {
+      super(r, name);
+    }
+  }
 }
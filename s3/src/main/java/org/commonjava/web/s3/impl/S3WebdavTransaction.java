@@ -16,7 +16,9 @@
 package org.commonjava.web.s3.impl;
 
 import java.security.Principal;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.sf.webdav.spi.ITransaction;
 
@@ -28,6 +30,21 @@ public class S3WebdavTransaction implements ITransaction {
   private final String id;
   private final Principal principal;
 
+  /**
+   * Multipart uploads started but not yet completed or aborted, by upload id, mapped to their key.
+   */
+  private final Map<String, String> pendingUploads = new ConcurrentHashMap<>();
+
+  /**
+   * ETags of the objects written in this transaction, by key.
+   */
+  private final Map<String, String> writtenETags = new ConcurrentHashMap<>();
+
+  /**
+   * Digests sent along with the content written in this transaction, by key.
+   */
+  private final Map<String, String> writtenDigests = new ConcurrentHashMap<>();
+
   public S3WebdavTransaction(Principal principal) {
     this.id = UUID.randomUUID().toString();
     this.principal = principal;
@@ -38,6 +55,39 @@ public class S3WebdavTransaction implements ITransaction {
     return this.principal;
   }
 
+  void uploadStarted(String uploadId, String key) {
+    pendingUploads.put(uploadId, key);
+  }
+
+  void uploadFinished(String uploadId) {
+    pendingUploads.remove(uploadId);
+  }
+
+  Map<String, String> getPendingUploads() {
+    return pendingUploads;
+  }
+
+  void contentWritten(String key, String etag, String digest) {
+    if (etag == null) {
+      writtenETags.remove(key);
+    } else {
+      writtenETags.put(key, etag);
+    }
+    if (digest == null) {
+      writtenDigests.remove(key);
+    } else {
+      writtenDigests.put(key, digest);
+    }
+  }
+
+  String getWrittenETag(String key) {
+    return writtenETags.get(key);
+  }
+
+  String getWrittenDigest(String key) {
+    return writtenDigests.get(key);
+  }
+
   @Override
   public String toString() {
     return "S3WebdavTransaction{id='" + id + "', principal=" + principal + '}';
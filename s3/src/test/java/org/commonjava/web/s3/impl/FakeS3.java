@@ -0,0 +1,299 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.web.s3.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+
+/**
+ * In-memory stand-in for the object, listing and multipart calls of {@link AmazonS3}, built as a dynamic proxy
+ * because the interface is far too large to implement by hand. Any other call fails the test. It is
+ * safe to call from the store's transfer threads.
+ */
+class FakeS3 implements InvocationHandler {
+
+  private final Map<String, byte[]> objects = new TreeMap<>();
+  private final Map<String, String> etags = new HashMap<>();
+  private final Map<String, Date> modified = new HashMap<>();
+  private final Map<String, Map<String, String>> userMetadata = new HashMap<>();
+  private final Map<Integer, byte[]> parts = new TreeMap<>();
+  private final List<Integer> partSizes = new ArrayList<>();
+  private final Set<Long> failingOffsets = new HashSet<>();
+  private final Set<Long> shortOffsets = new HashSet<>();
+  private final List<String> calls = new ArrayList<>();
+  private int versions;
+  private boolean aborted;
+
+  AmazonS3 client() {
+    return (AmazonS3) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {AmazonS3.class}, this);
+  }
+
+  synchronized void put(String key, byte[] content) {
+    put(key, content, Collections.<String, String>emptyMap());
+  }
+
+  synchronized void put(String key, byte[] content, Map<String, String> metadata) {
+    objects.put(key, content);
+    etags.put(key, "etag-" + ++versions);
+    modified.put(key, new Date(versions * 1000L));
+    userMetadata.put(key, new HashMap<>(metadata));
+  }
+
+  synchronized Date lastModified(String key) {
+    return modified.get(key);
+  }
+
+  synchronized Map<String, String> userMetadata(String key) {
+    return userMetadata.get(key);
+  }
+
+  synchronized void clearCalls() {
+    calls.clear();
+  }
+
+  synchronized byte[] get(String key) {
+    return objects.get(key);
+  }
+
+  synchronized String etag(String key) {
+    return etags.get(key);
+  }
+
+  /**
+   * Makes ranged GETs starting at <code>offset</code> fail.
+   */
+  synchronized void failAt(long offset) {
+    failingOffsets.add(offset);
+  }
+
+  /**
+   * Makes ranged GETs starting at <code>offset</code> return one byte less than asked for.
+   */
+  synchronized void shortAt(long offset) {
+    shortOffsets.add(offset);
+  }
+
+  synchronized List<Integer> partSizes() {
+    return new ArrayList<>(partSizes);
+  }
+
+  synchronized List<String> calls() {
+    return new ArrayList<>(calls);
+  }
+
+  synchronized boolean isAborted() {
+    return aborted;
+  }
+
+  @Override
+  public synchronized Object invoke(Object proxy, Method method, Object[] args) throws IOException {
+    calls.add(method.getName());
+    switch (method.getName()) {
+      case "initiateMultipartUpload": {
+        InitiateMultipartUploadRequest request = (InitiateMultipartUploadRequest) args[0];
+        InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+        result.setBucketName(request.getBucketName());
+        result.setKey(request.getKey());
+        result.setUploadId("upload-" + ++versions);
+        parts.clear();
+        return result;
+      }
+      case "uploadPart": {
+        UploadPartRequest request = (UploadPartRequest) args[0];
+        byte[] part = readAll(request.getInputStream());
+        parts.put(request.getPartNumber(), part);
+        partSizes.add(part.length);
+        UploadPartResult result = new UploadPartResult();
+        result.setPartNumber(request.getPartNumber());
+        result.setETag("part-" + request.getPartNumber());
+        return result;
+      }
+      case "completeMultipartUpload": {
+        CompleteMultipartUploadRequest request = (CompleteMultipartUploadRequest) args[0];
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (byte[] part : parts.values()) {
+          content.write(part);
+        }
+        put(request.getKey(), content.toByteArray());
+        CompleteMultipartUploadResult result = new CompleteMultipartUploadResult();
+        result.setKey(request.getKey());
+        result.setETag(etags.get(request.getKey()));
+        return result;
+      }
+      case "abortMultipartUpload":
+        aborted = true;
+        parts.clear();
+        return null;
+      case "putObject": {
+        String key = (String) args[1];
+        ObjectMetadata metadata = (ObjectMetadata) args[3];
+        put(key, readAll((InputStream) args[2]), metadata.getUserMetadata());
+        PutObjectResult result = new PutObjectResult();
+        result.setETag(etags.get(key));
+        result.setMetadata(metadata);
+        return result;
+      }
+      case "getObjectMetadata":
+        return getObjectMetadata((String) args[1]);
+      case "listObjects":
+        return args.length == 1 ? listObjects((ListObjectsRequest) args[0]) : listObjects(new ListObjectsRequest((String) args[0], (String) args[1], null, null, null));
+      case "getObject":
+        return args.length == 1 ? getObject((GetObjectRequest) args[0]) : getObject(new GetObjectRequest((String) args[0], (String) args[1]));
+      default:
+        throw new UnsupportedOperationException("Unexpected S3 call: " + method);
+    }
+  }
+
+  private ObjectMetadata getObjectMetadata(String key) {
+    byte[] content = objects.get(key);
+    if (content == null) {
+      throw notFound(key);
+    }
+    ObjectMetadata metadata = new ObjectMetadata();
+    metadata.setContentLength(content.length);
+    metadata.setLastModified(modified.get(key));
+    metadata.setHeader("ETag", etags.get(key));
+    metadata.setUserMetadata(new HashMap<>(userMetadata.get(key)));
+    return metadata;
+  }
+
+  private ObjectListing listObjects(ListObjectsRequest request) {
+    String prefix = request.getPrefix() == null ? "" : request.getPrefix();
+    String delimiter = request.getDelimiter();
+    int maxKeys = request.getMaxKeys() == null ? Integer.MAX_VALUE : request.getMaxKeys();
+
+    ObjectListing listing = new ObjectListing();
+    listing.setBucketName(request.getBucketName());
+    listing.setPrefix(prefix);
+    Set<String> commonPrefixes = new LinkedHashSet<>();
+    int count = 0;
+    for (String key : objects.keySet()) {
+      if (!key.startsWith(prefix)) {
+        continue;
+      }
+      int cut = delimiter == null ? -1 : key.indexOf(delimiter, prefix.length());
+      if (cut >= 0 && commonPrefixes.contains(key.substring(0, cut + delimiter.length()))) {
+        continue;
+      }
+      if (count == maxKeys) {
+        listing.setTruncated(true);
+        break;
+      }
+      count++;
+      if (cut >= 0) {
+        commonPrefixes.add(key.substring(0, cut + delimiter.length()));
+      } else {
+        S3ObjectSummary summary = new S3ObjectSummary();
+        summary.setBucketName(request.getBucketName());
+        summary.setKey(key);
+        summary.setSize(objects.get(key).length);
+        summary.setLastModified(modified.get(key));
+        summary.setETag(etags.get(key));
+        listing.getObjectSummaries().add(summary);
+      }
+    }
+    listing.setCommonPrefixes(new ArrayList<>(commonPrefixes));
+    return listing;
+  }
+
+  private static AmazonServiceException notFound(String key) {
+    AmazonServiceException e = new AmazonServiceException("No such key: " + key);
+    e.setStatusCode(404);
+    return e;
+  }
+
+  private S3Object getObject(GetObjectRequest request) {
+    byte[] content = objects.get(request.getKey());
+    if (content == null) {
+      throw notFound(request.getKey());
+    }
+    String etag = etags.get(request.getKey());
+    if (!request.getMatchingETagConstraints().isEmpty() && !request.getMatchingETagConstraints().contains(etag)) {
+      //the client returns null when a constraint isn't met.
+      return null;
+    }
+
+    long from = 0;
+    long to = content.length - 1;
+    long[] range = request.getRange();
+    if (range != null) {
+      from = range[0];
+      to = Math.min(range[1], content.length - 1);
+      if (failingOffsets.contains(from)) {
+        AmazonServiceException e = new AmazonServiceException("Injected failure at " + from);
+        e.setStatusCode(500);
+        throw e;
+      }
+      if (shortOffsets.contains(from)) {
+        to--;
+      }
+    }
+
+    ObjectMetadata metadata = new ObjectMetadata();
+    metadata.setContentLength(to - from + 1);
+    metadata.setHeader("ETag", etag);
+    if (range != null) {
+      metadata.setHeader("Content-Range", "bytes " + from + "-" + to + "/" + content.length);
+    }
+    S3Object object = new S3Object();
+    object.setKey(request.getKey());
+    object.setObjectMetadata(metadata);
+    object.setObjectContent(new ByteArrayInputStream(Arrays.copyOfRange(content, (int) from, (int) to + 1)));
+    return object;
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[64 * 1024];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+}
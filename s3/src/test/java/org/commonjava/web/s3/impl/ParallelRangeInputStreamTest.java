@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.web.s3.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+
+public class ParallelRangeInputStreamTest {
+
+  private static final byte[] CONTENT = new byte[100];
+
+  static {
+    for (int i = 0; i < CONTENT.length; i++) {
+      CONTENT[i] = (byte) i;
+    }
+  }
+
+  private final FakeS3 s3 = new FakeS3();
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+  @After
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void chunksAreHandedOutInOrder() throws Exception {
+    s3.put("key", CONTENT);
+
+    InputStream in = stream(null, 0, CONTENT.length);
+
+    assertThat(readAll(in), equalTo(CONTENT));
+    in.close();
+  }
+
+  @Test
+  public void theHeadIsReadBeforeTheChunks() throws Exception {
+    s3.put("key", CONTENT);
+
+    InputStream in = stream(new ByteArrayInputStream(CONTENT, 0, 10), 10, 50);
+
+    assertThat(readAll(in), equalTo(Arrays.copyOf(CONTENT, 50)));
+  }
+
+  @Test
+  public void aShortChunkFailsTheRead() throws Exception {
+    s3.put("key", CONTENT);
+    s3.shortAt(14);
+
+    InputStream in = stream(null, 0, CONTENT.length);
+
+    try {
+      readAll(in);
+      fail("A chunk came back short");
+    } catch (IOException e) {
+      assertThat(e.getCause(), instanceOf(IOException.class));
+    }
+  }
+
+  @Test
+  public void chunkErrorsFailTheRead() throws Exception {
+    s3.put("key", CONTENT);
+    s3.failAt(21);
+
+    InputStream in = stream(null, 0, CONTENT.length);
+
+    try {
+      readAll(in);
+      fail("A chunk failed");
+    } catch (IOException e) {
+      assertThat(e.getCause(), instanceOf(AmazonServiceException.class));
+    }
+  }
+
+  @Test
+  public void aReplacedObjectFailsTheRead() throws Exception {
+    s3.put("key", CONTENT);
+    String etag = s3.etag("key");
+    s3.put("key", new byte[CONTENT.length]);
+
+    InputStream in = new ParallelRangeInputStream(s3.client(), "bucket", "key", etag, new ByteArrayInputStream(CONTENT, 0, 7), 7,
+        CONTENT.length, 7, 3, executor);
+
+    try {
+      readAll(in);
+      fail("The object was replaced");
+    } catch (IOException e) {
+      assertThat(e.getCause().getMessage(), equalTo("key was replaced while being read"));
+    }
+  }
+
+  private InputStream stream(InputStream head, long from, long end) {
+    return new ParallelRangeInputStream(s3.client(), "bucket", "key", s3.etag("key"), head, from, end, 7, 3, executor);
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[5];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.web.s3.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+import com.amazonaws.ClientConfiguration;
+
+public class S3ClientFactoryTest {
+
+  @Test
+  public void clientConfigurationFollowsTheProperties() {
+    S3Properties properties = new S3Properties("bucket")
+        .withConnectionPool(200, 3000, 40000, true)
+        .withRetries(7, 50, 5000);
+
+    ClientConfiguration configuration = new S3ClientFactory(properties).createClientConfiguration();
+
+    assertThat(configuration.getMaxConnections(), equalTo(200));
+    assertThat(configuration.getConnectionTimeout(), equalTo(3000));
+    assertThat(configuration.getSocketTimeout(), equalTo(40000));
+    assertThat(configuration.useTcpKeepAlive(), equalTo(true));
+    assertThat(configuration.getRetryPolicy().getMaxErrorRetry(), equalTo(7));
+    assertThat(configuration.getRetryPolicy().isMaxErrorRetryInClientConfigHonored(), equalTo(false));
+  }
+
+  @Test
+  public void defaultPropertiesAreCarriedOver() {
+    ClientConfiguration configuration = new S3ClientFactory(new S3Properties("bucket")).createClientConfiguration();
+
+    assertThat(configuration.getMaxConnections(), equalTo(new S3Properties("bucket").getMaxConnections()));
+    assertThat(configuration.getRetryPolicy().getMaxErrorRetry(), equalTo(new S3Properties("bucket").getMaxErrorRetry()));
+  }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.web.s3.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+
+import net.sf.webdav.util.ContentDigest;
+
+import org.junit.Test;
+
+public class S3DigestTest {
+
+  private static final byte[] CONTENT = "some content".getBytes();
+
+  private final FakeS3 s3 = new FakeS3();
+
+  @Test
+  public void aDigestingUploadSendsItsDigestAlong() throws Exception {
+    S3Store store = new S3Store(s3.client(), new S3Properties("bucket"));
+    S3WebdavTransaction transaction = new S3WebdavTransaction(null);
+
+    store.setResourceContent(transaction, "/file", ContentDigest.digesting(new ByteArrayInputStream(CONTENT), ContentDigest.SHA_256), CONTENT.length);
+    store.setResourceDigest(transaction, "/file", digest());
+
+    assertThat(s3.userMetadata("file"), equalTo(Collections.singletonMap("webdav-digest", digest())));
+    assertThat(s3.calls(), equalTo(Arrays.asList("putObject")));
+  }
+
+  @Test
+  public void anAlreadyStoredDigestIsNotCopiedAgain() throws Exception {
+    s3.put("file", CONTENT, Collections.singletonMap("webdav-digest", digest()));
+    S3Store store = new S3Store(s3.client(), new S3Properties("bucket"));
+
+    store.setResourceDigest(new S3WebdavTransaction(null), "/file", digest());
+
+    assertThat(s3.calls(), equalTo(Arrays.asList("getObjectMetadata")));
+  }
+
+  @Test
+  public void theStoredDigestIsReadWithTheResource() throws Exception {
+    s3.put("file", CONTENT, Collections.singletonMap("webdav-digest", digest()));
+    S3Store store = new S3Store(s3.client(), new S3Properties("bucket"));
+
+    assertThat(store.getStoredObject(null, "/file").getContentDigest(), equalTo(digest()));
+  }
+
+  private static String digest() throws Exception {
+    MessageDigest digest = MessageDigest.getInstance(ContentDigest.SHA_256);
+    digest.update(CONTENT);
+    return ContentDigest.toInstanceDigest(digest);
+  }
+}
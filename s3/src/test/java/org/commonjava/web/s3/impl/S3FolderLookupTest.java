@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.web.s3.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+
+import net.sf.webdav.StoredObject;
+
+import org.junit.Test;
+
+public class S3FolderLookupTest {
+
+  private final FakeS3 s3 = new FakeS3();
+
+  @Test
+  public void aFolderMarkerIsFoundWithOneHead() throws Exception {
+    s3.put("docs/", new byte[0]);
+    s3.put("docs/a.txt", new byte[1]);
+    S3Store store = new S3Store(s3.client(), new S3Properties("bucket").withFolderMarkerHead(true));
+
+    StoredObject folder = store.getStoredObject(null, "/docs/");
+
+    assertThat(folder.isFolder(), equalTo(true));
+    assertThat(folder.getLastModified(), equalTo(s3.lastModified("docs/")));
+    assertThat(s3.calls(), equalTo(Arrays.asList("getObjectMetadata")));
+  }
+
+  @Test
+  public void aFolderWithoutMarkerIsFoundWithASingleEntryListing() throws Exception {
+    s3.put("docs/a.txt", new byte[1]);
+    s3.put("docs/b.txt", new byte[1]);
+    S3Store store = new S3Store(s3.client(), new S3Properties("bucket").withFolderMarkerHead(true));
+
+    StoredObject folder = store.getStoredObject(null, "/docs/");
+
+    assertThat(folder.isFolder(), equalTo(true));
+    assertThat(folder.getLastModified(), equalTo(s3.lastModified("docs/a.txt")));
+    assertThat(s3.calls(), equalTo(Arrays.asList("getObjectMetadata", "listObjects")));
+  }
+
+  @Test
+  public void aMissingFolderIsRememberedUntilSomethingIsWrittenBelowIt() throws Exception {
+    S3Store store = new S3Store(s3.client(), new S3Properties("bucket").withMissingFolderCache(60000));
+
+    assertThat(store.getStoredObject(null, "/docs/"), nullValue());
+    s3.clearCalls();
+    assertThat(store.getStoredObject(null, "/docs/"), nullValue());
+    assertThat(s3.calls().isEmpty(), equalTo(true));
+
+    store.setResourceContent(new S3WebdavTransaction(null), "/docs/sub/a.txt", new ByteArrayInputStream(new byte[1]), 1);
+    assertThat(store.getStoredObject(null, "/docs/"), notNullValue());
+  }
+
+  @Test
+  public void aMissingResourceFallsBackToTheFolderLookup() throws Exception {
+    s3.put("docs/a.txt", new byte[1]);
+    S3Store store = new S3Store(s3.client(), new S3Properties("bucket"));
+
+    assertThat(store.getStoredObject(null, "/docs").isFolder(), equalTo(true));
+    assertThat(store.getStoredObject(null, "/nothing"), nullValue());
+  }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.web.s3.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import net.sf.webdav.StoredObject;
+
+import org.junit.Test;
+
+public class S3ListingTest {
+
+  private final FakeS3 s3 = new FakeS3();
+
+  @Test
+  public void childrenComeWithTheirMetadataFromTheListing() throws Exception {
+    s3.put("docs/", new byte[0]);
+    s3.put("docs/a.txt", new byte[3]);
+    s3.put("docs/sub/b.txt", new byte[1]);
+    s3.put("other/c.txt", new byte[1]);
+    S3Store store = new S3Store(s3.client(), new S3Properties("bucket"));
+
+    long before = System.currentTimeMillis();
+    Map<String, StoredObject> children = store.getChildren(null, "/docs");
+
+    assertThat(new ArrayList<>(children.keySet()), equalTo(Arrays.asList("sub/", "a.txt")));
+    StoredObject file = children.get("a.txt");
+    assertThat(file.isFolder(), equalTo(false));
+    assertThat(file.getResourceLength(), equalTo(3L));
+    assertThat(file.getLastModified(), equalTo(s3.lastModified("docs/a.txt")));
+    StoredObject folder = children.get("sub/");
+    assertThat(folder.isFolder(), equalTo(true));
+    assertThat(folder.getLastModified().getTime() >= before, equalTo(true));
+  }
+
+  @Test
+  public void subFoldersNeedNoRequestBeyondTheListing() throws Exception {
+    for (int i = 0; i < 20; i++) {
+      s3.put("docs/sub" + i + "/b.txt", new byte[1]);
+    }
+    S3Store store = new S3Store(s3.client(), new S3Properties("bucket").withFolderMarkerHead(true));
+
+    Map<String, StoredObject> children = store.getChildren(null, "/docs");
+
+    assertThat(children.size(), equalTo(20));
+    assertThat(children.get("sub7/").isFolder(), equalTo(true));
+    assertThat(s3.calls(), equalTo(Arrays.asList("listObjects")));
+  }
+
+  @Test
+  public void aMissingFolderHasNoChildren() throws Exception {
+    s3.put("other/c.txt", new byte[1]);
+    S3Store store = new S3Store(s3.client(), new S3Properties("bucket"));
+
+    assertThat(store.getChildren(null, "/docs"), nullValue());
+    assertThat(store.getChildrenNames(null, "/docs"), nullValue());
+  }
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.web.s3.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import net.sf.webdav.exceptions.WebdavException;
+
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+
+public class S3StoreTest {
+
+  private static final int MB = 1024 * 1024;
+
+  private final FakeS3 s3 = new FakeS3();
+
+  @Test
+  public void partSizeGrowsOnlyWhenTheContentWouldNeedTooManyParts() {
+    assertThat(S3Store.partSize(-1, 8 * MB), equalTo(8 * MB));
+    assertThat(S3Store.partSize(80000L * MB, 8 * MB), equalTo(8 * MB));
+    assertThat(S3Store.partSize(80000L * MB + 1, 8 * MB), equalTo(8 * MB + 1));
+    assertThat(S3Store.partSize(5L * 1024 * 1024 * MB, 8 * MB), equalTo(549755814));
+  }
+
+  @Test
+  public void largeContentIsUploadedInParts() throws Exception {
+    byte[] content = randomContent(11 * MB);
+    S3Store store = store();
+
+    assertThat(store.setResourceContent(new S3WebdavTransaction(null), "/big", new ByteArrayInputStream(content), content.length),
+        equalTo((long) content.length));
+
+    assertThat(s3.partSizes(), equalTo(Arrays.asList(5 * MB, 5 * MB, MB)));
+    assertThat(Arrays.equals(s3.get("big"), content), equalTo(true));
+  }
+
+  @Test
+  public void contentOfUnknownLengthIsUploadedInParts() throws Exception {
+    byte[] content = randomContent(11 * MB);
+    S3Store store = store();
+
+    store.setResourceContent(new S3WebdavTransaction(null), "/big", new ByteArrayInputStream(content), -1);
+
+    assertThat(s3.partSizes(), equalTo(Arrays.asList(5 * MB, 5 * MB, MB)));
+    assertThat(Arrays.equals(s3.get("big"), content), equalTo(true));
+  }
+
+  @Test
+  public void contentLargerThanS3TakesFailsBeforeAnyRequest() throws Exception {
+    S3Store store = store();
+    InputStream content = new ByteArrayInputStream(new byte[0]);
+
+    try {
+      store.setResourceContent(new S3WebdavTransaction(null), "/huge", content, 5L * 1024 * 1024 * MB + 1);
+      fail("S3 can't store more than 5 TB in one object");
+    } catch (WebdavException e) {
+      assertThat(s3.calls().isEmpty(), equalTo(true));
+    }
+  }
+
+  @Test
+  public void aFailedUploadIsAbortedOnlyOnceNoPartIsInFlight() throws Exception {
+    final AmazonS3 fake = s3.client();
+    AmazonS3 client = (AmazonS3) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {AmazonS3.class}, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getName().equals("uploadPart")) {
+          int partNumber = ((UploadPartRequest) args[0]).getPartNumber();
+          //the first part fails once the second is on its way, which takes a while and ignores interrupts.
+          pause(partNumber == 1 ? 50 : 300);
+          if (partNumber == 1) {
+            AmazonServiceException e = new AmazonServiceException("Internal error");
+            e.setStatusCode(500);
+            throw e;
+          }
+        }
+        try {
+          return method.invoke(fake, args);
+        } catch (InvocationTargetException e) {
+          throw e.getCause();
+        }
+      }
+    });
+    byte[] content = randomContent(11 * MB);
+    S3Store store = new S3Store(client, new S3Properties("bucket").withMultipartUpload(5 * MB, 5 * MB, 2));
+
+    try {
+      store.setResourceContent(new S3WebdavTransaction(null), "/big", new ByteArrayInputStream(content), content.length);
+      fail("The first part failed");
+    } catch (WebdavException e) {
+      List<String> calls = s3.calls();
+      assertThat(calls.contains("uploadPart"), equalTo(true));
+      assertThat(calls.get(calls.size() - 1), equalTo("abortMultipartUpload"));
+    }
+  }
+
+  @Test
+  public void aShutDownStoreTakesNoMoreTransfers() throws Exception {
+    byte[] content = randomContent(11 * MB);
+    S3Store store = store();
+    store.shutdown();
+
+    try {
+      store.setResourceContent(new S3WebdavTransaction(null), "/big", new ByteArrayInputStream(content), content.length);
+      fail("The store has been shut down");
+    } catch (WebdavException e) {
+      assertThat(s3.isAborted(), equalTo(true));
+    }
+  }
+
+  @Test
+  public void readAheadReadsTheWholeObject() throws Exception {
+    byte[] content = randomContent(100);
+    s3.put("file", content);
+    S3Store store = new S3Store(s3.client(), new S3Properties("bucket").withReadAhead(10, 7, 3));
+
+    assertThat(readAll(store.getResourceContent(new S3WebdavTransaction(null), "/file")), equalTo(content));
+  }
+
+  @Test
+  public void rangedReadAheadReadsTheRange() throws Exception {
+    byte[] content = randomContent(100);
+    s3.put("file", content);
+    S3Store store = new S3Store(s3.client(), new S3Properties("bucket").withReadAhead(10, 7, 3));
+
+    assertThat(readAll(store.getResourceContent(new S3WebdavTransaction(null), "/file", 5, 60)),
+        equalTo(Arrays.copyOfRange(content, 5, 65)));
+  }
+
+  private static byte[] readAll(InputStream in) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      byte[] buffer = new byte[16];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+    } finally {
+      in.close();
+    }
+    return out.toByteArray();
+  }
+
+  private S3Store store() {
+    return new S3Store(s3.client(), new S3Properties("bucket").withMultipartUpload(5 * MB, 5 * MB, 2));
+  }
+
+  private static void pause(long millis) {
+    long until = System.currentTimeMillis() + millis;
+    while (System.currentTimeMillis() < until) {
+      try {
+        Thread.sleep(until - System.currentTimeMillis());
+      } catch (InterruptedException e) {
+        //keeps going, like a request that's already on the wire.
+      }
+    }
+  }
+
+  private static byte[] randomContent(int length) {
+    byte[] content = new byte[length];
+    new Random(length).nextBytes(content);
+    return content;
+  }
+}
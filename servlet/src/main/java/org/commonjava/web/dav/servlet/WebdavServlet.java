@@ -17,12 +17,15 @@ package org.commonjava.web.dav.servlet;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 
 import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -34,10 +37,13 @@ import net.sf.webdav.spi.IMimeTyper;
 import net.sf.webdav.spi.IWebdavStore;
 import net.sf.webdav.spi.WebdavConfig;
 
+import org.commonjava.web.dav.servlet.impl.AsyncBodyReader;
 import org.commonjava.web.dav.servlet.impl.ServletInitWebdavConfig;
 import org.commonjava.web.dav.servlet.impl.ServletMimeTyper;
 import org.commonjava.web.dav.servlet.impl.ServletWebdavRequest;
 import org.commonjava.web.dav.servlet.impl.ServletWebdavResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 @ApplicationScoped
 public class WebdavServlet
@@ -46,6 +52,14 @@ public class WebdavServlet
 
     private static final long serialVersionUID = 1L;
 
+    private static final Logger LOGGER = LoggerFactory.getLogger( WebdavServlet.class );
+
+    /**
+     * Largest request body kept in memory while it arrives; larger ones are
+     * spooled to a temporary file.
+     */
+    public static final int MAX_IN_MEMORY_BODY = 1024 * 1024;
+
     @Inject
     private WebdavService dav;
 
@@ -58,13 +72,25 @@ public class WebdavServlet
     @Inject
     private IMimeTyper mimeTyper;
 
+    private boolean asyncIo;
+
+    private long asyncTimeout;
+
+    private long asyncSpoolLimit;
+
     @Override
     protected void service( final HttpServletRequest req, final HttpServletResponse resp )
         throws ServletException, IOException
     {
+        if ( asyncIo && req.isAsyncSupported() )
+        {
+            serviceAsync( req, resp );
+            return;
+        }
+
         try
         {
-            dav.service( new ServletWebdavRequest( req ), new ServletWebdavResponse( resp ) );
+            dav.service( new ServletWebdavRequest( req ), new ServletWebdavResponse( resp, req, false, asyncTimeout ) );
         }
         catch ( final WebdavException e )
         {
@@ -72,6 +98,102 @@ public class WebdavServlet
         }
     }
 
+    /**
+     * A PUT body of known length, up to the spool limit, is collected with a
+     * {@link javax.servlet.ReadListener} before the method runs, and GET
+     * content is written with a {@link javax.servlet.WriteListener}, so no
+     * container thread waits on a slow client. Other methods, and larger PUT
+     * bodies, run as usual.
+     */
+    private void serviceAsync( final HttpServletRequest req, final HttpServletResponse resp )
+        throws ServletException, IOException
+    {
+        final long length = req.getContentLengthLong();
+        if ( !"PUT".equals( req.getMethod() ) || length < 0 || length > asyncSpoolLimit )
+        {
+            try
+            {
+                dav.service( new ServletWebdavRequest( req ), new ServletWebdavResponse( resp, req, asyncTimeout ) );
+            }
+            catch ( final WebdavException e )
+            {
+                throw new ServletException( "Failed to service request: " + e.getMessage(), e );
+            }
+            return;
+        }
+
+        final AsyncContext context = req.startAsync();
+        context.setTimeout( asyncTimeout );
+
+        final ServletInputStream in = req.getInputStream();
+        final AsyncBodyReader reader = new AsyncBodyReader( in, MAX_IN_MEMORY_BODY, asyncSpoolLimit, new AsyncBodyReader.BodyHandler()
+        {
+            @Override
+            public void bodyRead( final InputStream body )
+            {
+                context.start( new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        serviceWithBody( context, req, resp, body );
+                    }
+                } );
+            }
+
+            @Override
+            public void bodyFailed( final Throwable error )
+            {
+                LOGGER.warn( "Failed to read request body: " + error.getMessage(), error );
+                context.complete();
+            }
+        } );
+        context.addListener( reader );
+        in.setReadListener( reader );
+    }
+
+    private void serviceWithBody( final AsyncContext context, final HttpServletRequest req,
+                                  final HttpServletResponse resp, final InputStream body )
+    {
+        final ServletWebdavResponse response = new ServletWebdavResponse( resp, req, asyncTimeout );
+        try
+        {
+            dav.service( new ServletWebdavRequest( req, body ), response );
+        }
+        catch ( final WebdavException | IOException e )
+        {
+            LOGGER.error( "Failed to service request: " + e.getMessage(), e );
+            if ( !resp.isCommitted() )
+            {
+                resp.setStatus( HttpServletResponse.SC_INTERNAL_SERVER_ERROR );
+            }
+        }
+        finally
+        {
+            try
+            {
+                body.close();
+            }
+            catch ( final IOException e )
+            {
+                LOGGER.warn( "Failed to release request body: " + e.getMessage(), e );
+            }
+
+            if ( !response.isStreaming() )
+            {
+                try
+                {
+                    context.complete();
+                }
+                catch ( final IllegalStateException e )
+                {
+                    // the request timed out while the method ran, and has been completed already.
+                    LOGGER.warn( "Request completed before its method finished: " + e.getMessage() );
+                }
+            }
+        }
+    }
+
     @Override
     public void init( final ServletConfig config )
         throws ServletException
@@ -84,6 +206,11 @@ public class WebdavServlet
     public void init()
         throws ServletException
     {
+        final ServletInitWebdavConfig initConfig = new ServletInitWebdavConfig( getServletConfig() );
+        asyncIo = initConfig.isAsyncIo();
+        asyncTimeout = initConfig.getAsyncTimeout();
+        asyncSpoolLimit = initConfig.getAsyncSpoolLimit();
+
         if ( dav == null )
         {
             if ( store == null )
@@ -157,7 +284,9 @@ public class WebdavServlet
         }
 
         final File root = new File( rootPath );
-        return new LocalFileSystemStore( root );
+        final boolean digests =
+            getServletConfig().getInitParameter( ServletInitWebdavConfig.CONTENT_DIGEST_ALGORITHM ) != null;
+        return new LocalFileSystemStore( root, digests );
     }
 
 }
@@ -0,0 +1,223 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.web.dav.servlet.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeoutException;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects a request body from a non-blocking {@link ServletInputStream},
+ * reading only while data is available, so a slow upload holds no thread.
+ * Bodies up to <code>memoryThreshold</code> bytes are kept in memory, larger
+ * ones are spooled to a temporary file, and bodies over <code>maxLength</code>
+ * bytes fail. Once the body is complete it is handed to the
+ * {@link BodyHandler}. Registered as an {@link AsyncListener}, it also fails
+ * the body, and drops the spool, if the request times out before the body is
+ * complete.
+ */
+public class AsyncBodyReader
+    implements ReadListener, AsyncListener
+{
+
+    /**
+     * Receives the outcome of reading a body.
+     */
+    public interface BodyHandler
+    {
+
+        /**
+         * @param body
+         *      the complete body; closing it releases any temporary file
+         */
+        void bodyRead( InputStream body );
+
+        void bodyFailed( Throwable error );
+
+    }
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final ServletInputStream in;
+
+    private final int memoryThreshold;
+
+    private final long maxLength;
+
+    private final BodyHandler handler;
+
+    private final byte[] buffer = new byte[8192];
+
+    private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+
+    private File spool;
+
+    private OutputStream spoolOut;
+
+    private long length;
+
+    private boolean done;
+
+    public AsyncBodyReader( final ServletInputStream in, final int memoryThreshold, final long maxLength,
+                            final BodyHandler handler )
+    {
+        this.in = in;
+        this.memoryThreshold = memoryThreshold;
+        this.maxLength = maxLength;
+        this.handler = handler;
+    }
+
+    @Override
+    public synchronized void onDataAvailable()
+        throws IOException
+    {
+        int read;
+        while ( !done && in.isReady() && ( read = in.read( buffer ) ) != -1 )
+        {
+            length += read;
+            if ( length > maxLength )
+            {
+                throw new IOException( "Request body is larger than " + maxLength + " bytes" );
+            }
+
+            if ( spoolOut == null && memory.size() + read > memoryThreshold )
+            {
+                spool = File.createTempFile( "webdav-body-", ".tmp" );
+                logger.debug( "Spooling request body to {}", spool );
+                spoolOut = new BufferedOutputStream( new FileOutputStream( spool ) );
+                memory.writeTo( spoolOut );
+                memory = null;
+            }
+
+            if ( spoolOut != null )
+            {
+                spoolOut.write( buffer, 0, read );
+            }
+            else
+            {
+                memory.write( buffer, 0, read );
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onAllDataRead()
+        throws IOException
+    {
+        if ( done )
+        {
+            return;
+        }
+        done = true;
+
+        final InputStream body;
+        if ( spoolOut == null )
+        {
+            body = new ByteArrayInputStream( memory.toByteArray() );
+            memory = null;
+        }
+        else
+        {
+            spoolOut.close();
+            final File file = spool;
+            body = new FileInputStream( file )
+            {
+                @Override
+                public void close()
+                    throws IOException
+                {
+                    super.close();
+                    deleteSpool( file );
+                }
+            };
+        }
+
+        handler.bodyRead( body );
+    }
+
+    @Override
+    public synchronized void onError( final Throwable error )
+    {
+        if ( done )
+        {
+            return;
+        }
+        done = true;
+
+        memory = null;
+        if ( spoolOut != null )
+        {
+            try
+            {
+                spoolOut.close();
+            }
+            catch ( final IOException e )
+            {
+                logger.debug( "Failed to close spool file: " + e.getMessage(), e );
+            }
+            deleteSpool( spool );
+        }
+
+        handler.bodyFailed( error );
+    }
+
+    @Override
+    public void onTimeout( final AsyncEvent event )
+    {
+        onError( new TimeoutException( "Timed out reading request body" ) );
+    }
+
+    @Override
+    public void onError( final AsyncEvent event )
+    {
+        final Throwable error = event.getThrowable();
+        onError( error == null ? new IOException( "Async request failed" ) : error );
+    }
+
+    @Override
+    public void onComplete( final AsyncEvent event )
+    {
+    }
+
+    @Override
+    public void onStartAsync( final AsyncEvent event )
+    {
+    }
+
+    private void deleteSpool( final File file )
+    {
+        if ( !file.delete() )
+        {
+            logger.warn( "Failed to delete spool file {}", file );
+        }
+    }
+
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.web.dav.servlet.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Copies a stream to a non-blocking {@link ServletOutputStream}, writing only
+ * while the output is ready, and completes the async request when the
+ * stream is exhausted. While the client isn't reading, no thread is held.
+ * Registered as an {@link AsyncListener}, it also gives up, closing the
+ * stream, when the request times out.
+ */
+public class AsyncStreamWriter
+    implements WriteListener, AsyncListener
+{
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final AsyncContext context;
+
+    private final ServletOutputStream out;
+
+    private final InputStream in;
+
+    private final byte[] buffer;
+
+    private long remaining;
+
+    private boolean finished;
+
+    /**
+     * @param remaining
+     *      number of bytes to copy, or -1 to copy until the end of
+     *      <code>in</code>
+     */
+    public AsyncStreamWriter( final AsyncContext context, final ServletOutputStream out, final InputStream in,
+                              final long remaining, final int chunkSize )
+    {
+        this.context = context;
+        this.out = out;
+        this.in = in;
+        this.remaining = remaining;
+        this.buffer = new byte[chunkSize];
+    }
+
+    @Override
+    public synchronized void onWritePossible()
+        throws IOException
+    {
+        while ( !finished && out.isReady() )
+        {
+            final int toRead = remaining < 0 ? buffer.length : (int) Math.min( buffer.length, remaining );
+            final int read = toRead == 0 ? -1 : in.read( buffer, 0, toRead );
+            if ( read < 0 )
+            {
+                finish();
+                return;
+            }
+
+            out.write( buffer, 0, read );
+            if ( remaining > 0 )
+            {
+                remaining -= read;
+            }
+        }
+    }
+
+    @Override
+    public void onError( final Throwable error )
+    {
+        logger.warn( "Failed to stream content: " + error.getMessage(), error );
+        finish();
+    }
+
+    @Override
+    public void onTimeout( final AsyncEvent event )
+    {
+        logger.warn( "Timed out streaming content" );
+        finish();
+    }
+
+    @Override
+    public void onError( final AsyncEvent event )
+    {
+        final Throwable error = event.getThrowable();
+        onError( error == null ? new IOException( "Async request failed" ) : error );
+    }
+
+    /**
+     * Closes the stream if the request was completed some other way.
+     */
+    @Override
+    public void onComplete( final AsyncEvent event )
+    {
+        close();
+    }
+
+    @Override
+    public void onStartAsync( final AsyncEvent event )
+    {
+    }
+
+    private void finish()
+    {
+        if ( close() )
+        {
+            context.complete();
+        }
+    }
+
+    /**
+     * @return false if this was already finished
+     */
+    private synchronized boolean close()
+    {
+        if ( finished )
+        {
+            return false;
+        }
+        finished = true;
+
+        try
+        {
+            in.close();
+        }
+        catch ( final IOException e )
+        {
+            logger.warn( "Closing InputStream causes Exception!\n" + e.toString() );
+        }
+        return true;
+    }
+
+}
@@ -35,6 +35,27 @@ public class ServletInitWebdavConfig
 
     public static final String DEFAULT_INDEX_PATH = "default-index-path";
 
+    public static final String CONCURRENT_LOCKING = "concurrent-locking";
+
+    public static final String LOCK_FREE_READS = "lock-free-reads";
+
+    public static final String ASYNC_IO = "async-io";
+
+    public static final String ASYNC_TIMEOUT = "async-timeout";
+
+    public static final String ASYNC_SPOOL_LIMIT = "async-spool-limit";
+
+    /**
+     * Five minutes, in milliseconds.
+     */
+    public static final long DEFAULT_ASYNC_TIMEOUT = 5 * 60 * 1000;
+
+    public static final long DEFAULT_ASYNC_SPOOL_LIMIT = 16 * 1024 * 1024;
+
+    public static final String COMPRESSION_THRESHOLD = "compression-threshold";
+
+    public static final String CONTENT_DIGEST_ALGORITHM = "content-digest-algorithm";
+
     private final ServletConfig servletConfig;
 
     public ServletInitWebdavConfig( final ServletConfig servletConfig )
@@ -66,6 +87,59 @@ public class ServletInitWebdavConfig
         return get( DEFAULT_INDEX_PATH, null );
     }
 
+    @Override
+    public boolean isConcurrentLocking()
+    {
+        return Boolean.parseBoolean( get( CONCURRENT_LOCKING, "false" ) );
+    }
+
+    @Override
+    public boolean isLockFreeReads()
+    {
+        return Boolean.parseBoolean( get( LOCK_FREE_READS, "false" ) );
+    }
+
+    @Override
+    public int getCompressionThreshold()
+    {
+        return Integer.parseInt( get( COMPRESSION_THRESHOLD, "-1" ).trim() );
+    }
+
+    @Override
+    public String getContentDigestAlgorithm()
+    {
+        return get( CONTENT_DIGEST_ALGORITHM, null );
+    }
+
+    /**
+     * Whether {@link org.commonjava.web.dav.servlet.WebdavServlet} should move
+     * request and response bodies with Servlet 3.1 non-blocking I/O. The
+     * servlet has to be registered with async support for this to apply.
+     */
+    public boolean isAsyncIo()
+    {
+        return Boolean.parseBoolean( get( ASYNC_IO, "false" ) );
+    }
+
+    /**
+     * Milliseconds a request using non-blocking I/O may take from the start
+     * of its body until its response has been sent.
+     */
+    public long getAsyncTimeout()
+    {
+        return Long.parseLong( get( ASYNC_TIMEOUT, Long.toString( DEFAULT_ASYNC_TIMEOUT ) ).trim() );
+    }
+
+    /**
+     * Largest PUT body collected with non-blocking I/O before the method runs.
+     * Bodies that are larger, or of unknown length, are read by the method
+     * itself as they arrive, so they never take up more than this on disk.
+     */
+    public long getAsyncSpoolLimit()
+    {
+        return Long.parseLong( get( ASYNC_SPOOL_LIMIT, Long.toString( DEFAULT_ASYNC_SPOOL_LIMIT ) ).trim() );
+    }
+
     protected String get( final String key, final String def )
     {
         String val = servletConfig.getInitParameter( key );
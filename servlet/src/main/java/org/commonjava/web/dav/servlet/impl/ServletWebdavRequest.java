@@ -39,9 +39,22 @@ public class ServletWebdavRequest
 
     private final HttpServletRequest req;
 
+    private final InputStream body;
+
     public ServletWebdavRequest( final HttpServletRequest req )
+    {
+        this( req, null );
+    }
+
+    /**
+     * @param body
+     *      the request body, if it has already been read from
+     *      <code>req</code>
+     */
+    public ServletWebdavRequest( final HttpServletRequest req, final InputStream body )
     {
         this.req = req;
+        this.body = body;
     }
 
     @Override
@@ -128,7 +141,7 @@ public class ServletWebdavRequest
         throws IOException
     {
         logger.info( "Getting input stream" );
-        return req.getInputStream();
+        return body == null ? req.getInputStream() : body;
     }
 
     @Override
@@ -15,29 +15,101 @@
  */
 package org.commonjava.web.dav.servlet.impl;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import net.sf.webdav.WebdavStatus;
-import net.sf.webdav.spi.WebdavResponse;
+import net.sf.webdav.spi.WebdavFileResponse;
+import net.sf.webdav.spi.WebdavStreamResponse;
+import net.sf.webdav.util.ReleasingInputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class ServletWebdavResponse
-    implements WebdavResponse
+    implements WebdavFileResponse, WebdavStreamResponse
 {
 
+    public static final int STREAM_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Request attributes through which Tomcat offers to send a file itself,
+     * with sendfile(2), after the servlet returns.
+     */
+    public static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+    public static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+    public static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+
+    public static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     private final Logger logger = LoggerFactory.getLogger( getClass() );
 
     private final HttpServletResponse resp;
 
+    private final HttpServletRequest req;
+
+    private final HttpServletRequest asyncReq;
+
+    private final long asyncTimeout;
+
+    private boolean outputUsed;
+
+    private boolean streaming;
+
     public ServletWebdavResponse( final HttpServletResponse resp )
+    {
+        this( resp, null, false, ServletInitWebdavConfig.DEFAULT_ASYNC_TIMEOUT );
+    }
+
+    /**
+     * @param asyncReq
+     *      the request this responds to, if bodies should be sent with
+     *      non-blocking I/O; the request must support async processing
+     */
+    public ServletWebdavResponse( final HttpServletResponse resp, final HttpServletRequest asyncReq )
+    {
+        this( resp, asyncReq, ServletInitWebdavConfig.DEFAULT_ASYNC_TIMEOUT );
+    }
+
+    /**
+     * @param asyncTimeout
+     *      milliseconds a body sent with non-blocking I/O may take before the
+     *      request is given up on
+     */
+    public ServletWebdavResponse( final HttpServletResponse resp, final HttpServletRequest asyncReq, final long asyncTimeout )
+    {
+        this( resp, asyncReq, true, asyncTimeout );
+    }
+
+    /**
+     * @param req
+     *      the request this responds to, which also tells whether the
+     *      container can send files itself
+     * @param asyncIo
+     *      whether bodies should be sent with non-blocking I/O; the request
+     *      must support async processing
+     */
+    public ServletWebdavResponse( final HttpServletResponse resp, final HttpServletRequest req, final boolean asyncIo,
+                                  final long asyncTimeout )
     {
         this.resp = resp;
+        this.req = req;
+        this.asyncReq = asyncIo ? req : null;
+        this.asyncTimeout = asyncTimeout;
     }
 
     @Override
@@ -51,6 +123,7 @@ public class ServletWebdavResponse
         throws IOException
     {
         logger.info( "Getting writer" );
+        outputUsed = true;
         return resp.getWriter();
     }
 
@@ -117,7 +190,8 @@ public class ServletWebdavResponse
     public OutputStream getOutputStream()
         throws IOException
     {
-        logger.info( "Getting input stream" );
+        logger.info( "Getting output stream" );
+        outputUsed = true;
         return resp.getOutputStream();
     }
 
@@ -127,4 +201,140 @@ public class ServletWebdavResponse
         resp.setCharacterEncoding( encoding );
     }
 
+    /**
+     * Leaves the file slice to the container when it offers to send files
+     * itself, as Tomcat does through the <code>org.apache.tomcat.sendfile.*</code>
+     * request attributes, and nothing is waiting for the send to finish:
+     * the container opens the file by name only after the servlet returns and
+     * doesn't say when it's done, so <code>release</code> could never be run
+     * at the right time. Otherwise, with non-blocking I/O, the slice is
+     * streamed like other content, and without it, it is copied with
+     * {@link FileChannel#transferTo(long, long, WritableByteChannel)}. The
+     * target of that copy is a channel over the servlet's output stream, so
+     * the bytes still pass through the container's buffers.
+     */
+    @Override
+    public boolean sendFile( final File file, final long offset, final long length, final Runnable release )
+        throws IOException
+    {
+        if ( release == null && isSendfileSupported() )
+        {
+            logger.debug( "Leaving file to the container: '{}' ({} bytes at {})", file, length, offset );
+            resp.setContentLengthLong( length );
+            req.setAttribute( SENDFILE_FILENAME, file.getCanonicalPath() );
+            req.setAttribute( SENDFILE_START, Long.valueOf( offset ) );
+            req.setAttribute( SENDFILE_END, Long.valueOf( offset + length ) );
+            outputUsed = true;
+            return true;
+        }
+
+        if ( asyncReq != null )
+        {
+            logger.debug( "Streaming file: '{}' ({} bytes at {})", file, length, offset );
+            final FileChannel channel = new RandomAccessFile( file, "r" ).getChannel();
+            boolean sent = false;
+            try
+            {
+                channel.position( offset );
+                final InputStream in = Channels.newInputStream( channel );
+                sent = startStream( release == null ? in : new ReleasingInputStream( in, release ), length );
+            }
+            finally
+            {
+                if ( !sent )
+                {
+                    channel.close();
+                }
+            }
+            return sent;
+        }
+
+        logger.debug( "Sending file: '{}' ({} bytes at {})", file, length, offset );
+        final RandomAccessFile raf = new RandomAccessFile( file, "r" );
+        try
+        {
+            final FileChannel channel = raf.getChannel();
+            final WritableByteChannel out = Channels.newChannel( resp.getOutputStream() );
+
+            long position = offset;
+            long remaining = length;
+            while ( remaining > 0 )
+            {
+                final long sent = channel.transferTo( position, remaining, out );
+                if ( sent <= 0 )
+                {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+
+            resp.flushBuffer();
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        if ( release != null )
+        {
+            release.run();
+        }
+        return true;
+    }
+
+    private boolean isSendfileSupported()
+    {
+        return req != null && !outputUsed && !resp.isCommitted() && Boolean.TRUE.equals( req.getAttribute( SENDFILE_SUPPORT ) );
+    }
+
+    @Override
+    public boolean sendStream( final InputStream content, final long length )
+        throws IOException
+    {
+        if ( asyncReq == null )
+        {
+            return false;
+        }
+
+        logger.debug( "Streaming content ({} bytes)", length );
+        return startStream( content, length );
+    }
+
+    private synchronized boolean startStream( final InputStream content, final long length )
+        throws IOException
+    {
+        if ( outputUsed || streaming )
+        {
+            return false;
+        }
+
+        final AsyncContext context;
+        if ( asyncReq.isAsyncStarted() )
+        {
+            context = asyncReq.getAsyncContext();
+        }
+        else
+        {
+            context = asyncReq.startAsync();
+            context.setTimeout( asyncTimeout );
+        }
+
+        final ServletOutputStream out = resp.getOutputStream();
+        final AsyncStreamWriter writer = new AsyncStreamWriter( context, out, content, length, STREAM_CHUNK_SIZE );
+        context.addListener( writer );
+        out.setWriteListener( writer );
+        streaming = true;
+        return true;
+    }
+
+    /**
+     * @return true if the body is being sent with non-blocking I/O, and the
+     *  async request will be completed when that's done
+     */
+    public synchronized boolean isStreaming()
+    {
+        return streaming;
+    }
+
 }
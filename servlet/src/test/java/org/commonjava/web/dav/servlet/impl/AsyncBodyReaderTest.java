@@ -0,0 +1,238 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.web.dav.servlet.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeoutException;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.junit.Test;
+
+public class AsyncBodyReaderTest
+{
+
+    private static final byte[] BODY = "0123456789".getBytes();
+
+    private final RecordingHandler handler = new RecordingHandler();
+
+    @Test
+    public void smallBodiesAreKeptInMemory()
+        throws Exception
+    {
+        final ChunkedInputStream in = new ChunkedInputStream( BODY, 4 );
+        final AsyncBodyReader reader = new AsyncBodyReader( in, 16, 16, handler );
+
+        readAll( in, reader );
+
+        assertThat( handler.body, instanceOf( ByteArrayInputStream.class ) );
+        assertThat( toByteArray( handler.body ), equalTo( BODY ) );
+    }
+
+    @Test
+    public void largerBodiesAreSpooledUntilClosed()
+        throws Exception
+    {
+        final int spooled = countSpoolFiles();
+        final ChunkedInputStream in = new ChunkedInputStream( BODY, 4 );
+        final AsyncBodyReader reader = new AsyncBodyReader( in, 4, 16, handler );
+
+        readAll( in, reader );
+
+        assertThat( countSpoolFiles(), equalTo( spooled + 1 ) );
+        assertThat( toByteArray( handler.body ), equalTo( BODY ) );
+
+        handler.body.close();
+        assertThat( countSpoolFiles(), equalTo( spooled ) );
+    }
+
+    @Test
+    public void bodiesOverTheLimitFail()
+        throws Exception
+    {
+        final int spooled = countSpoolFiles();
+        final ChunkedInputStream in = new ChunkedInputStream( BODY, 4 );
+        final AsyncBodyReader reader = new AsyncBodyReader( in, 4, 8, handler );
+
+        try
+        {
+            reader.onDataAvailable();
+            fail( "The body is over the limit" );
+        }
+        catch ( final IOException e )
+        {
+            // the container passes this on to onError.
+            reader.onError( e );
+        }
+
+        assertThat( handler.body, nullValue() );
+        assertThat( handler.error, instanceOf( IOException.class ) );
+        assertThat( countSpoolFiles(), equalTo( spooled ) );
+    }
+
+    @Test
+    public void timingOutBeforeTheBodyIsCompleteFailsIt()
+        throws Exception
+    {
+        final ChunkedInputStream in = new ChunkedInputStream( BODY, 4 );
+        in.readyReads = 1;
+        final AsyncBodyReader reader = new AsyncBodyReader( in, 16, 16, handler );
+
+        reader.onDataAvailable();
+        final Mockery mockery = new Mockery();
+        final AsyncContext context = mockery.mock( AsyncContext.class );
+        mockery.checking( new Expectations()
+        {
+            {
+                allowing( context ).getRequest();
+                allowing( context ).getResponse();
+            }
+        } );
+        reader.onTimeout( new AsyncEvent( context ) );
+        assertThat( handler.error, instanceOf( TimeoutException.class ) );
+
+        // data arriving after the timeout is ignored.
+        in.readyReads = Integer.MAX_VALUE;
+        reader.onDataAvailable();
+        reader.onAllDataRead();
+        assertThat( handler.body, nullValue() );
+    }
+
+    private void readAll( final ChunkedInputStream in, final AsyncBodyReader reader )
+        throws IOException
+    {
+        while ( !in.isFinished() )
+        {
+            in.readyReads = 1;
+            reader.onDataAvailable();
+            assertThat( handler.body, nullValue() );
+        }
+        reader.onAllDataRead();
+    }
+
+    private static byte[] toByteArray( final InputStream in )
+        throws IOException
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8];
+        int read;
+        while ( ( read = in.read( buffer ) ) != -1 )
+        {
+            out.write( buffer, 0, read );
+        }
+        return out.toByteArray();
+    }
+
+    private static int countSpoolFiles()
+    {
+        final String[] files = new File( System.getProperty( "java.io.tmpdir" ) ).list( new FilenameFilter()
+        {
+            @Override
+            public boolean accept( final File dir, final String name )
+            {
+                return name.startsWith( "webdav-body-" );
+            }
+        } );
+        return files == null ? 0 : files.length;
+    }
+
+    private static final class RecordingHandler
+        implements AsyncBodyReader.BodyHandler
+    {
+        private InputStream body;
+
+        private Throwable error;
+
+        @Override
+        public void bodyRead( final InputStream body )
+        {
+            this.body = body;
+        }
+
+        @Override
+        public void bodyFailed( final Throwable error )
+        {
+            this.error = error;
+        }
+    }
+
+    /**
+     * Hands out at most <code>chunkSize</code> bytes per read, and is only
+     * ready for <code>readyReads</code> reads at a time.
+     */
+    private static final class ChunkedInputStream
+        extends ServletInputStream
+    {
+        private final ByteArrayInputStream in;
+
+        private final int chunkSize;
+
+        private int readyReads = Integer.MAX_VALUE;
+
+        ChunkedInputStream( final byte[] content, final int chunkSize )
+        {
+            this.in = new ByteArrayInputStream( content );
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public int read()
+        {
+            return in.read();
+        }
+
+        @Override
+        public int read( final byte[] b, final int off, final int len )
+        {
+            readyReads--;
+            return in.read( b, off, Math.min( len, chunkSize ) );
+        }
+
+        @Override
+        public boolean isFinished()
+        {
+            return in.available() == 0;
+        }
+
+        @Override
+        public boolean isReady()
+        {
+            return readyReads > 0 && !isFinished();
+        }
+
+        @Override
+        public void setReadListener( final ReadListener listener )
+        {
+        }
+    }
+
+}
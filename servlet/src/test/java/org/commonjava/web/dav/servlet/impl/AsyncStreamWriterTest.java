@@ -0,0 +1,189 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.web.dav.servlet.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.junit.Test;
+
+public class AsyncStreamWriterTest
+{
+
+    private static final byte[] CONTENT = "0123456789".getBytes();
+
+    private final Mockery mockery = new Mockery();
+
+    private final AsyncContext context = mockery.mock( AsyncContext.class );
+
+    private final LimitedOutputStream out = new LimitedOutputStream();
+
+    private final ClosingInputStream in = new ClosingInputStream( CONTENT );
+
+    {
+        mockery.checking( new Expectations()
+        {
+            {
+                // read by the AsyncEvents given to the listener.
+                allowing( context ).getRequest();
+                allowing( context ).getResponse();
+            }
+        } );
+    }
+
+    @Test
+    public void writesOnlyWhileTheOutputIsReady()
+        throws Exception
+    {
+        final AsyncStreamWriter writer = new AsyncStreamWriter( context, out, in, -1, 4 );
+
+        out.readyWrites = 1;
+        writer.onWritePossible();
+        assertThat( out.written.toByteArray(), equalTo( "0123".getBytes() ) );
+        assertThat( in.closed, equalTo( false ) );
+
+        mockery.checking( new Expectations()
+        {
+            {
+                one( context ).complete();
+            }
+        } );
+
+        out.readyWrites = Integer.MAX_VALUE;
+        writer.onWritePossible();
+        assertThat( out.written.toByteArray(), equalTo( CONTENT ) );
+        assertThat( in.closed, equalTo( true ) );
+        mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void copiesNoMoreThanTheLength()
+        throws Exception
+    {
+        mockery.checking( new Expectations()
+        {
+            {
+                one( context ).complete();
+            }
+        } );
+
+        final AsyncStreamWriter writer = new AsyncStreamWriter( context, out, in, 5, 4 );
+        writer.onWritePossible();
+
+        assertThat( out.written.toByteArray(), equalTo( "01234".getBytes() ) );
+        assertThat( in.closed, equalTo( true ) );
+        mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void timingOutClosesTheContentAndCompletesOnce()
+        throws Exception
+    {
+        mockery.checking( new Expectations()
+        {
+            {
+                one( context ).complete();
+            }
+        } );
+
+        final AsyncStreamWriter writer = new AsyncStreamWriter( context, out, in, -1, 4 );
+        out.readyWrites = 1;
+        writer.onWritePossible();
+
+        writer.onTimeout( new AsyncEvent( context ) );
+        assertThat( in.closed, equalTo( true ) );
+
+        writer.onComplete( new AsyncEvent( context ) );
+        out.readyWrites = Integer.MAX_VALUE;
+        writer.onWritePossible();
+        assertThat( out.written.toByteArray(), equalTo( "0123".getBytes() ) );
+        mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void completionElsewhereClosesTheContent()
+        throws Exception
+    {
+        final AsyncStreamWriter writer = new AsyncStreamWriter( context, out, in, -1, 4 );
+        writer.onComplete( new AsyncEvent( context ) );
+
+        assertThat( in.closed, equalTo( true ) );
+        mockery.assertIsSatisfied();
+    }
+
+    /**
+     * Only ready for <code>readyWrites</code> writes at a time.
+     */
+    private static final class LimitedOutputStream
+        extends ServletOutputStream
+    {
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+        private int readyWrites = Integer.MAX_VALUE;
+
+        @Override
+        public void write( final int b )
+        {
+            written.write( b );
+        }
+
+        @Override
+        public void write( final byte[] b, final int off, final int len )
+        {
+            readyWrites--;
+            written.write( b, off, len );
+        }
+
+        @Override
+        public boolean isReady()
+        {
+            return readyWrites > 0;
+        }
+
+        @Override
+        public void setWriteListener( final WriteListener listener )
+        {
+        }
+    }
+
+    private static final class ClosingInputStream
+        extends ByteArrayInputStream
+    {
+        private boolean closed;
+
+        ClosingInputStream( final byte[] content )
+        {
+            super( content );
+        }
+
+        @Override
+        public void close()
+        {
+            closed = true;
+        }
+    }
+
+}
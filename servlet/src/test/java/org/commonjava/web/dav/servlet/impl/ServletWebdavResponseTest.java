@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.web.dav.servlet.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ServletWebdavResponseTest
+{
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final Mockery mockery = new Mockery();
+
+    private final HttpServletRequest req = mockery.mock( HttpServletRequest.class );
+
+    private final HttpServletResponse resp = mockery.mock( HttpServletResponse.class );
+
+    @Test
+    public void filesAreLeftToTheContainerWhenItCanSendThem()
+        throws Exception
+    {
+        final File file = writeFile( "0123456789" );
+
+        mockery.checking( new Expectations()
+        {
+            {
+                one( resp ).isCommitted();
+                will( returnValue( false ) );
+
+                one( req ).getAttribute( ServletWebdavResponse.SENDFILE_SUPPORT );
+                will( returnValue( Boolean.TRUE ) );
+
+                one( resp ).setContentLengthLong( 5 );
+                one( req ).setAttribute( ServletWebdavResponse.SENDFILE_FILENAME, file.getCanonicalPath() );
+                one( req ).setAttribute( ServletWebdavResponse.SENDFILE_START, 2L );
+                one( req ).setAttribute( ServletWebdavResponse.SENDFILE_END, 7L );
+            }
+        } );
+
+        final ServletWebdavResponse response = new ServletWebdavResponse( resp, req, false, 1000 );
+        assertThat( response.sendFile( file, 2, 5, null ), equalTo( true ) );
+
+        mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void filesAreCopiedWhenTheContainerCantSendThem()
+        throws Exception
+    {
+        final File file = writeFile( "0123456789" );
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+        mockery.checking( new Expectations()
+        {
+            {
+                one( resp ).isCommitted();
+                will( returnValue( false ) );
+
+                one( req ).getAttribute( ServletWebdavResponse.SENDFILE_SUPPORT );
+                will( returnValue( null ) );
+
+                one( resp ).getOutputStream();
+                will( returnValue( outputTo( written ) ) );
+
+                one( resp ).flushBuffer();
+            }
+        } );
+
+        final ServletWebdavResponse response = new ServletWebdavResponse( resp, req, false, 1000 );
+        assertThat( response.sendFile( file, 2, 5, null ), equalTo( true ) );
+        assertThat( written.toString(), equalTo( "23456" ) );
+
+        mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void filesAreCopiedUnderTheReadLockEvenWhenTheContainerCouldSendThem()
+        throws Exception
+    {
+        final File file = writeFile( "0123456789" );
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        final AtomicInteger released = new AtomicInteger();
+
+        mockery.checking( new Expectations()
+        {
+            {
+                allowing( resp ).isCommitted();
+                will( returnValue( false ) );
+
+                allowing( req ).getAttribute( ServletWebdavResponse.SENDFILE_SUPPORT );
+                will( returnValue( Boolean.TRUE ) );
+
+                one( resp ).getOutputStream();
+                will( returnValue( outputTo( written ) ) );
+
+                one( resp ).flushBuffer();
+            }
+        } );
+
+        final ServletWebdavResponse response = new ServletWebdavResponse( resp, req, false, 1000 );
+        assertThat( response.sendFile( file, 2, 5, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                released.incrementAndGet();
+            }
+        } ), equalTo( true ) );
+        assertThat( written.toString(), equalTo( "23456" ) );
+        assertThat( released.get(), equalTo( 1 ) );
+
+        mockery.assertIsSatisfied();
+    }
+
+    private static ServletOutputStream outputTo( final ByteArrayOutputStream written )
+    {
+        return new ServletOutputStream()
+        {
+            @Override
+            public void write( final int b )
+            {
+                written.write( b );
+            }
+
+            @Override
+            public boolean isReady()
+            {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener( final WriteListener listener )
+            {
+            }
+        };
+    }
+
+    private File writeFile( final String content )
+        throws Exception
+    {
+        final File file = tempFolder.newFile( "content.txt" );
+        final FileOutputStream out = new FileOutputStream( file );
+        try
+        {
+            out.write( content.getBytes() );
+        }
+        finally
+        {
+            out.close();
+        }
+        return file;
+    }
+
+}
@@ -17,8 +17,15 @@ package org.commonjava.web.vertx;
 
 import java.io.IOException;
 import java.security.Principal;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 
 import net.sf.webdav.WebdavService;
@@ -28,8 +35,11 @@ import net.sf.webdav.spi.IWebdavStore;
 import net.sf.webdav.spi.WebdavConfig;
 
 import org.apache.commons.io.IOUtils;
+import org.commonjava.web.vertx.impl.ContextExecutor;
 import org.commonjava.web.vertx.impl.VertXWebdavRequest;
 import org.commonjava.web.vertx.impl.VertXWebdavResponse;
+import org.vertx.java.core.Context;
+import org.vertx.java.core.Vertx;
 import org.vertx.java.core.http.HttpServerRequest;
 
 public abstract class VertXWebdavService
@@ -44,49 +54,110 @@ public abstract class VertXWebdavService
     @Inject
     private IMimeTyper mimeTyper;
 
+    @Inject
+    private Instance<Vertx> vertxInstance;
+
+    private Vertx vertx;
+
     private WebdavService service;
 
+    /**
+     * Number of threads reading GET content for all responses together. Each
+     * read is a single chunk, so a response only holds a thread while its
+     * client is keeping up.
+     */
+    public static final int STREAM_THREADS = 16;
+
+    private final ExecutorService streamExecutor = Executors.newFixedThreadPool( STREAM_THREADS, new ThreadFactory()
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread( final Runnable r )
+        {
+            final Thread t = new Thread( r, "webdav-stream-" + count.incrementAndGet() );
+            t.setDaemon( true );
+            return t;
+        }
+    } );
+
     protected VertXWebdavService()
     {
     }
 
     protected VertXWebdavService( final WebdavConfig config, final IWebdavStore store, final IMimeTyper mimeTyper )
+    {
+        this( config, store, mimeTyper, null );
+    }
+
+    /**
+     * @param vertx
+     *      used to find the context requests arrive on; without it, responses
+     *      aren't sent in the background
+     */
+    protected VertXWebdavService( final WebdavConfig config, final IWebdavStore store, final IMimeTyper mimeTyper, final Vertx vertx )
     {
         service = new WebdavService( config, store, mimeTyper );
+        this.vertx = vertx;
     }
 
     @PostConstruct
     public void cdiInit()
     {
         service = new WebdavService( config, store, mimeTyper );
+        if ( vertxInstance != null && !vertxInstance.isUnsatisfied() )
+        {
+            vertx = vertxInstance.get();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        streamExecutor.shutdownNow();
     }
 
+    /**
+     * Runs the WebDAV method on the calling thread. Request bodies reach the
+     * store through a bounded buffer that pauses the client, and GET content
+     * is pumped to the client in the background, so the calling thread is
+     * released as soon as the store has opened the content. Everything the
+     * background work does to the request and response is run on the Vert.x
+     * context of the calling thread.
+     */
     protected void service( final HttpServerRequest request, final String contextPath, final String servicePath, final String serviceSubPath,
                             final Principal principal )
         throws WebdavException, IOException
     {
-        final VertXWebdavResponse response = new VertXWebdavResponse( request.response() );
+        final Context context = vertx == null ? null : vertx.currentContext();
+        final Executor contextExecutor = context == null ? null : new ContextExecutor( context );
+
+        final VertXWebdavResponse response = new VertXWebdavResponse( request.response(), streamExecutor, contextExecutor );
         VertXWebdavRequest req = null;
 
         try
         {
-            req = new VertXWebdavRequest( request, contextPath, servicePath, serviceSubPath, principal );
+            req = new VertXWebdavRequest( request, contextPath, servicePath, serviceSubPath, principal,
+                                          contextExecutor == null ? ContextExecutor.CALLING_THREAD : contextExecutor );
 
             service.service( req, response );
         }
         finally
         {
             IOUtils.closeQuietly( req );
-            IOUtils.closeQuietly( response );
-
-            try
-            {
-                request.response()
-                       .end();
-            }
-            catch ( final IllegalStateException e )
+            if ( !response.isStreaming() )
             {
-                // TODO Do we need to log this? The end() call is defensive...
+                IOUtils.closeQuietly( response );
+
+                try
+                {
+                    request.response()
+                           .end();
+                }
+                catch ( final IllegalStateException e )
+                {
+                    // TODO Do we need to log this? The end() call is defensive...
+                }
             }
         }
 
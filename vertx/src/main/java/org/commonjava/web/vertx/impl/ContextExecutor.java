@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.web.vertx.impl;
+
+import java.util.concurrent.Executor;
+
+import org.vertx.java.core.Context;
+import org.vertx.java.core.Handler;
+
+/**
+ * Runs tasks on a Vert.x {@link Context}, one at a time and in the order
+ * they're submitted. This is how callbacks from the stream threads get back
+ * to the thread that owns the connection.
+ */
+public final class ContextExecutor
+    implements Executor
+{
+
+    /**
+     * Runs tasks on the calling thread, for when there's no context to go back
+     * to.
+     */
+    public static final Executor CALLING_THREAD = new Executor()
+    {
+        @Override
+        public void execute( final Runnable task )
+        {
+            task.run();
+        }
+    };
+
+    private final Context context;
+
+    public ContextExecutor( final Context context )
+    {
+        this.context = context;
+    }
+
+    @Override
+    public void execute( final Runnable task )
+    {
+        context.runOnContext( new Handler<Void>()
+        {
+            @Override
+            public void handle( final Void event )
+            {
+                task.run();
+            }
+        } );
+    }
+
+}
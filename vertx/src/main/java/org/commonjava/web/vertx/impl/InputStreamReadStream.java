@@ -0,0 +1,246 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.web.vertx.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+import org.apache.commons.io.IOUtils;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.streams.ReadStream;
+
+/**
+ * Turns a blocking {@link InputStream} into a Vert.x {@link ReadStream}. Each
+ * chunk is read by a separate task on the given executor, and the next task
+ * is only scheduled while the stream isn't paused, so a slow consumer holds
+ * no thread while it catches up. Chunks, the end and errors are handed over
+ * on the <code>context</code> executor, normally a {@link ContextExecutor},
+ * and the next chunk isn't read until the last one has been handed over. The
+ * stream starts out paused.
+ */
+public class InputStreamReadStream
+    implements ReadStream<InputStreamReadStream>
+{
+
+    private final InputStream in;
+
+    private final Executor executor;
+
+    private final Executor context;
+
+    private final int chunkSize;
+
+    private Handler<Buffer> dataHandler;
+
+    private Handler<Void> endHandler;
+
+    private Handler<Throwable> exceptionHandler;
+
+    private boolean paused = true;
+
+    private boolean reading;
+
+    private boolean closed;
+
+    public InputStreamReadStream( final InputStream in, final Executor executor, final Executor context, final int chunkSize )
+    {
+        this.in = in;
+        this.executor = executor;
+        this.context = context;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public synchronized InputStreamReadStream dataHandler( final Handler<Buffer> handler )
+    {
+        this.dataHandler = handler;
+        return this;
+    }
+
+    @Override
+    public synchronized InputStreamReadStream endHandler( final Handler<Void> handler )
+    {
+        this.endHandler = handler;
+        return this;
+    }
+
+    @Override
+    public synchronized InputStreamReadStream exceptionHandler( final Handler<Throwable> handler )
+    {
+        this.exceptionHandler = handler;
+        return this;
+    }
+
+    @Override
+    public synchronized InputStreamReadStream pause()
+    {
+        paused = true;
+        return this;
+    }
+
+    @Override
+    public InputStreamReadStream resume()
+    {
+        synchronized ( this )
+        {
+            paused = false;
+        }
+        scheduleRead();
+        return this;
+    }
+
+    /**
+     * Stops reading and closes the input stream, without calling the end
+     * handler; for when the consumer has gone away.
+     */
+    public void close()
+    {
+        synchronized ( this )
+        {
+            if ( closed )
+            {
+                return;
+            }
+            closed = true;
+            if ( reading )
+            {
+                // the running read closes the stream when it's done.
+                return;
+            }
+        }
+        IOUtils.closeQuietly( in );
+    }
+
+    private void scheduleRead()
+    {
+        synchronized ( this )
+        {
+            if ( paused || reading || closed )
+            {
+                return;
+            }
+            reading = true;
+        }
+
+        executor.execute( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                readChunk();
+            }
+        } );
+    }
+
+    private void readChunk()
+    {
+        final byte[] chunk = new byte[chunkSize];
+        int read;
+        Throwable error = null;
+        try
+        {
+            read = in.read( chunk );
+        }
+        catch ( final IOException e )
+        {
+            read = -1;
+            error = e;
+        }
+
+        final int length = read;
+        final Throwable failure = error;
+        context.execute( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                deliver( chunk, length, failure );
+            }
+        } );
+    }
+
+    private void deliver( final byte[] chunk, final int read, final Throwable error )
+    {
+        final Handler<Buffer> data;
+        synchronized ( this )
+        {
+            if ( closed )
+            {
+                reading = false;
+                IOUtils.closeQuietly( in );
+                return;
+            }
+            if ( read < 0 )
+            {
+                reading = false;
+                closed = true;
+            }
+            data = dataHandler;
+        }
+
+        if ( read < 0 )
+        {
+            IOUtils.closeQuietly( in );
+            finish( error );
+            return;
+        }
+
+        if ( read > 0 && data != null )
+        {
+            data.handle( new Buffer( read == chunk.length ? chunk : Arrays.copyOf( chunk, read ) ) );
+        }
+
+        final boolean closedMeanwhile;
+        synchronized ( this )
+        {
+            reading = false;
+            closedMeanwhile = closed;
+        }
+        if ( closedMeanwhile )
+        {
+            IOUtils.closeQuietly( in );
+            return;
+        }
+        scheduleRead();
+    }
+
+    private void finish( final Throwable error )
+    {
+        final Handler<Void> end;
+        final Handler<Throwable> failed;
+        synchronized ( this )
+        {
+            end = endHandler;
+            failed = exceptionHandler;
+        }
+
+        if ( error == null )
+        {
+            if ( end != null )
+            {
+                end.handle( null );
+            }
+        }
+        else if ( failed != null )
+        {
+            failed.handle( error );
+        }
+    }
+
+}
@@ -0,0 +1,279 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.web.vertx.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.streams.Pump;
+import org.vertx.java.core.streams.ReadStream;
+import org.vertx.java.core.streams.WriteStream;
+
+/**
+ * Blocking {@link InputStream} over a Vert.x {@link ReadStream}, holding at
+ * most about <code>maxBuffered</code> bytes. A {@link Pump} moves the data in
+ * and pauses the source whenever the reader falls behind; the source is
+ * resumed once the reader has taken half of the buffer. Nothing is read from
+ * the source until the first read. The reader's calls into the source and the
+ * pump, resuming it and draining, are made on the <code>context</code>
+ * executor, normally a {@link ContextExecutor}.
+ */
+public class PumpedInputStream
+    extends InputStream
+    implements WriteStream<PumpedInputStream>
+{
+
+    private final ReadStream<?> source;
+
+    private final Executor context;
+
+    private final Deque<byte[]> chunks = new ArrayDeque<>();
+
+    private byte[] current;
+
+    private int index;
+
+    private int buffered;
+
+    private int maxBuffered;
+
+    private Handler<Void> drainHandler;
+
+    private boolean started;
+
+    private boolean ended;
+
+    private boolean closed;
+
+    private Throwable error;
+
+    private PumpedInputStream( final ReadStream<?> source, final Executor context, final int maxBuffered )
+    {
+        this.source = source;
+        this.context = context;
+        this.maxBuffered = maxBuffered;
+    }
+
+    /**
+     * Starts pumping <code>source</code>, which should be paused, into a new
+     * stream.
+     */
+    public static PumpedInputStream pump( final ReadStream<?> source, final Executor context, final int maxBuffered )
+    {
+        final PumpedInputStream stream = new PumpedInputStream( source, context, maxBuffered );
+        context.execute( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                source.endHandler( new Handler<Void>()
+                {
+                    @Override
+                    public void handle( final Void event )
+                    {
+                        stream.end( null );
+                    }
+                } );
+                source.exceptionHandler( new Handler<Throwable>()
+                {
+                    @Override
+                    public void handle( final Throwable error )
+                    {
+                        stream.end( error );
+                    }
+                } );
+                Pump.createPump( source, stream )
+                    .start();
+            }
+        } );
+        return stream;
+    }
+
+    @Override
+    public synchronized PumpedInputStream write( final Buffer data )
+    {
+        if ( !closed && data.length() > 0 )
+        {
+            chunks.add( data.getBytes() );
+            buffered += data.length();
+            notifyAll();
+        }
+        return this;
+    }
+
+    @Override
+    public synchronized PumpedInputStream setWriteQueueMaxSize( final int maxSize )
+    {
+        this.maxBuffered = maxSize;
+        return this;
+    }
+
+    @Override
+    public synchronized boolean writeQueueFull()
+    {
+        return !closed && buffered >= maxBuffered;
+    }
+
+    @Override
+    public synchronized PumpedInputStream drainHandler( final Handler<Void> handler )
+    {
+        this.drainHandler = handler;
+        return this;
+    }
+
+    @Override
+    public PumpedInputStream exceptionHandler( final Handler<Throwable> handler )
+    {
+        // writing into memory doesn't fail.
+        return this;
+    }
+
+    private synchronized void end( final Throwable error )
+    {
+        this.ended = true;
+        this.error = error;
+        notifyAll();
+    }
+
+    @Override
+    public int read()
+        throws IOException
+    {
+        final byte[] single = new byte[1];
+        final int read = read( single, 0, 1 );
+        return read < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read( final byte[] b, final int off, final int len )
+        throws IOException
+    {
+        if ( len == 0 )
+        {
+            return 0;
+        }
+
+        final int read;
+        Handler<Void> drain = null;
+        synchronized ( this )
+        {
+            if ( !started )
+            {
+                started = true;
+                context.execute( new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        source.resume();
+                    }
+                } );
+            }
+
+            while ( ( current == null || index == current.length ) && chunks.isEmpty() && !ended && !closed )
+            {
+                try
+                {
+                    wait();
+                }
+                catch ( final InterruptedException e )
+                {
+                    Thread.currentThread()
+                          .interrupt();
+                    throw new InterruptedIOException( "Interrupted waiting for request data" );
+                }
+            }
+
+            if ( current == null || index == current.length )
+            {
+                current = chunks.poll();
+                index = 0;
+            }
+            if ( current == null )
+            {
+                if ( error != null )
+                {
+                    throw new IOException( "Failed to read request body", error );
+                }
+                return -1;
+            }
+
+            read = Math.min( len, current.length - index );
+            System.arraycopy( current, index, b, off, read );
+            index += read;
+            buffered -= read;
+
+            if ( drainHandler != null && buffered <= maxBuffered / 2 )
+            {
+                drain = drainHandler;
+                drainHandler = null;
+            }
+        }
+
+        drain( drain );
+        return read;
+    }
+
+    @Override
+    public synchronized int available()
+    {
+        return buffered;
+    }
+
+    /**
+     * Drops anything buffered; data still arriving is discarded.
+     */
+    @Override
+    public void close()
+    {
+        final Handler<Void> drain;
+        synchronized ( this )
+        {
+            closed = true;
+            chunks.clear();
+            current = null;
+            buffered = 0;
+            drain = drainHandler;
+            drainHandler = null;
+            notifyAll();
+        }
+
+        drain( drain );
+    }
+
+    private void drain( final Handler<Void> drain )
+    {
+        if ( drain == null )
+        {
+            return;
+        }
+        context.execute( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                drain.handle( null );
+            }
+        } );
+    }
+
+}
@@ -23,13 +23,14 @@ import java.net.URISyntaxException;
 import java.security.Principal;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import net.sf.webdav.exceptions.WebdavException;
 import net.sf.webdav.spi.WebdavRequest;
 import net.sf.webdav.util.JoinString;
 import net.sf.webdav.util.RequestUtil;
 
-import org.commonjava.vertx.vabr.util.VertXInputStream;
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.vertx.java.core.http.HttpServerRequest;
@@ -42,6 +43,11 @@ public class VertXWebdavRequest
 
     private static final String ACCEPT_LANGUAGE = "Accept-Language";
 
+    /**
+     * Most request body bytes held in memory before the client is paused.
+     */
+    public static final int MAX_BUFFERED_BODY = 256 * 1024;
+
     private final Logger logger = LoggerFactory.getLogger( getClass() );
 
     private final HttpServerRequest request;
@@ -54,14 +60,31 @@ public class VertXWebdavRequest
 
     private final String serviceSubPath;
 
+    private final Executor context;
+
     private URI requestUri;
 
+    private PumpedInputStream body;
+
     public VertXWebdavRequest( final HttpServerRequest request, final String contextPath, final String serviceTopPath, final String serviceSubPath,
                                final Principal userPrincipal )
         throws WebdavException
+    {
+        this( request, contextPath, serviceTopPath, serviceSubPath, userPrincipal, ContextExecutor.CALLING_THREAD );
+    }
+
+    /**
+     * @param context
+     *      runs the calls the request body makes into the request, normally a
+     *      {@link ContextExecutor} for the context the request arrived on
+     */
+    public VertXWebdavRequest( final HttpServerRequest request, final String contextPath, final String serviceTopPath, final String serviceSubPath,
+                               final Principal userPrincipal, final Executor context )
+        throws WebdavException
     {
         request.pause();
         this.request = request;
+        this.context = context;
         this.serviceTopPath = serviceTopPath;
         this.contextPath = contextPath;
         this.serviceSubPath = serviceSubPath;
@@ -207,11 +230,15 @@ public class VertXWebdavRequest
     }
 
     @Override
-    public InputStream getInputStream()
+    public synchronized InputStream getInputStream()
         throws IOException
     {
         logger.info( "Getting input stream" );
-        return new VertXInputStream( request );
+        if ( body == null )
+        {
+            body = PumpedInputStream.pump( request, context, MAX_BUFFERED_BODY );
+        }
+        return body;
     }
 
     @Override
@@ -225,9 +252,10 @@ public class VertXWebdavRequest
     }
 
     @Override
-    public void close()
+    public synchronized void close()
         throws IOException
     {
+        IOUtils.closeQuietly( body );
         request.resume();
     }
 
@@ -16,25 +16,35 @@
 package org.commonjava.web.vertx.impl;
 
 import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
 import java.io.Writer;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executor;
 
 import net.sf.webdav.WebdavStatus;
-import net.sf.webdav.spi.WebdavResponse;
+import net.sf.webdav.spi.WebdavFileResponse;
+import net.sf.webdav.spi.WebdavStreamResponse;
+import net.sf.webdav.util.DateFormatter;
+import net.sf.webdav.util.ReleasingInputStream;
 import net.sf.webdav.util.URLEncoder;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.commonjava.vertx.vabr.util.VertXOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.vertx.java.core.Handler;
 import org.vertx.java.core.http.HttpServerResponse;
+import org.vertx.java.core.streams.Pump;
 
 public class VertXWebdavResponse
-    implements WebdavResponse, Closeable
+    implements WebdavFileResponse, WebdavStreamResponse, Closeable
 {
 
     private final Logger logger = LoggerFactory.getLogger( getClass() );
@@ -43,6 +53,8 @@ public class VertXWebdavResponse
 
     public static final String DATE_HEADER_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
 
+    public static final int STREAM_CHUNK_SIZE = 64 * 1024;
+
     private final HttpServerResponse response;
 
     private String contentType;
@@ -53,9 +65,32 @@ public class VertXWebdavResponse
 
     private Integer contentLength;
 
+    private final Executor streamExecutor;
+
+    private final Executor context;
+
+    private boolean streaming;
+
     public VertXWebdavResponse( final HttpServerResponse response )
+    {
+        this( response, null, null );
+    }
+
+    /**
+     * @param streamExecutor
+     *      runs the reads of content passed to
+     *      {@link #sendStream(InputStream, long)}
+     * @param context
+     *      runs everything done to the response once it's sent in the
+     *      background, normally a {@link ContextExecutor} for the context the
+     *      request arrived on; without this and a stream executor, content is
+     *      not sent in the background
+     */
+    public VertXWebdavResponse( final HttpServerResponse response, final Executor streamExecutor, final Executor context )
     {
         this.response = response;
+        this.streamExecutor = streamExecutor;
+        this.context = context;
     }
 
     @Override
@@ -119,7 +154,7 @@ public class VertXWebdavResponse
     @Override
     public void setDateHeader( final String name, final long date )
     {
-        setHeader( name, new SimpleDateFormat( DATE_HEADER_FORMAT ).format( new Date( date ) ) );
+        setHeader( name, DateFormatter.formatRfc1123( date ) );
     }
 
     @Override
@@ -161,6 +196,164 @@ public class VertXWebdavResponse
         return outstream;
     }
 
+    /**
+     * Whole files go out through Vert.x's sendfile support. Vert.x can't send
+     * part of a file that way, so slices are read from a positioned channel
+     * and pumped like any other content. Either way the response is handed to
+     * Vert.x on the context, and it ends the response when the file is sent.
+     * <p/>
+     * Vert.x opens a whole file within {@link HttpServerResponse#sendFile(String)}
+     * but doesn't say when it's done sending it, so <code>release</code> is
+     * run once the file is open; that relies on the store replacing files
+     * rather than rewriting them, as {@link net.sf.webdav.spi.IFileBackedWebdavStore}
+     * asks. A slice holds on until its stream is closed.
+     */
+    @Override
+    public synchronized boolean sendFile( final File file, final long offset, final long length, final Runnable release )
+        throws IOException
+    {
+        if ( outstream != null )
+        {
+            return false;
+        }
+
+        if ( offset == 0 && length == file.length() )
+        {
+            logger.debug( "Sending file: '{}'", file );
+            if ( context == null )
+            {
+                response.sendFile( file.getAbsolutePath() );
+                if ( release != null )
+                {
+                    release.run();
+                }
+                return true;
+            }
+
+            streaming = true;
+            context.execute( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        response.sendFile( file.getAbsolutePath() );
+                    }
+                    finally
+                    {
+                        if ( release != null )
+                        {
+                            release.run();
+                        }
+                    }
+                }
+            } );
+            return true;
+        }
+
+        if ( streamExecutor == null )
+        {
+            return false;
+        }
+
+        logger.debug( "Sending file: '{}' ({} bytes at {})", file, length, offset );
+        final FileChannel channel = new RandomAccessFile( file, "r" ).getChannel();
+        boolean sent = false;
+        try
+        {
+            channel.position( offset );
+            final InputStream in = new BoundedInputStream( Channels.newInputStream( channel ), length );
+            sent = sendStream( release == null ? in : new ReleasingInputStream( in, release ), length );
+        }
+        finally
+        {
+            if ( !sent )
+            {
+                channel.close();
+            }
+        }
+        return sent;
+    }
+
+    /**
+     * Pumps the content to the client, reading a chunk at a time on the
+     * stream executor and pausing while the client's write queue is full.
+     * The pump and the response are only touched on the context. The response
+     * is ended when the content is exhausted.
+     */
+    @Override
+    public synchronized boolean sendStream( final InputStream content, final long length )
+        throws IOException
+    {
+        if ( streamExecutor == null || context == null || outstream != null )
+        {
+            return false;
+        }
+
+        if ( this.contentLength == null )
+        {
+            if ( length < 0 )
+            {
+                response.setChunked( true );
+            }
+            else
+            {
+                setHeader( "Content-Length", Long.toString( length ) );
+            }
+        }
+
+        logger.debug( "Streaming content" );
+        final InputStreamReadStream body = new InputStreamReadStream( content, streamExecutor, context, STREAM_CHUNK_SIZE );
+        body.endHandler( new Handler<Void>()
+        {
+            @Override
+            public void handle( final Void event )
+            {
+                response.end();
+            }
+        } );
+        body.exceptionHandler( new Handler<Throwable>()
+        {
+            @Override
+            public void handle( final Throwable error )
+            {
+                logger.warn( "Failed to stream content: " + error.getMessage(), error );
+                response.close();
+            }
+        } );
+
+        streaming = true;
+        context.execute( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                response.closeHandler( new Handler<Void>()
+                {
+                    @Override
+                    public void handle( final Void event )
+                    {
+                        body.close();
+                    }
+                } );
+                Pump.createPump( body, response )
+                    .start();
+                body.resume();
+            }
+        } );
+        return true;
+    }
+
+    /**
+     * @return true if the body is being sent in the background, and the
+     *  response will be ended when that's done
+     */
+    public synchronized boolean isStreaming()
+    {
+        return streaming;
+    }
+
     @Override
     public void setCharacterEncoding( final String encoding )
     {
@@ -0,0 +1,201 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.web.vertx.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Test;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+
+public class InputStreamReadStreamTest
+{
+
+    private static final byte[] CONTENT = "0123456789".getBytes();
+
+    private final QueuedExecutor reader = new QueuedExecutor();
+
+    private final QueuedExecutor context = new QueuedExecutor();
+
+    private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+    private int ends;
+
+    private Throwable error;
+
+    @Test
+    public void chunksAndTheEndAreHandedOverOnTheContext()
+    {
+        final InputStreamReadStream stream = record( new InputStreamReadStream( new ByteArrayInputStream( CONTENT ), reader, context, 4 ) );
+        stream.resume();
+
+        reader.runAll();
+        assertThat( received.size(), equalTo( 0 ) );
+        assertThat( reader.isEmpty(), equalTo( true ) );
+
+        context.runAll();
+        assertThat( received.toByteArray(), equalTo( "0123".getBytes() ) );
+
+        // the next chunk is only read once the last one has been handed over.
+        runUntilIdle();
+        assertThat( received.toByteArray(), equalTo( CONTENT ) );
+        assertThat( ends, equalTo( 1 ) );
+        assertThat( error, nullValue() );
+    }
+
+    @Test
+    public void nothingIsReadWhilePaused()
+    {
+        final CountingInputStream in = new CountingInputStream( CONTENT );
+        final InputStreamReadStream stream = record( new InputStreamReadStream( in, reader, context, 4 ) );
+
+        runUntilIdle();
+        assertThat( in.reads, equalTo( 0 ) );
+
+        stream.dataHandler( new Handler<Buffer>()
+        {
+            @Override
+            public void handle( final Buffer data )
+            {
+                received.write( data.getBytes(), 0, data.length() );
+                stream.pause();
+            }
+        } );
+        stream.resume();
+        runUntilIdle();
+        assertThat( in.reads, equalTo( 1 ) );
+        assertThat( received.toByteArray(), equalTo( "0123".getBytes() ) );
+
+        stream.resume();
+        runUntilIdle();
+        assertThat( in.reads, equalTo( 2 ) );
+        assertThat( received.toByteArray(), equalTo( "01234567".getBytes() ) );
+        assertThat( ends, equalTo( 0 ) );
+    }
+
+    @Test
+    public void readErrorsGoToTheExceptionHandler()
+    {
+        final IOException failure = new IOException( "disk on fire" );
+        final InputStreamReadStream stream = record( new InputStreamReadStream( new InputStream()
+        {
+            @Override
+            public int read()
+                throws IOException
+            {
+                throw failure;
+            }
+        }, reader, context, 4 ) );
+
+        stream.resume();
+        reader.runAll();
+        assertThat( error, nullValue() );
+
+        context.runAll();
+        assertThat( error, sameInstance( (Throwable) failure ) );
+        assertThat( ends, equalTo( 0 ) );
+    }
+
+    @Test
+    public void closingDuringAReadClosesTheInputOnceTheReadIsDone()
+    {
+        final CountingInputStream in = new CountingInputStream( CONTENT );
+        final InputStreamReadStream stream = record( new InputStreamReadStream( in, reader, context, 4 ) );
+
+        stream.resume();
+        stream.close();
+        assertThat( in.closed, equalTo( false ) );
+
+        runUntilIdle();
+        assertThat( in.closed, equalTo( true ) );
+        assertThat( in.reads, equalTo( 1 ) );
+        assertThat( received.size(), equalTo( 0 ) );
+        assertThat( ends, equalTo( 0 ) );
+    }
+
+    private InputStreamReadStream record( final InputStreamReadStream stream )
+    {
+        stream.dataHandler( new Handler<Buffer>()
+        {
+            @Override
+            public void handle( final Buffer data )
+            {
+                received.write( data.getBytes(), 0, data.length() );
+            }
+        } );
+        stream.endHandler( new Handler<Void>()
+        {
+            @Override
+            public void handle( final Void event )
+            {
+                ends++;
+            }
+        } );
+        stream.exceptionHandler( new Handler<Throwable>()
+        {
+            @Override
+            public void handle( final Throwable e )
+            {
+                error = e;
+            }
+        } );
+        return stream;
+    }
+
+    private void runUntilIdle()
+    {
+        while ( !reader.isEmpty() || !context.isEmpty() )
+        {
+            reader.runAll();
+            context.runAll();
+        }
+    }
+
+    private static final class CountingInputStream
+        extends ByteArrayInputStream
+    {
+        private int reads;
+
+        private boolean closed;
+
+        CountingInputStream( final byte[] content )
+        {
+            super( content );
+        }
+
+        @Override
+        public synchronized int read( final byte[] b, final int off, final int len )
+        {
+            reads++;
+            return super.read( b, off, len );
+        }
+
+        @Override
+        public void close()
+        {
+            closed = true;
+        }
+    }
+
+}
@@ -0,0 +1,192 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.web.vertx.impl;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import org.junit.Test;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.streams.ReadStream;
+
+public class PumpedInputStreamTest
+{
+
+    private final QueuedExecutor context = new QueuedExecutor();
+
+    private final FakeSource source = new FakeSource();
+
+    @Test
+    public void theSourceIsOnlyTouchedOnTheContext()
+        throws Exception
+    {
+        final PumpedInputStream in = PumpedInputStream.pump( source, context, 8 );
+        assertThat( source.dataHandler, nullValue() );
+
+        context.runAll();
+        source.send( "abc" );
+        assertThat( source.paused, equalTo( true ) );
+
+        final byte[] read = new byte[8];
+        assertThat( in.read( read ), equalTo( 3 ) );
+        assertThat( new String( read, 0, 3 ), equalTo( "abc" ) );
+        assertThat( source.paused, equalTo( true ) );
+
+        context.runAll();
+        assertThat( source.paused, equalTo( false ) );
+    }
+
+    @Test
+    public void aFullBufferPausesTheSourceUntilHalfOfItIsRead()
+        throws Exception
+    {
+        final PumpedInputStream in = PumpedInputStream.pump( source, context, 8 );
+        context.runAll();
+        source.send( "x" );
+        assertThat( in.read(), equalTo( (int) 'x' ) );
+        context.runAll();
+        assertThat( source.paused, equalTo( false ) );
+
+        source.send( "01234567" );
+        assertThat( source.paused, equalTo( true ) );
+
+        assertThat( in.read( new byte[2] ), equalTo( 2 ) );
+        context.runAll();
+        assertThat( source.paused, equalTo( true ) );
+
+        assertThat( in.read( new byte[2] ), equalTo( 2 ) );
+        assertThat( source.paused, equalTo( true ) );
+        context.runAll();
+        assertThat( source.paused, equalTo( false ) );
+    }
+
+    @Test
+    public void bufferedDataIsReadBeforeTheEnd()
+        throws Exception
+    {
+        final PumpedInputStream in = PumpedInputStream.pump( source, context, 8 );
+        context.runAll();
+
+        source.send( "ab" );
+        source.endHandler.handle( null );
+
+        assertThat( in.read(), equalTo( (int) 'a' ) );
+        assertThat( in.read(), equalTo( (int) 'b' ) );
+        assertThat( in.read(), equalTo( -1 ) );
+    }
+
+    @Test
+    public void sourceErrorsFailTheReadAfterBufferedData()
+        throws Exception
+    {
+        final PumpedInputStream in = PumpedInputStream.pump( source, context, 8 );
+        context.runAll();
+
+        final IOException failure = new IOException( "connection reset" );
+        source.send( "ab" );
+        source.exceptionHandler.handle( failure );
+
+        assertThat( in.read( new byte[8] ), equalTo( 2 ) );
+        try
+        {
+            in.read();
+            fail( "The source's error should fail the read" );
+        }
+        catch ( final IOException e )
+        {
+            assertThat( e.getCause(), sameInstance( (Throwable) failure ) );
+        }
+    }
+
+    @Test
+    public void closingResumesAPausedSourceAndDropsWhatArrives()
+        throws Exception
+    {
+        final PumpedInputStream in = PumpedInputStream.pump( source, context, 4 );
+        context.runAll();
+        source.resume();
+
+        source.send( "0123" );
+        assertThat( source.paused, equalTo( true ) );
+
+        in.close();
+        context.runAll();
+        assertThat( source.paused, equalTo( false ) );
+
+        source.send( "4567" );
+        assertThat( in.available(), equalTo( 0 ) );
+        assertThat( source.paused, equalTo( false ) );
+    }
+
+    private static final class FakeSource
+        implements ReadStream<FakeSource>
+    {
+        private Handler<Buffer> dataHandler;
+
+        private Handler<Void> endHandler;
+
+        private Handler<Throwable> exceptionHandler;
+
+        private boolean paused = true;
+
+        void send( final String data )
+        {
+            dataHandler.handle( new Buffer( data ) );
+        }
+
+        @Override
+        public FakeSource dataHandler( final Handler<Buffer> handler )
+        {
+            this.dataHandler = handler;
+            return this;
+        }
+
+        @Override
+        public FakeSource endHandler( final Handler<Void> handler )
+        {
+            this.endHandler = handler;
+            return this;
+        }
+
+        @Override
+        public FakeSource exceptionHandler( final Handler<Throwable> handler )
+        {
+            this.exceptionHandler = handler;
+            return this;
+        }
+
+        @Override
+        public FakeSource pause()
+        {
+            paused = true;
+            return this;
+        }
+
+        @Override
+        public FakeSource resume()
+        {
+            paused = false;
+            return this;
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2006-2017 Apache Software Foundation (https://sourceforge.net/p/webdav-servlet, https://github.com/Commonjava/webdav-handler)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.web.vertx.impl;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+
+/**
+ * Holds tasks until the test runs them, so that what happens on each thread
+ * can be checked step by step.
+ */
+final class QueuedExecutor
+    implements Executor
+{
+
+    private final Deque<Runnable> tasks = new ArrayDeque<Runnable>();
+
+    @Override
+    public void execute( final Runnable task )
+    {
+        tasks.add( task );
+    }
+
+    boolean isEmpty()
+    {
+        return tasks.isEmpty();
+    }
+
+    /**
+     * Runs the tasks queued so far, and any they queue in turn.
+     */
+    void runAll()
+    {
+        Runnable task;
+        while ( ( task = tasks.poll() ) != null )
+        {
+            task.run();
+        }
+    }
+
+}